@@ -8,8 +8,8 @@ import com.adobe.pdfjt.core.license.LicenseManager;
 import com.adobe.pdfjt.pdf.document.PDFDocument;
 import com.adobe.pdfjt.pdf.document.PDFOpenOptions;
 
-import com.datalogics.pdf.document.DocumentHelper;
 import com.datalogics.pdf.layout.LayoutEngine;
+import com.datalogics.pdf.samples.util.DocumentUtils;
 import com.datalogics.pdf.samples.util.IoUtils;
 import com.datalogics.pdf.text.Paragraph;
 
@@ -64,7 +64,7 @@ public final class HelloWorld {
 
             addText(document);
 
-            DocumentHelper.saveFullAndClose(document, outputUrl.toURI().getPath());
+            DocumentUtils.saveFullAndClose(document, outputUrl);
         } finally {
             if (document != null) {
                 document.close();
@@ -15,7 +15,7 @@ import com.adobe.pdfjt.services.imageconversion.ImageManager;
 import com.adobe.pdfjt.services.manipulations.PMMOptions;
 import com.adobe.pdfjt.services.manipulations.PMMService;
 
-import com.datalogics.pdf.document.DocumentHelper;
+import com.datalogics.pdf.samples.util.DocumentUtils;
 import com.datalogics.pdf.samples.util.IoUtils;
 
 import java.awt.image.BufferedImage;
@@ -105,7 +105,7 @@ public final class MakePdfFromImage {
             }
         }
 
-        DocumentHelper.saveFullAndClose(outputDocument, outputPdfUrl.toURI().getPath());
+        DocumentUtils.saveFullAndClose(outputDocument, outputPdfUrl);
     }
 
     /**
@@ -119,7 +119,7 @@ public final class MakePdfFromImage {
                                                  final URL outputPdfUrl) throws Exception {
         final PDFDocument outputDocument = createPdfFromImage(inputImageUrl, null);
 
-        DocumentHelper.saveFullAndClose(outputDocument, outputPdfUrl.toURI().getPath());
+        DocumentUtils.saveFullAndClose(outputDocument, outputPdfUrl);
     }
 
     /**
@@ -19,8 +19,8 @@ import com.adobe.pdfjt.pdf.page.PDFPage;
 import com.adobe.pdfjt.pdf.page.PDFPageTree;
 import com.adobe.pdfjt.services.imageconversion.ImageManager;
 
-import com.datalogics.pdf.document.DocumentHelper;
 import com.datalogics.pdf.layout.LayoutEngine;
+import com.datalogics.pdf.samples.util.DocumentUtils;
 import com.datalogics.pdf.samples.util.IoUtils;
 import com.datalogics.pdf.text.Dimension;
 import com.datalogics.pdf.text.Heading;
@@ -90,7 +90,7 @@ public final class MakeWhiteFangBook {
 
             addBookText(document);
 
-            DocumentHelper.saveFullAndClose(document, outputUrl.toURI().getPath());
+            DocumentUtils.saveFullAndClose(document, outputUrl);
         } finally {
             if (document != null) {
                 document.close();
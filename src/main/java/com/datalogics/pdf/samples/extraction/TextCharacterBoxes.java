@@ -21,7 +21,6 @@ import com.adobe.pdfjt.services.textextraction.WordsIterator;
 
 import com.datalogics.pdf.content.ContentAppender;
 import com.datalogics.pdf.content.PageContentAppender;
-import com.datalogics.pdf.document.DocumentHelper;
 import com.datalogics.pdf.samples.util.DocumentUtils;
 import com.datalogics.pdf.samples.util.FontUtils;
 import com.datalogics.pdf.samples.util.IoUtils;
@@ -93,7 +92,7 @@ public final class TextCharacterBoxes {
             }
         } finally {
             if (document != null) {
-                DocumentHelper.saveFullAndClose(document, outputUrl.getPath());
+                DocumentUtils.saveFullAndClose(document, outputUrl);
             }
         }
     }
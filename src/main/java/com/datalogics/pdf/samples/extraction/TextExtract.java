@@ -19,6 +19,7 @@ import com.adobe.pdfjt.services.textextraction.WordsIterator;
 import com.datalogics.pdf.samples.util.DocumentUtils;
 import com.datalogics.pdf.samples.util.FontUtils;
 import com.datalogics.pdf.samples.util.IoUtils;
+import com.datalogics.pdf.samples.util.PageRange;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -50,7 +51,7 @@ public final class TextExtract {
     /**
      * Main method.
      *
-     * @param args two command line arguments - input path and output path
+     * @param args two command line arguments - input path and output path - and an optional page range, like "3-5"
      * @throws Exception a general exception was thrown
      */
     public static void main(final String... args) throws Exception {
@@ -70,7 +71,11 @@ public final class TextExtract {
             outputUrl = IoUtils.createUrlFromPath(OUTPUT_TEXT_PATH);
         }
 
-        extractTextReadingOrder(inputUrl, outputUrl);
+        if (args.length > 2) {
+            extractTextReadingOrder(inputUrl, outputUrl, PageRange.parse(args[2]));
+        } else {
+            extractTextReadingOrder(inputUrl, outputUrl);
+        }
     }
 
     /**
@@ -91,27 +96,59 @@ public final class TextExtract {
                     throws PDFInvalidDocumentException, PDFIOException, PDFFontException, PDFSecurityException,
                     IOException, PDFUnableToCompleteOperationException,
                     URISyntaxException {
+        extractTextReadingOrder(inputUrl, outputUrl, PageRange.ALL);
+    }
+
+    /**
+     * Extracts the text from a range of pages of a PDF file in reading order.
+     *
+     * <p>
+     * Only the pages in the range are looked up and have their text extracted.
+     *
+     * @param inputUrl An URL for the input document, to extract text from
+     * @param outputUrl An URL for the file stream where the extracted text will be written
+     * @param pages the pages to extract text from
+     * @throws PDFInvalidDocumentException a general problem with the PDF document, which may now be in an invalid state
+     * @throws PDFIOException there was an error reading or writing a PDF file or temporary caches
+     * @throws PDFFontException there was an error in the font set or an individual font
+     * @throws PDFSecurityException some general security issue occurred during the processing of the request
+     * @throws UnsupportedEncodingException the character encoding is not supported
+     * @throws IOException an I/O operation failed or was interrupted
+     * @throws PDFUnableToCompleteOperationException the operation was unable to be completed
+     * @throws URISyntaxException a string could not be parsed as a URI reference
+     */
+    public static void extractTextReadingOrder(final URL inputUrl, final URL outputUrl, final PageRange pages)
+                    throws PDFInvalidDocumentException, PDFIOException, PDFFontException, PDFSecurityException,
+                    IOException, PDFUnableToCompleteOperationException,
+                    URISyntaxException {
         PDFDocument document = null;
         try {
             document = DocumentUtils.openPdfDocument(inputUrl);
 
             final PDFFontSet docFontSet = FontUtils.getDocFontSet(document);
             final ReadingOrderTextExtractor extractor = ReadingOrderTextExtractor.newInstance(document, docFontSet);
-            final WordsIterator wordsIter = extractor.getWordsIterator();
-
-            if (wordsIter.hasNext()) {
-                try (FileOutputStream outputStream = obtainOutputStream(outputUrl)) {
-                    do {
-                        final Word word = wordsIter.next();
-                        outputStream.write(word.toString().getBytes("UTF-8"));
-                    } while (wordsIter.hasNext());
+
+            FileOutputStream outputStream = null;
+            try {
+                if (PageRange.ALL.equals(pages)) {
+                    outputStream = writeWords(extractor.getWordsIterator(), outputStream, outputUrl);
+                } else {
+                    final int pageCount = document.requirePages().getCount();
+                    final int lastIndex = pages.getLastIndex(pageCount);
+                    for (int pageIndex = pages.getFirstIndex(pageCount); pageIndex <= lastIndex; pageIndex++) {
+                        outputStream = writeWords(extractor.getWordsIterator(pageIndex), outputStream, outputUrl);
+                    }
                 }
-            } else {
-                if (LOGGER.isInfoEnabled()) {
-                    LOGGER.info(inputUrl.toURI().getPath() + " did not have any text to extract.");
+            } finally {
+                if (outputStream != null) {
+                    outputStream.close();
                 }
             }
 
+            if (outputStream == null && LOGGER.isInfoEnabled()) {
+                LOGGER.info(inputUrl.toURI().getPath() + " did not have any text to extract.");
+            }
+
         } finally {
             if (document != null) {
                 document.close();
@@ -119,6 +156,35 @@ public final class TextExtract {
         }
     }
 
+    /**
+     * Write the words from an iterator to the output, opening the output when the first word is found.
+     *
+     * @param wordsIter the words to write
+     * @param outputStream the output, or null if it hasn't been opened yet
+     * @param outputUrl An URL for the file stream where the extracted text will be written
+     * @return the output, or null if it still hasn't been opened
+     * @throws PDFInvalidDocumentException a general problem with the PDF document, which may now be in an invalid state
+     * @throws PDFIOException there was an error reading or writing a PDF file or temporary caches
+     * @throws PDFFontException there was an error in the font set or an individual font
+     * @throws PDFSecurityException some general security issue occurred during the processing of the request
+     * @throws IOException an I/O operation failed or was interrupted
+     * @throws PDFUnableToCompleteOperationException the operation was unable to be completed
+     */
+    private static FileOutputStream writeWords(final WordsIterator wordsIter, final FileOutputStream outputStream,
+                                               final URL outputUrl)
+                    throws PDFInvalidDocumentException, PDFIOException, PDFFontException, PDFSecurityException,
+                    IOException, PDFUnableToCompleteOperationException {
+        FileOutputStream output = outputStream;
+        while (wordsIter.hasNext()) {
+            if (output == null) {
+                output = obtainOutputStream(outputUrl);
+            }
+            final Word word = wordsIter.next();
+            output.write(word.toString().getBytes("UTF-8"));
+        }
+        return output;
+    }
+
     private static FileOutputStream obtainOutputStream(final URL outputUrl) throws PDFIOException, IOException {
         File outputFile = null;
         try {
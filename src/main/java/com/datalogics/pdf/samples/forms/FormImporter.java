@@ -22,7 +22,6 @@ import com.adobe.pdfjt.services.xfa.XFAService;
 import com.adobe.pdfjt.services.xfa.XFAService.XFAElement;
 import com.adobe.pdfjt.services.xfdf.XFDFService;
 
-import com.datalogics.pdf.document.DocumentHelper;
 import com.datalogics.pdf.samples.util.DocumentUtils;
 import com.datalogics.pdf.samples.util.IoUtils;
 
@@ -271,7 +270,7 @@ public final class FormImporter {
 
         // Just save the file. Generating appearances and running calculations aren't supported for XFA forms, so
         // there's no need to try it.
-        DocumentHelper.saveFullAndClose(pdfDocument, outputUrl.toURI().getPath());
+        DocumentUtils.saveFullAndClose(pdfDocument, outputUrl);
     }
 
     /**
@@ -296,7 +295,7 @@ public final class FormImporter {
         AppearanceService.generateAppearances(pdfDocument, null, null);
 
         // Save the file.
-        DocumentHelper.saveFullAndClose(pdfDocument, outputUrl.toURI().getPath());
+        DocumentUtils.saveFullAndClose(pdfDocument, outputUrl);
     }
 
     /**
@@ -20,12 +20,10 @@ import com.adobe.pdfjt.pdf.graphics.xobject.PDFXObjectMap;
 import com.adobe.pdfjt.pdf.page.PDFPage;
 import com.adobe.pdfjt.services.imageconversion.ImageManager;
 
-import com.datalogics.pdf.document.DocumentHelper;
 import com.datalogics.pdf.samples.util.DocumentUtils;
 import com.datalogics.pdf.samples.util.IoUtils;
 
 import java.io.IOException;
-import java.net.URISyntaxException;
 import java.net.URL;
 import java.util.Iterator;
 
@@ -134,9 +132,7 @@ public final class ImageDownsampling {
                 }
             }
 
-            DocumentHelper.saveFullAndClose(pdfDoc, outputUrl.toURI().getPath());
-        } catch (final URISyntaxException e) {
-            throw new PDFIOException(e);
+            DocumentUtils.saveFullAndClose(pdfDoc, outputUrl);
         } finally {
             if (pdfDoc != null) {
                 pdfDoc.close();
@@ -5,7 +5,6 @@
 package com.datalogics.pdf.samples.manipulation;
 
 
-import com.adobe.internal.io.ByteWriter;
 import com.adobe.pdfjt.core.exceptions.PDFIOException;
 import com.adobe.pdfjt.core.exceptions.PDFInvalidDocumentException;
 import com.adobe.pdfjt.core.exceptions.PDFInvalidParameterException;
@@ -23,8 +22,9 @@ import com.adobe.pdfjt.services.pdfa.PDFAConversionOptions;
 import com.adobe.pdfjt.services.pdfa.PDFAConversionOptionsFactory;
 import com.adobe.pdfjt.services.pdfa.PDFAService;
 
-import com.datalogics.pdf.document.FontSetLoader;
+import com.datalogics.pdf.samples.util.AtomicFileByteWriter;
 import com.datalogics.pdf.samples.util.DocumentUtils;
+import com.datalogics.pdf.samples.util.FontUtils;
 import com.datalogics.pdf.samples.util.IoUtils;
 
 import org.slf4j.Logger;
@@ -96,9 +96,9 @@ public final class ConvertPdfDocument {
     public static void convertToPdfA1B(final URL inputUrl, final URL outputUrl)
                     throws IOException, PDFInvalidDocumentException, PDFIOException, PDFSecurityException,
                     PDFInvalidParameterException, PDFUnableToCompleteOperationException {
-        ByteWriter writer = null;
-        // Attach font set to PDF
-        final PDFFontSet pdfaFontSet = FontSetLoader.newInstance().getFontSet();
+        AtomicFileByteWriter writer = null;
+        // Attach a private copy of the system font set to the PDF, since fonts can be added to it
+        final PDFFontSet pdfaFontSet = FontUtils.newSystemFontSetCopy();
         final PDFOpenOptions openOptions = PDFOpenOptions.newInstance();
         openOptions.setFontSet(pdfaFontSet);
 
@@ -118,8 +118,9 @@ public final class ConvertPdfDocument {
                     saveOpt.setObjectCompressionMode(PDFSaveOptions.OBJECT_COMPRESSION_NONE);
                 }
 
-                writer = IoUtils.newByteWriter(outputUrl);
+                writer = IoUtils.newAtomicByteWriter(outputUrl);
                 pdfDoc.save(writer, saveOpt);
+                writer.commit();
 
                 final String successMsg = "\nConverted output written to: " + outputUrl.toString();
                 LOGGER.info(successMsg);
@@ -4,7 +4,6 @@
 
 package com.datalogics.pdf.samples.manipulation;
 
-import com.adobe.internal.io.ByteWriter;
 import com.adobe.pdfjt.core.exceptions.PDFFontException;
 import com.adobe.pdfjt.core.exceptions.PDFIOException;
 import com.adobe.pdfjt.core.exceptions.PDFInvalidDocumentException;
@@ -25,8 +24,9 @@ import com.adobe.pdfjt.services.pdfa2.PDFA2DefaultValidationHandler;
 import com.adobe.pdfjt.services.pdfa2.PDFA2Service;
 import com.adobe.pdfjt.services.pdfa2.PDFA2ValidationOptions;
 
-import com.datalogics.pdf.document.FontSetLoader;
+import com.datalogics.pdf.samples.util.AtomicFileByteWriter;
 import com.datalogics.pdf.samples.util.DocumentUtils;
+import com.datalogics.pdf.samples.util.FontUtils;
 import com.datalogics.pdf.samples.util.IoUtils;
 
 import org.slf4j.Logger;
@@ -106,9 +106,9 @@ public final class ConvertToPdfA2 {
                                       final PDFA2ConformanceLevel conformanceLevel)
                     throws IOException, PDFFontException, PDFInvalidDocumentException, PDFIOException,
                     PDFSecurityException, PDFInvalidParameterException, PDFUnableToCompleteOperationException {
-        ByteWriter writer = null;
-        // Attach font set to PDF
-        final PDFFontSet pdfaFontSet = FontSetLoader.newInstance().getFontSet();
+        AtomicFileByteWriter writer = null;
+        // Attach a private copy of the system font set to the PDF, since fonts can be added to it
+        final PDFFontSet pdfaFontSet = FontUtils.newSystemFontSetCopy();
         final PDFOpenOptions openOptions = PDFOpenOptions.newInstance();
         openOptions.setFontSet(pdfaFontSet);
 
@@ -122,8 +122,9 @@ public final class ConvertToPdfA2 {
             if (PDFA2Service.convert(pdfDoc, conformanceLevel, options, handler)) {
                 final PDFSaveOptions saveOpt = PDFSaveFullOptions.newInstance();
 
-                writer = IoUtils.newByteWriter(outputUrl);
+                writer = IoUtils.newAtomicByteWriter(outputUrl);
                 pdfDoc.save(writer, saveOpt);
+                writer.commit();
 
                 final String successMsg = "\nConverted output written to: " + outputUrl.toString();
                 LOGGER.info(successMsg);
@@ -11,7 +11,6 @@ import com.adobe.pdfjt.pdf.document.PDFOpenOptions;
 import com.adobe.pdfjt.services.manipulations.PMMOptions;
 import com.adobe.pdfjt.services.manipulations.PMMService;
 
-import com.datalogics.pdf.document.DocumentHelper;
 import com.datalogics.pdf.samples.util.DocumentUtils;
 import com.datalogics.pdf.samples.util.IoUtils;
 
@@ -88,7 +87,7 @@ public final class MergeDocuments {
         mergedDocument.requirePages().removePage(mergedDocument.requirePages().getPage(0));
 
         // Save the file.
-        DocumentHelper.saveFullAndClose(mergedDocument, outputUrl.toURI().getPath());
+        DocumentUtils.saveFullAndClose(mergedDocument, outputUrl);
     }
 
     /**
@@ -4,7 +4,6 @@
 
 package com.datalogics.pdf.samples.manipulation;
 
-import com.adobe.internal.io.ByteWriter;
 import com.adobe.pdfjt.core.exceptions.PDFConfigurationException;
 import com.adobe.pdfjt.core.exceptions.PDFFontException;
 import com.adobe.pdfjt.core.exceptions.PDFIOException;
@@ -29,7 +28,6 @@ import com.adobe.pdfjt.services.ap.AppearanceService;
 import com.adobe.pdfjt.services.ap.spi.APContext;
 import com.adobe.pdfjt.services.ap.spi.APResources;
 import com.adobe.pdfjt.services.digsig.SignatureManager;
-import com.adobe.pdfjt.services.fontresources.PDFFontSetUtil;
 import com.adobe.pdfjt.services.redaction.RedactionHandler;
 import com.adobe.pdfjt.services.redaction.RedactionOptions;
 import com.adobe.pdfjt.services.redaction.RedactionService;
@@ -41,8 +39,9 @@ import com.adobe.pdfjt.services.textextraction.TextExtractor;
 import com.adobe.pdfjt.services.textextraction.Word;
 import com.adobe.pdfjt.services.textextraction.WordsIterator;
 
-import com.datalogics.pdf.document.FontSetLoader;
+import com.datalogics.pdf.samples.util.AtomicFileByteWriter;
 import com.datalogics.pdf.samples.util.DocumentUtils;
+import com.datalogics.pdf.samples.util.FontUtils;
 import com.datalogics.pdf.samples.util.IoUtils;
 
 import org.slf4j.Logger;
@@ -167,6 +166,10 @@ public final class RedactAndSanitizeDocument {
             }
         }
 
+        // The redacted document is read back from outputUrl, so it has to be published there first. With batched
+        // durability, it may still be waiting for its batch; publish the batch now.
+        IoUtils.getOutputCommitter().flush();
+
         try {
             document = DocumentUtils.openPdfDocument(outputUrl);
 
@@ -195,7 +198,7 @@ public final class RedactAndSanitizeDocument {
         throws PDFInvalidDocumentException, PDFIOException, PDFFontException, PDFSecurityException,
         PDFConfigurationException, PDFInvalidParameterException {
         final String searchTermLowerCase = searchTerm.toLowerCase(Locale.ENGLISH);
-        final PDFFontSet docFontSet = setupDocFontSet(document);
+        final PDFFontSet docFontSet = FontUtils.getDocFontSet(document);
 
         final TextExtractor extractor = TextExtractor.newInstance(document,
                                                                   docFontSet);
@@ -283,21 +286,21 @@ public final class RedactAndSanitizeDocument {
     private static void applyRedaction(final PDFDocument document, final URL outputUrl)
         throws PDFInvalidParameterException, PDFInvalidDocumentException, PDFIOException,
         PDFSecurityException, PDFUnableToCompleteOperationException, PDFFontException, IOException {
-        ByteWriter writer = null;
+        AtomicFileByteWriter writer = null;
+        boolean committed = false;
         try {
-            writer = IoUtils.newByteWriter(outputUrl);
+            writer = IoUtils.newAtomicByteWriter(outputUrl);
             RedactionOptions redactionOptions = null;
             redactionOptions = new RedactionOptions(new LocalRedactionHandler());
 
             // Applying redaction
             RedactionService.applyRedaction(document, redactionOptions, writer);
-            writer.close();
+            writer.commit();
+            committed = true;
         } catch (final IOException e) {
             throw new PDFIOException(e);
         } finally {
-            if (writer != null) {
-                writer.close();
-            }
+            closeWriter(writer, committed, "redacted");
         }
     }
 
@@ -323,19 +326,52 @@ public final class RedactAndSanitizeDocument {
             LOGGER.warn("The document was not sanitized");
             return;
         }
-        ByteWriter writer = null;
+        AtomicFileByteWriter writer = null;
+        boolean committed = false;
         try {
-            writer = IoUtils.newByteWriter(sanitizedUrl);
+            writer = IoUtils.newAtomicByteWriter(sanitizedUrl);
+            final PDFSaveOptions saveOptions = PDFSaveLinearOptions.newInstance();
+            // Optimize the document for fast web viewing. This is a part of sanitization.
+            saveOptions.setForceCompress(true); // All the streams should be encoded with flate filter.
+            final SanitizationOptions options = new SanitizationOptions();
+            options.setPDFFontSet(FontUtils.newSystemFontSetCopy());
+            options.setSaveOptions(saveOptions);
+            SanitizationService.sanitizeDocument(document, options, writer); // API to start the sanitization.
+            writer.commit();
+            committed = true;
         } catch (final IOException e) {
             throw new PDFIOException(e);
+        } finally {
+            closeWriter(writer, committed, "sanitized");
+        }
+    }
+
+    /**
+     * Close an output writer. Closing a committed writer publishes the output, so a failure then is an error; closing
+     * an uncommitted one only discards the incomplete output, and a failure is logged, so that it doesn't hide the
+     * error that stopped the output from being completed.
+     *
+     * @param writer the writer, or null if it was never created
+     * @param committed whether the output was committed
+     * @param description what the output is, for the log
+     * @throws PDFIOException there was an error reading or writing a PDF file or temporary caches
+     */
+    private static void closeWriter(final AtomicFileByteWriter writer, final boolean committed,
+                                    final String description)
+                    throws PDFIOException {
+        if (writer == null) {
+            return;
+        }
+        try {
+            writer.close();
+        } catch (final IOException e) {
+            if (committed) {
+                throw new PDFIOException(e);
+            }
+            if (LOGGER.isWarnEnabled()) {
+                LOGGER.warn("Unable to discard the incomplete " + description + " output", e);
+            }
         }
-        final PDFSaveOptions saveOptions = PDFSaveLinearOptions.newInstance();
-        // Optimize the document for fast web viewing. This is a part of sanitization.
-        saveOptions.setForceCompress(true); // All the streams should be encoded with flate filter.
-        final SanitizationOptions options = new SanitizationOptions();
-        options.setPDFFontSet(FontSetLoader.newInstance().getFontSet());
-        options.setSaveOptions(saveOptions);
-        SanitizationService.sanitizeDocument(document, options, writer); // API to start the sanitization.
     }
 
     /**
@@ -406,27 +442,6 @@ public final class RedactAndSanitizeDocument {
         AppearanceService.generateAppearances(document, apContext, null);
     }
 
-    /**
-     * Create a PDFFontSet that contains fonts used in the original document.
-     *
-     * @param document The document whose fonts need to be loaded
-     * @return A fontset with the appropriate fonts added from the PDFDocument
-     * @throws PDFInvalidDocumentException a general problem with the PDF document, which may now be in an invalid
-     *     state
-     * @throws PDFIOException there was an error reading or writing a PDF file or temporary caches
-     * @throws PDFFontException there was an error in the font set or an individual font
-     * @throws PDFSecurityException some general security issue occurred during the processing of the request
-     */
-    private static PDFFontSet setupDocFontSet(final PDFDocument document)
-        throws PDFInvalidDocumentException, PDFIOException, PDFFontException, PDFSecurityException {
-        PDFFontSet sysFontSet = null;
-        final FontSetLoader fontSetLoader = FontSetLoader.newInstance();
-
-        sysFontSet = fontSetLoader.getFontSet();
-        return PDFFontSetUtil.buildWorkingFontSet(document,
-                                                  sysFontSet, document.getDocumentLocale(), null);
-    }
-
     /**
      * An implementation of the RedactionHandler class. Most commonly used to receive callbacks when an object is
      * redacted
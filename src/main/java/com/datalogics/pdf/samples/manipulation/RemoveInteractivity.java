@@ -20,12 +20,10 @@ import com.adobe.pdfjt.services.ap.spi.APResources;
 import com.adobe.pdfjt.services.digsig.SignatureManager;
 import com.adobe.pdfjt.services.formflattener.FormFlattener;
 
-import com.datalogics.pdf.document.DocumentHelper;
 import com.datalogics.pdf.samples.util.DocumentUtils;
 import com.datalogics.pdf.samples.util.IoUtils;
 
 import java.io.IOException;
-import java.net.URISyntaxException;
 import java.net.URL;
 import java.util.EnumSet;
 
@@ -137,9 +135,7 @@ public final class RemoveInteractivity {
             FormFlattener.flattenDocument(apContext, pdfDoc, null);
 
             // Save the non-interactive file to an output PDF file
-            DocumentHelper.saveFullAndClose(pdfDoc, outputUrl.toURI().getPath());
-        } catch (final URISyntaxException e) {
-            throw new PDFIOException(e);
+            DocumentUtils.saveFullAndClose(pdfDoc, outputUrl);
         } finally {
             if (pdfDoc != null) {
                 pdfDoc.close();
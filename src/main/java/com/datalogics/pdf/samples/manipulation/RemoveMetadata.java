@@ -4,7 +4,6 @@
 
 package com.datalogics.pdf.samples.manipulation;
 
-import com.adobe.internal.io.ByteWriter;
 import com.adobe.pdfjt.core.exceptions.PDFIOException;
 import com.adobe.pdfjt.core.exceptions.PDFInvalidDocumentException;
 import com.adobe.pdfjt.core.exceptions.PDFInvalidParameterException;
@@ -15,6 +14,7 @@ import com.adobe.pdfjt.core.license.LicenseManager;
 import com.adobe.pdfjt.pdf.document.PDFDocument;
 import com.adobe.pdfjt.pdf.document.PDFSaveFullOptions;
 
+import com.datalogics.pdf.samples.util.AtomicFileByteWriter;
 import com.datalogics.pdf.samples.util.DocumentUtils;
 import com.datalogics.pdf.samples.util.IoUtils;
 
@@ -81,9 +81,13 @@ public final class RemoveMetadata {
 
         document.removeMetadata();
 
-        final ByteWriter writer = IoUtils.newByteWriter(outputUrl);
-        document.save(writer, PDFSaveFullOptions.newInstance());
-        writer.close();
-        document.close();
+        final AtomicFileByteWriter writer = IoUtils.newAtomicByteWriter(outputUrl);
+        try {
+            document.save(writer, PDFSaveFullOptions.newInstance());
+            writer.commit();
+        } finally {
+            writer.close();
+            document.close();
+        }
     }
 }
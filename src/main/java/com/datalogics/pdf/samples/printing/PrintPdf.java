@@ -12,11 +12,12 @@ import com.adobe.pdfjt.core.exceptions.PDFSecurityException;
 import com.adobe.pdfjt.core.license.LicenseManager;
 import com.adobe.pdfjt.pdf.document.PDFDocument;
 import com.adobe.pdfjt.pdf.page.PDFPage;
+import com.adobe.pdfjt.pdf.page.PDFPageTree;
 import com.adobe.pdfjt.services.rasterizer.PageRasterizer;
-import com.adobe.pdfjt.services.rasterizer.RasterizationOptions;
 
-import com.datalogics.pdf.document.FontSetLoader;
+import com.datalogics.pdf.samples.rendering.PageRasterOptions;
 import com.datalogics.pdf.samples.util.DocumentUtils;
+import com.datalogics.pdf.samples.util.FontUtils;
 import com.datalogics.pdf.samples.util.IoUtils;
 
 import org.slf4j.Logger;
@@ -54,8 +55,6 @@ public class PrintPdf {
     private static final Logger LOGGER = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
     public static final String DEFAULT_INPUT = "pdfjavatoolkit-ds.pdf";
 
-    private static PageRasterizer pageRasterizer;
-
     /**
      * This is a utility class, and won't be instantiated.
      */
@@ -84,12 +83,23 @@ public class PrintPdf {
     }
 
     /**
-     * Print the specified PDF.
+     * Print the specified PDF, rasterizing the pages with the default sizing of {@link PageRasterOptions}.
      *
      * @param inputUrl path to the PDF to print
      * @throws Exception a general exception was thrown
      */
     public static void printPdf(final URL inputUrl) throws Exception {
+        printPdf(inputUrl, PageRasterOptions.DEFAULT_SIZING);
+    }
+
+    /**
+     * Print the specified PDF.
+     *
+     * @param inputUrl path to the PDF to print
+     * @param sizing the way the pages are sized when they're rasterized
+     * @throws Exception a general exception was thrown
+     */
+    public static void printPdf(final URL inputUrl, final PageRasterOptions.Sizing sizing) throws Exception {
         // Find the default printer.
         final PrintService printService = PrintServiceLookup.lookupDefaultPrintService();
 
@@ -102,8 +112,8 @@ public class PrintPdf {
         }
 
         try {
-            // Read the PDF input file and detect the page size of the first page. This sample assumes all pages in
-            // the document are the same size.
+            // Read the PDF input file and detect the page size of the first page, which is used for the paper size.
+            // Each page is scaled to the paper when it's printed.
             final PDFDocument pdfDocument = DocumentUtils.openPdfDocument(inputUrl);
             final PDFPage pdfPage = pdfDocument.requirePages().getPage(0);
             final int pdfPageWidth = (int) pdfPage.getMediaBox().width();
@@ -124,21 +134,14 @@ public class PrintPdf {
                 LOGGER.info("Resolution: " + resolution + " DPI");
             }
 
-            // Create a default FontSetLoader. This will include the Base 14 fonts, plus all fonts in the standard
-            // system locations.
-            final FontSetLoader fontSetLoader = FontSetLoader.newInstance();
-
-            // Create a set of options that will be used to rasterize the pages. We use the page width, height, and the
-            // printer resolution to tell the Java Toolkit what dimensions the bitmap should be. Matching the resolution
-            // of the printer will give us as high a quality output as the device is capable of.
-            final RasterizationOptions rasterizationOptions = new RasterizationOptions();
-            rasterizationOptions.setFontSet(fontSetLoader.getFontSet());
-            rasterizationOptions.setWidth(pdfPageWidth / 72 * resolution);
-            rasterizationOptions.setHeight(pdfPageHeight / 72 * resolution);
-
-            // Use a PageRasterizer to create a bitmap for each page. NOTE: Acrobat and Reader will also create bitmaps
-            // when normal printing does not produce the desired results.
-            pageRasterizer = new PageRasterizer(pdfDocument.requirePages(), rasterizationOptions);
+            // Set up the options that will be used to rasterize the pages. We use the page size and the printer
+            // resolution to tell the Java Toolkit what dimensions the bitmap should be. Matching the resolution of the
+            // printer will give us as high a quality output as the device is capable of. Each page is rasterized at
+            // the size of its own crop box, or at the size of the first page, depending on the sizing.
+            //
+            // A PageRasterizer will create a bitmap for each page as it's printed. NOTE: Acrobat and Reader will also
+            // create bitmaps when normal printing does not produce the desired results.
+            final PageRasterOptions pageRasterOptions = new PageRasterOptions(resolution, sizing);
 
             // Print the images. We send them to the default printer without presenting a dialog panel to the user.
             // If we wanted to let the user select a printer, we could do so with "printerJob.printDialog()"
@@ -151,7 +154,8 @@ public class PrintPdf {
             pageFormat.setOrientation(PageFormat.PORTRAIT);
             pageFormat.setPaper(paper);
             final PageFormat validatePage = printerJob.validatePage(pageFormat);
-            printerJob.setPrintable(new BufferedImagePrintable(), validatePage);
+            printerJob.setPrintable(new BufferedImagePrintable(pdfDocument.requirePages(), pageRasterOptions),
+                                    validatePage);
             printerJob.print();
         } catch (final IOException | PrinterException exp) {
             if (LOGGER.isWarnEnabled()) {
@@ -169,9 +173,22 @@ public class PrintPdf {
      * interface for more information.
      */
     private static class BufferedImagePrintable implements Printable {
+        private final PDFPageTree pageTree;
+        private final PageRasterOptions pageRasterOptions;
         private int previousPageIndex = -1;
         private BufferedImage previousPage;
 
+        /**
+         * Create a Printable for the pages of a document.
+         *
+         * @param pageTree the pages to print
+         * @param pageRasterOptions the options to rasterize the pages with
+         */
+        BufferedImagePrintable(final PDFPageTree pageTree, final PageRasterOptions pageRasterOptions) {
+            this.pageTree = pageTree;
+            this.pageRasterOptions = pageRasterOptions;
+        }
+
         /**
          * Prints the page at the specified index into the specified Graphics context in the specified format.
          *
@@ -194,9 +211,17 @@ public class PrintPdf {
                         throws PrinterException {
             BufferedImage page = null;
             try {
-                // If we have not rasterized this page yet, do so. The rasterizer was created for us in the outer class.
+                // If we have not rasterized this page yet, do so. The page tree and the options were set up for us in
+                // the outer class.
                 if (previousPageIndex < pageIndex) {
-                    if (pageRasterizer.hasNext()) {
+                    if (pageIndex < pageTree.getCount()) {
+                        final PDFPage pdfPage = pageTree.getPage(pageIndex);
+                        // The system font set includes the Base 14 fonts, plus all fonts in the standard system
+                        // locations. It is loaded once and shared, so printing more documents doesn't scan the system
+                        // fonts again.
+                        final PageRasterizer pageRasterizer =
+                            new PageRasterizer(pageTree, pageIndex, pageIndex,
+                                               pageRasterOptions.getOptions(pdfPage, FontUtils.getSystemFontSet()));
                         page = pageRasterizer.next();
                     } else {
                         // There are no more pages in this document.
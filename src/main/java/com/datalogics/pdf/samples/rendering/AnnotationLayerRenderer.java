@@ -0,0 +1,337 @@
+/*
+ * Copyright 2015 Datalogics, Inc.
+ */
+
+package com.datalogics.pdf.samples.rendering;
+
+import com.adobe.pdfjt.core.cos.CosDictionary;
+import com.adobe.pdfjt.core.cos.CosObject;
+import com.adobe.pdfjt.core.fontset.PDFFontSet;
+import com.adobe.pdfjt.core.types.ASName;
+import com.adobe.pdfjt.core.types.ASRectangle;
+import com.adobe.pdfjt.pdf.document.PDFDocument;
+import com.adobe.pdfjt.pdf.graphics.PDFRectangle;
+import com.adobe.pdfjt.pdf.interactive.annotation.PDFAnnotation;
+import com.adobe.pdfjt.pdf.interactive.annotation.PDFAnnotationList;
+import com.adobe.pdfjt.pdf.page.PDFPage;
+import com.adobe.pdfjt.pdf.page.PDFPageTree;
+import com.adobe.pdfjt.services.rasterizer.PageRasterizer;
+import com.adobe.pdfjt.services.rasterizer.RasterizationOptions;
+
+import com.datalogics.pdf.samples.util.FontUtils;
+
+import java.awt.AlphaComposite;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Renders pages as a cached content layer with the annotations composited on top, so that a page whose annotations
+ * are being edited can be rendered again without redrawing its content.
+ *
+ * <p>
+ * In a review workflow, annotations are added and moved over and over on a page whose content never changes. The
+ * first time a page is rendered, its content is rasterized with the annotations taken off the page, and kept. After
+ * that, each render starts from a copy of the kept content layer, and rasterizes again only the regions under the
+ * page's annotations, with the annotations in place, pasting each over the copy. A region is rendered by setting the
+ * page's crop box to it, as the {@link TiledPageRenderer} does, so each annotation is drawn over the content beneath it
+ * exactly as in a full render, blend modes and all. Content and annotations that have been removed or moved away
+ * simply aren't drawn over the content layer any more.
+ *
+ * <p>
+ * The content layer is kept with a {@link PageContentHasher} digest of the page that leaves out its annotations, and
+ * is rasterized again if the digest changes, for instance when the page's content streams or crop box are replaced.
+ * The hasher only reads a stream once, though, so after a content stream has been edited in place, call
+ * {@link #invalidate()}.
+ *
+ * <p>
+ * Every region is a separate pass of the rasterizer over the page's content, so when the annotations make more than a
+ * few regions, they are merged into the one region that bounds them all. When the regions cover more than half the
+ * page, the page is simply rendered whole.
+ *
+ * <p>
+ * The page's annotations and crop box are changed while rendering, and restored afterwards. The document should be one
+ * that was opened for rendering, or one that is only edited between renders. Page rotation is not taken into account.
+ */
+public class AnnotationLayerRenderer {
+
+    private static final double POINTS_PER_INCH = 72.0;
+    private static final ASName ANNOTS = ASName.create("Annots");
+    private static final ASName CROP_BOX = ASName.create("CropBox");
+
+    /**
+     * The fraction of the page that the annotations may cover before it's cheaper to render the page whole.
+     */
+    private static final double MAX_REGION_FRACTION = 0.5;
+
+    /**
+     * The most regions to rasterize separately before merging them into their bounding box.
+     */
+    static final int MAX_REGIONS = 4;
+
+    /**
+     * Pixels added around each annotation, for anti-aliased edges that spill past its rectangle.
+     */
+    private static final int MARGIN = 2;
+
+    private final PDFDocument document;
+    private final PDFPageTree pageTree;
+    private final PDFFontSet fontSet;
+    private final int resolution;
+    private final Map<Integer, ContentLayer> contentLayers;
+    private PageContentHasher hasher;
+    private long contentHits;
+    private long contentMisses;
+
+    /**
+     * Create a renderer for a document.
+     *
+     * @param document the document to render
+     * @param resolution the desired resolution in dpi
+     * @param maxCachedPages the most content layers to keep; the least recently rendered pages are dropped first
+     * @throws Exception a general exception was thrown
+     */
+    public AnnotationLayerRenderer(final PDFDocument document, final int resolution, final int maxCachedPages)
+                    throws Exception {
+        if (resolution <= 0) {
+            throw new IllegalArgumentException("resolution must be positive: " + resolution);
+        }
+        if (maxCachedPages <= 0) {
+            throw new IllegalArgumentException("cached page count must be positive: " + maxCachedPages);
+        }
+        this.document = document;
+        pageTree = document.requirePages();
+        fontSet = FontUtils.getDocFontSet(document);
+        this.resolution = resolution;
+        hasher = new PageContentHasher(document);
+        contentLayers = new LinkedHashMap<Integer, ContentLayer>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(final Map.Entry<Integer, ContentLayer> eldest) {
+                return size() > maxCachedPages;
+            }
+        };
+    }
+
+    /**
+     * Get the number of pages in the document.
+     *
+     * @return the page count
+     * @throws Exception a general exception was thrown
+     */
+    public int getPageCount() throws Exception {
+        return pageTree.getCount();
+    }
+
+    /**
+     * Render a page, with its annotations as they are now.
+     *
+     * @param pageIndex the index of the page
+     * @return the image of the page
+     * @throws Exception a general exception was thrown
+     */
+    public BufferedImage renderPage(final int pageIndex) throws Exception {
+        final PDFPage page = pageTree.getPage(pageIndex);
+        final ASRectangle cropBox = page.getCropBox();
+        final int width = toPixels(cropBox.width());
+        final int height = toPixels(cropBox.height());
+
+        final List<Rectangle> regions = limitRegions(annotationRegions(page, cropBox, new Rectangle(width, height)),
+                                                     MAX_REGIONS);
+        long area = 0;
+        for (final Rectangle region : regions) {
+            area += (long) region.width * region.height;
+        }
+        if (area > MAX_REGION_FRACTION * width * height) {
+            return rasterize(pageIndex, width, height);
+        }
+
+        final BufferedImage content = contentLayer(pageIndex, width, height);
+        final BufferedImage result = new BufferedImage(content.getColorModel(), content.copyData(null),
+                                                       content.isAlphaPremultiplied(), null);
+        if (regions.isEmpty()) {
+            return result;
+        }
+
+        final CosDictionary pageDictionary = (CosDictionary) page.getCosObject();
+        final CosObject originalCropBox = pageDictionary.get(CROP_BOX);
+        final double pointsPerPixel = POINTS_PER_INCH / resolution;
+        final Graphics2D graphics = result.createGraphics();
+        try {
+            // The regions are rendered opaque over the content, so replace the pixels rather than blend with them.
+            graphics.setComposite(AlphaComposite.Src);
+            for (final Rectangle region : regions) {
+                // Pixel rows count down from the top of the page; PDF coordinates count up from the bottom.
+                final double left = cropBox.left() + region.x * pointsPerPixel;
+                final double top = cropBox.top() - region.y * pointsPerPixel;
+                page.setCropBox(PDFRectangle.newInstance(document,
+                                                         new ASRectangle(left, top - region.height * pointsPerPixel,
+                                                                         left + region.width * pointsPerPixel,
+                                                                         top)));
+                graphics.drawImage(rasterize(pageIndex, region.width, region.height), region.x, region.y, null);
+            }
+        } finally {
+            graphics.dispose();
+            // Put back the very same entry, so that an inherited crop box stays inherited and the digest of the page
+            // doesn't change.
+            if (originalCropBox == null) {
+                pageDictionary.remove(CROP_BOX);
+            } else {
+                pageDictionary.put(CROP_BOX, originalCropBox);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Drop every kept content layer, and forget the digests of the document's streams. Call this after editing the
+     * content of a page in place.
+     *
+     * @throws Exception a general exception was thrown
+     */
+    public void invalidate() throws Exception {
+        contentLayers.clear();
+        hasher = new PageContentHasher(document);
+    }
+
+    /**
+     * Get the number of renders that reused a kept content layer.
+     *
+     * @return the number of hits
+     */
+    public long getContentHits() {
+        return contentHits;
+    }
+
+    /**
+     * Get the number of renders that had to rasterize the content layer.
+     *
+     * @return the number of misses
+     */
+    public long getContentMisses() {
+        return contentMisses;
+    }
+
+    private BufferedImage contentLayer(final int pageIndex, final int width, final int height) throws Exception {
+        final byte[] digest = hasher.digestContent(pageIndex);
+        final ContentLayer kept = contentLayers.get(pageIndex);
+        if (kept != null && Arrays.equals(kept.digest, digest)) {
+            contentHits++;
+            return kept.image;
+        }
+        contentMisses++;
+
+        final CosDictionary pageDictionary = (CosDictionary) pageTree.getPage(pageIndex).getCosObject();
+        final CosObject annotations = pageDictionary.get(ANNOTS);
+        if (annotations != null) {
+            pageDictionary.remove(ANNOTS);
+        }
+        final BufferedImage image;
+        try {
+            image = rasterize(pageIndex, width, height);
+        } finally {
+            if (annotations != null) {
+                pageDictionary.put(ANNOTS, annotations);
+            }
+        }
+        contentLayers.put(pageIndex, new ContentLayer(digest, image));
+        return image;
+    }
+
+    /**
+     * Get the regions of the page, in pixels, that the annotations cover. Overlapping regions are merged, so that no
+     * part of the page is rendered twice.
+     */
+    private List<Rectangle> annotationRegions(final PDFPage page, final ASRectangle cropBox, final Rectangle bounds)
+                    throws Exception {
+        final List<Rectangle> regions = new ArrayList<>();
+        final PDFAnnotationList annotations = page.getAnnotationList();
+        if (annotations == null) {
+            return regions;
+        }
+        final double pixelsPerPoint = resolution / POINTS_PER_INCH;
+
+        for (int i = 0; i < annotations.size(); i++) {
+            final PDFAnnotation annotation = annotations.get(i);
+            final ASRectangle rect = annotation.getRect();
+            if (rect == null) {
+                continue;
+            }
+            final int x0 = (int) Math.floor((Math.min(rect.left(), rect.right()) - cropBox.left()) * pixelsPerPoint);
+            final int x1 = (int) Math.ceil((Math.max(rect.left(), rect.right()) - cropBox.left()) * pixelsPerPoint);
+            final int y0 = (int) Math.floor((cropBox.top() - Math.max(rect.top(), rect.bottom())) * pixelsPerPoint);
+            final int y1 = (int) Math.ceil((cropBox.top() - Math.min(rect.top(), rect.bottom())) * pixelsPerPoint);
+            Rectangle region = new Rectangle(x0 - MARGIN, y0 - MARGIN, x1 - x0 + 2 * MARGIN, y1 - y0 + 2 * MARGIN)
+                            .intersection(bounds);
+            if (region.isEmpty()) {
+                continue;
+            }
+
+            // Absorb every region this one overlaps; the union may overlap others in turn, so go around again.
+            boolean merged;
+            do {
+                merged = false;
+                for (int j = 0; j < regions.size(); j++) {
+                    if (regions.get(j).intersects(region)) {
+                        region = region.union(regions.remove(j));
+                        merged = true;
+                        break;
+                    }
+                }
+            } while (merged);
+            regions.add(region);
+        }
+        return regions;
+    }
+
+    /**
+     * Limit the number of regions to rasterize. Past the limit, the regions are replaced by the one rectangle that
+     * bounds them all, which is rasterized in a single pass.
+     *
+     * @param regions the regions
+     * @param maxRegions the most regions to keep separate
+     * @return the regions, or a list of their bounding box
+     */
+    static List<Rectangle> limitRegions(final List<Rectangle> regions, final int maxRegions) {
+        if (regions.size() <= maxRegions) {
+            return regions;
+        }
+        Rectangle bounds = regions.get(0);
+        for (final Rectangle region : regions) {
+            bounds = bounds.union(region);
+        }
+        return Collections.singletonList(bounds);
+    }
+
+    private BufferedImage rasterize(final int pageIndex, final int width, final int height) throws Exception {
+        final RasterizationOptions options = new RasterizationOptions();
+        options.setFontSet(fontSet);
+        options.setWidth(width);
+        options.setHeight(height);
+        return new PageRasterizer(pageTree, pageIndex, pageIndex, options).next();
+    }
+
+    private int toPixels(final double points) {
+        return (int) Math.ceil(points / POINTS_PER_INCH * resolution);
+    }
+
+    /**
+     * A rendered content layer, and the digest of the page content it was rendered from.
+     */
+    private static class ContentLayer {
+        private final byte[] digest;
+        private final BufferedImage image;
+
+        ContentLayer(final byte[] digest, final BufferedImage image) {
+            this.digest = digest;
+            this.image = image;
+        }
+    }
+}
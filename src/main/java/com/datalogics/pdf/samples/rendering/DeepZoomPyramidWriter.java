@@ -0,0 +1,277 @@
+/*
+ * Copyright 2015 Datalogics, Inc.
+ */
+
+package com.datalogics.pdf.samples.rendering;
+
+import com.datalogics.pdf.samples.util.RasterBufferPool;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+/**
+ * Writes the tiles of a rendered page as a Deep Zoom image pyramid, deriving every lower zoom level from the tiles of
+ * the full resolution level as they arrive.
+ *
+ * <p>
+ * The page is rendered once, at full resolution, by a {@link TiledPageRenderer}. Each tile is written to the top
+ * level of the pyramid, then scaled down by half with a 2x2 box filter into its place in a tile of the level below.
+ * When a lower level tile has received all of its quarters, it is written and passed down in the same way, until the
+ * single-pixel level 0 is reached. Only the lower level tiles still being filled are kept in memory, which is about
+ * one row of tiles per level.
+ *
+ * <p>
+ * The output follows the Deep Zoom layout: a {@code .dzi} manifest, and a {@code _files} directory with a
+ * subdirectory for each level, holding tiles named {@code column_row.png}. Tiles don't overlap.
+ *
+ * <p>
+ * The lower level tiles being filled are borrowed from the shared {@link RasterBufferPool}. If a tile can't be
+ * handled, they are released straight away; close the writer when rendering stops early for any other reason.
+ */
+public class DeepZoomPyramidWriter implements TiledPageRenderer.TileHandler, AutoCloseable {
+
+    private final File manifestFile;
+    private final File tilesDirectory;
+    private final int width;
+    private final int height;
+    private final int tileSize;
+    private final int maxLevel;
+    private final Level topLevel;
+
+    /**
+     * Create a writer for a pyramid.
+     *
+     * @param manifestFile the {@code .dzi} manifest file to write; the tiles go in a directory next to it, with the
+     *        same name and {@code _files} in place of the extension
+     * @param width the width of the page at full resolution, in pixels
+     * @param height the height of the page at full resolution, in pixels
+     * @param tileSize the size of the tiles the page is rendered in, which must be even
+     */
+    public DeepZoomPyramidWriter(final File manifestFile, final int width, final int height, final int tileSize) {
+        if (tileSize <= 0 || tileSize % 2 != 0) {
+            throw new IllegalArgumentException("tile size must be positive and even: " + tileSize);
+        }
+        this.manifestFile = manifestFile;
+        final String name = manifestFile.getName();
+        final int dot = name.lastIndexOf('.');
+        tilesDirectory = new File(manifestFile.getParentFile(), (dot < 0 ? name : name.substring(0, dot)) + "_files");
+        this.width = width;
+        this.height = height;
+        this.tileSize = tileSize;
+
+        // Level 0 is a single pixel; each level up doubles the size, up to the full page.
+        int levels = 0;
+        while ((1L << levels) < Math.max(width, height)) {
+            levels++;
+        }
+        maxLevel = levels;
+        topLevel = new Level(maxLevel);
+    }
+
+    @Override
+    public void handleTile(final int pageNumber, final int row, final int column, final BufferedImage tile)
+                    throws Exception {
+        boolean handled = false;
+        try {
+            topLevel.addTile(row, column, tile);
+            handled = true;
+        } finally {
+            if (!handled) {
+                // The pyramid can't be completed now; give back the tiles that were being filled.
+                close();
+            }
+        }
+    }
+
+    /**
+     * Release the lower level tiles that are still being filled. Once every tile has been handled there are none, so
+     * this only matters when rendering stopped early.
+     */
+    @Override
+    public void close() {
+        for (Level level = topLevel; level != null; level = level.below) {
+            level.releasePending();
+        }
+    }
+
+    /**
+     * Write the manifest, once every tile has been handled.
+     *
+     * @throws IOException an I/O operation failed or was interrupted
+     */
+    public void finish() throws IOException {
+        final File parent = manifestFile.getAbsoluteFile().getParentFile();
+        if (parent != null) {
+            Files.createDirectories(parent.toPath());
+        }
+        try (Writer writer = new OutputStreamWriter(Files.newOutputStream(manifestFile.toPath()),
+                                                    StandardCharsets.UTF_8)) {
+            writer.write("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+            writer.write("<Image xmlns=\"http://schemas.microsoft.com/deepzoom/2008\" TileSize=\"" + tileSize
+                         + "\" Overlap=\"0\" Format=\"png\">\n");
+            writer.write("  <Size Width=\"" + width + "\" Height=\"" + height + "\"/>\n");
+            writer.write("</Image>\n");
+        }
+    }
+
+    /**
+     * Get the directory that holds the tiles of a level.
+     *
+     * @param level the level number
+     * @return the directory
+     */
+    public File getLevelDirectory(final int level) {
+        return new File(tilesDirectory, Integer.toString(level));
+    }
+
+    /**
+     * Scale an image down by half, averaging each 2x2 block of pixels. A last odd row or column is averaged with
+     * itself.
+     *
+     * @param image the image to scale
+     * @return the scaled image, borrowed from the shared {@link RasterBufferPool}
+     */
+    static BufferedImage halve(final BufferedImage image) {
+        final int sourceWidth = image.getWidth();
+        final int sourceHeight = image.getHeight();
+        final int targetWidth = (sourceWidth + 1) / 2;
+        final int targetHeight = (sourceHeight + 1) / 2;
+        final int[] source = image.getRGB(0, 0, sourceWidth, sourceHeight, null, 0, sourceWidth);
+        final int[] target = new int[targetWidth * targetHeight];
+
+        for (int y = 0; y < targetHeight; y++) {
+            final int row0 = 2 * y * sourceWidth;
+            final int row1 = Math.min(2 * y + 1, sourceHeight - 1) * sourceWidth;
+            for (int x = 0; x < targetWidth; x++) {
+                final int x0 = 2 * x;
+                final int x1 = Math.min(2 * x + 1, sourceWidth - 1);
+                target[y * targetWidth + x] = average(source[row0 + x0], source[row0 + x1], source[row1 + x0],
+                                                      source[row1 + x1]);
+            }
+        }
+
+        final BufferedImage result = RasterBufferPool.getSharedPool().borrow(targetWidth, targetHeight,
+                                                                              BufferedImage.TYPE_INT_ARGB);
+        result.setRGB(0, 0, targetWidth, targetHeight, target, 0, targetWidth);
+        return result;
+    }
+
+    private static int average(final int p0, final int p1, final int p2, final int p3) {
+        int result = 0;
+        for (int shift = 0; shift < 32; shift += 8) {
+            final int sum = (p0 >>> shift & 0xff) + (p1 >>> shift & 0xff) + (p2 >>> shift & 0xff)
+                            + (p3 >>> shift & 0xff);
+            result |= (sum + 2) / 4 << shift;
+        }
+        return result;
+    }
+
+    /**
+     * One level of the pyramid, collecting the tiles of the level below it.
+     */
+    private class Level {
+        private final int number;
+        private final int levelWidth;
+        private final int levelHeight;
+        private final int columns;
+        private final int rows;
+        private final Level below;
+
+        /**
+         * The tiles of the level below that are still being filled, one per column.
+         */
+        private final BufferedImage[] pending;
+
+        Level(final int number) {
+            this.number = number;
+            levelWidth = levelSize(width, maxLevel - number);
+            levelHeight = levelSize(height, maxLevel - number);
+            columns = (levelWidth + tileSize - 1) / tileSize;
+            rows = (levelHeight + tileSize - 1) / tileSize;
+            below = number > 0 ? new Level(number - 1) : null;
+            pending = below == null ? null : new BufferedImage[below.columns];
+        }
+
+        void addTile(final int row, final int column, final BufferedImage tile) throws Exception {
+            final File directory = getLevelDirectory(number);
+            Files.createDirectories(directory.toPath());
+            RenderPdf.writePng(tile, new File(directory, column + "_" + row + ".png"));
+
+            if (below == null) {
+                return;
+            }
+
+            // Put the scaled-down tile into its quarter of the tile below.
+            final int belowRow = row / 2;
+            final int belowColumn = column / 2;
+            if (pending[belowColumn] == null) {
+                // Every pixel of the tile is covered by one of its quarters, so a pooled image needn't be cleared.
+                pending[belowColumn] = RasterBufferPool.getSharedPool().borrow(below.tileWidth(belowColumn),
+                                                                               below.tileHeight(belowRow),
+                                                                               BufferedImage.TYPE_INT_ARGB);
+            }
+            final BufferedImage half = halve(tile);
+            final BufferedImage target = pending[belowColumn];
+            try {
+                final int x = column % 2 * (tileSize / 2);
+                final int y = row % 2 * (tileSize / 2);
+                final int copyWidth = Math.min(half.getWidth(), target.getWidth() - x);
+                final int copyHeight = Math.min(half.getHeight(), target.getHeight() - y);
+                target.setRGB(x, y, copyWidth, copyHeight,
+                              half.getRGB(0, 0, copyWidth, copyHeight, null, 0, copyWidth), 0, copyWidth);
+            } finally {
+                RasterBufferPool.getSharedPool().release(half);
+            }
+
+            // The tile below is complete when its bottom right quarter, or the last one that exists, is in.
+            final boolean lastRowOfPair = row % 2 == 1 || row == rows - 1;
+            final boolean lastColumnOfPair = column % 2 == 1 || column == columns - 1;
+            if (lastRowOfPair && lastColumnOfPair) {
+                pending[belowColumn] = null;
+                try {
+                    below.addTile(belowRow, belowColumn, target);
+                } finally {
+                    RasterBufferPool.getSharedPool().release(target);
+                }
+            }
+        }
+
+        void releasePending() {
+            if (pending == null) {
+                return;
+            }
+            for (int i = 0; i < pending.length; i++) {
+                RasterBufferPool.getSharedPool().release(pending[i]);
+                pending[i] = null;
+            }
+        }
+
+        int tileWidth(final int column) {
+            return Math.min(tileSize, levelWidth - column * tileSize);
+        }
+
+        int tileHeight(final int row) {
+            return Math.min(tileSize, levelHeight - row * tileSize);
+        }
+    }
+
+    /**
+     * Halve a size a number of times, rounding up, the way the Deep Zoom levels are sized.
+     *
+     * @param size the size at full resolution
+     * @param times the number of times to halve it
+     * @return the halved size, at least 1
+     */
+    private static int levelSize(final int size, final int times) {
+        int halved = size;
+        for (int i = 0; i < times; i++) {
+            halved = (halved + 1) / 2;
+        }
+        return Math.max(halved, 1);
+    }
+}
@@ -0,0 +1,122 @@
+/*
+ * Copyright 2015 Datalogics, Inc.
+ */
+
+package com.datalogics.pdf.samples.rendering;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.WritableRaster;
+import java.util.Arrays;
+
+/**
+ * Converts rendered pages to 8-bit grayscale or 1-bit black and white images.
+ *
+ * <p>
+ * Consumers like OCR and fax only need gray or bilevel pages. A grayscale image takes a quarter of the memory of the
+ * RGBA image the rasterizer produces, and a bilevel image a thirty-second, and both encode to much smaller PNG files.
+ * The conversion reads the page a row at a time, so the only page-sized image it makes is its result.
+ *
+ * <p>
+ * Transparent parts of a page are treated as white paper.
+ */
+public final class GrayscaleConverter {
+
+    private static final int MAX_LEVEL = 255;
+
+    /**
+     * This is a utility class, and won't be instantiated.
+     */
+    private GrayscaleConverter() {}
+
+    /**
+     * Convert a page to 8-bit grayscale.
+     *
+     * @param page the image of the page
+     * @return a {@link BufferedImage#TYPE_BYTE_GRAY} image of the page
+     */
+    public static BufferedImage toGray(final BufferedImage page) {
+        final int width = page.getWidth();
+        final int height = page.getHeight();
+        final BufferedImage gray = new BufferedImage(width, height, BufferedImage.TYPE_BYTE_GRAY);
+        final WritableRaster raster = gray.getRaster();
+        final int[] argb = new int[width];
+        final int[] levels = new int[width];
+        for (int y = 0; y < height; y++) {
+            page.getRGB(0, y, width, 1, argb, 0, width);
+            for (int x = 0; x < width; x++) {
+                levels[x] = luminance(argb[x]);
+            }
+            raster.setSamples(0, y, width, 1, 0, levels);
+        }
+        return gray;
+    }
+
+    /**
+     * Convert a page to black and white.
+     *
+     * <p>
+     * Without dithering, each pixel is black if it's darker than the threshold, which keeps text and line art crisp.
+     * With dithering, the error of each pixel is spread to its neighbors (Floyd-Steinberg), so that areas of gray come
+     * out as patterns of dots of the right density, which suits photographs.
+     *
+     * @param page the image of the page
+     * @param threshold the gray level, from 0 to 255, below which pixels are black
+     * @param dither whether to dither
+     * @return a 1-bit {@link BufferedImage#TYPE_BYTE_BINARY} image of the page
+     */
+    public static BufferedImage toBilevel(final BufferedImage page, final int threshold, final boolean dither) {
+        if (threshold < 0 || threshold > MAX_LEVEL) {
+            throw new IllegalArgumentException("threshold must be from 0 to 255: " + threshold);
+        }
+        final int width = page.getWidth();
+        final int height = page.getHeight();
+        final BufferedImage bilevel = new BufferedImage(width, height, BufferedImage.TYPE_BYTE_BINARY);
+        final WritableRaster raster = bilevel.getRaster();
+        final int[] argb = new int[width];
+        final int[] bits = new int[width];
+        // The errors carried into the current row and the next one, with a pixel of padding at each end.
+        int[] errors = new int[width + 2];
+        int[] nextErrors = new int[width + 2];
+
+        for (int y = 0; y < height; y++) {
+            page.getRGB(0, y, width, 1, argb, 0, width);
+            for (int x = 0; x < width; x++) {
+                final int level = luminance(argb[x]) + (dither ? errors[x + 1] / 16 : 0);
+                final boolean white = level >= threshold;
+                bits[x] = white ? 1 : 0;
+                if (dither) {
+                    final int error = level - (white ? MAX_LEVEL : 0);
+                    errors[x + 2] += error * 7;
+                    nextErrors[x] += error * 3;
+                    nextErrors[x + 1] += error * 5;
+                    nextErrors[x + 2] += error;
+                }
+            }
+            raster.setSamples(0, y, width, 1, 0, bits);
+
+            if (dither) {
+                final int[] swap = errors;
+                errors = nextErrors;
+                nextErrors = swap;
+                Arrays.fill(nextErrors, 0);
+            }
+        }
+        return bilevel;
+    }
+
+    /**
+     * Get the gray level of a pixel, composited over white.
+     *
+     * @param argb the pixel, as packed 8-bit alpha, red, green and blue
+     * @return the gray level, from 0 for black to 255 for white
+     */
+    private static int luminance(final int argb) {
+        final int alpha = argb >>> 24;
+        final int red = (argb >> 16) & 0xff;
+        final int green = (argb >> 8) & 0xff;
+        final int blue = argb & 0xff;
+        // ITU-R BT.601 weights, in integer arithmetic.
+        final int level = (red * 299 + green * 587 + blue * 114 + 500) / 1000;
+        return (level * alpha + MAX_LEVEL * (MAX_LEVEL - alpha) + MAX_LEVEL / 2) / MAX_LEVEL;
+    }
+}
@@ -0,0 +1,256 @@
+/*
+ * Copyright 2015 Datalogics, Inc.
+ */
+
+package com.datalogics.pdf.samples.rendering;
+
+import java.io.ByteArrayOutputStream;
+
+/**
+ * Compresses black and white images with CCITT Group 4 (ITU-T T.6) two-dimensional coding, as used by fax machines and
+ * by TIFF compression 4.
+ *
+ * <p>
+ * Each row is coded from the positions where its color changes, relative to the changes of the row above, the
+ * reference row. Rendered text and line art change little from one row to the next, so most changes cost a single
+ * bit, and a bilevel page compresses to a fraction of its Deflate size. A block of rows is coded independently of any
+ * other, starting from an imaginary white reference row, so each strip of a TIFF page can be decoded on its own.
+ *
+ * <p>
+ * Pixels are given as the samples of a {@link java.awt.image.BufferedImage#TYPE_BYTE_BINARY} image, where 0 is black.
+ * In the coded data, as in TIFF's WhiteIsZero photometric interpretation, black runs are the ones that are 1.
+ */
+final class Group4Encoder {
+
+    private static final String[] WHITE_TERMINATING = {
+        "00110101", "000111", "0111", "1000", "1011", "1100", "1110", "1111", "10011", "10100", "00111", "01000",
+        "001000", "000011", "110100", "110101", "101010", "101011", "0100111", "0001100", "0001000", "0010111",
+        "0000011", "0000100", "0101000", "0101011", "0010011", "0100100", "0011000", "00000010", "00000011",
+        "00011010", "00011011", "00010010", "00010011", "00010100", "00010101", "00010110", "00010111", "00101000",
+        "00101001", "00101010", "00101011", "00101100", "00101101", "00000100", "00000101", "00001010", "00001011",
+        "01010010", "01010011", "01010100", "01010101", "00100100", "00100101", "01011000", "01011001", "01011010",
+        "01011011", "01001010", "01001011", "00110010", "00110011", "00110100"
+    };
+
+    /**
+     * White make-up codes, for runs of 64 to 1728 in steps of 64.
+     */
+    private static final String[] WHITE_MAKE_UP = {
+        "11011", "10010", "010111", "0110111", "00110110", "00110111", "01100100", "01100101", "01101000",
+        "01100111", "011001100", "011001101", "011010010", "011010011", "011010100", "011010101", "011010110",
+        "011010111", "011011000", "011011001", "011011010", "011011011", "010011000", "010011001", "010011010",
+        "011000", "010011011"
+    };
+
+    private static final String[] BLACK_TERMINATING = {
+        "0000110111", "010", "11", "10", "011", "0011", "0010", "00011", "000101", "000100", "0000100", "0000101",
+        "0000111", "00000100", "00000111", "000011000", "0000010111", "0000011000", "0000001000", "00001100111",
+        "00001101000", "00001101100", "00000110111", "00000101000", "00000010111", "00000011000", "000011001010",
+        "000011001011", "000011001100", "000011001101", "000001101000", "000001101001", "000001101010",
+        "000001101011", "000011010010", "000011010011", "000011010100", "000011010101", "000011010110",
+        "000011010111", "000001101100", "000001101101", "000011011010", "000011011011", "000001010100",
+        "000001010101", "000001010110", "000001010111", "000001100100", "000001100101", "000001010010",
+        "000001010011", "000000100100", "000000110111", "000000111000", "000000100111", "000000101000",
+        "000001011000", "000001011001", "000000101011", "000000101100", "000001011010", "000001100110",
+        "000001100111"
+    };
+
+    /**
+     * Black make-up codes, for runs of 64 to 1728 in steps of 64.
+     */
+    private static final String[] BLACK_MAKE_UP = {
+        "0000001111", "000011001000", "000011001001", "000001011011", "000000110011", "000000110100",
+        "000000110101", "0000001101100", "0000001101101", "0000001001010", "0000001001011", "0000001001100",
+        "0000001001101", "0000001110010", "0000001110011", "0000001110100", "0000001110101", "0000001110110",
+        "0000001110111", "0000001010010", "0000001010011", "0000001010100", "0000001010101", "0000001011010",
+        "0000001011011", "0000001100100", "0000001100101"
+    };
+
+    /**
+     * Make-up codes shared by both colors, for runs of 1792 to 2560 in steps of 64.
+     */
+    private static final String[] EXTENDED_MAKE_UP = {
+        "00000001000", "00000001100", "00000001101", "000000010010", "000000010011", "000000010100",
+        "000000010101", "000000010110", "000000010111", "000000011100", "000000011101", "000000011110",
+        "000000011111"
+    };
+
+    /**
+     * Vertical mode codes, for a change from three pixels left of the reference change to three pixels right of it.
+     */
+    private static final String[] VERTICAL = { "0000010", "000010", "010", "1", "011", "000011", "0000011" };
+
+    private static final String PASS = "0001";
+    private static final String HORIZONTAL = "001";
+    private static final String END_OF_LINE = "000000000001";
+
+    private static final int MAX_VERTICAL_OFFSET = 3;
+    private static final int MAKE_UP_STEP = 64;
+    private static final int MAX_MAKE_UP = 2560;
+    private static final int FIRST_EXTENDED_MAKE_UP = 1792;
+
+    private static final int[][] WHITE_TERMINATING_CODES = codes(WHITE_TERMINATING);
+    private static final int[][] WHITE_MAKE_UP_CODES = codes(WHITE_MAKE_UP);
+    private static final int[][] BLACK_TERMINATING_CODES = codes(BLACK_TERMINATING);
+    private static final int[][] BLACK_MAKE_UP_CODES = codes(BLACK_MAKE_UP);
+    private static final int[][] EXTENDED_MAKE_UP_CODES = codes(EXTENDED_MAKE_UP);
+    private static final int[][] VERTICAL_CODES = codes(VERTICAL);
+    private static final int[] PASS_CODE = code(PASS);
+    private static final int[] HORIZONTAL_CODE = code(HORIZONTAL);
+    private static final int[] END_OF_LINE_CODE = code(END_OF_LINE);
+
+    private final int width;
+    /**
+     * The positions where the color changes, in the reference row and the row being coded. The first change is to
+     * black, and they alternate from there. Each list ends with the row's width, repeated, so that a search past the
+     * last change stops at the end of the row.
+     */
+    private int[] referenceChanges;
+    private int[] codingChanges;
+    private ByteArrayOutputStream output;
+    private int bits;
+    private int bitCount;
+
+    /**
+     * Create an encoder for rows of the given width.
+     *
+     * @param width the number of pixels in a row
+     */
+    Group4Encoder(final int width) {
+        this.width = width;
+        referenceChanges = new int[width + 3];
+        codingChanges = new int[width + 3];
+    }
+
+    /**
+     * Start coding a block of rows, independent of any rows coded before.
+     *
+     * @param output the stream for the coded data
+     */
+    void start(final ByteArrayOutputStream output) {
+        this.output = output;
+        bits = 0;
+        bitCount = 0;
+        // The row above the first is white.
+        referenceChanges[0] = width;
+        referenceChanges[1] = width;
+        referenceChanges[2] = width;
+    }
+
+    /**
+     * Code a row. It becomes the reference row for the next one.
+     *
+     * @param samples the pixels of the row, 0 for black and anything else for white
+     */
+    void encodeRow(final int[] samples) {
+        findChanges(samples, codingChanges);
+
+        int a0 = -1;
+        boolean a0Black = false;
+        // Indexes of the first changes right of a0, in the coding and reference rows. Both only move right.
+        int coding = 0;
+        int reference = 0;
+        while (a0 < width) {
+            while (codingChanges[coding] <= a0) {
+                coding++;
+            }
+            while (referenceChanges[reference] <= a0) {
+                reference++;
+            }
+            final int a1 = codingChanges[coding];
+            // b1 is the first change right of a0 to the color opposite a0's: changes to black have even indexes.
+            final int b1Index = (reference & 1) == (a0Black ? 1 : 0) ? reference : reference + 1;
+            final int b1 = referenceChanges[b1Index];
+            final int b2 = referenceChanges[b1Index + 1];
+
+            if (b2 < a1) {
+                putCode(PASS_CODE);
+                a0 = b2;
+            } else if (Math.abs(a1 - b1) <= MAX_VERTICAL_OFFSET) {
+                putCode(VERTICAL_CODES[a1 - b1 + MAX_VERTICAL_OFFSET]);
+                a0 = a1;
+                a0Black = !a0Black;
+            } else {
+                final int a2 = codingChanges[coding + 1];
+                putCode(HORIZONTAL_CODE);
+                putRun(a1 - Math.max(a0, 0), a0Black);
+                putRun(a2 - a1, !a0Black);
+                a0 = a2;
+            }
+        }
+
+        final int[] swap = referenceChanges;
+        referenceChanges = codingChanges;
+        codingChanges = swap;
+    }
+
+    /**
+     * Finish the block of rows with an end-of-facsimile-block, and pad it to a whole byte.
+     */
+    void finish() {
+        putCode(END_OF_LINE_CODE);
+        putCode(END_OF_LINE_CODE);
+        if (bitCount > 0) {
+            output.write(bits << (8 - bitCount));
+            bits = 0;
+            bitCount = 0;
+        }
+    }
+
+    private void findChanges(final int[] samples, final int[] changes) {
+        int count = 0;
+        boolean black = false;
+        for (int x = 0; x < width; x++) {
+            if ((samples[x] == 0) != black) {
+                changes[count++] = x;
+                black = !black;
+            }
+        }
+        changes[count] = width;
+        changes[count + 1] = width;
+        changes[count + 2] = width;
+    }
+
+    private void putRun(final int length, final boolean black) {
+        int remaining = length;
+        while (remaining > MAX_MAKE_UP) {
+            putCode(EXTENDED_MAKE_UP_CODES[EXTENDED_MAKE_UP_CODES.length - 1]);
+            remaining -= MAX_MAKE_UP;
+        }
+        if (remaining >= MAKE_UP_STEP) {
+            final int makeUp = remaining / MAKE_UP_STEP * MAKE_UP_STEP;
+            if (makeUp >= FIRST_EXTENDED_MAKE_UP) {
+                putCode(EXTENDED_MAKE_UP_CODES[(makeUp - FIRST_EXTENDED_MAKE_UP) / MAKE_UP_STEP]);
+            } else {
+                putCode((black ? BLACK_MAKE_UP_CODES : WHITE_MAKE_UP_CODES)[makeUp / MAKE_UP_STEP - 1]);
+            }
+            remaining -= makeUp;
+        }
+        putCode((black ? BLACK_TERMINATING_CODES : WHITE_TERMINATING_CODES)[remaining]);
+    }
+
+    private void putCode(final int[] code) {
+        bits = (bits << code[1]) | code[0];
+        bitCount += code[1];
+        while (bitCount >= 8) {
+            bitCount -= 8;
+            output.write(bits >>> bitCount);
+        }
+        bits &= (1 << bitCount) - 1;
+    }
+
+    /**
+     * Get a code as its bits, right-aligned, and its length.
+     */
+    private static int[] code(final String bitString) {
+        return new int[] { Integer.parseInt(bitString, 2), bitString.length() };
+    }
+
+    private static int[][] codes(final String[] bitStrings) {
+        final int[][] codes = new int[bitStrings.length][];
+        for (int i = 0; i < bitStrings.length; i++) {
+            codes[i] = code(bitStrings[i]);
+        }
+        return codes;
+    }
+}
@@ -0,0 +1,258 @@
+/*
+ * Copyright 2015 Datalogics, Inc.
+ */
+
+package com.datalogics.pdf.samples.rendering;
+
+import com.adobe.internal.io.stream.InputByteStream;
+import com.adobe.pdfjt.core.cos.CosArray;
+import com.adobe.pdfjt.core.cos.CosDictionary;
+import com.adobe.pdfjt.core.cos.CosObject;
+import com.adobe.pdfjt.core.cos.CosStream;
+import com.adobe.pdfjt.core.exceptions.PDFIOException;
+import com.adobe.pdfjt.core.exceptions.PDFInvalidDocumentException;
+import com.adobe.pdfjt.core.exceptions.PDFSecurityException;
+import com.adobe.pdfjt.core.types.ASName;
+import com.adobe.pdfjt.pdf.document.PDFDocument;
+import com.adobe.pdfjt.pdf.page.PDFPageTree;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Computes a digest of everything that affects how a page looks: its content streams, its resources, its
+ * annotations, and its page boxes and rotation.
+ *
+ * <p>
+ * The digest depends only on the contents of the objects, not on their object numbers, so it stays the same when a
+ * document is saved again, or when parts of it that don't affect a page (like the metadata, or other pages) change.
+ * It can be used as the key of a cache of rendered pages.
+ *
+ * <p>
+ * Streams shared by several pages, like fonts and images, are digested once per hasher, so a hasher should be used
+ * for all the pages of a document.
+ */
+public class PageContentHasher {
+
+    /**
+     * The page dictionary entries that affect rendering. Others, like the thumbnail and metadata, don't.
+     */
+    private static final String[] RENDERED_KEYS = { "Contents", "Resources", "MediaBox", "CropBox", "Rotate",
+        "Annots", "Group", "UserUnit" };
+
+    private static final String ANNOTS_KEY = "Annots";
+
+    /**
+     * The entries above that a page can inherit from its ancestors in the page tree.
+     */
+    private static final String[] INHERITED_KEYS = { "Resources", "MediaBox", "CropBox", "Rotate" };
+
+    /**
+     * Entries that point back up the document structure. Following them would bring in unrelated objects.
+     */
+    private static final String[] SKIPPED_KEYS = { "Parent", "P" };
+
+    private final PDFPageTree pageTree;
+    private final Map<Integer, byte[]> streamDigests = new HashMap<>();
+
+    /**
+     * Create a hasher for the pages of a document.
+     *
+     * @param document the document
+     * @throws PDFInvalidDocumentException a general problem with the PDF document, which may now be in an invalid state
+     * @throws PDFIOException there was an error reading or writing a PDF file or temporary caches
+     * @throws PDFSecurityException some general security issue occurred during the processing of the request
+     */
+    public PageContentHasher(final PDFDocument document)
+                    throws PDFInvalidDocumentException, PDFIOException, PDFSecurityException {
+        pageTree = document.requirePages();
+    }
+
+    /**
+     * Compute the digest of a page.
+     *
+     * @param pageIndex the index of the page
+     * @return the SHA-256 digest of the page
+     * @throws PDFInvalidDocumentException a general problem with the PDF document, which may now be in an invalid state
+     * @throws PDFIOException there was an error reading or writing a PDF file or temporary caches
+     * @throws PDFSecurityException some general security issue occurred during the processing of the request
+     * @throws IOException an I/O operation failed or was interrupted
+     */
+    public byte[] digest(final int pageIndex)
+                    throws PDFInvalidDocumentException, PDFIOException, PDFSecurityException, IOException {
+        return digest(pageIndex, true);
+    }
+
+    /**
+     * Compute the digest of a page's content, leaving out its annotations. It changes when the page content does, but
+     * not when annotations are added, changed or moved.
+     *
+     * @param pageIndex the index of the page
+     * @return the SHA-256 digest of the page content
+     * @throws PDFInvalidDocumentException a general problem with the PDF document, which may now be in an invalid state
+     * @throws PDFIOException there was an error reading or writing a PDF file or temporary caches
+     * @throws PDFSecurityException some general security issue occurred during the processing of the request
+     * @throws IOException an I/O operation failed or was interrupted
+     */
+    public byte[] digestContent(final int pageIndex)
+                    throws PDFInvalidDocumentException, PDFIOException, PDFSecurityException, IOException {
+        return digest(pageIndex, false);
+    }
+
+    private byte[] digest(final int pageIndex, final boolean includeAnnotations)
+                    throws PDFInvalidDocumentException, PDFIOException, PDFSecurityException, IOException {
+        final CosDictionary page = (CosDictionary) pageTree.getPage(pageIndex).getCosObject();
+        final MessageDigest digest = newDigest();
+        final Map<Integer, Integer> visited = new HashMap<>();
+
+        for (final String key : RENDERED_KEYS) {
+            if (!includeAnnotations && ANNOTS_KEY.equals(key)) {
+                continue;
+            }
+            final ASName name = ASName.create(key);
+            CosObject value = page.get(name);
+            if (value == null && isInherited(key)) {
+                value = inheritedValue(page, name);
+            }
+            if (value != null) {
+                update(digest, "/" + key);
+                hash(digest, value, visited);
+            }
+        }
+        return digest.digest();
+    }
+
+    private void hash(final MessageDigest digest, final CosObject object, final Map<Integer, Integer> visited)
+                    throws PDFInvalidDocumentException, PDFIOException, PDFSecurityException, IOException {
+        if (object.isIndirect()) {
+            // Refer to objects already seen by the order they were first seen in, which doesn't depend on how the
+            // document numbers its objects, and keeps cycles from looping.
+            final Integer seen = visited.get(object.getObjNum());
+            if (seen != null) {
+                update(digest, "R" + seen);
+                return;
+            }
+            visited.put(object.getObjNum(), visited.size());
+        }
+
+        if (object instanceof CosStream) {
+            update(digest, "stream");
+            digest.update(streamDigest((CosStream) object));
+        }
+        if (object instanceof CosDictionary) {
+            final CosDictionary dictionary = (CosDictionary) object;
+            final List<ASName> keys = new ArrayList<>(dictionary.getKeys());
+            // Dictionaries are unordered; sort the keys so that the digest isn't.
+            Collections.sort(keys, new Comparator<ASName>() {
+                @Override
+                public int compare(final ASName left, final ASName right) {
+                    return left.asString().compareTo(right.asString());
+                }
+            });
+            update(digest, "<<");
+            for (final ASName key : keys) {
+                if (isSkipped(key.asString())) {
+                    continue;
+                }
+                update(digest, "/" + key.asString());
+                hash(digest, dictionary.get(key), visited);
+            }
+            update(digest, ">>");
+        } else if (object instanceof CosArray) {
+            final CosArray array = (CosArray) object;
+            update(digest, "[");
+            for (int i = 0; i < array.size(); i++) {
+                hash(digest, array.get(i), visited);
+            }
+            update(digest, "]");
+        } else if (!(object instanceof CosStream)) {
+            update(digest, object.toString());
+        }
+    }
+
+    /**
+     * Get the digest of a stream's data, computing it only once for each stream of the document.
+     */
+    private byte[] streamDigest(final CosStream stream)
+                    throws PDFInvalidDocumentException, PDFIOException, PDFSecurityException, IOException {
+        final Integer objectNumber = stream.isIndirect() ? stream.getObjNum() : null;
+        if (objectNumber != null) {
+            final byte[] cached = streamDigests.get(objectNumber);
+            if (cached != null) {
+                return cached;
+            }
+        }
+
+        final MessageDigest digest = newDigest();
+        final InputByteStream data = stream.getStreamEncoded();
+        try {
+            final byte[] buffer = new byte[64 * 1024];
+            int read;
+            while ((read = data.read(buffer, 0, buffer.length)) > 0) {
+                digest.update(buffer, 0, read);
+            }
+        } finally {
+            data.close();
+        }
+        final byte[] result = digest.digest();
+
+        if (objectNumber != null) {
+            streamDigests.put(objectNumber, result);
+        }
+        return result;
+    }
+
+    private static CosObject inheritedValue(final CosDictionary page, final ASName name) {
+        final ASName parentKey = ASName.create("Parent");
+        CosObject node = page.get(parentKey);
+        // Guard against malformed page trees that loop.
+        for (int depth = 0; node instanceof CosDictionary && depth < 64; depth++) {
+            final CosObject value = ((CosDictionary) node).get(name);
+            if (value != null) {
+                return value;
+            }
+            node = ((CosDictionary) node).get(parentKey);
+        }
+        return null;
+    }
+
+    private static boolean isInherited(final String key) {
+        for (final String inherited : INHERITED_KEYS) {
+            if (inherited.equals(key)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean isSkipped(final String key) {
+        for (final String skipped : SKIPPED_KEYS) {
+            if (skipped.equals(key)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static void update(final MessageDigest digest, final String token) {
+        digest.update(token.getBytes(StandardCharsets.UTF_8));
+        digest.update((byte) 0);
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (final NoSuchAlgorithmException e) {
+            // Every Java platform is required to support SHA-256.
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,350 @@
+/*
+ * Copyright 2015 Datalogics, Inc.
+ */
+
+package com.datalogics.pdf.samples.rendering;
+
+import com.datalogics.pdf.samples.util.RasterBufferPool;
+
+import java.awt.image.BufferedImage;
+import java.net.URL;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Saves rendered pages as PNG and JPEG files in the background, so that the next page can be rasterized while the
+ * previous ones are being encoded.
+ *
+ * <p>
+ * Each page goes through two stages besides rasterization: conversion to RGB for the JPEG encoder, and encoding, which
+ * at high resolutions costs about as much as rasterizing. The stages run on their own thread pools. The PNG is encoded
+ * straight away; the JPEG is encoded once the conversion is done.
+ *
+ * <p>
+ * Only a fixed number of pages may be in the pipeline at once. When it's full, {@link #submit} waits for a page to
+ * finish, so rasterization can't run ahead of encoding and fill the heap with rendered pages. A page only leaves the
+ * pipeline when none of its stages is running or still to run, even if one of them failed, since the others may still
+ * be using its image.
+ *
+ * <p>
+ * Several pipelines working at once, like the jobs of a {@link RenderWorker}, can also share a limit on the pages they
+ * hold between them, so that their memory use doesn't grow with the number of pipelines.
+ */
+public class PageOutputPipeline implements AutoCloseable {
+
+    private static final AtomicInteger POOL_NUMBER = new AtomicInteger();
+
+    private final URL outputBaseUrl;
+    private final RenderCache cache;
+    private final int maxPagesInFlight;
+    private final Semaphore pagesInFlight;
+    private final Semaphore sharedPagesInFlight;
+    private final ExecutorService convertPool;
+    private final ExecutorService encodePool;
+    private Throwable failure;
+    private boolean closed;
+
+    /**
+     * Create a pipeline with a default number of threads for each stage.
+     *
+     * @param outputBaseUrl the URL for the output files, to which will be added the page number and extension
+     */
+    public PageOutputPipeline(final URL outputBaseUrl) {
+        this(outputBaseUrl, 1, Math.max(2, Runtime.getRuntime().availableProcessors() / 2));
+    }
+
+    /**
+     * Create a pipeline with the given number of threads for each stage. Up to twice as many pages as there are
+     * encoding threads may be in the pipeline at once.
+     *
+     * @param outputBaseUrl the URL for the output files, to which will be added the page number and extension
+     * @param convertThreads the number of threads that convert pages to RGB
+     * @param encodeThreads the number of threads that encode pages
+     */
+    public PageOutputPipeline(final URL outputBaseUrl, final int convertThreads, final int encodeThreads) {
+        this(outputBaseUrl, null, convertThreads, encodeThreads);
+    }
+
+    /**
+     * Create a pipeline with a default number of threads for each stage, which also adds the files it writes to a
+     * cache.
+     *
+     * @param outputBaseUrl the URL for the output files, to which will be added the page number and extension
+     * @param cache the cache to add the files of pages submitted with a cache key to
+     */
+    public PageOutputPipeline(final URL outputBaseUrl, final RenderCache cache) {
+        this(outputBaseUrl, cache, 1, Math.max(2, Runtime.getRuntime().availableProcessors() / 2));
+    }
+
+    /**
+     * Create a pipeline with the given number of threads for each stage, which also adds the files it writes to a
+     * cache.
+     *
+     * @param outputBaseUrl the URL for the output files, to which will be added the page number and extension
+     * @param cache the cache to add the files of pages submitted with a cache key to, or null for no cache
+     * @param convertThreads the number of threads that convert pages to RGB
+     * @param encodeThreads the number of threads that encode pages
+     */
+    public PageOutputPipeline(final URL outputBaseUrl, final RenderCache cache, final int convertThreads,
+                              final int encodeThreads) {
+        this(outputBaseUrl, cache, convertThreads, encodeThreads, null);
+    }
+
+    /**
+     * Create a pipeline with the given number of threads for each stage, which shares a limit on the pages in flight
+     * with other pipelines. Each page takes a permit from the shared semaphore as well as one of this pipeline's own,
+     * and returns both when it leaves the pipeline.
+     *
+     * @param outputBaseUrl the URL for the output files, to which will be added the page number and extension
+     * @param cache the cache to add the files of pages submitted with a cache key to, or null for no cache
+     * @param convertThreads the number of threads that convert pages to RGB
+     * @param encodeThreads the number of threads that encode pages
+     * @param sharedPagesInFlight a semaphore with a permit for each page that all the pipelines sharing it may hold at
+     *        once, or null for no shared limit
+     */
+    public PageOutputPipeline(final URL outputBaseUrl, final RenderCache cache, final int convertThreads,
+                              final int encodeThreads, final Semaphore sharedPagesInFlight) {
+        if (convertThreads <= 0 || encodeThreads <= 0) {
+            throw new IllegalArgumentException("thread counts must be positive: " + convertThreads + ", "
+                                               + encodeThreads);
+        }
+        this.outputBaseUrl = outputBaseUrl;
+        this.cache = cache;
+        maxPagesInFlight = 2 * encodeThreads;
+        pagesInFlight = new Semaphore(maxPagesInFlight);
+        this.sharedPagesInFlight = sharedPagesInFlight;
+        final int poolNumber = POOL_NUMBER.incrementAndGet();
+        convertPool = Executors.newFixedThreadPool(convertThreads, new StageThreadFactory("convert", poolNumber));
+        encodePool = Executors.newFixedThreadPool(encodeThreads, new StageThreadFactory("encode", poolNumber));
+    }
+
+    /**
+     * Send a rendered page to be saved. This waits if the pipeline is full. It may be called from several threads.
+     *
+     * <p>
+     * The page must not be changed after it's submitted.
+     *
+     * @param pageNumber the page number, starting at 1
+     * @param page the image of the page
+     * @throws Exception saving an earlier page failed
+     */
+    public void submit(final int pageNumber, final BufferedImage page) throws Exception {
+        submit(pageNumber, page, null);
+    }
+
+    /**
+     * Send a rendered page to be saved, and added to the cache under a key once its files are written. This waits if
+     * the pipeline is full. It may be called from several threads.
+     *
+     * <p>
+     * The page must not be changed after it's submitted.
+     *
+     * @param pageNumber the page number, starting at 1
+     * @param page the image of the page
+     * @param cacheKey the {@link RenderCache} key of the page, or null to leave it out of the cache
+     * @throws Exception saving an earlier page failed
+     */
+    public void submit(final int pageNumber, final BufferedImage page, final String cacheKey) throws Exception {
+        rethrowFailure();
+        pagesInFlight.acquire();
+        if (sharedPagesInFlight != null) {
+            try {
+                sharedPagesInFlight.acquire();
+            } catch (final InterruptedException e) {
+                pagesInFlight.release();
+                throw e;
+            }
+        }
+
+        // The page leaves the pipeline when its three stages, PNG, conversion and JPEG, are done, or won't run.
+        final PageInFlight inFlight = new PageInFlight(3);
+        int unscheduled = 3;
+        try {
+            encodePool.execute(new Stage(inFlight) {
+                @Override
+                void process() throws Exception {
+                    RenderPdf.savePageAsPng(outputBaseUrl, pageNumber, page);
+                    cachePage(cacheKey, pageNumber, "png");
+                }
+            });
+            unscheduled--;
+            convertPool.execute(new Stage(inFlight) {
+                @Override
+                void process() throws Exception {
+                    final BufferedImage rgbPage = RenderPdf.convertToRgb(page);
+                    final Stage jpegStage = new Stage(inFlight) {
+                        @Override
+                        void process() throws Exception {
+                            try {
+                                RenderPdf.savePageAsJpeg(outputBaseUrl, pageNumber, rgbPage);
+                                cachePage(cacheKey, pageNumber, "jpg");
+                            } finally {
+                                // If the conversion borrowed a copy, it can be reused for the next page.
+                                RasterBufferPool.getSharedPool().release(rgbPage);
+                            }
+                        }
+                    };
+                    try {
+                        encodePool.execute(jpegStage);
+                    } catch (final RejectedExecutionException e) {
+                        RasterBufferPool.getSharedPool().release(rgbPage);
+                        throw e;
+                    }
+                }
+
+                @Override
+                int laterStages() {
+                    // If the conversion fails, the JPEG stage never runs.
+                    return 1;
+                }
+            });
+        } catch (final RejectedExecutionException e) {
+            inFlight.stagesDone(unscheduled);
+            throw e;
+        }
+    }
+
+    /**
+     * Wait for every submitted page to be saved, and shut down the pipeline.
+     *
+     * @throws Exception saving a page failed
+     */
+    @Override
+    public void close() throws Exception {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            // Once every permit is back, every page has left the pipeline.
+            pagesInFlight.acquire(maxPagesInFlight);
+            pagesInFlight.release(maxPagesInFlight);
+        } finally {
+            convertPool.shutdown();
+            encodePool.shutdown();
+            convertPool.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+            encodePool.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        }
+        rethrowFailure();
+    }
+
+    private void cachePage(final String cacheKey, final int pageNumber, final String extension) throws Exception {
+        if (cache != null && cacheKey != null) {
+            cache.store(cacheKey, extension, RenderPdf.pageOutputFile(outputBaseUrl, pageNumber, extension));
+        }
+    }
+
+    private synchronized void fail(final Throwable t) {
+        if (failure == null) {
+            failure = t;
+        }
+    }
+
+    /**
+     * Throw the first failure of any stage. An exception is thrown as it is; an error, which happened on a stage's
+     * thread, is wrapped in an {@link ExecutionException}, as {@link java.util.concurrent.Future#get()} would.
+     */
+    private synchronized void rethrowFailure() throws Exception {
+        if (failure instanceof Exception) {
+            throw (Exception) failure;
+        }
+        if (failure != null) {
+            throw new ExecutionException(failure);
+        }
+    }
+
+    /**
+     * Get the number of pages in the pipeline: submitted, and not yet finished with by all of their stages.
+     *
+     * @return the number of pages in the pipeline
+     */
+    int getPagesInFlight() {
+        return maxPagesInFlight - pagesInFlight.availablePermits();
+    }
+
+    /**
+     * A page in the pipeline, which holds one of its permits until all of its stages are done.
+     */
+    private class PageInFlight {
+        private final AtomicInteger remaining;
+
+        PageInFlight(final int stages) {
+            remaining = new AtomicInteger(stages);
+        }
+
+        /**
+         * Note that some of the page's stages are done, or will never run; the page leaves, returning its permit,
+         * when all of them are. Every stage is counted exactly once, so the permit is returned exactly once.
+         */
+        void stagesDone(final int stages) {
+            if (stages > 0 && remaining.addAndGet(-stages) == 0) {
+                if (sharedPagesInFlight != null) {
+                    sharedPagesInFlight.release();
+                }
+                pagesInFlight.release();
+            }
+        }
+    }
+
+    /**
+     * One stage of work on a page. Whether it finishes or fails, it's counted as done for the page, along with any
+     * later stages that a failure keeps from running.
+     */
+    private abstract class Stage implements Runnable {
+        private final PageInFlight page;
+
+        Stage(final PageInFlight page) {
+            this.page = page;
+        }
+
+        abstract void process() throws Exception;
+
+        /**
+         * Get the number of the page's stages that this stage starts, and that won't run if it fails.
+         */
+        int laterStages() {
+            return 0;
+        }
+
+        @Override
+        public void run() {
+            try {
+                process();
+            } catch (final Throwable t) {
+                // Errors too: a page that never leaves would make close() wait forever for its permit.
+                fail(t);
+                page.stagesDone(1 + laterStages());
+                return;
+            }
+            page.stagesDone(1);
+        }
+    }
+
+    /**
+     * Makes named daemon threads for a stage of the pipeline.
+     */
+    private static class StageThreadFactory implements ThreadFactory {
+        private final String stage;
+        private final int poolNumber;
+        private final AtomicInteger threadNumber = new AtomicInteger();
+
+        StageThreadFactory(final String stage, final int poolNumber) {
+            this.stage = stage;
+            this.poolNumber = poolNumber;
+        }
+
+        @Override
+        public Thread newThread(final Runnable runnable) {
+            final Thread thread = new Thread(runnable, "pdf-" + stage + "-" + poolNumber + "-"
+                                                       + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
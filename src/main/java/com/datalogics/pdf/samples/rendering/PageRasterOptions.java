@@ -0,0 +1,284 @@
+/*
+ * Copyright 2015 Datalogics, Inc.
+ */
+
+package com.datalogics.pdf.samples.rendering;
+
+import com.adobe.pdfjt.core.exceptions.PDFIOException;
+import com.adobe.pdfjt.core.exceptions.PDFInvalidDocumentException;
+import com.adobe.pdfjt.core.exceptions.PDFSecurityException;
+import com.adobe.pdfjt.core.fontset.PDFFontSet;
+import com.adobe.pdfjt.core.types.ASRectangle;
+import com.adobe.pdfjt.pdf.page.PDFPage;
+import com.adobe.pdfjt.services.rasterizer.RasterizationOptions;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.awt.Dimension;
+import java.lang.invoke.MethodHandles;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Works out the size to rasterize each page at, and the rasterization options for it.
+ *
+ * <p>
+ * Pages can be sized in one of two ways, chosen by {@link Sizing}:
+ *
+ * <ul>
+ * <li>{@link Sizing#EACH_PAGE}, the default, works out the size of each page from its own crop box and rotation, since
+ * documents can mix page sizes and orientations.
+ * <li>{@link Sizing#FIRST_PAGE} renders every page at the size of the first page, from its media box, for consumers
+ * that expect every image of a document to be the same size.
+ * </ul>
+ *
+ * <p>
+ * Either way, a page that would come out larger than the pixel budget, like a poster-sized page in an untrusted
+ * document, is rendered at a lower resolution instead, so that it fits. That keeps the memory needed for any one page
+ * predictable, at four bytes per pixel.
+ *
+ * <p>
+ * Setting the system property {@value #FIRST_PAGE_SIZING_PROPERTY} to {@code true} makes {@link Sizing#FIRST_PAGE} the
+ * default.
+ *
+ * <p>
+ * Pages that are the same size share one set of options, so an instance must only be used by one thread.
+ */
+public class PageRasterOptions {
+
+    /**
+     * The default pixel budget for a page: 64 megapixels, or 256 MB of RGBA raster.
+     */
+    public static final long DEFAULT_MAX_PIXELS = 64L * 1024 * 1024;
+
+    /**
+     * The system property that, when {@code true}, sizes every page from the first page by default.
+     */
+    public static final String FIRST_PAGE_SIZING_PROPERTY = "com.datalogics.pdf.samples.rendering.sizeFromFirstPage";
+
+    /**
+     * The way pages are sized when none is given.
+     */
+    public static final Sizing DEFAULT_SIZING = Boolean.getBoolean(FIRST_PAGE_SIZING_PROPERTY) ? Sizing.FIRST_PAGE
+                                                                                              : Sizing.EACH_PAGE;
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+    private static final double POINTS_PER_INCH = 72.0;
+
+    /**
+     * The ways of working out the size of the pages.
+     */
+    public enum Sizing {
+        /**
+         * Render every page at the size of the first page the options are asked about, from its media box at the
+         * resolution, ignoring rotation, and scaled down if necessary to fit the pixel budget.
+         */
+        FIRST_PAGE,
+
+        /**
+         * Render each page at the size of its own rotated crop box, within the pixel budget.
+         */
+        EACH_PAGE
+    }
+
+    private final int resolution;
+    private final long maxPixels;
+    private final Sizing sizing;
+    private final Map<Dimension, RasterizationOptions> optionsBySize = new HashMap<>();
+    private final Map<Dimension, Double> resolutionBySize = new HashMap<>();
+    private Dimension firstPageSize;
+    private double firstPageResolution;
+
+    /**
+     * Create page options for a resolution, with the default sizing and pixel budget.
+     *
+     * @param resolution the desired resolution in dpi
+     */
+    public PageRasterOptions(final int resolution) {
+        this(resolution, DEFAULT_SIZING);
+    }
+
+    /**
+     * Create page options for a resolution and sizing, with the default pixel budget.
+     *
+     * @param resolution the desired resolution in dpi
+     * @param sizing the way pages are sized
+     */
+    public PageRasterOptions(final int resolution, final Sizing sizing) {
+        this(resolution, DEFAULT_MAX_PIXELS, sizing);
+    }
+
+    /**
+     * Create page options for a resolution, pixel budget and sizing.
+     *
+     * @param resolution the desired resolution in dpi
+     * @param maxPixels the most pixels a page may be rendered with
+     * @param sizing the way pages are sized
+     */
+    public PageRasterOptions(final int resolution, final long maxPixels, final Sizing sizing) {
+        if (resolution <= 0) {
+            throw new IllegalArgumentException("resolution must be positive: " + resolution);
+        }
+        if (maxPixels <= 0) {
+            throw new IllegalArgumentException("pixel budget must be positive: " + maxPixels);
+        }
+        if (sizing == null) {
+            throw new IllegalArgumentException("sizing must be given");
+        }
+        this.resolution = resolution;
+        this.maxPixels = maxPixels;
+        this.sizing = sizing;
+    }
+
+    /**
+     * Get the way pages are sized.
+     *
+     * @return the sizing
+     */
+    public Sizing getSizing() {
+        return sizing;
+    }
+
+    /**
+     * Get the size a page is rendered at. When sizing from the first page, it's the size of the first page asked
+     * about. Otherwise, it's the page's rotated crop box at the resolution. Either way, it's scaled down if necessary
+     * to fit the pixel budget.
+     *
+     * @param page the page
+     * @return the size of the raster, in pixels
+     * @throws PDFInvalidDocumentException a general problem with the PDF document, which may now be in an invalid state
+     * @throws PDFIOException there was an error reading or writing a PDF file or temporary caches
+     * @throws PDFSecurityException some general security issue occurred during the processing of the request
+     */
+    public Dimension getSize(final PDFPage page)
+                    throws PDFInvalidDocumentException, PDFIOException, PDFSecurityException {
+        if (sizing == Sizing.FIRST_PAGE) {
+            if (firstPageSize == null) {
+                sizeFirstPage(page);
+            }
+            return new Dimension(firstPageSize);
+        }
+        final double scale = getResolution(page) / POINTS_PER_INCH;
+        final ASRectangle cropBox = page.getCropBox();
+        final int width = toPixels(cropBox.width() * scale);
+        final int height = toPixels(cropBox.height() * scale);
+        return isSideways(page) ? new Dimension(height, width) : new Dimension(width, height);
+    }
+
+    /**
+     * Get the resolution a page is rendered at. When each page is sized for itself, it's the desired resolution, unless
+     * the page is too large to fit the pixel budget at that resolution. A warning is logged the first time a page of
+     * each size has its resolution lowered.
+     *
+     * <p>
+     * When sizing from the first page, it's the pixel density the first page actually gets: rounding its size to
+     * whole pixels, or fitting it to the pixel budget, makes that differ from the desired resolution. Where the two
+     * directions differ, it's the lower of them.
+     *
+     * @param page the page
+     * @return the resolution in dpi
+     * @throws PDFInvalidDocumentException a general problem with the PDF document, which may now be in an invalid state
+     * @throws PDFIOException there was an error reading or writing a PDF file or temporary caches
+     * @throws PDFSecurityException some general security issue occurred during the processing of the request
+     */
+    public double getResolution(final PDFPage page)
+                    throws PDFInvalidDocumentException, PDFIOException, PDFSecurityException {
+        if (sizing == Sizing.FIRST_PAGE) {
+            if (firstPageSize == null) {
+                sizeFirstPage(page);
+            }
+            return firstPageResolution;
+        }
+        final ASRectangle cropBox = page.getCropBox();
+        final double scale = resolution / POINTS_PER_INCH;
+        final Dimension fullSize = new Dimension(toPixels(cropBox.width() * scale), toPixels(cropBox.height() * scale));
+        final Double known = resolutionBySize.get(fullSize);
+        if (known != null) {
+            return known;
+        }
+
+        final double pixels = (double) fullSize.width * fullSize.height;
+        double pageResolution = resolution;
+        if (pixels > maxPixels) {
+            // Area goes with the square of the resolution. Round down a little, so that rounding the sides to whole
+            // pixels can't take the page back over the budget.
+            pageResolution = Math.floor(resolution * Math.sqrt(maxPixels / pixels) * 1000) / 1000;
+            if (LOGGER.isWarnEnabled()) {
+                LOGGER.warn("Page of " + cropBox.width() + "x" + cropBox.height() + " points exceeds the budget of "
+                            + maxPixels + " pixels at " + resolution + " DPI, rendering at " + pageResolution
+                            + " DPI");
+            }
+        }
+        resolutionBySize.put(fullSize, pageResolution);
+        return pageResolution;
+    }
+
+    /**
+     * Get the rasterization options for a page.
+     *
+     * @param page the page
+     * @param fontSet the font set to rasterize with
+     * @return the options, which may be shared with other pages of the same size
+     * @throws PDFInvalidDocumentException a general problem with the PDF document, which may now be in an invalid state
+     * @throws PDFIOException there was an error reading or writing a PDF file or temporary caches
+     * @throws PDFSecurityException some general security issue occurred during the processing of the request
+     */
+    public RasterizationOptions getOptions(final PDFPage page, final PDFFontSet fontSet)
+                    throws PDFInvalidDocumentException, PDFIOException, PDFSecurityException {
+        final Dimension size = getSize(page);
+        RasterizationOptions options = optionsBySize.get(size);
+        if (options == null) {
+            options = new RasterizationOptions();
+            options.setWidth(size.width);
+            options.setHeight(size.height);
+            optionsBySize.put(size, options);
+        }
+        options.setFontSet(fontSet);
+        return options;
+    }
+
+    /**
+     * Work out the size of every page from the first page, and the pixel density that gives the first page.
+     */
+    private void sizeFirstPage(final PDFPage page)
+                    throws PDFInvalidDocumentException, PDFIOException, PDFSecurityException {
+        final ASRectangle mediaBox = page.getMediaBox();
+        int width = toPixels(mediaBox.width() / POINTS_PER_INCH * resolution);
+        int height = toPixels(mediaBox.height() / POINTS_PER_INCH * resolution);
+        final double pixels = (double) width * height;
+        if (pixels > maxPixels) {
+            // Round down, so that the page can't end up over the budget.
+            final double scale = Math.sqrt(maxPixels / pixels);
+            width = Math.max(1, (int) (width * scale));
+            height = Math.max(1, (int) (height * scale));
+            if (LOGGER.isWarnEnabled()) {
+                LOGGER.warn("Page of " + mediaBox.width() + "x" + mediaBox.height() + " points exceeds the budget of "
+                            + maxPixels + " pixels at " + resolution + " DPI, rendering at " + width + "x" + height
+                            + " pixels");
+            }
+        }
+        firstPageSize = new Dimension(width, height);
+        firstPageResolution = Math.min(width * POINTS_PER_INCH / mediaBox.width(),
+                                       height * POINTS_PER_INCH / mediaBox.height());
+    }
+
+    /**
+     * Find out whether a page is turned sideways by its rotation, so that its width and height are swapped when it's
+     * displayed.
+     *
+     * @param page the page
+     * @return true if the page is rotated by 90 or 270 degrees
+     * @throws PDFInvalidDocumentException a general problem with the PDF document, which may now be in an invalid state
+     * @throws PDFIOException there was an error reading or writing a PDF file or temporary caches
+     * @throws PDFSecurityException some general security issue occurred during the processing of the request
+     */
+    static boolean isSideways(final PDFPage page)
+                    throws PDFInvalidDocumentException, PDFIOException, PDFSecurityException {
+        return Math.abs(page.getRotate() % 180) == 90;
+    }
+
+    private static int toPixels(final double size) {
+        return Math.max(1, (int) Math.round(size));
+    }
+}
@@ -0,0 +1,280 @@
+/*
+ * Copyright 2015 Datalogics, Inc.
+ */
+
+package com.datalogics.pdf.samples.rendering;
+
+import com.adobe.pdfjt.core.fontset.PDFFontSet;
+import com.adobe.pdfjt.pdf.document.PDFDocument;
+import com.adobe.pdfjt.pdf.page.PDFPageTree;
+import com.adobe.pdfjt.services.rasterizer.PageRasterizer;
+import com.adobe.pdfjt.services.rasterizer.RasterizationOptions;
+
+import com.datalogics.pdf.samples.util.DocumentUtils;
+import com.datalogics.pdf.samples.util.FontUtils;
+
+import java.awt.image.BufferedImage;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Renders the pages of a document on several threads at once.
+ *
+ * <p>
+ * A {@link PDFDocument} and a {@link PageRasterizer} can only be used by one thread at a time, so each worker thread
+ * opens the document for itself, and rasterizes with its own font set and options. Workers take the next page to
+ * render from a shared counter, so a worker that finishes an easy page moves straight on to the next one.
+ *
+ * <p>
+ * Rendered pages are handed to a {@link PageHandler}, either as soon as each page is done, on the worker that
+ * rendered it, or in page order, on the thread that called {@link #render}. In page order, workers wait rather than
+ * get too far ahead of the next page to be handed over, so only a few rendered pages are held in memory at once.
+ */
+public class ParallelPageRenderer {
+
+    private static final AtomicInteger POOL_NUMBER = new AtomicInteger();
+
+    private final URL inputUrl;
+    private final int resolution;
+    private final int threads;
+    private final PageRasterOptions.Sizing sizing;
+
+    /**
+     * Receives the rendered pages.
+     */
+    public interface PageHandler {
+        /**
+         * Handle one rendered page. When pages are handed over as they complete, this is called on several threads at
+         * once, and must be thread-safe.
+         *
+         * @param pageNumber the page number, starting at 1
+         * @param image the image of the page
+         * @throws Exception a general exception was thrown
+         */
+        void handlePage(int pageNumber, BufferedImage image) throws Exception;
+    }
+
+    /**
+     * Create a renderer for a document, which sizes pages with the default sizing of {@link PageRasterOptions}.
+     *
+     * @param inputUrl path to the PDF to render
+     * @param resolution the desired resolution in dpi
+     * @param threads the number of pages to render at once
+     */
+    public ParallelPageRenderer(final URL inputUrl, final int resolution, final int threads) {
+        this(inputUrl, resolution, threads, PageRasterOptions.DEFAULT_SIZING);
+    }
+
+    /**
+     * Create a renderer for a document.
+     *
+     * <p>
+     * Pages are sized by {@link PageRasterOptions}. When sizing from the first page, every page is rendered at the
+     * size of the first page of the range.
+     *
+     * @param inputUrl path to the PDF to render
+     * @param resolution the desired resolution in dpi
+     * @param threads the number of pages to render at once
+     * @param sizing the way pages are sized
+     */
+    public ParallelPageRenderer(final URL inputUrl, final int resolution, final int threads,
+                                final PageRasterOptions.Sizing sizing) {
+        if (threads <= 0) {
+            throw new IllegalArgumentException("thread count must be positive: " + threads);
+        }
+        this.inputUrl = inputUrl;
+        this.resolution = resolution;
+        this.threads = threads;
+        this.sizing = sizing;
+    }
+
+    /**
+     * Render a range of pages.
+     *
+     * @param firstIndex the index of the first page to render
+     * @param lastIndex the index of the last page to render, inclusive
+     * @param inOrder true to hand pages over in page order on this thread, false to hand each page over on its worker
+     *        as soon as it's rendered
+     * @param handler the handler for the rendered pages
+     * @throws Exception a general exception was thrown
+     */
+    public void render(final int firstIndex, final int lastIndex, final boolean inOrder, final PageHandler handler)
+                    throws Exception {
+        final RenderState state = new RenderState(firstIndex, lastIndex, inOrder ? 2 * threads : Integer.MAX_VALUE);
+        final ThreadFactory threadFactory = new RenderThreadFactory(POOL_NUMBER.incrementAndGet());
+        final ExecutorService executor = Executors.newFixedThreadPool(threads, threadFactory);
+        try {
+            final List<Future<?>> workers = new ArrayList<>();
+            for (int i = 0; i < threads; i++) {
+                workers.add(executor.submit(new Worker(state, firstIndex, inOrder ? null : handler)));
+            }
+
+            if (inOrder) {
+                for (int index = firstIndex; index <= lastIndex; index++) {
+                    final BufferedImage image = state.take(index);
+                    handler.handlePage(index + 1, image);
+                }
+            }
+
+            for (final Future<?> worker : workers) {
+                worker.get();
+            }
+            state.rethrowFailure();
+        } catch (final Exception e) {
+            state.fail(e);
+            throw e;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Renders pages with its own document and rasterization options.
+     */
+    private class Worker implements Runnable {
+        private final RenderState state;
+        private final int firstIndex;
+        private final PageHandler handler;
+
+        Worker(final RenderState state, final int firstIndex, final PageHandler handler) {
+            this.state = state;
+            this.firstIndex = firstIndex;
+            this.handler = handler;
+        }
+
+        @Override
+        public void run() {
+            try {
+                final PDFDocument document = DocumentUtils.openPdfDocument(inputUrl);
+                try {
+                    final PDFFontSet fontSet = FontUtils.getDocFontSet(document);
+                    final PageRasterOptions pageOptions = new PageRasterOptions(resolution, sizing);
+                    final PDFPageTree pageTree = document.requirePages();
+                    if (pageOptions.getSizing() == PageRasterOptions.Sizing.FIRST_PAGE) {
+                        // Size every page from the first page of the range, whichever page this worker starts with.
+                        pageOptions.getSize(pageTree.getPage(firstIndex));
+                    }
+
+                    int index;
+                    while ((index = state.nextPage()) >= 0) {
+                        final RasterizationOptions options = pageOptions.getOptions(pageTree.getPage(index),
+                                                                                    fontSet);
+                        final PageRasterizer rasterizer = new PageRasterizer(pageTree, index, index, options);
+                        final BufferedImage image = rasterizer.next();
+                        if (handler == null) {
+                            state.put(index, image);
+                        } else {
+                            handler.handlePage(index + 1, image);
+                        }
+                    }
+                } finally {
+                    document.close();
+                }
+            } catch (final Throwable t) {
+                // Record errors too: a page that was claimed but never put would leave the caller waiting in take().
+                state.fail(t);
+            }
+        }
+    }
+
+    /**
+     * The pages still to render, and the rendered pages waiting to be handed over in order.
+     */
+    private static class RenderState {
+        private final int lastIndex;
+        private final int window;
+        private final Map<Integer, BufferedImage> rendered = new HashMap<>();
+        private int nextToRender;
+        private int nextToTake;
+        private Throwable failure;
+
+        RenderState(final int firstIndex, final int lastIndex, final int window) {
+            this.lastIndex = lastIndex;
+            this.window = window;
+            nextToRender = firstIndex;
+            nextToTake = firstIndex;
+        }
+
+        /**
+         * Claim the next page to render, waiting if the workers are too far ahead of the pages handed over.
+         *
+         * @return the page index, or -1 if there are no more pages or rendering failed
+         * @throws InterruptedException the thread was interrupted while waiting
+         */
+        synchronized int nextPage() throws InterruptedException {
+            while (failure == null && nextToRender <= lastIndex && nextToRender - nextToTake >= window) {
+                wait();
+            }
+            if (failure != null || nextToRender > lastIndex) {
+                return -1;
+            }
+            return nextToRender++;
+        }
+
+        synchronized void put(final int index, final BufferedImage image) {
+            rendered.put(index, image);
+            notifyAll();
+        }
+
+        synchronized BufferedImage take(final int index) throws Exception {
+            while (failure == null && !rendered.containsKey(index)) {
+                wait();
+            }
+            rethrowFailure();
+            nextToTake = index + 1;
+            notifyAll();
+            return rendered.remove(index);
+        }
+
+        synchronized void fail(final Throwable t) {
+            if (failure == null) {
+                failure = t;
+            }
+            notifyAll();
+        }
+
+        /**
+         * Throw the first failure of any worker. An exception is thrown as it is; an error, which happened on another
+         * thread, is wrapped in an {@link ExecutionException}, as {@link Future#get()} would.
+         *
+         * @throws Exception a general exception was thrown
+         */
+        synchronized void rethrowFailure() throws Exception {
+            if (failure instanceof Exception) {
+                throw (Exception) failure;
+            }
+            if (failure != null) {
+                throw new ExecutionException(failure);
+            }
+        }
+    }
+
+    /**
+     * Makes named daemon threads for rendering.
+     */
+    private static class RenderThreadFactory implements ThreadFactory {
+        private final int poolNumber;
+        private final AtomicInteger threadNumber = new AtomicInteger();
+
+        RenderThreadFactory(final int poolNumber) {
+            this.poolNumber = poolNumber;
+        }
+
+        @Override
+        public Thread newThread(final Runnable runnable) {
+            final Thread thread = new Thread(runnable,
+                                             "pdf-render-" + poolNumber + "-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
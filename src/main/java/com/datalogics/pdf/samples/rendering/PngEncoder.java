@@ -0,0 +1,547 @@
+/*
+ * Copyright 2015 Datalogics, Inc.
+ */
+
+package com.datalogics.pdf.samples.rendering;
+
+import java.awt.color.ColorSpace;
+import java.awt.image.BufferedImage;
+import java.awt.image.ColorModel;
+import java.awt.image.ComponentColorModel;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferInt;
+import java.awt.image.DirectColorModel;
+import java.awt.image.PixelInterleavedSampleModel;
+import java.awt.image.Raster;
+import java.awt.image.SinglePixelPackedSampleModel;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.zip.Adler32;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Encodes rendered pages as PNG, faster than the general purpose ImageIO writer.
+ *
+ * <p>
+ * The encoder reads pixels straight from the image's data buffer for the layouts the rasterizer and the samples
+ * produce: packed integer pixels, like {@link BufferedImage#TYPE_INT_ARGB}, and interleaved byte pixels, like
+ * {@link BufferedImage#TYPE_4BYTE_ABGR} and {@link BufferedImage#TYPE_BYTE_GRAY}. Other images are read a row at a
+ * time with {@link BufferedImage#getRGB}. Images with alpha are written as RGBA, images without as RGB or gray, the
+ * same as ImageIO, so the files decode to the same pixels.
+ *
+ * <p>
+ * The compression level and the row filter can be chosen. Low levels, and the simple filters, trade file size for a
+ * lot of speed. Pages of text compress well with the {@link Filter#UP} filter, since most rows are blank or repeat the
+ * row above.
+ *
+ * <p>
+ * Without an executor, the encoder compresses all the rows as a single deflate stream on the calling thread. Given an
+ * executor, it compresses blocks of rows in parallel instead. Each block is compressed on its own and ended on a byte
+ * boundary, so the blocks can be joined into a single zlib stream, at a small cost in compression. An encoder can be
+ * used by several threads at once.
+ */
+public class PngEncoder {
+
+    /**
+     * The default compression level: faster than the maximum, with little loss of compression on rendered pages.
+     */
+    public static final int DEFAULT_LEVEL = 4;
+
+    /**
+     * The row filters, which transform each row before it's compressed so that it compresses better.
+     */
+    public enum Filter {
+        /** Rows are compressed as they are. */
+        NONE(0),
+        /** Each byte is replaced by its difference from the same byte of the pixel to the left. */
+        SUB(1),
+        /** Each byte is replaced by its difference from the same byte of the row above. */
+        UP(2),
+        /** Each byte is replaced by its difference from a prediction made from the left, above and upper left. */
+        PAETH(4),
+        /** Each row uses whichever of the filters above gives the smallest sum of differences. */
+        ADAPTIVE(-1);
+
+        private final int type;
+
+        Filter(final int type) {
+            this.type = type;
+        }
+    }
+
+    private static final byte[] SIGNATURE = { (byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1a, '\n' };
+    private static final int COLOR_TYPE_GRAY = 0;
+    private static final int COLOR_TYPE_RGB = 2;
+    private static final int COLOR_TYPE_RGBA = 6;
+    private static final int TARGET_BLOCK_BYTES = 256 * 1024;
+    private static final int IDAT_CHUNK_BYTES = 64 * 1024;
+    private static final int ADLER_BASE = 65521;
+
+    private final int level;
+    private final Filter filter;
+    private final ExecutorService executor;
+
+    /**
+     * Create an encoder with the default level and the {@link Filter#UP} filter, which compresses on the calling
+     * thread.
+     */
+    public PngEncoder() {
+        this(DEFAULT_LEVEL, Filter.UP, null);
+    }
+
+    /**
+     * Create an encoder.
+     *
+     * @param level the compression level, from 0 for none to 9 for the most
+     * @param filter the row filter
+     * @param executor the executor to compress blocks of rows on, or null to compress all the rows as one stream on
+     *        the calling thread
+     */
+    public PngEncoder(final int level, final Filter filter, final ExecutorService executor) {
+        if (level < Deflater.NO_COMPRESSION || level > Deflater.BEST_COMPRESSION) {
+            throw new IllegalArgumentException("compression level must be from 0 to 9: " + level);
+        }
+        if (filter == null) {
+            throw new IllegalArgumentException("filter can not be null.");
+        }
+        this.level = level;
+        this.filter = filter;
+        this.executor = executor;
+    }
+
+    /**
+     * Encode an image as PNG.
+     *
+     * @param image the image
+     * @param output the stream to write the PNG to; it's left open
+     * @throws IOException an I/O operation failed or was interrupted
+     */
+    public void encode(final BufferedImage image, final OutputStream output) throws IOException {
+        final PixelReader reader = PixelReader.forImage(image);
+        final int width = image.getWidth();
+        final int height = image.getHeight();
+
+        final DataOutputStream data = new DataOutputStream(output);
+        data.write(SIGNATURE);
+
+        final ByteArrayOutputStream header = new ByteArrayOutputStream();
+        final DataOutputStream headerData = new DataOutputStream(header);
+        headerData.writeInt(width);
+        headerData.writeInt(height);
+        headerData.writeByte(8);
+        headerData.writeByte(reader.colorType);
+        headerData.writeByte(0);
+        headerData.writeByte(0);
+        headerData.writeByte(0);
+        writeChunk(data, "IHDR", header.toByteArray(), header.size());
+
+        if (executor == null) {
+            writeStream(data, reader, height);
+        } else {
+            writeBlocks(data, reader, height);
+        }
+        writeChunk(data, "IEND", new byte[0], 0);
+        data.flush();
+    }
+
+    /**
+     * Filter and compress all the rows as one zlib stream, writing the compressed data as it's produced.
+     */
+    private void writeStream(final DataOutputStream data, final PixelReader reader, final int height)
+                    throws IOException {
+        final int rowBytes = reader.width * reader.bytesPerPixel;
+        final byte[] filtered = new byte[rowBytes + 1];
+        byte[] previous = new byte[rowBytes];
+        byte[] current = new byte[rowBytes];
+        final byte[][] candidates = filter == Filter.ADAPTIVE ? new byte[4][rowBytes] : null;
+        final byte[] chunk = new byte[IDAT_CHUNK_BYTES];
+        int chunkLength = 0;
+
+        // The Deflater writes the zlib header and the Adler-32 trailer itself.
+        final Deflater deflater = new Deflater(level);
+        try {
+            for (int y = 0; y < height; y++) {
+                reader.readRow(y, current);
+                filterRow(reader.bytesPerPixel, current, previous, filtered, 0, candidates);
+                deflater.setInput(filtered);
+                while (!deflater.needsInput()) {
+                    chunkLength = deflateToChunk(data, deflater, chunk, chunkLength);
+                }
+                final byte[] swap = previous;
+                previous = current;
+                current = swap;
+            }
+            deflater.finish();
+            while (!deflater.finished()) {
+                chunkLength = deflateToChunk(data, deflater, chunk, chunkLength);
+            }
+        } finally {
+            deflater.end();
+        }
+        if (chunkLength > 0) {
+            writeChunk(data, "IDAT", chunk, chunkLength);
+        }
+    }
+
+    /**
+     * Compress into the chunk buffer, writing it out as an IDAT chunk whenever it's full.
+     *
+     * @return the length of the data in the chunk buffer
+     */
+    private static int deflateToChunk(final DataOutputStream data, final Deflater deflater, final byte[] chunk,
+                                      final int chunkLength)
+                    throws IOException {
+        final int length = chunkLength + deflater.deflate(chunk, chunkLength, chunk.length - chunkLength);
+        if (length < chunk.length) {
+            return length;
+        }
+        writeChunk(data, "IDAT", chunk, length);
+        return 0;
+    }
+
+    /**
+     * Filter and compress blocks of rows in parallel on the executor, joining them into one zlib stream.
+     */
+    private void writeBlocks(final DataOutputStream data, final PixelReader reader, final int height)
+                    throws IOException {
+        final int rowBytes = reader.width * reader.bytesPerPixel;
+        final int rowsPerBlock = Math.max(1, Math.min(height, TARGET_BLOCK_BYTES / Math.max(1, rowBytes)));
+
+        // The zlib header, for a deflate stream with a 32K window.
+        final byte[] zlibHeader = { 0x78, (byte) 0x9c };
+        writeChunk(data, "IDAT", zlibHeader, zlibHeader.length);
+
+        final List<Future<Block>> blocks = new ArrayList<>();
+        long adler = 1;
+        try {
+            for (int firstRow = 0; firstRow < height; firstRow += rowsPerBlock) {
+                blocks.add(executor.submit(new Block(reader, firstRow, Math.min(height, firstRow + rowsPerBlock),
+                                                     firstRow + rowsPerBlock >= height)));
+            }
+            for (final Future<Block> block : blocks) {
+                adler = writeBlock(data, block.get(), adler);
+            }
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while encoding a PNG", e);
+        } catch (final ExecutionException e) {
+            throw new IOException("Failed to encode a PNG", e.getCause());
+        } finally {
+            for (final Future<Block> block : blocks) {
+                block.cancel(true);
+            }
+        }
+
+        final byte[] trailer = { (byte) (adler >>> 24), (byte) (adler >>> 16), (byte) (adler >>> 8), (byte) adler };
+        writeChunk(data, "IDAT", trailer, trailer.length);
+    }
+
+    private static long writeBlock(final DataOutputStream data, final Block block, final long adler)
+                    throws IOException {
+        writeChunk(data, "IDAT", block.compressed, block.compressedLength);
+        return adler32Combine(adler, block.adler, block.length);
+    }
+
+    private static void writeChunk(final DataOutputStream data, final String type, final byte[] bytes,
+                                   final int length)
+                    throws IOException {
+        final byte[] typeBytes = type.getBytes(StandardCharsets.US_ASCII);
+        final CRC32 crc = new CRC32();
+        crc.update(typeBytes);
+        crc.update(bytes, 0, length);
+        data.writeInt(length);
+        data.write(typeBytes);
+        data.write(bytes, 0, length);
+        data.writeInt((int) crc.getValue());
+    }
+
+    /**
+     * Combine the Adler-32 checksums of two pieces of data into the checksum of the two together, as zlib's
+     * adler32_combine does.
+     */
+    private static long adler32Combine(final long adler1, final long adler2, final long length2) {
+        final long remainder = length2 % ADLER_BASE;
+        long sum1 = adler1 & 0xffff;
+        long sum2 = (remainder * sum1) % ADLER_BASE;
+        sum1 += (adler2 & 0xffff) + ADLER_BASE - 1;
+        sum2 += ((adler1 >>> 16) & 0xffff) + ((adler2 >>> 16) & 0xffff) + ADLER_BASE - remainder;
+        if (sum1 >= ADLER_BASE) {
+            sum1 -= ADLER_BASE;
+        }
+        if (sum1 >= ADLER_BASE) {
+            sum1 -= ADLER_BASE;
+        }
+        if (sum2 >= 2L * ADLER_BASE) {
+            sum2 -= 2L * ADLER_BASE;
+        }
+        if (sum2 >= ADLER_BASE) {
+            sum2 -= ADLER_BASE;
+        }
+        return sum1 | (sum2 << 16);
+    }
+
+    /**
+     * A block of rows, filtered and compressed into raw deflate data that ends on a byte boundary.
+     */
+    private final class Block implements Callable<Block> {
+        private final PixelReader reader;
+        private final int firstRow;
+        private final int endRow;
+        private final boolean last;
+        private byte[] compressed;
+        private int compressedLength;
+        private long adler;
+        private long length;
+
+        Block(final PixelReader reader, final int firstRow, final int endRow, final boolean last) {
+            this.reader = reader;
+            this.firstRow = firstRow;
+            this.endRow = endRow;
+            this.last = last;
+        }
+
+        @Override
+        public Block call() {
+            final int rowBytes = reader.width * reader.bytesPerPixel;
+            final byte[] filtered = new byte[(endRow - firstRow) * (rowBytes + 1)];
+            byte[] previous = new byte[rowBytes];
+            byte[] current = new byte[rowBytes];
+            if (firstRow > 0) {
+                reader.readRow(firstRow - 1, previous);
+            }
+            final byte[][] candidates = filter == Filter.ADAPTIVE ? new byte[4][rowBytes] : null;
+            for (int y = firstRow, offset = 0; y < endRow; y++, offset += rowBytes + 1) {
+                reader.readRow(y, current);
+                filterRow(reader.bytesPerPixel, current, previous, filtered, offset, candidates);
+                final byte[] swap = previous;
+                previous = current;
+                current = swap;
+            }
+
+            final Adler32 checksum = new Adler32();
+            checksum.update(filtered, 0, filtered.length);
+            adler = checksum.getValue();
+            length = filtered.length;
+
+            final Deflater deflater = new Deflater(level, true);
+            try {
+                deflater.setInput(filtered);
+                if (last) {
+                    deflater.finish();
+                }
+                final ByteArrayOutputStream output = new ByteArrayOutputStream(filtered.length / 4 + 64);
+                final byte[] buffer = new byte[64 * 1024];
+                while (true) {
+                    final int count = deflater.deflate(buffer, 0, buffer.length,
+                                                       last ? Deflater.NO_FLUSH : Deflater.SYNC_FLUSH);
+                    output.write(buffer, 0, count);
+                    if (last ? deflater.finished() : count < buffer.length) {
+                        break;
+                    }
+                }
+                compressed = output.toByteArray();
+                compressedLength = compressed.length;
+            } finally {
+                deflater.end();
+            }
+            return this;
+        }
+    }
+
+    /**
+     * Filter a row into the output, preceded by the filter type, trying each filter if the filter is adaptive.
+     */
+    private void filterRow(final int bpp, final byte[] row, final byte[] above, final byte[] output, final int offset,
+                           final byte[][] candidates) {
+        if (candidates == null) {
+            output[offset] = (byte) filter.type;
+            applyFilter(filter.type, row, above, bpp, output, offset + 1);
+            return;
+        }
+        // Pick the filter with the smallest sum of absolute differences, the usual heuristic.
+        final int[] types = { Filter.NONE.type, Filter.SUB.type, Filter.UP.type, Filter.PAETH.type };
+        int best = 0;
+        long bestSum = Long.MAX_VALUE;
+        for (int i = 0; i < types.length; i++) {
+            applyFilter(types[i], row, above, bpp, candidates[i], 0);
+            long sum = 0;
+            for (final byte b : candidates[i]) {
+                sum += Math.abs((int) b);
+            }
+            if (sum < bestSum) {
+                bestSum = sum;
+                best = i;
+            }
+        }
+        output[offset] = (byte) types[best];
+        System.arraycopy(candidates[best], 0, output, offset + 1, row.length);
+    }
+
+    private static void applyFilter(final int type, final byte[] row, final byte[] above, final int bpp,
+                                    final byte[] output, final int offset) {
+        final int length = row.length;
+        switch (type) {
+            case 1:
+                for (int i = 0; i < length; i++) {
+                    final int left = i >= bpp ? row[i - bpp] & 0xff : 0;
+                    output[offset + i] = (byte) (row[i] - left);
+                }
+                break;
+            case 2:
+                for (int i = 0; i < length; i++) {
+                    output[offset + i] = (byte) (row[i] - above[i]);
+                }
+                break;
+            case 4:
+                for (int i = 0; i < length; i++) {
+                    final int left = i >= bpp ? row[i - bpp] & 0xff : 0;
+                    final int up = above[i] & 0xff;
+                    final int upperLeft = i >= bpp ? above[i - bpp] & 0xff : 0;
+                    output[offset + i] = (byte) (row[i] - paeth(left, up, upperLeft));
+                }
+                break;
+            default:
+                System.arraycopy(row, 0, output, offset, length);
+                break;
+        }
+    }
+
+    private static int paeth(final int left, final int up, final int upperLeft) {
+        final int estimate = left + up - upperLeft;
+        final int distanceLeft = Math.abs(estimate - left);
+        final int distanceUp = Math.abs(estimate - up);
+        final int distanceUpperLeft = Math.abs(estimate - upperLeft);
+        if (distanceLeft <= distanceUp && distanceLeft <= distanceUpperLeft) {
+            return left;
+        }
+        return distanceUp <= distanceUpperLeft ? up : upperLeft;
+    }
+
+    /**
+     * Reads rows of an image as PNG sample bytes, straight from the image's data buffer where it can.
+     */
+    private static final class PixelReader {
+        private final BufferedImage image;
+        private final int width;
+        private final int colorType;
+        private final int bytesPerPixel;
+        private final int[] intPixels;
+        private final byte[] bytePixels;
+        private final int offset;
+        private final int scanlineStride;
+        private final int pixelStride;
+        // For packed pixels, the shifts of red, green, blue and alpha; for interleaved bytes, their band offsets.
+        private final int[] positions;
+
+        private PixelReader(final BufferedImage image, final int colorType, final int[] intPixels,
+                            final byte[] bytePixels, final int offset, final int scanlineStride,
+                            final int pixelStride, final int[] positions) {
+            this.image = image;
+            width = image.getWidth();
+            this.colorType = colorType;
+            bytesPerPixel = colorType == COLOR_TYPE_RGBA ? 4 : colorType == COLOR_TYPE_RGB ? 3 : 1;
+            this.intPixels = intPixels;
+            this.bytePixels = bytePixels;
+            this.offset = offset;
+            this.scanlineStride = scanlineStride;
+            this.pixelStride = pixelStride;
+            this.positions = positions;
+        }
+
+        static PixelReader forImage(final BufferedImage image) {
+            final ColorModel colorModel = image.getColorModel();
+            final Raster raster = image.getRaster();
+            final boolean untranslated = raster.getSampleModelTranslateX() == 0
+                                         && raster.getSampleModelTranslateY() == 0;
+            final boolean rgbColorSpace = colorModel.getColorSpace().isCS_sRGB();
+            final int colorType = colorModel.hasAlpha() ? COLOR_TYPE_RGBA : COLOR_TYPE_RGB;
+
+            if (untranslated && rgbColorSpace && !colorModel.isAlphaPremultiplied()
+                && colorModel instanceof DirectColorModel && raster.getDataBuffer() instanceof DataBufferInt
+                && raster.getSampleModel() instanceof SinglePixelPackedSampleModel) {
+                final DirectColorModel direct = (DirectColorModel) colorModel;
+                final int[] masks = { direct.getRedMask(), direct.getGreenMask(), direct.getBlueMask(),
+                    direct.getAlphaMask() };
+                final int[] shifts = new int[4];
+                boolean eightBit = true;
+                for (int i = 0; i < (colorModel.hasAlpha() ? 4 : 3); i++) {
+                    shifts[i] = Integer.numberOfTrailingZeros(masks[i]);
+                    eightBit &= masks[i] >>> shifts[i] == 0xff;
+                }
+                if (eightBit) {
+                    final SinglePixelPackedSampleModel model = (SinglePixelPackedSampleModel) raster.getSampleModel();
+                    final DataBufferInt buffer = (DataBufferInt) raster.getDataBuffer();
+                    return new PixelReader(image, colorType, buffer.getData(), null, buffer.getOffset(),
+                                           model.getScanlineStride(), 1, shifts);
+                }
+            }
+
+            if (untranslated && !colorModel.isAlphaPremultiplied() && colorModel instanceof ComponentColorModel
+                && raster.getDataBuffer() instanceof DataBufferByte
+                && raster.getSampleModel() instanceof PixelInterleavedSampleModel) {
+                final PixelInterleavedSampleModel model = (PixelInterleavedSampleModel) raster.getSampleModel();
+                final DataBufferByte buffer = (DataBufferByte) raster.getDataBuffer();
+                final int bands = model.getNumBands();
+                final boolean gray = colorModel.getColorSpace().getType() == ColorSpace.TYPE_GRAY;
+                if (gray && bands == 1 || rgbColorSpace && bands == (colorModel.hasAlpha() ? 4 : 3)) {
+                    return new PixelReader(image, gray ? COLOR_TYPE_GRAY : colorType, null, buffer.getData(),
+                                           buffer.getOffset(), model.getScanlineStride(), model.getPixelStride(),
+                                           model.getBandOffsets());
+                }
+            }
+
+            // Anything else is read through getRGB.
+            return new PixelReader(image, colorType, null, null, 0, 0, 0, null);
+        }
+
+        void readRow(final int y, final byte[] row) {
+            if (intPixels != null) {
+                final int redShift = positions[0];
+                final int greenShift = positions[1];
+                final int blueShift = positions[2];
+                final int alphaShift = positions[3];
+                for (int x = 0, i = 0, index = offset + y * scanlineStride; x < width; x++, index++) {
+                    final int pixel = intPixels[index];
+                    row[i++] = (byte) (pixel >>> redShift);
+                    row[i++] = (byte) (pixel >>> greenShift);
+                    row[i++] = (byte) (pixel >>> blueShift);
+                    if (bytesPerPixel == 4) {
+                        row[i++] = (byte) (pixel >>> alphaShift);
+                    }
+                }
+            } else if (bytePixels != null) {
+                final int start = offset + y * scanlineStride;
+                if (bytesPerPixel == 1 && pixelStride == 1) {
+                    System.arraycopy(bytePixels, start + positions[0], row, 0, width);
+                    return;
+                }
+                for (int x = 0, i = 0, index = start; x < width; x++, index += pixelStride) {
+                    for (int band = 0; band < bytesPerPixel; band++) {
+                        row[i++] = bytePixels[index + positions[band]];
+                    }
+                }
+            } else {
+                final int[] argb = image.getRGB(0, y, width, 1, null, 0, width);
+                for (int x = 0, i = 0; x < width; x++) {
+                    final int pixel = argb[x];
+                    row[i++] = (byte) (pixel >>> 16);
+                    row[i++] = (byte) (pixel >>> 8);
+                    row[i++] = (byte) pixel;
+                    if (bytesPerPixel == 4) {
+                        row[i++] = (byte) (pixel >>> 24);
+                    }
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,208 @@
+/*
+ * Copyright 2015 Datalogics, Inc.
+ */
+
+package com.datalogics.pdf.samples.rendering;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBuffer;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferInt;
+import java.awt.image.PixelInterleavedSampleModel;
+import java.awt.image.SinglePixelPackedSampleModel;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Writes rendered pages as raw pixels, for consumers that want pixel arrays rather than image files.
+ *
+ * <p>
+ * Each page is written as a frame: a fixed 32-byte header followed by the pixels, row by row, with no compression or
+ * encoding of any kind. The header holds, as big-endian 32-bit integers: the magic number "PDFR", the format version,
+ * the page number, the width and height in pixels, the pixel format, the number of bytes in a row, and the resolution
+ * in dpi. The pixel formats are {@link #FORMAT_ARGB}, four bytes per pixel, and {@link #FORMAT_GRAY}, one byte per
+ * pixel.
+ *
+ * <p>
+ * Frames can be written one after another to a stream, like a pipe to the consumer, or each to a file of its own.
+ * Files are written through a memory mapping, so a consumer on the same machine can map the file and use the pixels
+ * in place.
+ *
+ * <p>
+ * Rendered pages whose pixels are stored as packed ARGB integers or as gray bytes, which covers what the rasterizer and
+ * the {@link GrayscaleConverter} produce, are copied out in bulk, a row at a time. Other images are converted to ARGB.
+ */
+public class RawFrameWriter implements AutoCloseable {
+
+    /**
+     * The size of the header of a frame, in bytes.
+     */
+    public static final int HEADER_SIZE = 32;
+
+    /**
+     * The magic number at the start of every frame: "PDFR" in ASCII.
+     */
+    public static final int MAGIC = 0x50444652;
+
+    /**
+     * The version of the frame format.
+     */
+    public static final int VERSION = 1;
+
+    /**
+     * Pixel format of four bytes per pixel: alpha, red, green, blue.
+     */
+    public static final int FORMAT_ARGB = 1;
+
+    /**
+     * Pixel format of one byte per pixel: gray, from 0 for black to 255 for white.
+     */
+    public static final int FORMAT_GRAY = 2;
+
+    private static final int BUFFER_SIZE = 1024 * 1024;
+
+    private final WritableByteChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+
+    /**
+     * Create a writer of a stream of frames.
+     *
+     * @param channel the channel to write the frames to; it's closed when the writer is closed
+     */
+    public RawFrameWriter(final WritableByteChannel channel) {
+        this.channel = channel;
+    }
+
+    /**
+     * Write a page to the stream as a frame.
+     *
+     * @param pageNumber the page number, starting at 1
+     * @param page the image of the page
+     * @param resolution the resolution the page was rendered at, in dpi
+     * @throws IOException an I/O operation failed or was interrupted
+     */
+    public void writeFrame(final int pageNumber, final BufferedImage page, final int resolution) throws IOException {
+        final int format = formatOf(page);
+        final int rowBytes = rowBytes(page, format);
+        putHeader(buffer, pageNumber, page, format, resolution);
+
+        for (int y = 0; y < page.getHeight(); y++) {
+            if (buffer.remaining() < rowBytes) {
+                flushBuffer();
+            }
+            if (buffer.remaining() < rowBytes) {
+                // A row larger than the buffer goes out by itself.
+                final ByteBuffer row = ByteBuffer.allocate(rowBytes);
+                putRow(row, page, format, y);
+                row.flip();
+                writeFully(row);
+            } else {
+                putRow(buffer, page, format, y);
+            }
+        }
+        flushBuffer();
+    }
+
+    /**
+     * Write a page to a file of its own, as a single frame. The file is written through a memory mapping, and is
+     * replaced if it exists.
+     *
+     * @param file the file for the frame
+     * @param pageNumber the page number, starting at 1
+     * @param page the image of the page
+     * @param resolution the resolution the page was rendered at, in dpi
+     * @throws IOException an I/O operation failed or was interrupted
+     */
+    public static void writeFrameFile(final File file, final int pageNumber, final BufferedImage page,
+                                      final int resolution)
+                    throws IOException {
+        final int format = formatOf(page);
+        final long size = HEADER_SIZE + (long) rowBytes(page, format) * page.getHeight();
+        if (size > Integer.MAX_VALUE) {
+            throw new IOException("Page " + pageNumber + " is too large to map: " + size + " bytes");
+        }
+        try (FileChannel fileChannel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE,
+                                                        StandardOpenOption.READ, StandardOpenOption.WRITE,
+                                                        StandardOpenOption.TRUNCATE_EXISTING)) {
+            final MappedByteBuffer mapped = fileChannel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+            putHeader(mapped, pageNumber, page, format, resolution);
+            for (int y = 0; y < page.getHeight(); y++) {
+                putRow(mapped, page, format, y);
+            }
+            mapped.force();
+        }
+    }
+
+    /**
+     * Close the stream.
+     *
+     * @throws IOException an I/O operation failed or was interrupted
+     */
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private static int formatOf(final BufferedImage page) {
+        return page.getType() == BufferedImage.TYPE_BYTE_GRAY ? FORMAT_GRAY : FORMAT_ARGB;
+    }
+
+    private static int rowBytes(final BufferedImage page, final int format) {
+        return page.getWidth() * (format == FORMAT_GRAY ? 1 : 4);
+    }
+
+    private static void putHeader(final ByteBuffer target, final int pageNumber, final BufferedImage page,
+                                  final int format, final int resolution) {
+        target.putInt(MAGIC).putInt(VERSION).putInt(pageNumber).putInt(page.getWidth()).putInt(page.getHeight())
+              .putInt(format).putInt(rowBytes(page, format)).putInt(resolution);
+    }
+
+    /**
+     * Put one row of pixels into a buffer, copying it straight from the image's storage where it can.
+     */
+    private static void putRow(final ByteBuffer target, final BufferedImage page, final int format, final int y) {
+        final int width = page.getWidth();
+        final DataBuffer data = page.getRaster().getDataBuffer();
+        final boolean untranslated = page.getRaster().getSampleModelTranslateX() == 0
+                                     && page.getRaster().getSampleModelTranslateY() == 0;
+
+        if (format == FORMAT_GRAY && data instanceof DataBufferByte && untranslated
+            && page.getSampleModel() instanceof PixelInterleavedSampleModel) {
+            final PixelInterleavedSampleModel model = (PixelInterleavedSampleModel) page.getSampleModel();
+            target.put(((DataBufferByte) data).getData(), data.getOffset() + y * model.getScanlineStride(), width);
+        } else if (format == FORMAT_GRAY) {
+            for (int x = 0; x < width; x++) {
+                target.put((byte) page.getRaster().getSample(x, y, 0));
+            }
+        } else if (page.getType() == BufferedImage.TYPE_INT_ARGB && untranslated) {
+            // Big-endian ints come out as alpha, red, green, blue bytes, which is the ARGB format.
+            final SinglePixelPackedSampleModel model = (SinglePixelPackedSampleModel) page.getSampleModel();
+            final int[] pixels = ((DataBufferInt) data).getData();
+            final int start = target.position();
+            target.asIntBuffer().put(pixels, data.getOffset() + y * model.getScanlineStride(), width);
+            target.position(start + width * 4);
+        } else {
+            final int[] row = page.getRGB(0, y, width, 1, null, 0, width);
+            final int start = target.position();
+            target.asIntBuffer().put(row);
+            target.position(start + width * 4);
+        }
+    }
+
+    private void flushBuffer() throws IOException {
+        buffer.flip();
+        writeFully(buffer);
+        buffer.clear();
+    }
+
+    private void writeFully(final ByteBuffer source) throws IOException {
+        while (source.hasRemaining()) {
+            channel.write(source);
+        }
+    }
+}
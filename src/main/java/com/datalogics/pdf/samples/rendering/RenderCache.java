@@ -0,0 +1,282 @@
+/*
+ * Copyright 2015 Datalogics, Inc.
+ */
+
+package com.datalogics.pdf.samples.rendering;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * An on-disk cache of rendered page images, keyed by the content of the page and how it was rendered.
+ *
+ * <p>
+ * The key of a rendered page combines a {@link PageContentHasher} digest of the page with the resolution and size it
+ * was rendered at. Since the digest only covers what affects how the page looks, a page that hasn't changed is found
+ * in the cache even if the rest of its document has, and can be copied from the cache without rendering it.
+ *
+ * <p>
+ * Each entry is an encoded image file, stored under the key and the image format. The cache is bounded by the total
+ * size of its files, and evicts the least recently used files first. The cache survives restarts: the files already
+ * in the directory are picked up, oldest first, when it's created.
+ *
+ * <p>
+ * All methods are thread-safe.
+ */
+public class RenderCache {
+    private static final Logger LOGGER = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+
+    private final File directory;
+    private final long maxBytes;
+    private final Map<File, Long> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long size;
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    /**
+     * Create a cache in a directory, holding up to a total size of files.
+     *
+     * @param directory the directory for the cached files; it's created if necessary
+     * @param maxBytes the maximum total size of the cached files, in bytes
+     * @throws IOException an I/O operation failed or was interrupted
+     */
+    public RenderCache(final File directory, final long maxBytes) throws IOException {
+        if (maxBytes <= 0) {
+            throw new IllegalArgumentException("maximum size must be positive: " + maxBytes);
+        }
+        this.directory = directory.getAbsoluteFile();
+        this.maxBytes = maxBytes;
+        Files.createDirectories(this.directory.toPath());
+        loadEntries();
+    }
+
+    /**
+     * Make the cache key for a rendered page.
+     *
+     * @param pageDigest the digest of the page, from a {@link PageContentHasher}
+     * @param resolution the resolution the page is rendered at, in dpi
+     * @param width the width of the rendered page, in pixels
+     * @param height the height of the rendered page, in pixels
+     * @return the key
+     */
+    public static String key(final byte[] pageDigest, final int resolution, final int width, final int height) {
+        final MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (final NoSuchAlgorithmException e) {
+            // Every Java platform is required to support SHA-256.
+            throw new IllegalStateException(e);
+        }
+        digest.update(pageDigest);
+        digest.update((resolution + "/" + width + "x" + height).getBytes(StandardCharsets.UTF_8));
+
+        final StringBuilder hex = new StringBuilder();
+        for (final byte b : digest.digest()) {
+            hex.append(String.format("%02x", b));
+        }
+        return hex.toString();
+    }
+
+    /**
+     * Copy a cached image to a file, if it's in the cache.
+     *
+     * @param key the key of the rendered page
+     * @param format the image format, used as the file extension, like "png"
+     * @param target the file to copy the image to
+     * @return true if the image was in the cache and was copied
+     * @throws IOException an I/O operation failed or was interrupted
+     */
+    public boolean fetch(final String key, final String format, final File target) throws IOException {
+        return fetchAll(key, Collections.singletonMap(format, target));
+    }
+
+    /**
+     * Copy the cached images of a page in several formats to files, if all of them are in the cache. If any is
+     * missing, none of the files are touched, so that the page can be rendered and saved in every format instead.
+     *
+     * <p>
+     * Each image counts as a hit if all of them were copied, and as a miss otherwise.
+     *
+     * @param key the key of the rendered page
+     * @param targets the file to copy the image to, for each image format, like "png"
+     * @return true if every image was in the cache and was copied
+     * @throws IOException an I/O operation failed or was interrupted
+     */
+    public boolean fetchAll(final String key, final Map<String, File> targets) throws IOException {
+        final Map<File, File> copies = new LinkedHashMap<>();
+        for (final Map.Entry<String, File> target : targets.entrySet()) {
+            copies.put(entryFile(key, target.getKey()), target.getValue());
+        }
+        synchronized (this) {
+            for (final File entry : copies.keySet()) {
+                // Looking the entry up with get() also marks it as recently used.
+                if (entries.get(entry) == null) {
+                    misses += copies.size();
+                    return false;
+                }
+            }
+        }
+        for (final Map.Entry<File, File> copy : copies.entrySet()) {
+            final File entry = copy.getKey();
+            try {
+                Files.copy(entry.toPath(), copy.getValue().toPath(), StandardCopyOption.REPLACE_EXISTING);
+            } catch (final NoSuchFileException e) {
+                // Evicted, or removed from the directory, since we looked. Files already copied will be overwritten
+                // when the page is rendered.
+                synchronized (this) {
+                    forget(entry);
+                    misses += copies.size();
+                }
+                return false;
+            }
+            if (!entry.setLastModified(System.currentTimeMillis()) && LOGGER.isDebugEnabled()) {
+                LOGGER.debug("Unable to update the modification time of " + entry);
+            }
+        }
+        synchronized (this) {
+            hits += copies.size();
+        }
+        return true;
+    }
+
+    /**
+     * Add an image to the cache, evicting the least recently used images if the cache is full.
+     *
+     * @param key the key of the rendered page
+     * @param format the image format, used as the file extension, like "png"
+     * @param source the image file to copy into the cache
+     * @throws IOException an I/O operation failed or was interrupted
+     */
+    public void store(final String key, final String format, final File source) throws IOException {
+        final File entry = entryFile(key, format);
+        final File entryDirectory = entry.getParentFile();
+        Files.createDirectories(entryDirectory.toPath());
+
+        // Copy to a temporary name first, so that a reader never sees a partly copied file.
+        final File temp = new File(entryDirectory, "." + entry.getName() + "."
+                                                   + Long.toHexString(ThreadLocalRandom.current().nextLong()) + ".tmp");
+        Files.copy(source.toPath(), temp.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        try {
+            Files.move(temp.toPath(), entry.toPath(), StandardCopyOption.ATOMIC_MOVE,
+                       StandardCopyOption.REPLACE_EXISTING);
+        } catch (final AtomicMoveNotSupportedException e) {
+            Files.move(temp.toPath(), entry.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+
+        final List<File> evicted = new ArrayList<>();
+        synchronized (this) {
+            forget(entry);
+            entries.put(entry, entry.length());
+            size += entry.length();
+            final Iterator<Map.Entry<File, Long>> iterator = entries.entrySet().iterator();
+            while (size > maxBytes && entries.size() > 1 && iterator.hasNext()) {
+                final Map.Entry<File, Long> oldest = iterator.next();
+                iterator.remove();
+                size -= oldest.getValue();
+                evictions++;
+                evicted.add(oldest.getKey());
+            }
+        }
+        for (final File file : evicted) {
+            Files.deleteIfExists(file.toPath());
+        }
+    }
+
+    /**
+     * Get the number of images fetched from the cache.
+     *
+     * @return the number of cache hits
+     */
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    /**
+     * Get the number of images that fetches didn't copy, because they, or another image of the same page, weren't in
+     * the cache.
+     *
+     * @return the number of cache misses
+     */
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    /**
+     * Get the number of images evicted to keep the cache within its size.
+     *
+     * @return the number of evictions
+     */
+    public synchronized long getEvictions() {
+        return evictions;
+    }
+
+    /**
+     * Get the total size of the cached images.
+     *
+     * @return the size of the cache, in bytes
+     */
+    public synchronized long getSize() {
+        return size;
+    }
+
+    private File entryFile(final String key, final String format) {
+        // Spread the entries over subdirectories, so that no one directory gets too large.
+        return new File(new File(directory, key.substring(0, 2)), key + "." + format);
+    }
+
+    private void forget(final File entry) {
+        final Long removed = entries.remove(entry);
+        if (removed != null) {
+            size -= removed;
+        }
+    }
+
+    /**
+     * Pick up the entries already in the directory, ordering them from least to most recently used.
+     */
+    private void loadEntries() {
+        final List<File> files = new ArrayList<>();
+        final File[] subdirectories = directory.listFiles();
+        if (subdirectories != null) {
+            for (final File subdirectory : subdirectories) {
+                final File[] contents = subdirectory.listFiles();
+                if (contents != null) {
+                    files.addAll(Arrays.asList(contents));
+                }
+            }
+        }
+        Collections.sort(files, new Comparator<File>() {
+            @Override
+            public int compare(final File left, final File right) {
+                return Long.compare(left.lastModified(), right.lastModified());
+            }
+        });
+        for (final File file : files) {
+            if (file.isFile() && !file.getName().startsWith(".")) {
+                entries.put(file, file.length());
+                size += file.length();
+            }
+        }
+    }
+}
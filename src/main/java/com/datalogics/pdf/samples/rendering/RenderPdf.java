@@ -4,27 +4,47 @@
 
 package com.datalogics.pdf.samples.rendering;
 
+import com.adobe.pdfjt.core.fontset.PDFFontSet;
 import com.adobe.pdfjt.core.license.LicenseManager;
 import com.adobe.pdfjt.pdf.document.PDFDocument;
 import com.adobe.pdfjt.pdf.page.PDFPage;
+import com.adobe.pdfjt.pdf.page.PDFPageTree;
 import com.adobe.pdfjt.services.rasterizer.PageRasterizer;
 import com.adobe.pdfjt.services.rasterizer.RasterizationOptions;
 
 import com.datalogics.pdf.samples.util.DocumentUtils;
 import com.datalogics.pdf.samples.util.FontUtils;
 import com.datalogics.pdf.samples.util.IoUtils;
+import com.datalogics.pdf.samples.util.PageRange;
+import com.datalogics.pdf.samples.util.RasterBufferPool;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.awt.Color;
+import java.awt.Dimension;
 import java.awt.Graphics;
+import java.awt.Transparency;
+import java.awt.color.ColorSpace;
 import java.awt.image.BufferedImage;
+import java.awt.image.ColorModel;
+import java.awt.image.ComponentColorModel;
+import java.awt.image.DataBuffer;
+import java.awt.image.DirectColorModel;
+import java.awt.image.Raster;
+import java.awt.image.WritableRaster;
+import java.io.BufferedOutputStream;
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.lang.invoke.MethodHandles;
 import java.net.URISyntaxException;
 import java.net.URL;
 import java.net.URLDecoder;
+import java.nio.channels.WritableByteChannel;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 import javax.imageio.ImageIO;
 
@@ -37,7 +57,16 @@ public final class RenderPdf {
     private static final Logger LOGGER = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
     public static final String DEFAULT_INPUT = "/com/datalogics/pdf/samples/printing/pdfjavatoolkit-ds.pdf";
 
-    private static PageRasterizer pageRasterizer;
+    /**
+     * Encodes the PNG files. Pages are already encoded several at once by the {@link PageOutputPipeline}, so each page
+     * is compressed on a single thread.
+     */
+    private static final PngEncoder PNG_ENCODER = new PngEncoder();
+
+    /**
+     * The threshold for black and white pages when none is given, halfway between black and white.
+     */
+    private static final int DEFAULT_THRESHOLD = 128;
 
     /**
      * This is a utility class, and won't be instantiated.
@@ -63,7 +92,16 @@ public final class RenderPdf {
             inputUrl = RenderPdf.class.getResource(DEFAULT_INPUT);
         }
 
-        renderPdf(inputUrl);
+        // An optional second argument restricts rendering to a range of pages, like "3-5", and an optional third
+        // argument sets the number of pages to render at once.
+        if (args.length > 2) {
+            renderPdf(inputUrl, RESOLUTION, defaultOutputBaseUrl(inputUrl), PageRange.parse(args[1]),
+                      Integer.parseInt(args[2]));
+        } else if (args.length > 1) {
+            renderPdf(inputUrl, RESOLUTION, PageRange.parse(args[1]));
+        } else {
+            renderPdf(inputUrl);
+        }
     }
 
     /**
@@ -85,11 +123,33 @@ public final class RenderPdf {
      * @throws Exception a general exception was thrown
      */
     public static void renderPdf(final URL inputUrl, final int resolution) throws Exception {
+        renderPdf(inputUrl, resolution, PageRange.ALL);
+    }
+
+    /**
+     * Render a range of pages of the specified PDF.
+     *
+     * @param inputUrl path to the PDF to render
+     * @param resolution the desired resolution in dpi
+     * @param pages the pages to render
+     * @throws Exception a general exception was thrown
+     */
+    public static void renderPdf(final URL inputUrl, final int resolution, final PageRange pages) throws Exception {
+        renderPdf(inputUrl, resolution, defaultOutputBaseUrl(inputUrl), pages);
+    }
+
+    /**
+     * Get the default base URL for the rendered images: the name of the input file, in the current directory.
+     *
+     * @param inputUrl path to the PDF to render
+     * @return the base URL for the output files
+     * @throws Exception a general exception was thrown
+     */
+    private static URL defaultOutputBaseUrl(final URL inputUrl) throws Exception {
         final String path = URLDecoder.decode(inputUrl.getPath(), "UTF-8");
         final int slash = path.lastIndexOf('/');
         final String imageBaseName = path.substring(slash + 1);
-        final URL outputBaseUrl = new File(imageBaseName).toURI().toURL();
-        renderPdf(inputUrl, resolution, outputBaseUrl);
+        return new File(imageBaseName).toURI().toURL();
     }
 
     /**
@@ -101,37 +161,579 @@ public final class RenderPdf {
      * @throws Exception a general exception was thrown
      */
     public static void renderPdf(final URL inputUrl, final int resolution, final URL outputBaseUrl) throws Exception {
-        // Read the PDF input file and detect the page size of the first page. This sample assumes all pages in
-        // the document are the same size.
+        renderPdf(inputUrl, resolution, outputBaseUrl, PageRange.ALL);
+    }
+
+    /**
+     * Render a range of pages of the specified PDF.
+     *
+     * <p>
+     * Only the pages in the range are looked up and rendered, so rendering a few pages of a large document doesn't
+     * cost more than rendering them from a small one. The output files are numbered with the page numbers in the
+     * document.
+     *
+     * @param inputUrl path to the PDF to render
+     * @param resolution the desired resolution in dpi
+     * @param outputBaseUrl the URL for the output file, to which will be added the page number and ".png" extension.
+     * @param pages the pages to render
+     * @throws Exception a general exception was thrown
+     */
+    public static void renderPdf(final URL inputUrl, final int resolution, final URL outputBaseUrl,
+                                 final PageRange pages)
+                    throws Exception {
+        renderPdf(inputUrl, resolution, outputBaseUrl, pages, 1);
+    }
+
+    /**
+     * Render a range of pages of the specified PDF, rendering several pages at once, sized with the default sizing of
+     * {@link PageRasterOptions}.
+     *
+     * @param inputUrl path to the PDF to render
+     * @param resolution the desired resolution in dpi
+     * @param outputBaseUrl the URL for the output file, to which will be added the page number and ".png" extension.
+     * @param pages the pages to render
+     * @param threads the number of pages to render at once
+     * @throws Exception a general exception was thrown
+     */
+    public static void renderPdf(final URL inputUrl, final int resolution, final URL outputBaseUrl,
+                                 final PageRange pages, final int threads)
+                    throws Exception {
+        renderPdf(inputUrl, resolution, outputBaseUrl, pages, threads, PageRasterOptions.DEFAULT_SIZING);
+    }
+
+    /**
+     * Render a range of pages of the specified PDF, rendering several pages at once.
+     *
+     * <p>
+     * With more than one thread, each thread opens the document for itself and renders whole pages, taking the next
+     * page from the range as it finishes one. Pages are saved as they are finished, so they may be written out of
+     * order. Either way, pages are encoded and saved by a {@link PageOutputPipeline}, in the background.
+     *
+     * <p>
+     * Each page is rendered at the size of its own crop box, or, with {@link PageRasterOptions.Sizing#FIRST_PAGE}, at
+     * the size of the first page in the range.
+     *
+     * @param inputUrl path to the PDF to render
+     * @param resolution the desired resolution in dpi
+     * @param outputBaseUrl the URL for the output file, to which will be added the page number and ".png" extension.
+     * @param pages the pages to render
+     * @param threads the number of pages to render at once
+     * @param sizing the way pages are sized
+     * @throws Exception a general exception was thrown
+     */
+    public static void renderPdf(final URL inputUrl, final int resolution, final URL outputBaseUrl,
+                                 final PageRange pages, final int threads, final PageRasterOptions.Sizing sizing)
+                    throws Exception {
+        if (threads > 1) {
+            // Only the page count is needed here; close the document before the workers each open their own copy, so
+            // it isn't held in memory alongside theirs for the whole render.
+            final int pageCount;
+            final PDFDocument pdfDocument = DocumentUtils.openPdfDocument(inputUrl);
+            try {
+                pageCount = pdfDocument.requirePages().getCount();
+            } finally {
+                pdfDocument.close();
+            }
+            final int firstIndex = pages.getFirstIndex(pageCount);
+            final int lastIndex = pages.getLastIndex(pageCount);
+
+            if (LOGGER.isInfoEnabled()) {
+                LOGGER.info("Resolution: " + resolution + " DPI");
+            }
+
+            // Pages are encoded and saved in the background while the next pages are rasterized.
+            try (PageOutputPipeline pipeline = new PageOutputPipeline(outputBaseUrl)) {
+                // Each rendering thread opens the document and sets up its rasterization options for itself.
+                final ParallelPageRenderer renderer = new ParallelPageRenderer(inputUrl, resolution, threads,
+                                                                               sizing);
+                renderer.render(firstIndex, lastIndex, false, new ParallelPageRenderer.PageHandler() {
+                    @Override
+                    public void handlePage(final int pageNumber, final BufferedImage image) throws Exception {
+                        pipeline.submit(pageNumber, image);
+                    }
+                });
+            }
+            return;
+        }
+
+        // Pages are encoded and saved in the background while the next pages are rasterized.
+        try (PageOutputPipeline pipeline = new PageOutputPipeline(outputBaseUrl)) {
+            renderPdf(inputUrl, resolution, pages, sizing, pipeline);
+        }
+    }
+
+    /**
+     * Render a range of pages of the specified PDF one at a time, submitting each page to a pipeline that saves it.
+     *
+     * @param inputUrl path to the PDF to render
+     * @param resolution the desired resolution in dpi
+     * @param pages the pages to render
+     * @param sizing the way pages are sized
+     * @param pipeline the pipeline to submit the rendered pages to; it isn't closed
+     * @throws Exception a general exception was thrown
+     */
+    static void renderPdf(final URL inputUrl, final int resolution, final PageRange pages,
+                          final PageRasterOptions.Sizing sizing, final PageOutputPipeline pipeline)
+                    throws Exception {
+        final PDFDocument pdfDocument = DocumentUtils.openPdfDocument(inputUrl);
+        try {
+            final PDFPageTree pageTree = pdfDocument.requirePages();
+            final int firstIndex = pages.getFirstIndex(pageTree.getCount());
+            final int lastIndex = pages.getLastIndex(pageTree.getCount());
+
+            if (LOGGER.isInfoEnabled()) {
+                LOGGER.info("Resolution: " + resolution + " DPI");
+            }
+
+            // The dimensions of the bitmap come from the page size and the desired resolution: each page's own crop
+            // box and rotation, or the first page's size for every page, within a pixel budget.
+            final PDFFontSet fontSet = FontUtils.getDocFontSet(pdfDocument);
+            final PageRasterOptions pageOptions = new PageRasterOptions(resolution, sizing);
+
+            // Use a PageRasterizer to create a bitmap for each page in the range.
+            for (int pageIndex = firstIndex; pageIndex <= lastIndex; pageIndex++) {
+                final RasterizationOptions rasterizationOptions =
+                    pageOptions.getOptions(pageTree.getPage(pageIndex), fontSet);
+                final PageRasterizer pageRasterizer = new PageRasterizer(pageTree, pageIndex, pageIndex,
+                                                                         rasterizationOptions);
+                pipeline.submit(pageIndex + 1, pageRasterizer.next());
+            }
+        } finally {
+            pdfDocument.close();
+        }
+    }
+
+    /**
+     * Render a range of pages of the specified PDF, copying pages that were rendered before from a cache.
+     *
+     * <p>
+     * Each page is looked up in the cache by a digest of its content and resources, with the resolution and size it's
+     * rendered at. When both its PNG and JPEG files are found, they are copied from the cache and the page isn't
+     * rasterized at all; otherwise the page is rendered, and its files are added to the cache. Pages that haven't
+     * changed are found in the cache even if the document was edited and saved again since, or if they came from a
+     * different document.
+     *
+     * @param inputUrl path to the PDF to render
+     * @param resolution the desired resolution in dpi
+     * @param outputBaseUrl the URL for the output file, to which will be added the page number and ".png" extension.
+     * @param pages the pages to render
+     * @param cache the cache of rendered pages
+     * @throws Exception a general exception was thrown
+     */
+    public static void renderPdf(final URL inputUrl, final int resolution, final URL outputBaseUrl,
+                                 final PageRange pages, final RenderCache cache)
+                    throws Exception {
+        final PDFDocument pdfDocument = DocumentUtils.openPdfDocument(inputUrl);
+        try {
+            final PDFPageTree pageTree = pdfDocument.requirePages();
+            final int firstIndex = pages.getFirstIndex(pageTree.getCount());
+            final int lastIndex = pages.getLastIndex(pageTree.getCount());
+            final PageContentHasher hasher = new PageContentHasher(pdfDocument);
+            final PageRasterOptions pageOptions = new PageRasterOptions(resolution);
+
+            // The font set is only loaded if there turns out to be a page to rasterize.
+            PDFFontSet fontSet = null;
+            int rendered = 0;
+            try (PageOutputPipeline pipeline = new PageOutputPipeline(outputBaseUrl, cache)) {
+                for (int pageIndex = firstIndex; pageIndex <= lastIndex; pageIndex++) {
+                    final int pageNo = pageIndex + 1;
+                    final PDFPage pdfPage = pageTree.getPage(pageIndex);
+                    final Dimension size = pageOptions.getSize(pdfPage);
+                    final String key = RenderCache.key(hasher.digest(pageIndex), resolution, size.width,
+                                                       size.height);
+                    final Map<String, File> outputFiles = new LinkedHashMap<>();
+                    outputFiles.put("png", pageOutputFile(outputBaseUrl, pageNo, "png"));
+                    outputFiles.put("jpg", pageOutputFile(outputBaseUrl, pageNo, "jpg"));
+                    if (cache.fetchAll(key, outputFiles)) {
+                        continue;
+                    }
+
+                    if (fontSet == null) {
+                        fontSet = FontUtils.getDocFontSet(pdfDocument);
+                    }
+                    final PageRasterizer pageRasterizer = new PageRasterizer(pageTree, pageIndex, pageIndex,
+                                                                             pageOptions.getOptions(pdfPage, fontSet));
+                    pipeline.submit(pageNo, pageRasterizer.next(), key);
+                    rendered++;
+                }
+            }
+
+            if (LOGGER.isInfoEnabled()) {
+                LOGGER.info("Rendered " + rendered + " of " + (lastIndex - firstIndex + 1) + " pages, cache hits: "
+                            + cache.getHits() + ", misses: " + cache.getMisses() + ", evictions: "
+                            + cache.getEvictions());
+            }
+        } finally {
+            pdfDocument.close();
+        }
+    }
+
+    /**
+     * Render a range of pages of the specified PDF as 8-bit grayscale images.
+     *
+     * <p>
+     * Each page is converted to gray as soon as it's rasterized, and saved to a PNG file named like "name.1.gray.png".
+     *
+     * @param inputUrl path to the PDF to render
+     * @param resolution the desired resolution in dpi
+     * @param outputBaseUrl the URL for the output files, to which will be added the page number and ".gray.png"
+     *        extension.
+     * @param pages the pages to render
+     * @throws Exception a general exception was thrown
+     */
+    public static void renderPdfGray(final URL inputUrl, final int resolution, final URL outputBaseUrl,
+                                     final PageRange pages)
+                    throws Exception {
+        renderPdfToSink(inputUrl, resolution, pages, new PageSink() {
+            @Override
+            public void savePage(final int pageNo, final BufferedImage page, final int pageResolution)
+                            throws Exception {
+                writePng(GrayscaleConverter.toGray(page), pageOutputFile(outputBaseUrl, pageNo, "gray.png"));
+            }
+        });
+    }
+
+    /**
+     * Render a range of pages of the specified PDF as black and white images.
+     *
+     * <p>
+     * Each page is converted to 1-bit black and white as soon as it's rasterized, and saved to a PNG file named like
+     * "name.1.bilevel.png".
+     *
+     * @param inputUrl path to the PDF to render
+     * @param resolution the desired resolution in dpi
+     * @param outputBaseUrl the URL for the output files, to which will be added the page number and ".bilevel.png"
+     *        extension.
+     * @param pages the pages to render
+     * @param threshold the gray level, from 0 to 255, below which pixels are black
+     * @param dither whether to dither areas of gray
+     * @throws Exception a general exception was thrown
+     */
+    public static void renderPdfBilevel(final URL inputUrl, final int resolution, final URL outputBaseUrl,
+                                        final PageRange pages, final int threshold, final boolean dither)
+                    throws Exception {
+        renderPdfToSink(inputUrl, resolution, pages, new PageSink() {
+            @Override
+            public void savePage(final int pageNo, final BufferedImage page, final int pageResolution)
+                            throws Exception {
+                // ImageIO keeps 1-bit images 1-bit in the PNG; PngEncoder would write them as RGB.
+                ImageIO.write(GrayscaleConverter.toBilevel(page, threshold, dither), "png",
+                              pageOutputFile(outputBaseUrl, pageNo, "bilevel.png"));
+            }
+        });
+    }
+
+    /**
+     * Render a range of pages of the specified PDF into a single multi-page TIFF file.
+     *
+     * <p>
+     * Each page is appended to the file as soon as it's rasterized, so only one page is in memory at a time, however
+     * long the document. Pages are written in color, or in black and white for fax and archival systems that expect
+     * it. Black and white pages are made without dithering, with a threshold halfway between black and white, which
+     * keeps text and line art crisp.
+     *
+     * @param inputUrl path to the PDF to render
+     * @param resolution the desired resolution in dpi
+     * @param outputUrl the URL for the TIFF file
+     * @param pages the pages to render
+     * @param bilevel whether to write the pages in black and white, rather than color
+     * @throws Exception a general exception was thrown
+     */
+    public static void renderPdfTiff(final URL inputUrl, final int resolution, final URL outputUrl,
+                                     final PageRange pages, final boolean bilevel)
+                    throws Exception {
+        if (bilevel) {
+            renderPdfTiff(inputUrl, resolution, outputUrl, pages, DEFAULT_THRESHOLD, false);
+            return;
+        }
+        try (TiffPageWriter tiffWriter = new TiffPageWriter(new File(outputUrl.toURI()))) {
+            renderPdfToSink(inputUrl, resolution, pages, new PageSink() {
+                @Override
+                public void savePage(final int pageNo, final BufferedImage page, final int pageResolution)
+                                throws Exception {
+                    tiffWriter.writePage(page, pageResolution);
+                }
+            });
+        }
+    }
+
+    /**
+     * Render a range of pages of the specified PDF into a single multi-page TIFF file, in black and white.
+     *
+     * <p>
+     * Each page is converted to 1-bit black and white as soon as it's rasterized, and appended to the file compressed
+     * with CCITT Group 4, so only one page is in memory at a time, however long the document.
+     *
+     * @param inputUrl path to the PDF to render
+     * @param resolution the desired resolution in dpi
+     * @param outputUrl the URL for the TIFF file
+     * @param pages the pages to render
+     * @param threshold the gray level, from 0 to 255, below which pixels are black
+     * @param dither whether to dither areas of gray
+     * @throws Exception a general exception was thrown
+     */
+    public static void renderPdfTiff(final URL inputUrl, final int resolution, final URL outputUrl,
+                                     final PageRange pages, final int threshold, final boolean dither)
+                    throws Exception {
+        try (TiffPageWriter tiffWriter = new TiffPageWriter(new File(outputUrl.toURI()))) {
+            renderPdfToSink(inputUrl, resolution, pages, new PageSink() {
+                @Override
+                public void savePage(final int pageNo, final BufferedImage page, final int pageResolution)
+                                throws Exception {
+                    tiffWriter.writePage(GrayscaleConverter.toBilevel(page, threshold, dither), pageResolution);
+                }
+            });
+        }
+    }
+
+    /**
+     * Render a range of pages of the specified PDF as raw pixels, one file per page.
+     *
+     * <p>
+     * Each page is written, without any encoding, as a {@link RawFrameWriter} frame in a file named like "name.1.raw".
+     * The files are written through memory mappings, so a consumer can map them and use the pixels in place.
+     *
+     * @param inputUrl path to the PDF to render
+     * @param resolution the desired resolution in dpi
+     * @param outputBaseUrl the URL for the output files, to which will be added the page number and ".raw" extension.
+     * @param pages the pages to render
+     * @throws Exception a general exception was thrown
+     */
+    public static void renderPdfRaw(final URL inputUrl, final int resolution, final URL outputBaseUrl,
+                                    final PageRange pages)
+                    throws Exception {
+        renderPdfToSink(inputUrl, resolution, pages, new PageSink() {
+            @Override
+            public void savePage(final int pageNo, final BufferedImage page, final int pageResolution)
+                            throws Exception {
+                RawFrameWriter.writeFrameFile(pageOutputFile(outputBaseUrl, pageNo, "raw"), pageNo, page,
+                                              pageResolution);
+            }
+        });
+    }
+
+    /**
+     * Render a range of pages of the specified PDF as a stream of raw pixel frames.
+     *
+     * <p>
+     * Each page is written to the channel, without any encoding, as a {@link RawFrameWriter} frame as soon as it's
+     * rendered. The channel can be a pipe to the consumer of the pages. It's left open.
+     *
+     * @param inputUrl path to the PDF to render
+     * @param resolution the desired resolution in dpi
+     * @param output the channel to write the frames to
+     * @param pages the pages to render
+     * @throws Exception a general exception was thrown
+     */
+    public static void renderPdfRawStream(final URL inputUrl, final int resolution, final WritableByteChannel output,
+                                          final PageRange pages)
+                    throws Exception {
+        final RawFrameWriter frameWriter = new RawFrameWriter(output);
+        renderPdfToSink(inputUrl, resolution, pages, new PageSink() {
+            @Override
+            public void savePage(final int pageNo, final BufferedImage page, final int pageResolution)
+                            throws Exception {
+                frameWriter.writeFrame(pageNo, page, pageResolution);
+            }
+        });
+    }
+
+    /**
+     * Saves each rendered page, as soon as it's rendered.
+     */
+    private interface PageSink {
+        void savePage(int pageNo, BufferedImage page, int resolution) throws Exception;
+    }
+
+    private static void renderPdfToSink(final URL inputUrl, final int resolution, final PageRange pages,
+                                        final PageSink sink)
+                    throws Exception {
         final PDFDocument pdfDocument = DocumentUtils.openPdfDocument(inputUrl);
-        final PDFPage pdfPage = pdfDocument.requirePages().getPage(0);
-        final int pdfPageWidth = (int) pdfPage.getMediaBox().width();
-        final int pdfPageHeight = (int) pdfPage.getMediaBox().height();
+        try {
+            final PDFPageTree pageTree = pdfDocument.requirePages();
+            final int firstIndex = pages.getFirstIndex(pageTree.getCount());
+            final int lastIndex = pages.getLastIndex(pageTree.getCount());
+            final PDFFontSet fontSet = FontUtils.getDocFontSet(pdfDocument);
+            final PageRasterOptions pageOptions = new PageRasterOptions(resolution);
 
-        if (LOGGER.isInfoEnabled()) {
-            LOGGER.info("Resolution: " + resolution + " DPI");
+            for (int pageIndex = firstIndex; pageIndex <= lastIndex; pageIndex++) {
+                final PDFPage pdfPage = pageTree.getPage(pageIndex);
+                final PageRasterizer pageRasterizer = new PageRasterizer(pageTree, pageIndex, pageIndex,
+                                                                         pageOptions.getOptions(pdfPage, fontSet));
+                // The page isn't kept once it's saved, so it can be collected before the next is rendered.
+                sink.savePage(pageIndex + 1, pageRasterizer.next(),
+                              (int) Math.round(pageOptions.getResolution(pdfPage)));
+            }
+        } finally {
+            pdfDocument.close();
         }
+    }
+
+    /**
+     * Render thumbnails of a range of pages of the specified PDF.
+     *
+     * <p>
+     * Each page is rendered directly at the size of its thumbnail, scaled to fit within a square of the given size, and
+     * saved to a PNG file named like "name.1.thumb.png".
+     *
+     * @param inputUrl path to the PDF to render
+     * @param outputBaseUrl the URL for the output files, to which will be added the page number and ".thumb.png"
+     *        extension.
+     * @param pages the pages to render
+     * @param thumbnailSize the largest width and height of a thumbnail, in pixels
+     * @param includeAnnotations whether to draw the pages' annotations
+     * @throws Exception a general exception was thrown
+     */
+    public static void renderPdfThumbnails(final URL inputUrl, final URL outputBaseUrl, final PageRange pages,
+                                           final int thumbnailSize, final boolean includeAnnotations)
+                    throws Exception {
+        final PDFDocument pdfDocument = DocumentUtils.openPdfDocument(inputUrl);
+        try {
+            final int pageCount = pdfDocument.requirePages().getCount();
+            final int lastIndex = pages.getLastIndex(pageCount);
+            final ThumbnailRenderer renderer = new ThumbnailRenderer(pdfDocument, thumbnailSize, thumbnailSize,
+                                                                     includeAnnotations);
+
+            for (int pageIndex = pages.getFirstIndex(pageCount); pageIndex <= lastIndex; pageIndex++) {
+                if (LOGGER.isDebugEnabled()) {
+                    LOGGER.debug("Page " + (pageIndex + 1) + " thumbnail resolution: "
+                                 + renderer.getResolution(pageIndex) + " DPI");
+                }
+                writePng(renderer.renderPage(pageIndex), pageOutputFile(outputBaseUrl, pageIndex + 1, "thumb.png"));
+            }
+        } finally {
+            pdfDocument.close();
+        }
+    }
+
+    /**
+     * Render a range of pages with an {@link AnnotationLayerRenderer}, which keeps each page's content layer and
+     * redraws only the regions under the annotations.
+     *
+     * <p>
+     * The renderer holds the document open, so the annotations can be edited between calls. Each call writes every page
+     * again, to PNG files named like "name.1.png", and a page whose content hasn't changed since its last render only
+     * needs its annotations redrawn.
+     *
+     * @param renderer the renderer, holding the document to render
+     * @param outputBaseUrl the URL for the output files, to which will be added the page number and ".png" extension.
+     * @param pages the pages to render
+     * @throws Exception a general exception was thrown
+     */
+    public static void renderPdfLayered(final AnnotationLayerRenderer renderer, final URL outputBaseUrl,
+                                        final PageRange pages)
+                    throws Exception {
+        final int pageCount = renderer.getPageCount();
+        final int lastIndex = pages.getLastIndex(pageCount);
+        for (int pageIndex = pages.getFirstIndex(pageCount); pageIndex <= lastIndex; pageIndex++) {
+            savePageAsPng(outputBaseUrl, pageIndex + 1, renderer.renderPage(pageIndex));
+        }
+        if (LOGGER.isDebugEnabled()) {
+            LOGGER.debug("Content layers reused: " + renderer.getContentHits() + ", rendered: "
+                         + renderer.getContentMisses());
+        }
+    }
 
-        // Create a set of options that will be used to rasterize the pages. We use the page width, height, and the
-        // desired resolution to tell the Java Toolkit what dimensions the bitmap should be.
-        final RasterizationOptions rasterizationOptions = new RasterizationOptions();
-        rasterizationOptions.setFontSet(FontUtils.getDocFontSet(pdfDocument));
-        rasterizationOptions.setWidth(pdfPageWidth / 72 * resolution);
-        rasterizationOptions.setHeight(pdfPageHeight / 72 * resolution);
+    /**
+     * Render a range of pages of the specified PDF as tiles, for pages that are too large to render in one piece.
+     *
+     * <p>
+     * Each page is rendered as a grid of tiles of at most the given size, and each tile is saved to its own PNG file
+     * as soon as it's rendered, so memory use depends on the tile size rather than the page size. The tiles are named
+     * with the page number and the row and column of the tile, like "name.1.0_2.png".
+     *
+     * @param inputUrl path to the PDF to render
+     * @param resolution the desired resolution in dpi
+     * @param outputBaseUrl the URL for the output files, to which will be added the page number, tile position and
+     *        ".png" extension.
+     * @param pages the pages to render
+     * @param tileSize the width and height of the tiles, in pixels
+     * @throws Exception a general exception was thrown
+     */
+    public static void renderPdfTiled(final URL inputUrl, final int resolution, final URL outputBaseUrl,
+                                      final PageRange pages, final int tileSize)
+                    throws Exception {
+        final PDFDocument pdfDocument = DocumentUtils.openPdfDocument(inputUrl);
+        try {
+            final int pageCount = pdfDocument.requirePages().getCount();
+            final int lastIndex = pages.getLastIndex(pageCount);
+            final TiledPageRenderer renderer = new TiledPageRenderer(pdfDocument, resolution, tileSize);
+            final TiledPageRenderer.TileHandler handler = new TiledPageRenderer.TileHandler() {
+                @Override
+                public void handleTile(final int pageNumber, final int row, final int column,
+                                       final BufferedImage tile)
+                                throws Exception {
+                    final File outputFile = new File(outputBaseUrl.toURI().getPath() + "." + pageNumber + "." + row
+                                                     + "_" + column + ".png");
+                    writePng(tile, outputFile);
+                }
+            };
 
-        // Use a PageRasterizer to create a bitmap for each page.
-        pageRasterizer = new PageRasterizer(pdfDocument.requirePages(), rasterizationOptions);
+            if (LOGGER.isInfoEnabled()) {
+                LOGGER.info("Resolution: " + resolution + " DPI, tile size: " + tileSize + " pixels");
+            }
 
-        int pageNo = 0;
+            for (int pageIndex = pages.getFirstIndex(pageCount); pageIndex <= lastIndex; pageIndex++) {
+                renderer.renderPage(pageIndex, handler);
+            }
+        } finally {
+            pdfDocument.close();
+        }
+    }
+
+    /**
+     * Render a range of pages of the specified PDF as Deep Zoom image pyramids.
+     *
+     * <p>
+     * Each page is rendered once, in tiles, at the given resolution, which is the most detailed level of the pyramid.
+     * The lower levels are made by scaling those tiles down as they are rendered. For each page, this writes a
+     * manifest named like "name.1.dzi", and the tiles in a directory named like "name.1_files".
+     *
+     * @param inputUrl path to the PDF to render
+     * @param resolution the resolution of the most detailed level, in dpi
+     * @param outputBaseUrl the URL for the output files, to which will be added the page number and ".dzi" extension.
+     * @param pages the pages to render
+     * @param tileSize the width and height of the tiles, in pixels, which must be even
+     * @throws Exception a general exception was thrown
+     */
+    public static void renderPdfDeepZoom(final URL inputUrl, final int resolution, final URL outputBaseUrl,
+                                         final PageRange pages, final int tileSize)
+                    throws Exception {
+        final PDFDocument pdfDocument = DocumentUtils.openPdfDocument(inputUrl);
+        try {
+            final int pageCount = pdfDocument.requirePages().getCount();
+            final int lastIndex = pages.getLastIndex(pageCount);
+            final TiledPageRenderer renderer = new TiledPageRenderer(pdfDocument, resolution, tileSize);
 
-        while (pageRasterizer.hasNext()) {
-            pageNo += 1;
-            final BufferedImage page = pageRasterizer.next();
-            savePageAsPng(outputBaseUrl, pageNo, page);
-            savePageAsJpeg(outputBaseUrl, pageNo, page);
+            for (int pageIndex = pages.getFirstIndex(pageCount); pageIndex <= lastIndex; pageIndex++) {
+                final File manifestFile = new File(outputBaseUrl.toURI().getPath() + "." + (pageIndex + 1) + ".dzi");
+                try (DeepZoomPyramidWriter pyramid = new DeepZoomPyramidWriter(manifestFile,
+                                                                               renderer.getPageWidth(pageIndex),
+                                                                               renderer.getPageHeight(pageIndex),
+                                                                               tileSize)) {
+                    renderer.renderPage(pageIndex, pyramid);
+                    pyramid.finish();
+                }
+            }
+        } finally {
+            pdfDocument.close();
         }
     }
 
+    /**
+     * Get the file a page is saved to.
+     *
+     * @param imageBaseUrl the URL to the image output
+     * @param pageNo the pageNumber
+     * @param extension the extension of the file, like "png"
+     * @return the output file
+     * @throws URISyntaxException a string could not be parsed as a URI reference
+     */
+    static File pageOutputFile(final URL imageBaseUrl, final int pageNo, final String extension)
+                    throws URISyntaxException {
+        return new File(imageBaseUrl.toURI().getPath() + "." + pageNo + "." + extension);
+    }
+
     /**
      * Save one page to a PNG file.
      *
@@ -141,29 +743,43 @@ public final class RenderPdf {
      * @throws IOException an I/O operation failed or was interrupted
      * @throws URISyntaxException a string could not be parsed as a URI reference
      */
-    private static void savePageAsPng(final URL imageBaseUrl, final int pageNo, final BufferedImage page)
+    static void savePageAsPng(final URL imageBaseUrl, final int pageNo, final BufferedImage page)
                     throws IOException, URISyntaxException {
-        final File outputFile = new File(imageBaseUrl.toURI().getPath() + "." + pageNo + ".png");
+        final File outputFile = pageOutputFile(imageBaseUrl, pageNo, "png");
         // Saving raster image
-        ImageIO.write(page, "png", outputFile);
+        writePng(page, outputFile);
+    }
+
+    /**
+     * Save an image to a PNG file with the samples' {@link PngEncoder}.
+     *
+     * @param image the image
+     * @param outputFile the PNG file
+     * @throws IOException an I/O operation failed or was interrupted
+     */
+    static void writePng(final BufferedImage image, final File outputFile) throws IOException {
+        try (OutputStream output = new BufferedOutputStream(new FileOutputStream(outputFile))) {
+            PNG_ENCODER.encode(image, output);
+        }
     }
 
     /**
      * Save one page to a JPEG file.
      *
+     * <p>
+     * NOTE: Convert the RGBA image to RGB with {@link #convertToRgb(BufferedImage)} before passing it to this method.
+     * Otherwise, the ImageIO JPEG image writer will write a JPEG-encoded RGBA image that few readers will correctly
+     * decode.
+     *
      * @param imageBaseUrl the URL to the image output
      * @param pageNo the pageNumber
-     * @param page the image of the page
+     * @param rgbPage the image of the page, converted to RGB
      * @throws IOException an I/O operation failed or was interrupted
      * @throws URISyntaxException a string could not be parsed as a URI reference
      */
-    private static void savePageAsJpeg(final URL imageBaseUrl, final int pageNo, final BufferedImage page)
+    static void savePageAsJpeg(final URL imageBaseUrl, final int pageNo, final BufferedImage rgbPage)
                     throws IOException, URISyntaxException {
-        final File outputFile = new File(imageBaseUrl.toURI().getPath() + "." + pageNo + ".jpg");
-
-        // NOTE: Convert the RGBA image to RGB before passing off to the JPEG encoder. Otherwise, the ImageIO JPEG image
-        // writer will write a JPEG-encoded RGBA image that few readers will correctly decode.
-        final BufferedImage rgbPage = convertToRgb(page);
+        final File outputFile = pageOutputFile(imageBaseUrl, pageNo, "jpg");
 
         // Saving raster image
         ImageIO.write(rgbPage, "jpeg", outputFile);
@@ -172,18 +788,92 @@ public final class RenderPdf {
     /**
      * Convert a {@link BufferedImage} to RGB.
      *
+     * <p>
+     * Rendered pages are usually fully opaque, and then the alpha channel can simply be left out: the result is a view
+     * of the red, green and blue channels of the input, sharing its pixels, so no second page-sized image is made.
+     * Only images with transparent pixels, or with a layout this doesn't recognize, are copied onto an RGB image
+     * borrowed from the shared {@link RasterBufferPool}.
+     *
      * @param input the {@link BufferedImage} to convert
-     * @return the resulting {@link BufferedImage}
+     * @return the resulting {@link BufferedImage}, which may share its pixels with the input
      */
-    private static BufferedImage convertToRgb(final BufferedImage input) {
-        final BufferedImage output = new BufferedImage(input.getWidth(), input.getHeight(),
-                                                       BufferedImage.TYPE_INT_RGB);
+    public static BufferedImage convertToRgb(final BufferedImage input) {
+        final BufferedImage view = opaqueRgbView(input);
+        if (view != null) {
+            return view;
+        }
+
+        // The copy is borrowed from the shared pool; release it to the pool once it's been encoded.
+        final BufferedImage output = RasterBufferPool.getSharedPool().borrow(input.getWidth(), input.getHeight(),
+                                                                              BufferedImage.TYPE_INT_RGB);
         final Graphics graphics = output.getGraphics();
         try {
+            // A pooled image still holds the last page drawn into it; start from black, like a new image.
+            graphics.setColor(Color.BLACK);
+            graphics.fillRect(0, 0, output.getWidth(), output.getHeight());
             graphics.drawImage(input, 0, 0, input.getWidth(), input.getHeight(), null);
         } finally {
             graphics.dispose();
         }
         return output;
     }
+
+    /**
+     * Get a view of the colors of an opaque image, without its alpha channel.
+     *
+     * @param input the image
+     * @return an RGB image sharing the input's pixels, or null if the input isn't opaque or isn't laid out as RGB plus
+     *         alpha
+     */
+    private static BufferedImage opaqueRgbView(final BufferedImage input) {
+        final ColorModel colorModel = input.getColorModel();
+        if (!colorModel.hasAlpha() || colorModel.getNumComponents() != 4
+            || !colorModel.getColorSpace().isCS_sRGB()) {
+            return null;
+        }
+        final WritableRaster raster = input.getRaster();
+        final int alphaBand = 3;
+        if (!isOpaque(raster, alphaBand)) {
+            return null;
+        }
+
+        // The bands of the raster follow the color model: red, green, blue, then alpha.
+        final WritableRaster rgbRaster = raster.createWritableChild(raster.getMinX(), raster.getMinY(),
+                                                                    raster.getWidth(), raster.getHeight(), 0, 0,
+                                                                    new int[] { 0, 1, 2 });
+        final ColorModel rgbColorModel;
+        if (colorModel instanceof DirectColorModel) {
+            final DirectColorModel direct = (DirectColorModel) colorModel;
+            rgbColorModel = new DirectColorModel(24, direct.getRedMask(), direct.getGreenMask(),
+                                                 direct.getBlueMask());
+        } else if (colorModel instanceof ComponentColorModel
+                   && colorModel.getTransferType() == DataBuffer.TYPE_BYTE) {
+            rgbColorModel = new ComponentColorModel(ColorSpace.getInstance(ColorSpace.CS_sRGB), false, false,
+                                                    Transparency.OPAQUE, DataBuffer.TYPE_BYTE);
+        } else {
+            return null;
+        }
+        return new BufferedImage(rgbColorModel, rgbRaster, false, null);
+    }
+
+    /**
+     * Check whether every pixel of a raster is fully opaque.
+     *
+     * @param raster the raster
+     * @param alphaBand the band that holds alpha
+     * @return true if every alpha sample is at its maximum
+     */
+    private static boolean isOpaque(final Raster raster, final int alphaBand) {
+        final int opaque = (1 << raster.getSampleModel().getSampleSize(alphaBand)) - 1;
+        final int[] row = new int[raster.getWidth()];
+        for (int y = raster.getMinY(); y < raster.getMinY() + raster.getHeight(); y++) {
+            raster.getSamples(raster.getMinX(), y, raster.getWidth(), 1, alphaBand, row);
+            for (final int alpha : row) {
+                if (alpha != opaque) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
 }
@@ -0,0 +1,482 @@
+/*
+ * Copyright 2015 Datalogics, Inc.
+ */
+
+package com.datalogics.pdf.samples.rendering;
+
+import com.adobe.pdfjt.core.license.LicenseManager;
+
+import com.datalogics.pdf.samples.util.FontUtils;
+import com.datalogics.pdf.samples.util.IoUtils;
+import com.datalogics.pdf.samples.util.PageRange;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileFilter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Writer;
+import java.lang.invoke.MethodHandles;
+import java.net.URL;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A resident rendering worker, which renders a stream of jobs in one long-running process.
+ *
+ * <p>
+ * Running {@link RenderPdf} once per document pays every time for starting the JVM, setting up the license, loading
+ * the system fonts, and compiling the rasterizer's hot paths. A worker pays for these once: the fonts are loaded when
+ * it starts, and stay loaded, shared by every job, and the rasterizer gets faster as the JIT compiler warms up.
+ *
+ * <p>
+ * Jobs come either from lines of text, like the standard input, or from a spool directory. A job line is the path of a
+ * PDF, optionally followed by a tab and a page range, like "3-5". In a spool directory, every PDF file is a job for all
+ * of its pages. Clients should write a file under another name and rename it to end in ".pdf" when it's complete, so
+ * the worker never picks up a half-written document. The worker claims a spooled file by moving it into the
+ * "processing" subdirectory, under its job's name, and moves it on to "done" or "failed" when it's finished. No move
+ * ever replaces a file that's already there, so a PDF spooled again under the same name while the first one is still
+ * rendering is a new job, and doesn't disturb the first.
+ *
+ * <p>
+ * Up to a set number of jobs render at once. Jobs are numbered in the order they're queued, and each job is named
+ * after its number and the PDF, like "3-name.pdf", so that PDFs with the same name in different directories don't
+ * overwrite each other's pages. Each job writes its pages to the output directory as PNG and JPEG files named after
+ * the job, like "3-name.pdf.1.png", and adds a line to the {@link #TIMING_FILE} there: the job, the path of the PDF,
+ * its status, the page range, how long it waited to start and how long it took, in milliseconds, and the error if it
+ * failed.
+ *
+ * <p>
+ * Each job saves its pages through its own {@link PageOutputPipeline}, but all the jobs share one limit on the
+ * rendered pages they hold while those are being encoded, and the processors are divided among the jobs' encoding
+ * threads, so running more jobs at once doesn't multiply the memory and threads the worker uses.
+ */
+public class RenderWorker implements AutoCloseable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+
+    /**
+     * The name of the file of timing records, in the output directory. It's tab-separated, with a header line.
+     */
+    public static final String TIMING_FILE = "jobs.tsv";
+
+    /**
+     * The output directory used when the worker is run with no arguments, in the current directory.
+     */
+    public static final String DEFAULT_OUTPUT_DIRECTORY = "RenderWorker.output";
+
+    private static final int RESOLUTION = 300;
+    private static final String PROCESSING = "processing";
+    private static final String DONE = "done";
+    private static final String FAILED = "failed";
+    private static final String PDF_EXTENSION = ".pdf";
+    private static final long POLL_MILLIS = 1000;
+
+    private final File outputDirectory;
+    private final int resolution;
+    private final ExecutorService executor;
+    private final int encodeThreads;
+    private final Semaphore sharedPagesInFlight;
+    private final Object timingLock = new Object();
+    private final AtomicLong jobCount = new AtomicLong();
+    private volatile boolean stopped;
+
+    /**
+     * Create a worker. All its jobs together hold at most twice as many rendered pages waiting to be encoded as there
+     * are processors.
+     *
+     * @param outputDirectory the directory for the rendered pages and the timing records
+     * @param resolution the desired resolution in dpi
+     * @param maxConcurrentJobs the most jobs to render at once
+     * @throws IOException an I/O operation failed or was interrupted
+     */
+    public RenderWorker(final File outputDirectory, final int resolution, final int maxConcurrentJobs)
+                    throws IOException {
+        this(outputDirectory, resolution, maxConcurrentJobs, 2 * Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Create a worker, with a limit on the rendered pages all its jobs together hold while they're being encoded.
+     * Each job also holds the page it's rasterizing.
+     *
+     * @param outputDirectory the directory for the rendered pages and the timing records
+     * @param resolution the desired resolution in dpi
+     * @param maxConcurrentJobs the most jobs to render at once
+     * @param maxPagesInFlight the most rendered pages all the jobs together may hold while they're being encoded
+     * @throws IOException an I/O operation failed or was interrupted
+     */
+    public RenderWorker(final File outputDirectory, final int resolution, final int maxConcurrentJobs,
+                        final int maxPagesInFlight)
+                    throws IOException {
+        if (maxConcurrentJobs <= 0) {
+            throw new IllegalArgumentException("concurrent job count must be positive: " + maxConcurrentJobs);
+        }
+        if (maxPagesInFlight <= 0) {
+            throw new IllegalArgumentException("page count must be positive: " + maxPagesInFlight);
+        }
+        Files.createDirectories(outputDirectory.toPath());
+        this.outputDirectory = outputDirectory;
+        this.resolution = resolution;
+        executor = Executors.newFixedThreadPool(maxConcurrentJobs);
+        encodeThreads = Math.max(1, Runtime.getRuntime().availableProcessors() / maxConcurrentJobs);
+        sharedPagesInFlight = new Semaphore(maxPagesInFlight);
+    }
+
+    /**
+     * Main program.
+     *
+     * <p>
+     * The first argument is the output directory. With a second argument, the worker watches that spool directory
+     * until it's killed; otherwise it renders the jobs read from the standard input, and exits at its end. An optional
+     * third argument sets the number of jobs to render at once, which defaults to half the number of processors, since
+     * each job's pages are also encoded on other threads while it rasterizes the next. With no
+     * arguments at all, the worker renders the sample PDF into the {@link #DEFAULT_OUTPUT_DIRECTORY}, and exits.
+     *
+     * @param args command line arguments
+     * @throws Exception a general exception was thrown
+     */
+    public static void main(final String... args) throws Exception {
+        // If you are using an evaluation version of the product (License Managed, or LM), set the path to where
+        // PDFJT can find the license file.
+        //
+        // If you are not using an evaluation version of the product you can ignore or remove this code.
+        LicenseManager.setLicensePath(".");
+
+        // Load the system fonts now, once, rather than in the first job.
+        FontUtils.getSystemFontSet();
+
+        final int jobs = args.length > 2 ? Integer.parseInt(args[2])
+                                         : Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+        final File outputDirectory = new File(args.length > 0 ? args[0] : DEFAULT_OUTPUT_DIRECTORY);
+        try (RenderWorker worker = new RenderWorker(outputDirectory, RESOLUTION, jobs)) {
+            if (args.length < 1) {
+                final List<Future<Boolean>> sample = new ArrayList<>();
+                sample.add(worker.submit(RenderPdf.class.getResource(RenderPdf.DEFAULT_INPUT), PageRange.ALL));
+                if (awaitFailures(sample) > 0) {
+                    throw new IllegalStateException("The sample job failed; see " + TIMING_FILE);
+                }
+            } else if (args.length > 1) {
+                worker.watchSpool(new File(args[1]));
+            } else {
+                worker.processLines(new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8)));
+            }
+        }
+    }
+
+    /**
+     * Queue a job to render a range of pages of a PDF.
+     *
+     * @param inputUrl path to the PDF to render
+     * @param pages the pages to render
+     * @return the job, whose result is true if it succeeded
+     */
+    public Future<Boolean> submit(final URL inputUrl, final PageRange pages) {
+        return submit(jobCount.incrementAndGet(), null, inputUrl, pages, null);
+    }
+
+    /**
+     * Queue a job described by a line of text: the path of a PDF, optionally followed by a tab and a page range.
+     *
+     * @param line the job line
+     * @return the job, whose result is true if it succeeded
+     * @throws IOException an I/O operation failed or was interrupted
+     */
+    public Future<Boolean> submitLine(final String line) throws IOException {
+        final int tab = line.indexOf('\t');
+        final String path = (tab < 0 ? line : line.substring(0, tab)).trim();
+        final PageRange pages = tab < 0 ? PageRange.ALL : PageRange.parse(line.substring(tab + 1));
+        return submit(IoUtils.createUrlFromPath(path), pages);
+    }
+
+    /**
+     * Render the jobs read from lines of text, until the end of the text. Blank lines, and lines starting with '#',
+     * are skipped.
+     *
+     * @param reader the source of the job lines
+     * @return the number of jobs that failed
+     * @throws Exception a general exception was thrown
+     */
+    public int processLines(final BufferedReader reader) throws Exception {
+        final List<Future<Boolean>> jobs = new ArrayList<>();
+        String line;
+        while ((line = reader.readLine()) != null) {
+            if (!line.trim().isEmpty() && !line.startsWith("#")) {
+                jobs.add(submitLine(line));
+            }
+        }
+        return awaitFailures(jobs);
+    }
+
+    /**
+     * Render the PDFs that are in a spool directory now, and wait for them to finish.
+     *
+     * @param spoolDirectory the spool directory
+     * @return the number of jobs that failed
+     * @throws Exception a general exception was thrown
+     */
+    public int processSpool(final File spoolDirectory) throws Exception {
+        return awaitFailures(claimSpool(spoolDirectory));
+    }
+
+    /**
+     * Render the PDFs that arrive in a spool directory, until {@link #stop} is called or the thread is interrupted.
+     * Files left in the "processing" subdirectory by a worker that was killed are put back in the spool first, under
+     * their original names, unless a file of that name has been spooled since.
+     *
+     * @param spoolDirectory the spool directory
+     * @throws Exception a general exception was thrown
+     */
+    public void watchSpool(final File spoolDirectory) throws Exception {
+        final File processing = new File(spoolDirectory, PROCESSING);
+        final File[] abandoned = processing.listFiles();
+        if (abandoned != null) {
+            for (final File file : abandoned) {
+                recover(file, spoolDirectory);
+            }
+        }
+
+        final List<Future<Boolean>> jobs = new ArrayList<>();
+        try (WatchService watcher = FileSystems.getDefault().newWatchService()) {
+            // Register before the first scan, so that no file arriving in between is missed.
+            spoolDirectory.toPath().register(watcher, StandardWatchEventKinds.ENTRY_CREATE,
+                                             StandardWatchEventKinds.ENTRY_MODIFY);
+            jobs.addAll(claimSpool(spoolDirectory));
+            while (!stopped && !Thread.currentThread().isInterrupted()) {
+                final WatchKey key = watcher.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+                if (key != null) {
+                    // The events only say that something changed; scanning the directory finds every file, even if
+                    // events were lost.
+                    key.pollEvents();
+                    key.reset();
+                    jobs.addAll(claimSpool(spoolDirectory));
+                }
+                // Finished jobs have already recorded their outcome. Drop them, so that a worker that runs for a long
+                // time doesn't keep every job it has ever run.
+                removeFinished(jobs);
+            }
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        awaitFailures(jobs);
+    }
+
+    /**
+     * Make {@link #watchSpool} return, once the jobs it has started are finished.
+     */
+    public void stop() {
+        stopped = true;
+    }
+
+    /**
+     * Finish the queued jobs, and shut the worker down.
+     *
+     * @throws InterruptedException the thread was interrupted while waiting
+     */
+    @Override
+    public void close() throws InterruptedException {
+        executor.shutdown();
+        executor.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Claim the PDFs in the spool directory, and queue a job for each.
+     */
+    private List<Future<Boolean>> claimSpool(final File spoolDirectory) throws IOException {
+        final File[] spooled = spoolDirectory.listFiles(new FileFilter() {
+            @Override
+            public boolean accept(final File file) {
+                return file.isFile() && file.getName().toLowerCase(Locale.ROOT).endsWith(PDF_EXTENSION);
+            }
+        });
+        final List<Future<Boolean>> jobs = new ArrayList<>();
+        if (spooled == null) {
+            return jobs;
+        }
+        Arrays.sort(spooled);
+
+        final File processing = new File(spoolDirectory, PROCESSING);
+        Files.createDirectories(processing.toPath());
+        for (final File file : spooled) {
+            // Claim the file under its job's name, so that it can't replace a file of the same name that an earlier
+            // job is still rendering. The move doesn't replace an existing file, and since "processing" is in the
+            // spool directory, it's a rename.
+            final long jobNumber = jobCount.incrementAndGet();
+            final File claimed = new File(processing, jobNumber + "-" + file.getName());
+            try {
+                Files.move(file.toPath(), claimed.toPath());
+            } catch (final IOException e) {
+                // Another worker claimed it first, or the client took it back.
+                if (LOGGER.isDebugEnabled()) {
+                    LOGGER.debug("Could not claim " + file + ": " + e);
+                }
+                continue;
+            }
+            jobs.add(submit(jobNumber, file.getName(), claimed.toURI().toURL(), PageRange.ALL, spoolDirectory));
+        }
+        return jobs;
+    }
+
+    /**
+     * Put a file abandoned in the "processing" subdirectory back in the spool, under its original name if that's free,
+     * or else under its claimed name. If neither is free, it's left where it is.
+     */
+    private static void recover(final File file, final File spoolDirectory) throws IOException {
+        final String claimedName = file.getName();
+        final int dash = claimedName.indexOf('-');
+        final String[] names = { claimedName.substring(dash + 1), claimedName };
+        for (final String name : names) {
+            try {
+                Files.move(file.toPath(), new File(spoolDirectory, name).toPath());
+                return;
+            } catch (final FileAlreadyExistsException e) {
+                // A file of that name has been spooled since; try the next name.
+            }
+        }
+        if (LOGGER.isWarnEnabled()) {
+            LOGGER.warn("Could not put " + file + " back in the spool; a file of the same name is already there");
+        }
+    }
+
+    /**
+     * Queue a job. The job is named after its number and the file name, which is taken from the input URL if it's
+     * null. A spooled job's file is moved out of the "processing" subdirectory when it's finished, under its original
+     * name, or under the job's name if a file of that name is already there.
+     */
+    private Future<Boolean> submit(final long jobNumber, final String originalName, final URL inputUrl,
+                                   final PageRange pages, final File spoolDirectory) {
+        final long queued = System.nanoTime();
+        return executor.submit(new Callable<Boolean>() {
+            @Override
+            public Boolean call() throws Exception {
+                final long started = System.nanoTime();
+                final String path = filePath(inputUrl);
+                final String fileName = originalName != null ? originalName
+                                                             : path.substring(path.lastIndexOf('/') + 1);
+                final String name = jobNumber + "-" + fileName;
+                Throwable failure = null;
+                try {
+                    final URL outputBaseUrl = new File(outputDirectory, name).toURI().toURL();
+                    try (PageOutputPipeline pipeline = new PageOutputPipeline(outputBaseUrl, null, 1, encodeThreads,
+                                                                              sharedPagesInFlight)) {
+                        RenderPdf.renderPdf(inputUrl, resolution, pages, PageRasterOptions.DEFAULT_SIZING, pipeline);
+                    }
+                } catch (final Throwable t) {
+                    // Errors are recorded too, so that the file doesn't stay in "processing" with no record of the
+                    // job; they're rethrown once the job is recorded.
+                    failure = t;
+                    if (LOGGER.isWarnEnabled()) {
+                        LOGGER.warn("Job " + name + " failed", t);
+                    }
+                }
+                final long finished = System.nanoTime();
+
+                if (spoolDirectory != null) {
+                    final File destination = new File(spoolDirectory, failure == null ? DONE : FAILED);
+                    Files.createDirectories(destination.toPath());
+                    final File claimed = new File(inputUrl.toURI());
+                    try {
+                        Files.move(claimed.toPath(), new File(destination, fileName).toPath());
+                    } catch (final FileAlreadyExistsException e) {
+                        Files.move(claimed.toPath(), new File(destination, name).toPath());
+                    }
+                }
+                writeTimingRecord(name, path, failure == null ? null : failure.toString(), pages, started - queued,
+                                  finished - started);
+                if (failure instanceof Error) {
+                    throw (Error) failure;
+                }
+                return failure == null;
+            }
+        });
+    }
+
+    private void writeTimingRecord(final String name, final String path, final String error, final PageRange pages,
+                                   final long waitNanos, final long renderNanos)
+                    throws IOException {
+        final File timingFile = new File(outputDirectory, TIMING_FILE);
+        final String record = name + "\t" + path.replace('\t', ' ').replace('\n', ' ') + "\t"
+                              + (error == null ? "ok" : "failed") + "\t" + pages + "\t" + waitNanos / 1000000 + "\t"
+                              + renderNanos / 1000000 + "\t"
+                              + (error == null ? "" : error.replace('\t', ' ').replace('\n', ' ')) + "\n";
+        synchronized (timingLock) {
+            final boolean header = !timingFile.exists();
+            try (Writer writer = Files.newBufferedWriter(timingFile.toPath(), StandardCharsets.UTF_8,
+                                                         StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+                if (header) {
+                    writer.write("job\tinput\tstatus\tpages\twaitMillis\trenderMillis\terror\n");
+                }
+                writer.write(record);
+            }
+        }
+        if (LOGGER.isInfoEnabled()) {
+            LOGGER.info("Job " + name + " " + (error == null ? "done" : "failed") + " in " + renderNanos / 1000000
+                        + " ms, after waiting " + waitNanos / 1000000 + " ms");
+        }
+    }
+
+    /**
+     * Wait for jobs to finish, and count the ones that failed. A job that couldn't be finished, or recorded, counts as
+     * a failure, and the other jobs are still waited for.
+     */
+    private static int awaitFailures(final List<Future<Boolean>> jobs) throws InterruptedException {
+        int failures = 0;
+        for (final Future<Boolean> job : jobs) {
+            if (failed(job)) {
+                failures++;
+            }
+        }
+        return failures;
+    }
+
+    /**
+     * Drop the jobs that have finished, logging any that couldn't be finished or recorded.
+     */
+    private static void removeFinished(final List<Future<Boolean>> jobs) throws InterruptedException {
+        final Iterator<Future<Boolean>> iterator = jobs.iterator();
+        while (iterator.hasNext()) {
+            final Future<Boolean> job = iterator.next();
+            if (job.isDone()) {
+                failed(job);
+                iterator.remove();
+            }
+        }
+    }
+
+    private static boolean failed(final Future<Boolean> job) throws InterruptedException {
+        try {
+            return !job.get();
+        } catch (final ExecutionException e) {
+            if (LOGGER.isErrorEnabled()) {
+                LOGGER.error("A job could not be finished", e.getCause());
+            }
+            return true;
+        }
+    }
+
+    private static String filePath(final URL inputUrl) throws IOException {
+        return URLDecoder.decode(inputUrl.getPath(), "UTF-8");
+    }
+}
@@ -0,0 +1,129 @@
+/*
+ * Copyright 2015 Datalogics, Inc.
+ */
+
+package com.datalogics.pdf.samples.rendering;
+
+import com.adobe.pdfjt.core.cos.CosDictionary;
+import com.adobe.pdfjt.core.cos.CosObject;
+import com.adobe.pdfjt.core.fontset.PDFFontSet;
+import com.adobe.pdfjt.core.types.ASName;
+import com.adobe.pdfjt.core.types.ASRectangle;
+import com.adobe.pdfjt.pdf.document.PDFDocument;
+import com.adobe.pdfjt.pdf.page.PDFPage;
+import com.adobe.pdfjt.pdf.page.PDFPageTree;
+import com.adobe.pdfjt.services.rasterizer.PageRasterizer;
+import com.adobe.pdfjt.services.rasterizer.RasterizationOptions;
+
+import com.datalogics.pdf.samples.util.FontUtils;
+
+import java.awt.image.BufferedImage;
+
+/**
+ * Renders small previews of pages, sized to fit a box of pixels rather than at a resolution.
+ *
+ * <p>
+ * A thumbnail for a page list only needs to be a hundred or so pixels across. Rendering the page at print resolution
+ * and scaling it down costs as much as rendering it for print; this renderer instead rasterizes each page straight
+ * into an image of the thumbnail's size, which takes a small fraction of the time and memory. The resolution each page
+ * is rendered at follows from the budget: the page is scaled to fill as much of the box as it can without changing its
+ * shape. Pages are sized from their crop box as it's displayed, so a page rotated sideways makes a sideways thumbnail.
+ *
+ * <p>
+ * Annotations can be left out, which saves drawing their appearances, and often suits a preview of the page content.
+ * To leave them out, the page's annotations are taken off the page while it's rasterized, and put back afterwards. The
+ * document should be one that was opened for rendering and won't be saved.
+ */
+public class ThumbnailRenderer {
+
+    private static final double POINTS_PER_INCH = 72.0;
+    private static final ASName ANNOTS = ASName.create("Annots");
+
+    private final PDFPageTree pageTree;
+    private final PDFFontSet fontSet;
+    private final int maxWidth;
+    private final int maxHeight;
+    private final boolean includeAnnotations;
+
+    /**
+     * Create a thumbnail renderer for a document.
+     *
+     * @param document the document to render
+     * @param maxWidth the largest width of a thumbnail, in pixels
+     * @param maxHeight the largest height of a thumbnail, in pixels
+     * @param includeAnnotations whether to draw the pages' annotations
+     * @throws Exception a general exception was thrown
+     */
+    public ThumbnailRenderer(final PDFDocument document, final int maxWidth, final int maxHeight,
+                             final boolean includeAnnotations)
+                    throws Exception {
+        if (maxWidth <= 0 || maxHeight <= 0) {
+            throw new IllegalArgumentException("thumbnail size must be positive: " + maxWidth + "x" + maxHeight);
+        }
+        pageTree = document.requirePages();
+        fontSet = FontUtils.getDocFontSet(document);
+        this.maxWidth = maxWidth;
+        this.maxHeight = maxHeight;
+        this.includeAnnotations = includeAnnotations;
+    }
+
+    /**
+     * Get the resolution a page is rendered at to fit the thumbnail size.
+     *
+     * @param pageIndex the index of the page
+     * @return the resolution in dpi
+     * @throws Exception a general exception was thrown
+     */
+    public double getResolution(final int pageIndex) throws Exception {
+        final PDFPage page = pageTree.getPage(pageIndex);
+        return Math.min(maxWidth / displayedWidth(page), maxHeight / displayedHeight(page)) * POINTS_PER_INCH;
+    }
+
+    /**
+     * Render the thumbnail of a page.
+     *
+     * @param pageIndex the index of the page
+     * @return the image of the page, no larger than the thumbnail size
+     * @throws Exception a general exception was thrown
+     */
+    public BufferedImage renderPage(final int pageIndex) throws Exception {
+        final PDFPage page = pageTree.getPage(pageIndex);
+        final double pixelsPerPoint = getResolution(pageIndex) / POINTS_PER_INCH;
+        final int width = Math.max(1, Math.min(maxWidth, (int) Math.round(displayedWidth(page) * pixelsPerPoint)));
+        final int height = Math.max(1, Math.min(maxHeight, (int) Math.round(displayedHeight(page) * pixelsPerPoint)));
+
+        final RasterizationOptions options = new RasterizationOptions();
+        options.setFontSet(fontSet);
+        options.setWidth(width);
+        options.setHeight(height);
+
+        final CosDictionary pageDictionary = (CosDictionary) page.getCosObject();
+        final CosObject annotations = includeAnnotations ? null : pageDictionary.get(ANNOTS);
+        if (annotations != null) {
+            pageDictionary.remove(ANNOTS);
+        }
+        try {
+            return new PageRasterizer(pageTree, pageIndex, pageIndex, options).next();
+        } finally {
+            if (annotations != null) {
+                pageDictionary.put(ANNOTS, annotations);
+            }
+        }
+    }
+
+    /**
+     * Get the width of a page's crop box as it's displayed, after its rotation.
+     */
+    private static double displayedWidth(final PDFPage page) throws Exception {
+        final ASRectangle cropBox = page.getCropBox();
+        return PageRasterOptions.isSideways(page) ? cropBox.height() : cropBox.width();
+    }
+
+    /**
+     * Get the height of a page's crop box as it's displayed, after its rotation.
+     */
+    private static double displayedHeight(final PDFPage page) throws Exception {
+        final ASRectangle cropBox = page.getCropBox();
+        return PageRasterOptions.isSideways(page) ? cropBox.width() : cropBox.height();
+    }
+}
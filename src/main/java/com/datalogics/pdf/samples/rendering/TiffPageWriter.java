@@ -0,0 +1,338 @@
+/*
+ * Copyright 2015 Datalogics, Inc.
+ */
+
+package com.datalogics.pdf.samples.rendering;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.Raster;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+/**
+ * Writes rendered pages to a multi-page TIFF file, one page at a time.
+ *
+ * <p>
+ * Each page is appended to the file as soon as it's written: its image data is compressed a strip of rows at a time
+ * and written out, followed by the directory that describes the page, and the previous page's directory is then
+ * updated to point to it. Nothing of a page is kept once it's written, so a document of any length can be written
+ * while holding only the page being written in memory.
+ *
+ * <p>
+ * Pages are written as 1-bit black and white if they are {@link BufferedImage#TYPE_BYTE_BINARY} images, 8-bit gray if
+ * they are {@link BufferedImage#TYPE_BYTE_GRAY}, and 8-bit RGB otherwise, with any alpha channel dropped. Black and
+ * white pages are compressed with CCITT Group 4, as fax and archival systems expect; each strip is coded on its own,
+ * with a {@link Group4Encoder}. Gray and RGB pages are Deflate compressed, with the horizontal differencing predictor,
+ * which makes rendered pages compress much better.
+ *
+ * <p>
+ * This writes classic TIFF, which uses 32-bit file offsets, so a file is limited to 4 GB.
+ */
+public class TiffPageWriter implements AutoCloseable {
+
+    private static final int TARGET_STRIP_BYTES = 64 * 1024;
+    private static final long MAX_OFFSET = 0xffffffffL;
+
+    private static final short TYPE_SHORT = 3;
+    private static final short TYPE_LONG = 4;
+    private static final short TYPE_RATIONAL = 5;
+
+    private static final short TAG_NEW_SUBFILE_TYPE = 254;
+    private static final short TAG_IMAGE_WIDTH = 256;
+    private static final short TAG_IMAGE_LENGTH = 257;
+    private static final short TAG_BITS_PER_SAMPLE = 258;
+    private static final short TAG_COMPRESSION = 259;
+    private static final short TAG_PHOTOMETRIC_INTERPRETATION = 262;
+    private static final short TAG_STRIP_OFFSETS = 273;
+    private static final short TAG_SAMPLES_PER_PIXEL = 277;
+    private static final short TAG_ROWS_PER_STRIP = 278;
+    private static final short TAG_STRIP_BYTE_COUNTS = 279;
+    private static final short TAG_X_RESOLUTION = 282;
+    private static final short TAG_Y_RESOLUTION = 283;
+    private static final short TAG_RESOLUTION_UNIT = 296;
+    private static final short TAG_PREDICTOR = 317;
+
+    private static final int SUBFILE_PAGE = 2;
+    private static final int COMPRESSION_GROUP_4 = 4;
+    private static final int COMPRESSION_DEFLATE = 8;
+    private static final int PHOTOMETRIC_WHITE_IS_ZERO = 0;
+    private static final int PHOTOMETRIC_BLACK_IS_ZERO = 1;
+    private static final int PHOTOMETRIC_RGB = 2;
+    private static final int RESOLUTION_UNIT_INCH = 2;
+    private static final int PREDICTOR_HORIZONTAL = 2;
+
+    private final FileChannel channel;
+    private final Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION);
+    private long position;
+    private long nextDirectoryPointer;
+    private int pageCount;
+
+    /**
+     * Create a TIFF file to write pages to. An existing file is replaced.
+     *
+     * @param file the TIFF file
+     * @throws IOException an I/O operation failed or was interrupted
+     */
+    public TiffPageWriter(final File file) throws IOException {
+        channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                                   StandardOpenOption.TRUNCATE_EXISTING);
+        // The header: little-endian byte order, the TIFF magic number, and the offset of the first page's directory,
+        // which is filled in when the first page is written.
+        final ByteBuffer header = newBuffer(8);
+        header.put((byte) 'I').put((byte) 'I').putShort((short) 42).putInt(0);
+        write(header);
+        nextDirectoryPointer = 4;
+    }
+
+    /**
+     * Append a page to the file.
+     *
+     * @param page the image of the page
+     * @param resolution the resolution the page was rendered at, in dpi
+     * @throws IOException an I/O operation failed or was interrupted
+     */
+    public void writePage(final BufferedImage page, final int resolution) throws IOException {
+        final int width = page.getWidth();
+        final int height = page.getHeight();
+        final int type = page.getType();
+        final boolean bilevel = type == BufferedImage.TYPE_BYTE_BINARY && page.getColorModel().getPixelSize() == 1;
+        final int samplesPerPixel = bilevel || type == BufferedImage.TYPE_BYTE_GRAY ? 1 : 3;
+        final int rowBytes = bilevel ? (width + 7) / 8 : width * samplesPerPixel;
+        final int rowsPerStrip = Math.max(1, Math.min(height, TARGET_STRIP_BYTES / rowBytes));
+        final int stripCount = (height + rowsPerStrip - 1) / rowsPerStrip;
+
+        // Write the image data, a strip at a time.
+        final long[] stripOffsets = new long[stripCount];
+        final long[] stripByteCounts = new long[stripCount];
+        final byte[] row = new byte[rowBytes];
+        final int[] samples = new int[width];
+        final ByteArrayOutputStream strip = new ByteArrayOutputStream(rowsPerStrip * rowBytes);
+        final Group4Encoder group4 = bilevel ? new Group4Encoder(width) : null;
+        for (int stripIndex = 0; stripIndex < stripCount; stripIndex++) {
+            strip.reset();
+            final int firstRow = stripIndex * rowsPerStrip;
+            final int endRow = Math.min(height, firstRow + rowsPerStrip);
+            if (bilevel) {
+                group4.start(strip);
+                for (int y = firstRow; y < endRow; y++) {
+                    page.getRaster().getSamples(0, y, width, 1, 0, samples);
+                    group4.encodeRow(samples);
+                }
+                group4.finish();
+            } else {
+                deflater.reset();
+                final DeflaterOutputStream compressed = new DeflaterOutputStream(strip, deflater);
+                for (int y = firstRow; y < endRow; y++) {
+                    if (samplesPerPixel == 1) {
+                        packGrayRow(page.getRaster(), y, samples, row);
+                    } else {
+                        packRgbRow(page, y, samples, row);
+                    }
+                    compressed.write(row);
+                }
+                compressed.finish();
+            }
+            stripOffsets[stripIndex] = position;
+            stripByteCounts[stripIndex] = strip.size();
+            write(ByteBuffer.wrap(strip.toByteArray()));
+        }
+        if ((position & 1) != 0) {
+            // Directories must start on a word boundary.
+            write(ByteBuffer.wrap(new byte[1]));
+        }
+
+        // Write the directory, with the values that don't fit in an entry following it.
+        final List<Entry> entries = new ArrayList<>();
+        entries.add(new Entry(TAG_NEW_SUBFILE_TYPE, TYPE_LONG, SUBFILE_PAGE));
+        entries.add(new Entry(TAG_IMAGE_WIDTH, TYPE_LONG, width));
+        entries.add(new Entry(TAG_IMAGE_LENGTH, TYPE_LONG, height));
+        final long[] bitsPerSample = new long[samplesPerPixel];
+        for (int i = 0; i < samplesPerPixel; i++) {
+            bitsPerSample[i] = bilevel ? 1 : 8;
+        }
+        entries.add(new Entry(TAG_BITS_PER_SAMPLE, TYPE_SHORT, bitsPerSample));
+        entries.add(new Entry(TAG_COMPRESSION, TYPE_SHORT, bilevel ? COMPRESSION_GROUP_4 : COMPRESSION_DEFLATE));
+        // Group 4 codes black as 1, so black and white pages are WhiteIsZero; gray pages keep their samples.
+        final int photometric;
+        if (bilevel) {
+            photometric = PHOTOMETRIC_WHITE_IS_ZERO;
+        } else {
+            photometric = samplesPerPixel == 1 ? PHOTOMETRIC_BLACK_IS_ZERO : PHOTOMETRIC_RGB;
+        }
+        entries.add(new Entry(TAG_PHOTOMETRIC_INTERPRETATION, TYPE_SHORT, photometric));
+        entries.add(new Entry(TAG_STRIP_OFFSETS, TYPE_LONG, stripOffsets));
+        entries.add(new Entry(TAG_SAMPLES_PER_PIXEL, TYPE_SHORT, samplesPerPixel));
+        entries.add(new Entry(TAG_ROWS_PER_STRIP, TYPE_LONG, rowsPerStrip));
+        entries.add(new Entry(TAG_STRIP_BYTE_COUNTS, TYPE_LONG, stripByteCounts));
+        entries.add(new Entry(TAG_X_RESOLUTION, TYPE_RATIONAL, resolution, 1));
+        entries.add(new Entry(TAG_Y_RESOLUTION, TYPE_RATIONAL, resolution, 1));
+        entries.add(new Entry(TAG_RESOLUTION_UNIT, TYPE_SHORT, RESOLUTION_UNIT_INCH));
+        if (!bilevel) {
+            entries.add(new Entry(TAG_PREDICTOR, TYPE_SHORT, PREDICTOR_HORIZONTAL));
+        }
+
+        final long directoryOffset = position;
+        final int directorySize = 2 + entries.size() * 12 + 4;
+        int extraSize = 0;
+        for (final Entry entry : entries) {
+            extraSize += entry.extraSize();
+        }
+        final ByteBuffer directory = newBuffer(directorySize + extraSize);
+        directory.putShort((short) entries.size());
+        long extraOffset = directoryOffset + directorySize;
+        for (final Entry entry : entries) {
+            extraOffset = entry.putEntry(directory, extraOffset);
+        }
+        // The next directory offset; zero until another page is added.
+        directory.putInt(0);
+        for (final Entry entry : entries) {
+            entry.putExtra(directory);
+        }
+        checkOffset(position + directory.capacity());
+        write(directory);
+
+        // Link the new directory from the header or the previous page's directory.
+        final ByteBuffer link = newBuffer(4);
+        link.putInt((int) directoryOffset);
+        link.flip();
+        while (link.hasRemaining()) {
+            channel.write(link, nextDirectoryPointer + link.position());
+        }
+        nextDirectoryPointer = directoryOffset + directorySize - 4;
+        pageCount++;
+    }
+
+    /**
+     * Get the number of pages written so far.
+     *
+     * @return the number of pages
+     */
+    public int getPageCount() {
+        return pageCount;
+    }
+
+    /**
+     * Finish the file and close it.
+     *
+     * @throws IOException an I/O operation failed or was interrupted
+     */
+    @Override
+    public void close() throws IOException {
+        deflater.end();
+        channel.close();
+    }
+
+    private static void packGrayRow(final Raster raster, final int y, final int[] samples, final byte[] row) {
+        final int width = raster.getWidth();
+        raster.getSamples(0, y, width, 1, 0, samples);
+        // Store the difference from the pixel to the left, for the predictor.
+        int previous = 0;
+        for (int x = 0; x < width; x++) {
+            row[x] = (byte) (samples[x] - previous);
+            previous = samples[x];
+        }
+    }
+
+    private static void packRgbRow(final BufferedImage page, final int y, final int[] argb, final byte[] row) {
+        final int width = page.getWidth();
+        page.getRGB(0, y, width, 1, argb, 0, width);
+        // Store the difference of each sample from the same sample of the pixel to the left, for the predictor.
+        int previous = 0;
+        for (int x = 0, i = 0; x < width; x++, i += 3) {
+            final int pixel = argb[x];
+            row[i] = (byte) ((pixel >> 16) - (previous >> 16));
+            row[i + 1] = (byte) ((pixel >> 8) - (previous >> 8));
+            row[i + 2] = (byte) (pixel - previous);
+            previous = pixel;
+        }
+    }
+
+    private void write(final ByteBuffer buffer) throws IOException {
+        if (buffer.position() != 0) {
+            buffer.flip();
+        }
+        checkOffset(position + buffer.remaining());
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+    }
+
+    private static void checkOffset(final long offset) throws IOException {
+        if (offset > MAX_OFFSET) {
+            throw new IOException("TIFF file would be larger than 4 GB");
+        }
+    }
+
+    private static ByteBuffer newBuffer(final int size) {
+        return ByteBuffer.allocate(size).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    /**
+     * One entry of a page's directory. Values that don't fit in the entry's four bytes are written after the
+     * directory, and the entry holds their offset.
+     */
+    private static final class Entry {
+        private final short tag;
+        private final short type;
+        private final long[] values;
+
+        Entry(final short tag, final short type, final long... values) {
+            this.tag = tag;
+            this.type = type;
+            this.values = values;
+        }
+
+        private int valueSize() {
+            final int size = type == TYPE_SHORT ? 2 : 4;
+            // A rational is a pair of longs, so its values come two to a count.
+            return size * values.length;
+        }
+
+        private int count() {
+            return type == TYPE_RATIONAL ? values.length / 2 : values.length;
+        }
+
+        int extraSize() {
+            return valueSize() > 4 ? valueSize() : 0;
+        }
+
+        long putEntry(final ByteBuffer buffer, final long extraOffset) {
+            buffer.putShort(tag).putShort(type).putInt(count());
+            if (valueSize() > 4) {
+                buffer.putInt((int) extraOffset);
+                return extraOffset + valueSize();
+            }
+            final int start = buffer.position();
+            putValues(buffer);
+            while (buffer.position() < start + 4) {
+                buffer.put((byte) 0);
+            }
+            return extraOffset;
+        }
+
+        void putExtra(final ByteBuffer buffer) {
+            if (valueSize() > 4) {
+                putValues(buffer);
+            }
+        }
+
+        private void putValues(final ByteBuffer buffer) {
+            for (final long value : values) {
+                if (type == TYPE_SHORT) {
+                    buffer.putShort((short) value);
+                } else {
+                    buffer.putInt((int) value);
+                }
+            }
+        }
+    }
+}
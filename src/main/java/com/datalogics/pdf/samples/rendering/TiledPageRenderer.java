@@ -0,0 +1,151 @@
+/*
+ * Copyright 2015 Datalogics, Inc.
+ */
+
+package com.datalogics.pdf.samples.rendering;
+
+import com.adobe.pdfjt.core.fontset.PDFFontSet;
+import com.adobe.pdfjt.core.types.ASRectangle;
+import com.adobe.pdfjt.pdf.document.PDFDocument;
+import com.adobe.pdfjt.pdf.graphics.PDFRectangle;
+import com.adobe.pdfjt.pdf.page.PDFPage;
+import com.adobe.pdfjt.pdf.page.PDFPageTree;
+import com.adobe.pdfjt.services.rasterizer.PageRasterizer;
+import com.adobe.pdfjt.services.rasterizer.RasterizationOptions;
+
+import com.datalogics.pdf.samples.util.FontUtils;
+
+import java.awt.image.BufferedImage;
+
+/**
+ * Renders a page as a grid of fixed-size tiles, so that a page of any size can be rendered in bounded memory.
+ *
+ * <p>
+ * A large page at a high resolution, like an A0 drawing at 300 DPI, needs an image of hundreds of megabytes if it's
+ * rendered in one piece. This renderer instead renders one tile at a time: for each tile, it sets the page's crop box
+ * to the part of the page the tile covers, and rasterizes just that region at the tile's size. Each tile is handed to
+ * a {@link TileHandler} before the next one is rendered, so only one tile is in memory at a time.
+ *
+ * <p>
+ * The crop boxes of the pages are changed while rendering, and restored afterwards. The document should be one that
+ * was opened for rendering and won't be saved. Page rotation is not taken into account.
+ */
+public class TiledPageRenderer {
+
+    private static final double POINTS_PER_INCH = 72.0;
+
+    private final PDFDocument document;
+    private final PDFPageTree pageTree;
+    private final PDFFontSet fontSet;
+    private final int resolution;
+    private final int tileSize;
+
+    /**
+     * Receives the rendered tiles of a page.
+     */
+    public interface TileHandler {
+        /**
+         * Handle one rendered tile. Tiles are handed over row by row, from the top left of the page.
+         *
+         * @param pageNumber the page number, starting at 1
+         * @param row the row of the tile, starting at 0 at the top of the page
+         * @param column the column of the tile, starting at 0 at the left of the page
+         * @param tile the image of the tile; tiles at the right and bottom edges of the page may be smaller than the
+         *        tile size
+         * @throws Exception a general exception was thrown
+         */
+        void handleTile(int pageNumber, int row, int column, BufferedImage tile) throws Exception;
+    }
+
+    /**
+     * Create a tiled renderer for a document.
+     *
+     * @param document the document to render
+     * @param resolution the desired resolution in dpi
+     * @param tileSize the width and height of the tiles, in pixels
+     * @throws Exception a general exception was thrown
+     */
+    public TiledPageRenderer(final PDFDocument document, final int resolution, final int tileSize)
+                    throws Exception {
+        if (resolution <= 0) {
+            throw new IllegalArgumentException("resolution must be positive: " + resolution);
+        }
+        if (tileSize <= 0) {
+            throw new IllegalArgumentException("tile size must be positive: " + tileSize);
+        }
+        this.document = document;
+        pageTree = document.requirePages();
+        fontSet = FontUtils.getDocFontSet(document);
+        this.resolution = resolution;
+        this.tileSize = tileSize;
+    }
+
+    /**
+     * Get the width of a page at the renderer's resolution.
+     *
+     * @param pageIndex the index of the page
+     * @return the width in pixels
+     * @throws Exception a general exception was thrown
+     */
+    public int getPageWidth(final int pageIndex) throws Exception {
+        return toPixels(pageTree.getPage(pageIndex).getCropBox().width());
+    }
+
+    /**
+     * Get the height of a page at the renderer's resolution.
+     *
+     * @param pageIndex the index of the page
+     * @return the height in pixels
+     * @throws Exception a general exception was thrown
+     */
+    public int getPageHeight(final int pageIndex) throws Exception {
+        return toPixels(pageTree.getPage(pageIndex).getCropBox().height());
+    }
+
+    /**
+     * Render a page tile by tile.
+     *
+     * @param pageIndex the index of the page
+     * @param handler the handler for the tiles
+     * @throws Exception a general exception was thrown
+     */
+    public void renderPage(final int pageIndex, final TileHandler handler) throws Exception {
+        final PDFPage page = pageTree.getPage(pageIndex);
+        final ASRectangle cropBox = page.getCropBox();
+        final int pageWidth = toPixels(cropBox.width());
+        final int pageHeight = toPixels(cropBox.height());
+        final double pointsPerPixel = POINTS_PER_INCH / resolution;
+
+        try {
+            for (int row = 0, y = 0; y < pageHeight; row++, y += tileSize) {
+                final int height = Math.min(tileSize, pageHeight - y);
+                // Pixel rows count down from the top of the page; PDF coordinates count up from the bottom.
+                final double top = cropBox.top() - y * pointsPerPixel;
+                final double bottom = top - height * pointsPerPixel;
+
+                for (int column = 0, x = 0; x < pageWidth; column++, x += tileSize) {
+                    final int width = Math.min(tileSize, pageWidth - x);
+                    final double left = cropBox.left() + x * pointsPerPixel;
+                    final double right = left + width * pointsPerPixel;
+
+                    page.setCropBox(PDFRectangle.newInstance(document, new ASRectangle(left, bottom, right, top)));
+                    handler.handleTile(pageIndex + 1, row, column, rasterize(pageIndex, width, height));
+                }
+            }
+        } finally {
+            page.setCropBox(PDFRectangle.newInstance(document, cropBox));
+        }
+    }
+
+    private BufferedImage rasterize(final int pageIndex, final int width, final int height) throws Exception {
+        final RasterizationOptions options = new RasterizationOptions();
+        options.setFontSet(fontSet);
+        options.setWidth(width);
+        options.setHeight(height);
+        return new PageRasterizer(pageTree, pageIndex, pageIndex, options).next();
+    }
+
+    private int toPixels(final double points) {
+        return (int) Math.ceil(points / POINTS_PER_INCH * resolution);
+    }
+}
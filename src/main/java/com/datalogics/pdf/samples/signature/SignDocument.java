@@ -4,7 +4,6 @@
 
 package com.datalogics.pdf.samples.signature;
 
-import com.adobe.internal.io.ByteWriter;
 import com.adobe.pdfjt.core.credentials.CredentialFactory;
 import com.adobe.pdfjt.core.credentials.Credentials;
 import com.adobe.pdfjt.core.credentials.PrivateKeyHolder;
@@ -28,8 +27,9 @@ import com.adobe.pdfjt.services.digsig.SignatureOptions;
 import com.adobe.pdfjt.services.digsig.UserInfo;
 import com.adobe.pdfjt.services.imageconversion.ImageManager;
 
-import com.datalogics.pdf.document.FontSetLoader;
+import com.datalogics.pdf.samples.util.AtomicFileByteWriter;
 import com.datalogics.pdf.samples.util.DocumentUtils;
+import com.datalogics.pdf.samples.util.FontUtils;
 import com.datalogics.pdf.samples.util.IoUtils;
 
 import org.apache.commons.io.IOUtils;
@@ -131,8 +131,8 @@ public final class SignDocument {
     public static void signExistingSignatureFields(final URL inputUrl, final URL outputUrl) throws Exception {
         PDFDocument pdfDoc = null;
         try {
-            // Attach font set to PDF
-            final PDFFontSet fontSet = FontSetLoader.newInstance().getFontSet();
+            // Attach a private copy of the system font set to the PDF, since fonts can be added to it
+            final PDFFontSet fontSet = FontUtils.newSystemFontSetCopy();
             final PDFOpenOptions openOptions = PDFOpenOptions.newInstance();
             openOptions.setFontSet(fontSet);
 
@@ -171,14 +171,14 @@ public final class SignDocument {
         final String qualifiedName = "Fully Qualified Name: " + sigField.getQualifiedName();
         LOGGER.info(qualifiedName);
 
-        ByteWriter byteWriter = null;
+        AtomicFileByteWriter byteWriter = null;
         try {
             final Credentials credentials = createCredentials();
             // Must be permitted to sign doc and field must be visible.
             if (sigField.isSigningPermitted()) {
                 if (sigField.isVisible()) {
                     // Create output file to hold the signed PDF data.
-                    byteWriter = IoUtils.newByteWriter(outputUrl);
+                    byteWriter = IoUtils.newAtomicByteWriter(outputUrl);
 
                     // Set up the appearance of the signature
                     final SignatureOptions signatureOptions = SignatureOptions.newInstance();
@@ -207,6 +207,7 @@ public final class SignDocument {
 
                     // Sign the document.
                     sigMgr.sign(sigField, signatureOptions, credentials, byteWriter);
+                    byteWriter.commit();
                 } else {
                     throw new PDFIOException("Signature field is not visible");
                 }
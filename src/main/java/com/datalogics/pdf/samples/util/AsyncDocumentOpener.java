@@ -0,0 +1,232 @@
+/*
+ * Copyright 2015 Datalogics, Inc.
+ */
+
+package com.datalogics.pdf.samples.util;
+
+import com.adobe.pdfjt.core.exceptions.PDFException;
+import com.adobe.pdfjt.pdf.document.PDFDocument;
+import com.adobe.pdfjt.pdf.document.PDFOpenOptions;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.invoke.MethodHandles;
+import java.net.URL;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Opens documents on a dedicated pool of I/O threads, so that threads doing CPU work never wait for slow storage.
+ *
+ * <p>
+ * Opening a document reads its trailer and cross-reference table, which on network file systems can take a long time.
+ * An opener runs those opens on its own fixed number of threads; that number limits how many opens are in progress at
+ * once, independently of however many threads process the documents once they are open.
+ *
+ * <p>
+ * Each open returns a {@link CompletableFuture}. Cancelling the future before the open starts skips it. Cancelling
+ * can't interrupt an open that is already running: the I/O thread stays busy until the open finishes, and then closes
+ * the document, so cancelled opens never leak documents. A future that has already completed can't be cancelled;
+ * callers own the documents they get from completed futures and must close them.
+ */
+public class AsyncDocumentOpener implements AutoCloseable {
+    private static final Logger LOGGER = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+
+    private static final AtomicInteger POOL_NUMBER = new AtomicInteger();
+
+    private final ExecutorService executor;
+
+    /**
+     * Create an opener that runs up to the given number of opens at once.
+     *
+     * @param maxConcurrentOpens the number of I/O threads, and so the most opens in progress at once
+     */
+    public AsyncDocumentOpener(final int maxConcurrentOpens) {
+        if (maxConcurrentOpens <= 0) {
+            throw new IllegalArgumentException("maximum concurrent opens must be positive: " + maxConcurrentOpens);
+        }
+        executor = new ThreadPoolExecutor(maxConcurrentOpens, maxConcurrentOpens, 0L, TimeUnit.MILLISECONDS,
+                                          new LinkedBlockingQueue<Runnable>(),
+                                          new IoThreadFactory(POOL_NUMBER.incrementAndGet()));
+    }
+
+    /**
+     * Open a document in the background.
+     *
+     * @param inputUrl The URL to a PDF file to open
+     * @return a future for the open document
+     */
+    public CompletableFuture<PDFDocument> open(final URL inputUrl) {
+        return open(inputUrl, PDFOpenOptions.newInstance());
+    }
+
+    /**
+     * Open a document in the background, with the given options.
+     *
+     * <p>
+     * If the open fails, the future completes exceptionally with the exception or error that stopped it.
+     *
+     * @param inputUrl The URL to a PDF file to open
+     * @param pdfOpenOptions Options used to open a PDF document
+     * @return a future for the open document
+     */
+    public CompletableFuture<PDFDocument> open(final URL inputUrl, final PDFOpenOptions pdfOpenOptions) {
+        if (inputUrl == null) {
+            throw new IllegalArgumentException("input URL can not be null.");
+        }
+        final CompletableFuture<PDFDocument> future = new CompletableFuture<>();
+        try {
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    if (future.isDone()) {
+                        // Cancelled before it started.
+                        return;
+                    }
+                    final PDFDocument document;
+                    try {
+                        document = DocumentUtils.openPdfDocumentWithOptions(inputUrl, pdfOpenOptions);
+                    } catch (final Throwable t) {
+                        // Complete the future even for an Error, so the caller isn't left waiting forever.
+                        future.completeExceptionally(t);
+                        if (t instanceof Error) {
+                            throw (Error) t;
+                        }
+                        return;
+                    }
+                    if (!future.complete(document)) {
+                        // Cancelled while it was opening; nobody will get this document.
+                        closeQuietly(document, "document " + inputUrl);
+                    }
+                }
+            });
+        } catch (final RejectedExecutionException e) {
+            future.completeExceptionally(e);
+        }
+        return future;
+    }
+
+    /**
+     * Open a sequence of documents, keeping a given number of opens in progress ahead of the caller.
+     *
+     * <p>
+     * The returned iterator yields one future per input, in order. When it's created, it starts opening the first
+     * {@code ahead} inputs, and each time the caller takes a future, it starts opening the next input, so that the
+     * next documents are usually open by the time the caller gets to them. Only that many documents are ever opened
+     * ahead, no matter how many inputs there are.
+     *
+     * <p>
+     * A caller that stops early should cancel the futures it hasn't taken with {@link PrefetchIterator#cancel()}.
+     *
+     * @param inputUrls the URLs of the PDF files to open
+     * @param ahead the number of documents to open ahead of the caller
+     * @return an iterator over futures for the open documents
+     */
+    public PrefetchIterator openAhead(final Iterable<URL> inputUrls, final int ahead) {
+        if (ahead <= 0) {
+            throw new IllegalArgumentException("prefetch depth must be positive: " + ahead);
+        }
+        return new PrefetchIterator(inputUrls.iterator(), ahead);
+    }
+
+    /**
+     * Stop accepting opens, and let the opens already submitted finish. Documents from futures that are never
+     * collected are not closed by this method.
+     */
+    @Override
+    public void close() {
+        executor.shutdown();
+    }
+
+    private static void closeQuietly(final PDFDocument document, final String description) {
+        try {
+            document.close();
+        } catch (final PDFException e) {
+            if (LOGGER.isWarnEnabled()) {
+                LOGGER.warn("Error closing cancelled " + description, e);
+            }
+        }
+    }
+
+    /**
+     * An iterator over futures for documents that are opened ahead of the caller.
+     */
+    public final class PrefetchIterator implements Iterator<CompletableFuture<PDFDocument>> {
+        private final Iterator<URL> inputs;
+        private final Queue<CompletableFuture<PDFDocument>> inFlight = new ArrayDeque<>();
+
+        private PrefetchIterator(final Iterator<URL> inputs, final int ahead) {
+            this.inputs = inputs;
+            for (int i = 0; i < ahead && inputs.hasNext(); i++) {
+                inFlight.add(open(inputs.next()));
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return !inFlight.isEmpty();
+        }
+
+        @Override
+        public CompletableFuture<PDFDocument> next() {
+            final CompletableFuture<PDFDocument> future = inFlight.poll();
+            if (future == null) {
+                throw new NoSuchElementException();
+            }
+            if (inputs.hasNext()) {
+                inFlight.add(open(inputs.next()));
+            }
+            return future;
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException("remove");
+        }
+
+        /**
+         * Cancel the opens that haven't been taken from the iterator. Documents that were already opened for them are
+         * closed now; opens that are still running are closed when they finish.
+         */
+        public void cancel() {
+            CompletableFuture<PDFDocument> future;
+            while ((future = inFlight.poll()) != null) {
+                if (!future.cancel(false) && !future.isCompletedExceptionally()) {
+                    // Already open; close it, since the caller will never see it.
+                    closeQuietly(future.getNow(null), "prefetched document");
+                }
+            }
+        }
+    }
+
+    /**
+     * Makes named daemon threads, so that idle I/O threads don't keep the process alive.
+     */
+    private static class IoThreadFactory implements ThreadFactory {
+        private final int poolNumber;
+        private final AtomicInteger threadNumber = new AtomicInteger();
+
+        IoThreadFactory(final int poolNumber) {
+            this.poolNumber = poolNumber;
+        }
+
+        @Override
+        public Thread newThread(final Runnable runnable) {
+            final Thread thread = new Thread(runnable,
+                                             "pdf-open-" + poolNumber + "-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
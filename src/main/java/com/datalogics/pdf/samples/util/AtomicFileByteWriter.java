@@ -0,0 +1,130 @@
+/*
+ * Copyright 2015 Datalogics, Inc.
+ */
+
+package com.datalogics.pdf.samples.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * A {@link FileChannelByteWriter} that writes to a temporary file next to its target, and only replaces the target
+ * when the output is committed.
+ *
+ * <p>
+ * Call {@link #commit()} once the output is complete, and then close the writer to publish it. If the writer is closed
+ * without being committed, for example because saving the document failed, the temporary file is deleted and the
+ * target is left untouched.
+ */
+public class AtomicFileByteWriter extends FileChannelByteWriter {
+
+    private final File tempFile;
+    private final File target;
+    private final OutputCommitter committer;
+    private boolean committed;
+    private boolean closed;
+
+    /**
+     * Create a writer that will publish its output to the target file through the given committer.
+     *
+     * <p>
+     * If the writer can't be opened, the temporary file created for it is deleted again.
+     *
+     * @param target the final location of the output
+     * @param committer the committer that publishes the output
+     * @return the writer
+     * @throws IOException an I/O operation failed or was interrupted
+     */
+    public static AtomicFileByteWriter newInstance(final File target, final OutputCommitter committer)
+                    throws IOException {
+        final File tempFile = newTempFile(target);
+        boolean opened = false;
+        try {
+            final AtomicFileByteWriter writer = new AtomicFileByteWriter(tempFile, target, committer);
+            opened = true;
+            return writer;
+        } finally {
+            if (!opened) {
+                Files.deleteIfExists(tempFile.toPath());
+            }
+        }
+    }
+
+    private AtomicFileByteWriter(final File tempFile, final File target, final OutputCommitter committer)
+                    throws IOException {
+        super(tempFile);
+        this.tempFile = tempFile;
+        this.target = target;
+        this.committer = committer;
+    }
+
+    /**
+     * Mark the output as complete. It is published under the target name when the writer is closed.
+     *
+     * <p>
+     * The writer stays open, because a document that has been saved may continue to read from it until it is closed.
+     *
+     * @throws IOException an I/O operation failed or was interrupted
+     */
+    public void commit() throws IOException {
+        flush();
+        committed = true;
+    }
+
+    /**
+     * Close the writer. If the output was committed, it is handed to the committer to be published; otherwise, it is
+     * discarded.
+     *
+     * @throws IOException an I/O operation failed or was interrupted
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+
+        boolean published = false;
+        try {
+            super.close();
+            if (committed) {
+                committer.commit(tempFile, target);
+                published = true;
+            }
+        } finally {
+            if (!published) {
+                Files.deleteIfExists(tempFile.toPath());
+            }
+        }
+    }
+
+    /**
+     * Create a hidden temporary file in the same directory as the target, so that it can be renamed over the target
+     * atomically.
+     *
+     * <p>
+     * The file is created with the default permissions, rather than with {@link Files#createTempFile}, which would
+     * make the published file readable only by its owner.
+     *
+     * @param target the final location of the output
+     * @return the temporary file
+     * @throws IOException an I/O operation failed or was interrupted
+     */
+    private static File newTempFile(final File target) throws IOException {
+        final File directory = target.getAbsoluteFile().getParentFile();
+        while (true) {
+            final String suffix = Long.toHexString(ThreadLocalRandom.current().nextLong());
+            final File tempFile = new File(directory, "." + target.getName() + "." + suffix + ".tmp");
+            try {
+                Files.createFile(tempFile.toPath());
+                return tempFile;
+            } catch (final FileAlreadyExistsException e) {
+                // Try another name.
+                continue;
+            }
+        }
+    }
+}
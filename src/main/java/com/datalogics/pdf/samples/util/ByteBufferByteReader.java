@@ -0,0 +1,73 @@
+/*
+ * Copyright 2015 Datalogics, Inc.
+ */
+
+package com.datalogics.pdf.samples.util;
+
+import com.adobe.internal.io.ByteReader;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * A {@link ByteReader} over the contents of a {@link ByteBuffer}, which may be a heap or a direct buffer.
+ *
+ * <p>
+ * The bytes between the buffer's position and its limit are read. The buffer is not copied, and its position and
+ * limit are not changed, so the same buffer can back several readers.
+ */
+public class ByteBufferByteReader implements ByteReader {
+
+    private ByteBuffer buffer;
+
+    /**
+     * Create a reader over the remaining bytes of a buffer.
+     *
+     * @param buffer the buffer to read
+     */
+    public ByteBufferByteReader(final ByteBuffer buffer) {
+        if (buffer == null) {
+            throw new IllegalArgumentException("buffer can not be null.");
+        }
+        this.buffer = buffer.slice();
+    }
+
+    @Override
+    public int read(final long position) throws IOException {
+        ensureOpen();
+        if (position < 0 || position >= buffer.limit()) {
+            return ByteReader.EOF;
+        }
+        return buffer.get((int) position) & 0xff;
+    }
+
+    @Override
+    public int read(final long position, final byte[] bytes, final int offset, final int count) throws IOException {
+        ensureOpen();
+        if (position < 0 || position >= buffer.limit()) {
+            return ByteReader.EOF;
+        }
+        final int total = (int) Math.min(count, buffer.limit() - position);
+        final ByteBuffer source = buffer.duplicate();
+        source.position((int) position);
+        source.get(bytes, offset, total);
+        return total;
+    }
+
+    @Override
+    public long length() throws IOException {
+        ensureOpen();
+        return buffer.limit();
+    }
+
+    @Override
+    public void close() throws IOException {
+        buffer = null;
+    }
+
+    private void ensureOpen() throws IOException {
+        if (buffer == null) {
+            throw new IOException("ByteBufferByteReader is closed");
+        }
+    }
+}
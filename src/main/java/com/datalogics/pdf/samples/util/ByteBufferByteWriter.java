@@ -0,0 +1,159 @@
+/*
+ * Copyright 2015 Datalogics, Inc.
+ */
+
+package com.datalogics.pdf.samples.util;
+
+import com.adobe.internal.io.ByteReader;
+import com.adobe.internal.io.ByteWriter;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * A {@link ByteWriter} that writes into a growable {@link ByteBuffer} in memory.
+ *
+ * <p>
+ * When writing is done, {@link #toByteBuffer()} returns a read-only view of the written bytes, without copying them.
+ * Giving a good estimate of the output size avoids copying when the buffer grows.
+ */
+public class ByteBufferByteWriter implements ByteWriter {
+
+    /**
+     * The default initial capacity: 64 KB.
+     */
+    public static final int DEFAULT_INITIAL_CAPACITY = 64 * 1024;
+
+    private static final int MAX_CAPACITY = Integer.MAX_VALUE - 8;
+
+    private final boolean direct;
+    private ByteBuffer buffer;
+    private int length;
+    private boolean closed;
+
+    /**
+     * Create a writer backed by a heap buffer of the default initial capacity.
+     */
+    public ByteBufferByteWriter() {
+        this(DEFAULT_INITIAL_CAPACITY, false);
+    }
+
+    /**
+     * Create a writer with the given initial capacity.
+     *
+     * @param initialCapacity the initial capacity of the buffer, in bytes
+     * @param direct true to use a direct buffer, false to use a heap buffer
+     */
+    public ByteBufferByteWriter(final int initialCapacity, final boolean direct) {
+        if (initialCapacity < 0) {
+            throw new IllegalArgumentException("initial capacity can not be negative: " + initialCapacity);
+        }
+        this.direct = direct;
+        buffer = allocate(initialCapacity);
+    }
+
+    @Override
+    public void write(final long position, final int value) throws IOException {
+        ensureOpen();
+        ensureCapacity(position, 1);
+        buffer.put((int) position, (byte) value);
+        length = Math.max(length, (int) position + 1);
+    }
+
+    @Override
+    public void write(final long position, final byte[] bytes, final int offset, final int count)
+                    throws IOException {
+        ensureOpen();
+        ensureCapacity(position, count);
+        final ByteBuffer target = buffer.duplicate();
+        target.position((int) position);
+        target.put(bytes, offset, count);
+        length = Math.max(length, (int) position + count);
+    }
+
+    @Override
+    public int read(final long position) throws IOException {
+        ensureOpen();
+        if (position < 0 || position >= length) {
+            return ByteReader.EOF;
+        }
+        return buffer.get((int) position) & 0xff;
+    }
+
+    @Override
+    public int read(final long position, final byte[] bytes, final int offset, final int count) throws IOException {
+        ensureOpen();
+        if (position < 0 || position >= length) {
+            return ByteReader.EOF;
+        }
+        final int total = (int) Math.min(count, length - position);
+        final ByteBuffer source = buffer.duplicate();
+        source.position((int) position);
+        source.get(bytes, offset, total);
+        return total;
+    }
+
+    @Override
+    public long length() throws IOException {
+        ensureOpen();
+        return length;
+    }
+
+    @Override
+    public void flush() throws IOException {
+        ensureOpen();
+    }
+
+    /**
+     * Close the writer. The bytes written remain available from {@link #toByteBuffer()}.
+     */
+    @Override
+    public void close() {
+        closed = true;
+    }
+
+    /**
+     * Get the bytes written so far, as a read-only buffer positioned at 0 with its limit at the end of the written
+     * bytes. The buffer shares its contents with the writer; it is not a copy.
+     *
+     * @return the written bytes
+     */
+    public ByteBuffer toByteBuffer() {
+        final ByteBuffer result = buffer.asReadOnlyBuffer();
+        result.position(0);
+        result.limit(length);
+        return result.slice();
+    }
+
+    private void ensureCapacity(final long position, final int count) throws IOException {
+        if (position < 0) {
+            throw new IOException("negative write position: " + position);
+        }
+        final long required = position + count;
+        if (required > MAX_CAPACITY) {
+            throw new IOException("output is too large for an in-memory buffer: " + required + " bytes");
+        }
+        if (required <= buffer.capacity()) {
+            return;
+        }
+
+        final long doubled = Math.max((long) buffer.capacity() * 2, required);
+        final ByteBuffer grown = allocate((int) Math.min(doubled, MAX_CAPACITY));
+        final ByteBuffer source = buffer.duplicate();
+        source.position(0);
+        source.limit(length);
+        grown.put(source);
+        grown.clear();
+        buffer = grown;
+    }
+
+    private ByteBuffer allocate(final int capacity) {
+        return direct ? ByteBuffer.allocateDirect(capacity) : ByteBuffer.allocate(capacity);
+    }
+
+    private void ensureOpen() throws IOException {
+        if (closed) {
+            throw new IOException("ByteBufferByteWriter is closed");
+        }
+    }
+}
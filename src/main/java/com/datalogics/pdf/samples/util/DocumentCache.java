@@ -0,0 +1,352 @@
+/*
+ * Copyright 2015 Datalogics, Inc.
+ */
+
+package com.datalogics.pdf.samples.util;
+
+import com.adobe.pdfjt.core.exceptions.PDFException;
+import com.adobe.pdfjt.core.exceptions.PDFIOException;
+import com.adobe.pdfjt.core.exceptions.PDFInvalidDocumentException;
+import com.adobe.pdfjt.core.exceptions.PDFSecurityException;
+import com.adobe.pdfjt.pdf.document.PDFDocument;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A bounded cache of open, read-only documents, for templates and reference documents that are opened over and over.
+ *
+ * <p>
+ * Documents are keyed by their canonical path. A cached document is only reused while the file's size and
+ * modification time are unchanged; otherwise it is reopened. The cache is bounded by the total size of the cached
+ * files, and evicts the least recently used documents first, closing them.
+ *
+ * <p>
+ * Documents are opened with {@link DocumentUtils#openPdfDocument(java.net.URL)}, which reads the file as a stream; they
+ * aren't memory-mapped. What successive leases share is the parsed document itself, not a mapping of the file, and
+ * the cache's weight is a stand-in for the memory that document takes.
+ *
+ * <p>
+ * A {@link PDFDocument} is not safe to use from several threads at once, so documents are handed out as a
+ * {@link Lease}. Leases are exclusive: a lease gives its holder sole use of the document until it's closed, and other
+ * callers asking for the same document wait until then. Threads that read the same document at the same time
+ * therefore take turns; if they need it concurrently, open a document of their own for each instead. A thread may
+ * hold only one lease on a document at a time; asking for a second one throws {@link IllegalStateException}, rather
+ * than handing out the same document twice. A lease must be closed by the thread that took it. Holders must not
+ * modify or close the document itself. A document that is evicted while leased is closed when its lease is returned.
+ */
+public class DocumentCache implements AutoCloseable {
+    private static final Logger LOGGER = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+
+    private final long maxWeight;
+    private final Map<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long weight;
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    /**
+     * Create a cache that holds documents up to a total file size.
+     *
+     * @param maxWeight the maximum total size, in bytes, of the files of the cached documents
+     */
+    public DocumentCache(final long maxWeight) {
+        if (maxWeight <= 0) {
+            throw new IllegalArgumentException("maximum weight must be positive: " + maxWeight);
+        }
+        this.maxWeight = maxWeight;
+    }
+
+    /**
+     * Lease a document from the cache, opening it if it isn't cached or the file has changed.
+     *
+     * <p>
+     * The lease must be closed, by the same thread, when the caller is done with the document. If another thread
+     * holds a lease on the document, this waits for it to be returned.
+     *
+     * @param file the PDF file
+     * @return a lease on the open document
+     * @throws PDFInvalidDocumentException a general problem with the PDF document, which may now be in an invalid state
+     * @throws PDFIOException there was an error reading or writing a PDF file or temporary caches
+     * @throws PDFSecurityException some general security issue occurred during the processing of the request
+     * @throws IOException an I/O operation failed or was interrupted
+     * @throws IllegalStateException this thread already holds a lease on the document
+     */
+    public Lease lease(final File file)
+                    throws PDFInvalidDocumentException, PDFIOException, PDFSecurityException, IOException {
+        final File canonicalFile = file.getCanonicalFile();
+        final String key = canonicalFile.getPath();
+
+        while (true) {
+            final Entry entry;
+            Entry stale = null;
+            synchronized (this) {
+                final Entry cached = entries.get(key);
+                if (cached != null && cached.lock.isHeldByCurrentThread()) {
+                    throw new IllegalStateException("document is already leased by this thread: " + key);
+                }
+                if (cached != null && cached.matches(canonicalFile)) {
+                    hits++;
+                    entry = cached;
+                } else {
+                    if (cached != null) {
+                        // The file changed underneath us; drop the stale document.
+                        unlink(key, cached);
+                        stale = cached;
+                    }
+                    misses++;
+                    entry = new Entry(canonicalFile);
+                    entries.put(key, entry);
+                    weight += entry.weight;
+                }
+            }
+            if (stale != null) {
+                retire(stale);
+            }
+
+            entry.lock.lock();
+            boolean leased = false;
+            try {
+                if (entry.isEvicted()) {
+                    // Evicted while we waited. Whoever evicted it couldn't close it while it was leased, so close it
+                    // now, and look again.
+                    entry.closeDocument();
+                    continue;
+                }
+                if (entry.document == null) {
+                    try {
+                        entry.document = DocumentUtils.openPdfDocument(canonicalFile.toURI().toURL());
+                    } catch (PDFInvalidDocumentException | PDFIOException | PDFSecurityException | IOException
+                             | RuntimeException e) {
+                        synchronized (this) {
+                            unlink(key, entry);
+                        }
+                        throw e;
+                    }
+                }
+                leased = true;
+                return new Lease(entry);
+            } finally {
+                if (!leased) {
+                    entry.lock.unlock();
+                }
+                final List<Entry> evicted;
+                synchronized (this) {
+                    evicted = evictToFit();
+                }
+                for (final Entry evictedEntry : evicted) {
+                    retire(evictedEntry);
+                }
+            }
+        }
+    }
+
+    /**
+     * Remove every document from the cache, closing those that aren't leased. Leased documents are closed when their
+     * leases are returned.
+     */
+    @Override
+    public void close() {
+        final List<Entry> removed;
+        synchronized (this) {
+            removed = new ArrayList<>(entries.values());
+            for (final Entry entry : removed) {
+                entry.evicted = true;
+            }
+            entries.clear();
+            weight = 0;
+        }
+        for (final Entry entry : removed) {
+            retire(entry);
+        }
+    }
+
+    /**
+     * Get the number of leases served from an already open document.
+     *
+     * @return the number of cache hits
+     */
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    /**
+     * Get the number of leases that had to open the document.
+     *
+     * @return the number of cache misses
+     */
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    /**
+     * Get the fraction of leases served from an already open document.
+     *
+     * @return the hit rate, from 0 to 1
+     */
+    public synchronized double getHitRate() {
+        final long total = hits + misses;
+        return total == 0 ? 0 : (double) hits / total;
+    }
+
+    /**
+     * Get the number of documents evicted to keep the cache within its size.
+     *
+     * @return the number of evictions
+     */
+    public synchronized long getEvictions() {
+        return evictions;
+    }
+
+    /**
+     * Get the total size of the files of the cached documents.
+     *
+     * @return the weight of the cache, in bytes
+     */
+    public synchronized long getWeight() {
+        return weight;
+    }
+
+    /**
+     * Evict least recently used documents until the cache is within its size. A single document larger than the
+     * whole cache is still kept, so that it can be used. Called while holding the cache's monitor; the evicted entries
+     * are returned to be retired after it's released.
+     *
+     * @return the evicted entries
+     */
+    private List<Entry> evictToFit() {
+        final List<Entry> evicted = new ArrayList<>();
+        final Iterator<Map.Entry<String, Entry>> iterator = entries.entrySet().iterator();
+        while (weight > maxWeight && entries.size() > 1 && iterator.hasNext()) {
+            final Entry entry = iterator.next().getValue();
+            iterator.remove();
+            weight -= entry.weight;
+            entry.evicted = true;
+            evictions++;
+            evicted.add(entry);
+        }
+        return evicted;
+    }
+
+    /**
+     * Take an entry out of the cache, and mark it as evicted. Called while holding the cache's monitor.
+     */
+    private void unlink(final String key, final Entry entry) {
+        if (entries.get(key) == entry) {
+            entries.remove(key);
+            weight -= entry.weight;
+        }
+        entry.evicted = true;
+    }
+
+    /**
+     * Close the document of an entry that's no longer in the cache, if nobody holds it. Closing a document can take a
+     * while, so this is called after releasing the cache's monitor, so that it doesn't hold up other callers.
+     *
+     * @param entry the evicted entry
+     */
+    private static void retire(final Entry entry) {
+        // A lock held by this thread means this thread has it leased; the lease will close it. A lock held by another
+        // thread is closed by that thread, when it sees the entry was evicted.
+        if (!entry.lock.isHeldByCurrentThread() && entry.lock.tryLock()) {
+            try {
+                entry.closeDocument();
+            } finally {
+                entry.lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Exclusive use of a cached document. Close the lease to return the document to the cache.
+     */
+    public static final class Lease implements AutoCloseable {
+        private Entry entry;
+
+        private Lease(final Entry entry) {
+            this.entry = entry;
+        }
+
+        /**
+         * Get the leased document. It must not be modified or closed.
+         *
+         * @return the document
+         */
+        public PDFDocument getDocument() {
+            if (entry == null) {
+                throw new IllegalStateException("lease has been returned");
+            }
+            return entry.document;
+        }
+
+        /**
+         * Return the document to the cache. If it was evicted while leased, it is closed now.
+         *
+         * @throws IllegalMonitorStateException the lease is closed by a thread other than the one that took it
+         */
+        @Override
+        public void close() {
+            if (entry == null) {
+                return;
+            }
+            final Entry returned = entry;
+            entry = null;
+            returned.lock.unlock();
+            // Check for eviction only after unlocking: an eviction that happened before then either is seen here, or
+            // found the lock free and closed the document itself.
+            if (returned.isEvicted()) {
+                retire(returned);
+            }
+        }
+    }
+
+    /**
+     * A cached document, and the state of its file when it was opened.
+     */
+    private static final class Entry {
+        private final ReentrantLock lock = new ReentrantLock();
+        private final long length;
+        private final long lastModified;
+        private final long weight;
+        private volatile boolean evicted;
+        private PDFDocument document;
+
+        Entry(final File file) {
+            length = file.length();
+            lastModified = file.lastModified();
+            weight = Math.max(length, 1);
+        }
+
+        boolean matches(final File file) {
+            return file.length() == length && file.lastModified() == lastModified;
+        }
+
+        boolean isEvicted() {
+            return evicted;
+        }
+
+        void closeDocument() {
+            if (document == null) {
+                return;
+            }
+            try {
+                document.close();
+            } catch (final PDFException e) {
+                if (LOGGER.isWarnEnabled()) {
+                    LOGGER.warn("Error closing cached document", e);
+                }
+            }
+            document = null;
+        }
+    }
+}
@@ -15,12 +15,12 @@ import com.adobe.pdfjt.core.exceptions.PDFSecurityException;
 import com.adobe.pdfjt.core.fontset.PDFFontSet;
 import com.adobe.pdfjt.pdf.document.PDFDocument;
 import com.adobe.pdfjt.pdf.document.PDFOpenOptions;
+import com.adobe.pdfjt.pdf.document.PDFSaveFullOptions;
 import com.adobe.pdfjt.pdf.graphics.xobject.PDFXObjectForm;
 import com.adobe.pdfjt.pdf.page.PDFPage;
 import com.adobe.pdfjt.services.fontresources.PDFFontSetUtil;
 import com.adobe.pdfjt.services.pdfParser.ContentStreamParser;
 import com.adobe.pdfjt.services.rasterizer.RasterizationOptions;
-import com.adobe.pdfjt.services.rasterizer.impl.DefaultCallBackHandler;
 import com.adobe.pdfjt.services.rasterizer.impl.RasterContentItem;
 import com.adobe.pdfjt.services.rasterizer.impl.RasterDisplayArea;
 import com.adobe.pdfjt.services.rasterizer.impl.RasterDocument;
@@ -28,10 +28,13 @@ import com.adobe.pdfjt.services.rasterizer.impl.RasterGraphicsState;
 import com.adobe.pdfjt.services.rasterizer.impl.RasterTextState;
 
 import org.apache.commons.collections4.IteratorUtils;
+import org.apache.commons.collections4.Predicate;
 
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.URL;
+import java.nio.ByteBuffer;
+import java.util.Iterator;
 import java.util.List;
 
 /**
@@ -39,6 +42,12 @@ import java.util.List;
  */
 public final class DocumentUtils {
 
+    /**
+     * Whether the content stream parser processes annotations: the default from the rasterization options, which is
+     * all the parser needs from them.
+     */
+    private static final boolean PROCESS_ANNOTATIONS = new RasterizationOptions().processAnnotations();
+
     /**
      * This is a utility class, and won't be instantiated.
      */
@@ -102,14 +111,190 @@ public final class DocumentUtils {
         ByteReader reader = null;
         PDFDocument document = null;
 
-        @SuppressWarnings("PMD.CloseResource")  // inputStream becomes owned by document
-        final InputStream inputStream = inputUrl.openStream();
-        reader = new InputStreamByteReader(inputStream);
-        document = PDFDocument.newInstance(reader, pdfOpenOptions);
+        // The reader becomes owned by the document.
+        reader = IoUtils.newByteReader(inputUrl);
+        document = openPdfDocumentWithReader(reader, pdfOpenOptions);
 
         return document;
     }
 
+    /**
+     * Open a local PDF file by memory-mapping it, rather than reading it as a stream.
+     *
+     * <p>
+     * Mapping saves copying a large file onto the heap, but the mapping lasts until it's garbage collected, after the
+     * document is closed. The file must not be truncated or rewritten in place until then; see
+     * {@link IoUtils#newMappedByteReader(URL)}.
+     *
+     * @param inputUrl The URL of a local PDF file
+     * @param pdfOpenOptions Options used to open a PDF document
+     * @return A new PDFDocument instance of the input document
+     * @throws PDFInvalidDocumentException a general problem with the PDF document, which may now be in an invalid
+     *     state
+     * @throws PDFIOException there was an error reading or writing a PDF file or temporary caches
+     * @throws PDFSecurityException some general security issue occurred during the processing of the request
+     * @throws IOException an I/O operation failed or was interrupted
+     */
+    public static PDFDocument openMappedPdfDocument(final URL inputUrl, final PDFOpenOptions pdfOpenOptions)
+                    throws IOException, PDFInvalidDocumentException, PDFIOException, PDFSecurityException {
+        return openPdfDocumentWithReader(IoUtils.newMappedByteReader(inputUrl), pdfOpenOptions);
+    }
+
+    /**
+     * Open a PDF document from bytes in memory.
+     *
+     * @param input the contents of a PDF file
+     * @return A new PDFDocument instance of the input document
+     * @throws PDFInvalidDocumentException a general problem with the PDF document, which may now be in an invalid
+     *     state
+     * @throws PDFIOException there was an error reading or writing a PDF file or temporary caches
+     * @throws PDFSecurityException some general security issue occurred during the processing of the request
+     * @throws IOException an I/O operation failed or was interrupted
+     */
+    public static PDFDocument openPdfDocument(final byte[] input)
+                    throws IOException, PDFInvalidDocumentException, PDFIOException, PDFSecurityException {
+        if (input == null) {
+            throw new IllegalArgumentException("input can not be null.");
+        }
+        return openPdfDocumentWithOptions(ByteBuffer.wrap(input), PDFOpenOptions.newInstance());
+    }
+
+    /**
+     * Open a PDF document from a buffer in memory.
+     *
+     * @param input a heap or direct buffer holding the contents of a PDF file between its position and limit
+     * @return A new PDFDocument instance of the input document
+     * @throws PDFInvalidDocumentException a general problem with the PDF document, which may now be in an invalid
+     *     state
+     * @throws PDFIOException there was an error reading or writing a PDF file or temporary caches
+     * @throws PDFSecurityException some general security issue occurred during the processing of the request
+     * @throws IOException an I/O operation failed or was interrupted
+     */
+    public static PDFDocument openPdfDocument(final ByteBuffer input)
+                    throws IOException, PDFInvalidDocumentException, PDFIOException, PDFSecurityException {
+        return openPdfDocumentWithOptions(input, PDFOpenOptions.newInstance());
+    }
+
+    /**
+     * Open a PDF document from a buffer in memory.
+     *
+     * <p>
+     * The buffer is read in place, not copied, so its contents must not change while the document is open. Its
+     * position and limit are left alone.
+     *
+     * @param input a heap or direct buffer holding the contents of a PDF file between its position and limit
+     * @param pdfOpenOptions Options used to open a PDF document
+     * @return A new PDFDocument instance of the input document
+     * @throws PDFInvalidDocumentException a general problem with the PDF document, which may now be in an invalid
+     *     state
+     * @throws PDFIOException there was an error reading or writing a PDF file or temporary caches
+     * @throws PDFSecurityException some general security issue occurred during the processing of the request
+     * @throws IOException an I/O operation failed or was interrupted
+     */
+    public static PDFDocument openPdfDocumentWithOptions(final ByteBuffer input, final PDFOpenOptions pdfOpenOptions)
+                    throws IOException, PDFInvalidDocumentException, PDFIOException, PDFSecurityException {
+        return openPdfDocumentWithReader(new ByteBufferByteReader(input), pdfOpenOptions);
+    }
+
+    /**
+     * Open a PDF document from a reader, which becomes owned by the document. If the document can't be opened, the
+     * reader is closed.
+     *
+     * @param reader the reader for the contents of a PDF file
+     * @param pdfOpenOptions Options used to open a PDF document
+     * @return A new PDFDocument instance of the input document
+     * @throws PDFInvalidDocumentException a general problem with the PDF document, which may now be in an invalid
+     *     state
+     * @throws PDFIOException there was an error reading or writing a PDF file or temporary caches
+     * @throws PDFSecurityException some general security issue occurred during the processing of the request
+     * @throws IOException an I/O operation failed or was interrupted
+     */
+    private static PDFDocument openPdfDocumentWithReader(final ByteReader reader, final PDFOpenOptions pdfOpenOptions)
+                    throws IOException, PDFInvalidDocumentException, PDFIOException, PDFSecurityException {
+        try {
+            return PDFDocument.newInstance(reader, pdfOpenOptions);
+        } catch (PDFInvalidDocumentException | PDFIOException | PDFSecurityException | RuntimeException e) {
+            reader.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Save a document with full save options, and close it.
+     *
+     * <p>
+     * The document is written to a temporary file next to the output, and renamed over the output only once it has
+     * been saved completely, so readers of the output never see a partially written file. If saving fails, the output
+     * is left untouched.
+     *
+     * @param document the document to save
+     * @param outputUrl the URL of the output file
+     * @throws PDFInvalidDocumentException a general problem with the PDF document, which may now be in an invalid
+     *     state
+     * @throws PDFIOException there was an error reading or writing a PDF file or temporary caches
+     * @throws PDFSecurityException some general security issue occurred during the processing of the request
+     */
+    public static void saveFullAndClose(final PDFDocument document, final URL outputUrl)
+                    throws PDFInvalidDocumentException, PDFIOException, PDFSecurityException {
+        try {
+            final AtomicFileByteWriter writer = IoUtils.newAtomicByteWriter(outputUrl);
+            try {
+                document.save(writer, PDFSaveFullOptions.newInstance());
+                writer.commit();
+            } finally {
+                // If the document wasn't committed, this discards the partial output.
+                writer.close();
+            }
+        } catch (final IOException e) {
+            throw new PDFIOException(e);
+        } finally {
+            document.close();
+        }
+    }
+
+    /**
+     * Save a document with full save options into memory, and close it.
+     *
+     * @param document the document to save
+     * @return a read-only buffer holding the saved PDF file, positioned at its start
+     * @throws PDFInvalidDocumentException a general problem with the PDF document, which may now be in an invalid
+     *     state
+     * @throws PDFIOException there was an error reading or writing a PDF file or temporary caches
+     * @throws PDFSecurityException some general security issue occurred during the processing of the request
+     */
+    public static ByteBuffer saveFullToBuffer(final PDFDocument document)
+                    throws PDFInvalidDocumentException, PDFIOException, PDFSecurityException {
+        return saveFullToBuffer(document, ByteBufferByteWriter.DEFAULT_INITIAL_CAPACITY);
+    }
+
+    /**
+     * Save a document with full save options into memory, and close it.
+     *
+     * <p>
+     * The document is saved into a heap buffer that starts at the estimated size and grows as needed; the result is a
+     * view of that buffer, not a copy. A good estimate, such as the size of the input document, avoids copying as the
+     * buffer grows.
+     *
+     * @param document the document to save
+     * @param estimatedSize the expected size of the saved document in bytes
+     * @return a read-only buffer holding the saved PDF file, positioned at its start
+     * @throws PDFInvalidDocumentException a general problem with the PDF document, which may now be in an invalid
+     *     state
+     * @throws PDFIOException there was an error reading or writing a PDF file or temporary caches
+     * @throws PDFSecurityException some general security issue occurred during the processing of the request
+     */
+    public static ByteBuffer saveFullToBuffer(final PDFDocument document, final int estimatedSize)
+                    throws PDFInvalidDocumentException, PDFIOException, PDFSecurityException {
+        final ByteBufferByteWriter writer = new ByteBufferByteWriter(estimatedSize, false);
+        try {
+            document.save(writer, PDFSaveFullOptions.newInstance());
+        } finally {
+            document.close();
+            writer.close();
+        }
+        return writer.toByteBuffer();
+    }
+
     /**
      * Get a working {@link PDFFontSet} for the document.
      *
@@ -150,15 +335,43 @@ public final class DocumentUtils {
                                                               final PDFFontSet pdfFontSet)
                     throws PDFInvalidDocumentException, PDFIOException, PDFSecurityException, IOException,
                     PDFInvalidParameterException, PDFFontException, PDFConfigurationException {
+        // Display area's content items don't have a way to get a size, or access to the internal list, so
+        // use the iterator to make a manageable list.
+        return IteratorUtils.toList(iterateFormContentItems(page, form, pdfFontSet));
+    }
+
+    /**
+     * Parse the given form and return an iterator over its content items.
+     *
+     * <p>
+     * Unlike {@link #getFormContentItems(PDFPage, PDFXObjectForm, PDFFontSet)}, this doesn't copy the content items
+     * into a list of their own, so callers that look at each item once, or only at some of them, don't pay for a
+     * second collection of every item on a dense form.
+     *
+     * @param page a page to use for parsing context (for optional content, etc.)
+     * @param form the form to obtain the contents of
+     * @param pdfFontSet the font set to use; if this is null, then the font set will be obtained with
+     *        {@link DocumentUtils#getDocumentFontSet(PDFDocument)}
+     * @return an iterator over the content items
+     * @throws PDFInvalidDocumentException a general problem with the PDF document, which may now be in an invalid state
+     * @throws PDFIOException there was an error reading or writing a PDF file or temporary caches
+     * @throws PDFSecurityException some general security issue occurred during the processing of the request
+     * @throws IOException an I/O operation failed or was interrupted
+     * @throws PDFInvalidParameterException one or more of the parameters passed to a method is invalid
+     * @throws PDFFontException there was an error in the font set or an individual font
+     * @throws PDFConfigurationException there was a system problem configuring PDF support
+     */
+    public static Iterator<RasterContentItem> iterateFormContentItems(final PDFPage page, final PDFXObjectForm form,
+                                                                      final PDFFontSet pdfFontSet)
+                    throws PDFInvalidDocumentException, PDFIOException, PDFSecurityException, IOException,
+                    PDFInvalidParameterException, PDFFontException, PDFConfigurationException {
         if (page == null) {
             throw new PDFInvalidParameterException("PDF page can not be null.");
         }
         if (form == null) {
             throw new PDFInvalidParameterException("form can not be null.");
         }
-        final RasterizationOptions rasterOptions = new RasterizationOptions();
         final RasterDocument rasterDocument = new RasterDocument();
-        rasterOptions.registerCallBackManager(new DefaultCallBackHandler());
 
         final PDFFontSet fontSet = pdfFontSet == null ? getDocumentFontSet(form.getPDFDocument()) : pdfFontSet;
 
@@ -168,15 +381,52 @@ public final class DocumentUtils {
                 rasterDocument,
                 fontSet,
                 null,
-                rasterOptions.processAnnotations(),
+                PROCESS_ANNOTATIONS,
                 null,
                 false);
         //@formatter:on
 
         final RasterDisplayArea displayArea = csParser.processObjectsInXObjectForm(page, form);
+        return displayArea.getContentItems().iterator();
+    }
 
-        // Display area's content items don't have a way to get a size, or access to the internal list, so
-        // use the iterator to make a manageable list.
-        return IteratorUtils.toList(displayArea.getContentItems().iterator());
+    /**
+     * Parse the given form and return the first content item that matches a predicate.
+     *
+     * <p>
+     * The content items are examined in content stream order, and the first one that matches is returned. The parser
+     * has no way to stop early, so the whole form is still parsed first; what this saves is copying every item into a
+     * list, as {@link #getFormContentItems(PDFPage, PDFXObjectForm, PDFFontSet)} does.
+     *
+     * @param page a page to use for parsing context (for optional content, etc.)
+     * @param form the form to obtain the contents of
+     * @param pdfFontSet the font set to use; if this is null, then the font set will be obtained with
+     *        {@link DocumentUtils#getDocumentFontSet(PDFDocument)}
+     * @param predicate the predicate to match
+     * @return the first matching content item, or null if there is none
+     * @throws PDFInvalidDocumentException a general problem with the PDF document, which may now be in an invalid state
+     * @throws PDFIOException there was an error reading or writing a PDF file or temporary caches
+     * @throws PDFSecurityException some general security issue occurred during the processing of the request
+     * @throws IOException an I/O operation failed or was interrupted
+     * @throws PDFInvalidParameterException one or more of the parameters passed to a method is invalid
+     * @throws PDFFontException there was an error in the font set or an individual font
+     * @throws PDFConfigurationException there was a system problem configuring PDF support
+     */
+    public static RasterContentItem findFormContentItem(final PDFPage page, final PDFXObjectForm form,
+                                                        final PDFFontSet pdfFontSet,
+                                                        final Predicate<? super RasterContentItem> predicate)
+                    throws PDFInvalidDocumentException, PDFIOException, PDFSecurityException, IOException,
+                    PDFInvalidParameterException, PDFFontException, PDFConfigurationException {
+        if (predicate == null) {
+            throw new PDFInvalidParameterException("predicate can not be null.");
+        }
+        final Iterator<RasterContentItem> items = iterateFormContentItems(page, form, pdfFontSet);
+        while (items.hasNext()) {
+            final RasterContentItem item = items.next();
+            if (predicate.evaluate(item)) {
+                return item;
+            }
+        }
+        return null;
     }
 }
@@ -0,0 +1,257 @@
+/*
+ * Copyright 2015 Datalogics, Inc.
+ */
+
+package com.datalogics.pdf.samples.util;
+
+import com.adobe.internal.io.ByteReader;
+import com.adobe.internal.io.ByteWriter;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Queue;
+import java.util.concurrent.ArrayBlockingQueue;
+
+/**
+ * A {@link ByteWriter} that writes to a file through a {@link FileChannel}, collecting small writes in a direct buffer.
+ *
+ * <p>
+ * The PDF serializer writes a document as a long run of small, sequential writes, and then goes back to patch a few
+ * earlier positions (for example, offsets in the cross-reference table). This writer keeps a window of the most
+ * recently written bytes in a buffer, and only writes to the channel when the window is full, when a write falls
+ * outside of it, or when the writer is flushed. Writes that land entirely before the window are written to the
+ * channel directly, without disturbing the buffer.
+ *
+ * <p>
+ * Buffers of the default size are kept in a small pool when a writer is closed, and reused by the next writer. The
+ * pool holds at most {@link #MAX_POOLED_BUFFERS} buffers; buffers released when it's full are left to the garbage
+ * collector.
+ */
+public class FileChannelByteWriter implements ByteWriter {
+
+    /**
+     * The default size of the write buffer: 1 MB.
+     */
+    public static final int DEFAULT_BUFFER_SIZE = 1 << 20;
+
+    /**
+     * The most buffers kept in the pool for reuse.
+     */
+    public static final int MAX_POOLED_BUFFERS = 4;
+
+    private static final Queue<ByteBuffer> BUFFER_POOL = new ArrayBlockingQueue<>(MAX_POOLED_BUFFERS);
+
+    private final RandomAccessFile file;
+    private final FileChannel channel;
+    private ByteBuffer buffer;
+    private long bufferStart;
+    private long length;
+
+    /**
+     * Create a writer for a file.
+     *
+     * @param file the file to write; any existing contents are discarded
+     * @throws IOException an I/O operation failed or was interrupted
+     */
+    public FileChannelByteWriter(final File file) throws IOException {
+        this(file, DEFAULT_BUFFER_SIZE);
+    }
+
+    /**
+     * Create a writer for a file, with the given buffer size.
+     *
+     * @param file the file to write; any existing contents are discarded
+     * @param bufferSize the size of the write buffer in bytes
+     * @throws IOException an I/O operation failed or was interrupted
+     */
+    public FileChannelByteWriter(final File file, final int bufferSize) throws IOException {
+        if (bufferSize <= 0) {
+            throw new IllegalArgumentException("buffer size must be positive: " + bufferSize);
+        }
+        this.file = new RandomAccessFile(file, "rw");
+        channel = this.file.getChannel();
+        try {
+            channel.truncate(0);
+        } catch (final IOException e) {
+            this.file.close();
+            throw e;
+        }
+        buffer = acquireBuffer(bufferSize);
+    }
+
+    @Override
+    public void write(final long position, final int value) throws IOException {
+        ensureOpen();
+        if (buffer.position() == 0) {
+            bufferStart = position;
+        }
+        final long offset = position - bufferStart;
+        if (offset >= 0 && offset <= buffer.position() && offset < buffer.capacity()) {
+            buffer.put((int) offset, (byte) value);
+            if (offset == buffer.position()) {
+                buffer.position((int) offset + 1);
+            }
+        } else {
+            write(position, new byte[] { (byte) value }, 0, 1);
+            return;
+        }
+        length = Math.max(length, position + 1);
+    }
+
+    @Override
+    public void write(final long position, final byte[] bytes, final int offset, final int count)
+                    throws IOException {
+        ensureOpen();
+        if (count <= 0) {
+            return;
+        }
+        if (buffer.position() == 0) {
+            bufferStart = position;
+        }
+
+        final long bufferEnd = bufferStart + buffer.position();
+        if (position >= bufferStart && position <= bufferEnd && position + count - bufferStart <= buffer.capacity()) {
+            // The write extends or patches the buffered window.
+            putInBuffer(position, bytes, offset, count);
+        } else if (position + count <= bufferStart) {
+            // The write patches bytes that were already written to the file; leave the buffer alone.
+            writeToChannel(position, bytes, offset, count);
+        } else {
+            // Start a new window at this position.
+            flushBuffer();
+            if (count <= buffer.capacity()) {
+                bufferStart = position;
+                putInBuffer(position, bytes, offset, count);
+            } else {
+                writeToChannel(position, bytes, offset, count);
+            }
+        }
+        length = Math.max(length, position + count);
+    }
+
+    @Override
+    public int read(final long position) throws IOException {
+        ensureOpen();
+        if (position < 0 || position >= length) {
+            return ByteReader.EOF;
+        }
+        final long offset = position - bufferStart;
+        if (offset >= 0 && offset < buffer.position()) {
+            return buffer.get((int) offset) & 0xff;
+        }
+        final ByteBuffer single = ByteBuffer.allocate(1);
+        if (channel.read(single, position) <= 0) {
+            return ByteReader.EOF;
+        }
+        return single.get(0) & 0xff;
+    }
+
+    @Override
+    public int read(final long position, final byte[] bytes, final int offset, final int count) throws IOException {
+        ensureOpen();
+        if (position < 0 || position >= length) {
+            return ByteReader.EOF;
+        }
+        final int total = (int) Math.min(count, length - position);
+
+        // Reads that overlap the buffered window see the buffered bytes once they are on the channel.
+        if (position < bufferStart + buffer.position() && position + total > bufferStart) {
+            flushBuffer();
+        }
+
+        final ByteBuffer target = ByteBuffer.wrap(bytes, offset, total);
+        long current = position;
+        while (target.hasRemaining()) {
+            final int read = channel.read(target, current);
+            if (read < 0) {
+                break;
+            }
+            current += read;
+        }
+        return target.position() - offset;
+    }
+
+    @Override
+    public long length() throws IOException {
+        ensureOpen();
+        return length;
+    }
+
+    @Override
+    public void flush() throws IOException {
+        ensureOpen();
+        flushBuffer();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (buffer == null) {
+            return;
+        }
+        try {
+            flushBuffer();
+        } finally {
+            releaseBuffer(buffer);
+            buffer = null;
+            file.close();
+        }
+    }
+
+    private void putInBuffer(final long position, final byte[] bytes, final int offset, final int count) {
+        final int bufferOffset = (int) (position - bufferStart);
+        final ByteBuffer window = buffer.duplicate();
+        window.position(bufferOffset);
+        window.put(bytes, offset, count);
+        if (window.position() > buffer.position()) {
+            buffer.position(window.position());
+        }
+    }
+
+    private void writeToChannel(final long position, final byte[] bytes, final int offset, final int count)
+                    throws IOException {
+        final ByteBuffer source = ByteBuffer.wrap(bytes, offset, count);
+        long current = position;
+        while (source.hasRemaining()) {
+            current += channel.write(source, current);
+        }
+    }
+
+    private void flushBuffer() throws IOException {
+        if (buffer.position() == 0) {
+            return;
+        }
+        buffer.flip();
+        long current = bufferStart;
+        while (buffer.hasRemaining()) {
+            current += channel.write(buffer, current);
+        }
+        buffer.clear();
+        bufferStart = current;
+    }
+
+    private void ensureOpen() throws IOException {
+        if (buffer == null) {
+            throw new IOException("FileChannelByteWriter is closed");
+        }
+    }
+
+    private static ByteBuffer acquireBuffer(final int bufferSize) {
+        if (bufferSize == DEFAULT_BUFFER_SIZE) {
+            final ByteBuffer pooled = BUFFER_POOL.poll();
+            if (pooled != null) {
+                return pooled;
+            }
+        }
+        return ByteBuffer.allocateDirect(bufferSize);
+    }
+
+    private static void releaseBuffer(final ByteBuffer released) {
+        if (released.capacity() == DEFAULT_BUFFER_SIZE) {
+            released.clear();
+            BUFFER_POOL.offer(released);
+        }
+    }
+}
@@ -0,0 +1,359 @@
+/*
+ * Copyright 2015 Datalogics, Inc.
+ */
+
+package com.datalogics.pdf.samples.util;
+
+import com.adobe.pdfjt.core.fontset.PDFFontSet;
+
+import com.datalogics.pdf.document.FontSetLoader;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.invoke.MethodHandles;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * Sets up a persistent cache of the system font set, so that a new process doesn't have to scan the system fonts.
+ *
+ * <p>
+ * Scanning the fonts installed on the system can take seconds, and {@link FontUtils#getSystemFontSet()} does it the
+ * first time it's called in every process. The toolkit's {@link FontSetLoader} can save the font set it builds to a
+ * file and load it from there instead; this class arranges for that. Create one with the location of the cache, and
+ * call {@link #load()} at startup, before anything else asks for fonts.
+ *
+ * <p>
+ * Next to the cache, a small properties file records a fingerprint of the font directories (the names, sizes and
+ * modification times of the font files) and how long the scan took when the cache was built. When the fingerprint no
+ * longer matches, for example because fonts were installed, the cache is discarded and rebuilt. The recorded scan
+ * time is used to report how much time loading from the cache saved.
+ *
+ * <p>
+ * The cache can be built ahead of time, for example while building a container image, by running this class:
+ *
+ * <pre>
+ * java com.datalogics.pdf.samples.util.FontSetCache /path/to/fonts.ser
+ * </pre>
+ */
+public class FontSetCache {
+    private static final Logger LOGGER = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+
+    /**
+     * The cache file built by {@link #main} when it's run with no arguments.
+     */
+    public static final String DEFAULT_CACHE_FILE = "FontSetCache.ser";
+
+    private static final String FINGERPRINT_SUFFIX = ".fingerprint";
+    private static final String FINGERPRINT_KEY = "fingerprint";
+    private static final String SCAN_TIME_KEY = "scanTimeMillis";
+
+    private final File cacheFile;
+    private final File fingerprintFile;
+    private final List<File> fontDirectories;
+
+    private boolean cacheUsed;
+    private long loadTimeMillis;
+    private long timeSavedMillis;
+
+    /**
+     * Create a font set cache in the given file, fingerprinting the standard system font directories.
+     *
+     * @param cacheFile the file that holds the cached font set
+     */
+    public FontSetCache(final File cacheFile) {
+        this(cacheFile, defaultFontDirectories());
+    }
+
+    /**
+     * Create a font set cache in the given file, fingerprinting the given font directories.
+     *
+     * @param cacheFile the file that holds the cached font set
+     * @param fontDirectories the directories whose contents decide whether the cache is still valid
+     */
+    public FontSetCache(final File cacheFile, final List<File> fontDirectories) {
+        if (cacheFile == null) {
+            throw new IllegalArgumentException("cache file can not be null.");
+        }
+        this.cacheFile = cacheFile.getAbsoluteFile();
+        fingerprintFile = new File(this.cacheFile.getPath() + FINGERPRINT_SUFFIX);
+        this.fontDirectories = new ArrayList<>(fontDirectories);
+    }
+
+    /**
+     * Load the system font set through the cache.
+     *
+     * <p>
+     * If the cache is valid, the font set is loaded from it. Otherwise, the system fonts are scanned, and the cache
+     * and its fingerprint are written for the next process.
+     *
+     * <p>
+     * This sets the {@link FontSetLoader} cache properties for the rest of the process, and the font set is the one
+     * shared through {@link FontUtils#getSystemFontSet()}. If that was already loaded, the cache can't be used, and
+     * the already loaded font set is returned.
+     *
+     * @return the system font set
+     * @throws IOException an I/O operation failed or was interrupted
+     */
+    public PDFFontSet load() throws IOException {
+        if (FontUtils.getSystemFontSetMisses() > 0) {
+            if (LOGGER.isWarnEnabled()) {
+                LOGGER.warn("System font set was already loaded; font set cache " + cacheFile + " was not used");
+            }
+            return FontUtils.getSystemFontSet();
+        }
+
+        final String fingerprint = fingerprint();
+        final Properties recorded = readFingerprintFile();
+        cacheUsed = isValid(fingerprint, recorded);
+        if (!cacheUsed) {
+            // Stale or missing; make the loader scan the system and write a fresh cache.
+            Files.deleteIfExists(cacheFile.toPath());
+            Files.deleteIfExists(fingerprintFile.toPath());
+            final File directory = cacheFile.getParentFile();
+            if (directory != null) {
+                Files.createDirectories(directory.toPath());
+            }
+        }
+
+        // The fingerprint decides when the cache is stale, so the loader's own timeout is turned off.
+        System.setProperty(FontSetLoader.FONTSET_CACHE_NAME_PROPERTY, cacheFile.getPath());
+        System.setProperty(FontSetLoader.FONTSET_CACHE_TIMEOUT_PROPERTY, "0");
+
+        final long before = FontUtils.getSystemFontSetLoadTimeNanos();
+        final PDFFontSet fontSet = FontUtils.getSystemFontSet();
+        loadTimeMillis = (FontUtils.getSystemFontSetLoadTimeNanos() - before) / 1000000;
+
+        if (cacheUsed) {
+            timeSavedMillis = Math.max(0, parseLong(recorded.getProperty(SCAN_TIME_KEY)) - loadTimeMillis);
+            if (LOGGER.isInfoEnabled()) {
+                LOGGER.info("Loaded font set from " + cacheFile + " in " + loadTimeMillis + " ms, saving about "
+                            + timeSavedMillis + " ms over scanning the system fonts");
+            }
+        } else {
+            writeFingerprintFile(fingerprint, loadTimeMillis);
+            if (LOGGER.isInfoEnabled()) {
+                LOGGER.info("Scanned system fonts in " + loadTimeMillis + " ms and saved them to " + cacheFile);
+            }
+        }
+        return fontSet;
+    }
+
+    /**
+     * Find out whether the cache exists and matches the font directories as they are now.
+     *
+     * @return true if {@link #load()} would load the font set from the cache
+     * @throws IOException an I/O operation failed or was interrupted
+     */
+    boolean isValid() throws IOException {
+        return isValid(fingerprint(), readFingerprintFile());
+    }
+
+    private boolean isValid(final String fingerprint, final Properties recorded) {
+        return cacheFile.isFile() && fingerprint.equals(recorded.getProperty(FINGERPRINT_KEY));
+    }
+
+    /**
+     * Find out whether the last {@link #load()} used the cache, rather than scanning the system fonts.
+     *
+     * @return true if the font set was loaded from the cache
+     */
+    public boolean wasCacheUsed() {
+        return cacheUsed;
+    }
+
+    /**
+     * Get how long the last {@link #load()} took to get the font set.
+     *
+     * @return the load time, in milliseconds
+     */
+    public long getLoadTimeMillis() {
+        return loadTimeMillis;
+    }
+
+    /**
+     * Get how much time the last {@link #load()} saved by using the cache, compared to the scan that built it.
+     *
+     * @return the time saved, in milliseconds, or 0 if the cache wasn't used
+     */
+    public long getTimeSavedMillis() {
+        return timeSavedMillis;
+    }
+
+    /**
+     * Get the standard locations of system fonts on Windows, Mac OS X and Linux that exist on this system.
+     *
+     * @return the font directories
+     */
+    public static List<File> defaultFontDirectories() {
+        final String home = System.getProperty("user.home");
+        final List<File> candidates = new ArrayList<>();
+        final String windowsDirectory = System.getenv("WINDIR");
+        if (windowsDirectory != null) {
+            candidates.add(new File(windowsDirectory, "Fonts"));
+        }
+        candidates.add(new File("/System/Library/Fonts"));
+        candidates.add(new File("/Library/Fonts"));
+        candidates.add(new File(home, "Library/Fonts"));
+        candidates.add(new File("/usr/share/fonts"));
+        candidates.add(new File("/usr/local/share/fonts"));
+        candidates.add(new File(home, ".fonts"));
+        candidates.add(new File(home, ".local/share/fonts"));
+
+        final List<File> directories = new ArrayList<>();
+        for (final File candidate : candidates) {
+            if (candidate.isDirectory()) {
+                directories.add(candidate);
+            }
+        }
+        return directories;
+    }
+
+    /**
+     * Compute a fingerprint of the font directories from the paths, sizes and modification times of their files.
+     *
+     * <p>
+     * Symbolic links inside the directories are fingerprinted by their targets, but not followed, so a link that points
+     * back up the tree can't make the walk loop.
+     *
+     * @return the fingerprint, as a hexadecimal string
+     * @throws IOException an I/O operation failed or was interrupted
+     */
+    String fingerprint() throws IOException {
+        final MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (final NoSuchAlgorithmException e) {
+            // Every Java platform is required to support SHA-256.
+            throw new IllegalStateException(e);
+        }
+        for (final File directory : fontDirectories) {
+            // Sort, so that the fingerprint doesn't depend on the order the file system lists entries in.
+            final SortedMap<String, String> entries = new TreeMap<>();
+            addToFingerprint(entries, directory.toPath());
+            for (final String entry : entries.values()) {
+                digest.update(entry.getBytes(StandardCharsets.UTF_8));
+            }
+        }
+
+        final StringBuilder hex = new StringBuilder();
+        for (final byte b : digest.digest()) {
+            hex.append(String.format("%02x", b));
+        }
+        return hex.toString();
+    }
+
+    private static void addToFingerprint(final SortedMap<String, String> entries, final Path directory)
+                    throws IOException {
+        if (!Files.isDirectory(directory)) {
+            entries.put(directory.toString(), directory + "\tmissing\n");
+            return;
+        }
+        // The font directory itself may be a link, like /usr/share/fonts often is, so start from where it points.
+        Files.walkFileTree(directory.toRealPath(), new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult preVisitDirectory(final Path dir, final BasicFileAttributes attributes) {
+                add(dir, attributes);
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(final Path file, final BasicFileAttributes attributes)
+                            throws IOException {
+                if (attributes.isSymbolicLink()) {
+                    entries.put(file.toString(), file + "\t-> " + Files.readSymbolicLink(file) + '\n');
+                } else {
+                    add(file, attributes);
+                }
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFileFailed(final Path file, final IOException e) {
+                // An unreadable entry can't be fingerprinted, but it shouldn't stop the others from being.
+                entries.put(file.toString(), file + "\tunreadable\n");
+                return FileVisitResult.CONTINUE;
+            }
+
+            private void add(final Path path, final BasicFileAttributes attributes) {
+                entries.put(path.toString(), path + "\t" + attributes.size() + '\t'
+                                             + attributes.lastModifiedTime().toMillis() + '\n');
+            }
+        });
+    }
+
+    private Properties readFingerprintFile() throws IOException {
+        final Properties properties = new Properties();
+        if (fingerprintFile.isFile()) {
+            try (InputStream input = Files.newInputStream(fingerprintFile.toPath())) {
+                properties.load(input);
+            }
+        }
+        return properties;
+    }
+
+    private void writeFingerprintFile(final String fingerprint, final long scanTimeMillis) throws IOException {
+        if (!cacheFile.isFile()) {
+            if (LOGGER.isWarnEnabled()) {
+                LOGGER.warn("Font set cache " + cacheFile + " was not written; fonts will be scanned next time");
+            }
+            return;
+        }
+        final Properties properties = new Properties();
+        properties.setProperty(FINGERPRINT_KEY, fingerprint);
+        properties.setProperty(SCAN_TIME_KEY, Long.toString(scanTimeMillis));
+        try (OutputStream output = Files.newOutputStream(fingerprintFile.toPath())) {
+            properties.store(output, "Font directory fingerprint for " + cacheFile.getName());
+        }
+    }
+
+    private static long parseLong(final String value) {
+        if (value == null) {
+            return 0;
+        }
+        try {
+            return Long.parseLong(value);
+        } catch (final NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    /**
+     * Build the font set cache ahead of time, for example while building a container image. Any existing cache in
+     * the same location is replaced.
+     *
+     * <p>
+     * With no arguments, the cache is built in {@link #DEFAULT_CACHE_FILE}, in the current directory. If the system
+     * font set was already loaded in this process, the cache can't be built, and this only logs a warning.
+     *
+     * @param args the location of the cache file
+     * @throws Exception a general exception was thrown
+     */
+    public static void main(final String... args) throws Exception {
+        final File cacheFile = new File(args.length > 0 ? args[0] : DEFAULT_CACHE_FILE);
+        Files.deleteIfExists(cacheFile.toPath());
+
+        final boolean alreadyLoaded = FontUtils.getSystemFontSetMisses() > 0;
+        final FontSetCache cache = new FontSetCache(cacheFile);
+        cache.load();
+        if (!alreadyLoaded && !cacheFile.isFile()) {
+            throw new IOException("Font set cache " + cacheFile + " was not written");
+        }
+    }
+}
@@ -14,10 +14,44 @@ import com.adobe.pdfjt.services.fontresources.PDFFontSetUtil;
 
 import com.datalogics.pdf.document.FontSetLoader;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.lang.invoke.MethodHandles;
+import java.util.concurrent.atomic.AtomicLong;
+
 /**
  * A utility class that contains some commonly used font methods.
+ *
+ * <p>
+ * Scanning the system for fonts is expensive, so the system font set is loaded once per process, the first time it
+ * is needed, and shared by every caller afterwards. Each document gets its own working font set layered on top of the
+ * shared one, so fonts from one document never leak into another.
+ *
+ * <p>
+ * Sharing the system font set between threads, as the parallel renderer and the render worker do, relies on an
+ * assumption: that once a {@link PDFFontSet} is loaded, the toolkit only reads it, so it can be used by several
+ * threads at once. The toolkit doesn't document that either way. The shared set is only handed to code that reads
+ * it: rendering and text extraction get a working font set from {@link #getDocFontSet(PDFDocument)}, and those aren't
+ * shared between threads. Operations that can add fonts to the font set they're given, like PDF/A conversion,
+ * sanitization and signature appearances, get a private copy from {@link #newSystemFontSetCopy()} instead. An
+ * application that finds the assumption doesn't hold for its use can give each thread a copy the same way.
  */
 public final class FontUtils {
+    private static final Logger LOGGER = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+
+    private static final Object SYSTEM_FONT_SET_LOCK = new Object();
+    private static volatile PDFFontSet systemFontSet;
+    private static volatile byte[] serializedSystemFontSet;
+
+    private static final AtomicLong SYSTEM_FONT_SET_HITS = new AtomicLong();
+    private static final AtomicLong SYSTEM_FONT_SET_MISSES = new AtomicLong();
+    private static final AtomicLong SYSTEM_FONT_SET_LOAD_NANOS = new AtomicLong();
 
     /**
      * This is a utility class, and won't be instantiated.
@@ -27,6 +61,9 @@ public final class FontUtils {
     /**
      * Create a PDFFontSet that contains fonts used in the original document.
      *
+     * <p>
+     * The working font set is built on top of the shared system font set from {@link #getSystemFontSet()}.
+     *
      * @param document The document whose fonts need to be loaded
      * @return A fontset with the appropriate fonts added from the PDFDocument
      * @throws PDFInvalidDocumentException a general problem with the PDF document, which may now be in an invalid state
@@ -36,11 +73,119 @@ public final class FontUtils {
      */
     public static PDFFontSet getDocFontSet(final PDFDocument document)
                     throws PDFInvalidDocumentException, PDFIOException, PDFFontException, PDFSecurityException {
-        PDFFontSet sysFontSet = null;
-        final FontSetLoader fontSetLoader = FontSetLoader.newInstance();
-
-        sysFontSet = fontSetLoader.getFontSet();
         return PDFFontSetUtil.buildWorkingFontSet(document,
-                                                  sysFontSet, document.getDocumentLocale(), null);
+                                                  getSystemFontSet(), document.getDocumentLocale(), null);
+    }
+
+    /**
+     * Get the system font set, which contains the Base 14 fonts plus all fonts in the standard system locations.
+     *
+     * <p>
+     * The font set is loaded with a {@link FontSetLoader} the first time this method is called, and the same instance
+     * is returned to every caller, on every thread, afterwards. Callers must treat it as read-only; use
+     * {@link #getDocFontSet(PDFDocument)} to get a font set that can pick up the fonts of a particular document, or
+     * {@link #newSystemFontSetCopy()} for one to hand to an operation that can add fonts to it. Using
+     * it from several threads at once assumes the toolkit only reads a loaded font set, as described above.
+     *
+     * @return the shared system font set
+     */
+    public static PDFFontSet getSystemFontSet() {
+        PDFFontSet fontSet = systemFontSet;
+        if (fontSet != null) {
+            SYSTEM_FONT_SET_HITS.incrementAndGet();
+            return fontSet;
+        }
+
+        synchronized (SYSTEM_FONT_SET_LOCK) {
+            fontSet = systemFontSet;
+            if (fontSet != null) {
+                // Another thread loaded it while we were waiting for the lock.
+                SYSTEM_FONT_SET_HITS.incrementAndGet();
+                return fontSet;
+            }
+
+            SYSTEM_FONT_SET_MISSES.incrementAndGet();
+            final long start = System.nanoTime();
+            fontSet = FontSetLoader.newInstance().getFontSet();
+            final long elapsed = System.nanoTime() - start;
+            SYSTEM_FONT_SET_LOAD_NANOS.addAndGet(elapsed);
+
+            if (LOGGER.isInfoEnabled()) {
+                LOGGER.info("Loaded system font set in " + elapsed / 1000000 + " ms");
+            }
+
+            systemFontSet = fontSet;
+            return fontSet;
+        }
+    }
+
+    /**
+     * Get a private copy of the system font set, which the caller may add fonts to without affecting anyone else.
+     *
+     * <p>
+     * Use this for a font set that's handed to an operation that can embed or add fonts, like opening a document for
+     * PDF/A conversion or signing. The copy is made by deserializing the shared font set, which is serialized once,
+     * the first time a copy is asked for; that's much cheaper than scanning the system fonts again. If the font set
+     * can't be serialized, a new one is loaded with {@link FontSetLoader}.
+     *
+     * @return a font set that isn't shared with any other caller
+     */
+    public static PDFFontSet newSystemFontSetCopy() {
+        byte[] serialized = serializedSystemFontSet;
+        if (serialized == null) {
+            synchronized (SYSTEM_FONT_SET_LOCK) {
+                serialized = serializedSystemFontSet;
+                if (serialized == null) {
+                    final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+                    try (ObjectOutputStream output = new ObjectOutputStream(bytes)) {
+                        output.writeObject(getSystemFontSet());
+                    } catch (final IOException e) {
+                        return loadPrivateFontSet(e);
+                    }
+                    serialized = bytes.toByteArray();
+                    serializedSystemFontSet = serialized;
+                }
+            }
+        }
+
+        try (ObjectInputStream input = new ObjectInputStream(new ByteArrayInputStream(serialized))) {
+            return (PDFFontSet) input.readObject();
+        } catch (final IOException | ClassNotFoundException e) {
+            return loadPrivateFontSet(e);
+        }
+    }
+
+    private static PDFFontSet loadPrivateFontSet(final Exception cause) {
+        if (LOGGER.isWarnEnabled()) {
+            LOGGER.warn("Unable to copy the system font set, loading a new one", cause);
+        }
+        return FontSetLoader.newInstance().getFontSet();
+    }
+
+    /**
+     * Get the number of times {@link #getSystemFontSet()} returned the already loaded font set.
+     *
+     * @return the number of cache hits
+     */
+    public static long getSystemFontSetHits() {
+        return SYSTEM_FONT_SET_HITS.get();
+    }
+
+    /**
+     * Get the number of times {@link #getSystemFontSet()} had to load the font set.
+     *
+     * @return the number of cache misses
+     */
+    public static long getSystemFontSetMisses() {
+        return SYSTEM_FONT_SET_MISSES.get();
+    }
+
+    /**
+     * Get the total time spent loading the system font set.
+     *
+     * @return the load time, in nanoseconds
+     */
+    public static long getSystemFontSetLoadTimeNanos() {
+        return SYSTEM_FONT_SET_LOAD_NANOS.get();
     }
 }
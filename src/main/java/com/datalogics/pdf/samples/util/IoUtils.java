@@ -4,14 +4,15 @@
 
 package com.datalogics.pdf.samples.util;
 
+import com.adobe.internal.io.ByteReader;
 import com.adobe.internal.io.ByteWriter;
-import com.adobe.internal.io.RandomAccessFileByteWriter;
+import com.adobe.internal.io.InputStreamByteReader;
 
 import org.apache.commons.io.FilenameUtils;
 
 import java.io.File;
 import java.io.IOException;
-import java.io.RandomAccessFile;
+import java.io.InputStream;
 import java.net.MalformedURLException;
 import java.net.URISyntaxException;
 import java.net.URL;
@@ -21,11 +22,54 @@ import java.nio.file.Files;
  * A utility class that contains some commonly used I/O methods.
  */
 public final class IoUtils {
+    private static volatile OutputCommitter outputCommitter = new OutputCommitter(OutputCommitter.Durability.SYNC);
+
     private IoUtils() {}
 
+    /**
+     * Creates a ByteReader using an inputUrl, reading it as a stream.
+     *
+     * @param inputUrl The URL used to create a ByteReader
+     * @return A ByteReader over the contents of the inputUrl
+     * @throws IOException an I/O operation failed or was interrupted
+     */
+    public static ByteReader newByteReader(final URL inputUrl) throws IOException {
+        @SuppressWarnings("PMD.CloseResource")  // inputStream becomes owned by the reader
+        final InputStream inputStream = inputUrl.openStream();
+        return new InputStreamByteReader(inputStream);
+    }
+
+    /**
+     * Creates a ByteReader that memory-maps a local file, with a {@link MappedFileByteReader}, so that the parser can
+     * seek through it without the whole file being copied onto the heap.
+     *
+     * <p>
+     * The mapping outlives the reader: it's only released when the reader is garbage collected. Until then, the file
+     * must not be truncated or rewritten in place, even after the document that read it is closed, or reading the
+     * mapping can crash the process. Only map files that are left alone while they're being processed.
+     *
+     * @param inputUrl The URL of a local file
+     * @return A ByteReader over the contents of the file
+     * @throws IOException an I/O operation failed or was interrupted
+     */
+    public static ByteReader newMappedByteReader(final URL inputUrl) throws IOException {
+        if (!"file".equals(inputUrl.getProtocol())) {
+            throw new IllegalArgumentException("only file: URLs can be mapped: " + inputUrl);
+        }
+        try {
+            return new MappedFileByteReader(new File(inputUrl.toURI()));
+        } catch (final URISyntaxException e) {
+            throw new IOException(e);
+        }
+    }
+
     /**
      * Creates a ByteWriter using an outputUrl. If the file the URL is pointing to exists, it gets deleted.
      *
+     * <p>
+     * The writer buffers the many small writes made when a document is saved, and writes them to the file in large
+     * blocks.
+     *
      * @param outputUrl The URL used to create a ByteWriter
      * @return A ByteWriter created using the outputUrl
      * @throws IOException an I/O operation failed or was interrupted
@@ -41,8 +85,71 @@ public final class IoUtils {
         if (file.exists()) {
             Files.delete(file.toPath());
         }
-        final RandomAccessFile outputPdfFile = new RandomAccessFile(file, "rw");
-        return new RandomAccessFileByteWriter(outputPdfFile);
+        return new FileChannelByteWriter(file);
+    }
+
+    /**
+     * Creates a ByteWriter for output that is published atomically when it is complete.
+     *
+     * <p>
+     * The output is written to a temporary file in the same directory as the target. Call
+     * {@link AtomicFileByteWriter#commit()} when the output is complete; closing the writer then renames it over the
+     * target, using the committer from {@link #getOutputCommitter()}. Until then, readers of the target see its old
+     * contents, if any.
+     *
+     * @param outputUrl The URL of the final output file
+     * @return A ByteWriter that publishes to the outputUrl when committed
+     * @throws IOException an I/O operation failed or was interrupted
+     */
+    public static AtomicFileByteWriter newAtomicByteWriter(final URL outputUrl) throws IOException {
+        File file = null;
+        try {
+            file = new File(outputUrl.toURI());
+        } catch (final URISyntaxException e) {
+            throw new IOException(e);
+        }
+        return AtomicFileByteWriter.newInstance(file, outputCommitter);
+    }
+
+    /**
+     * Get the committer used to publish output from {@link #newAtomicByteWriter(URL)}.
+     *
+     * <p>
+     * By default, this is a committer with {@link OutputCommitter.Durability#SYNC} durability.
+     *
+     * @return the output committer
+     */
+    public static OutputCommitter getOutputCommitter() {
+        return outputCommitter;
+    }
+
+    /**
+     * Set the committer used to publish output from {@link #newAtomicByteWriter(URL)}.
+     *
+     * <p>
+     * Jobs that favor throughput can use a committer with {@link OutputCommitter.Durability#BATCHED} or
+     * {@link OutputCommitter.Durability#NONE} durability. With batched durability, the job must close the committer
+     * (or flush it) when it is done, to publish the last batch.
+     *
+     * <p>
+     * The committer being replaced is flushed, so that saves already waiting in its batch are published. Writers that
+     * are still open keep the committer they were created with, and are only published by it when they're closed.
+     *
+     * @param committer the output committer
+     * @throws IOException the outputs waiting in the replaced committer could not all be published
+     */
+    public static void setOutputCommitter(final OutputCommitter committer) throws IOException {
+        if (committer == null) {
+            throw new IllegalArgumentException("committer can not be null.");
+        }
+        final OutputCommitter replaced;
+        synchronized (IoUtils.class) {
+            replaced = outputCommitter;
+            outputCommitter = committer;
+        }
+        if (replaced != committer) {
+            replaced.flush();
+        }
     }
 
     /**
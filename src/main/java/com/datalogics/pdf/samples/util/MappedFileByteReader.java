@@ -0,0 +1,132 @@
+/*
+ * Copyright 2015 Datalogics, Inc.
+ */
+
+package com.datalogics.pdf.samples.util;
+
+import com.adobe.internal.io.ByteReader;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * A {@link ByteReader} that reads a local file through a memory-mapped {@link FileChannel}.
+ *
+ * <p>
+ * The file is mapped in chunks, so that files larger than 2 GB (the limit of a single {@link MappedByteBuffer}) can
+ * be read. The contents of the file are paged in by the operating system as the parser touches them, rather than being
+ * copied onto the Java heap.
+ *
+ * <p>
+ * The file must not be truncated or rewritten while it is mapped. Closing the reader doesn't end the mapping: Java has
+ * no way to unmap a buffer, so the mapping lasts until the reader's buffers are garbage collected. Use this only for
+ * files that nothing writes to while they're being processed.
+ */
+public class MappedFileByteReader implements ByteReader {
+
+    /**
+     * The default size of each mapped chunk: 1 GB.
+     */
+    public static final int DEFAULT_CHUNK_SIZE = 1 << 30;
+
+    private final RandomAccessFile file;
+    private final long length;
+    private final int chunkSize;
+    private MappedByteBuffer[] chunks;
+
+    /**
+     * Map a file for reading, using the default chunk size.
+     *
+     * @param file the file to map
+     * @throws IOException an I/O operation failed or was interrupted
+     */
+    public MappedFileByteReader(final File file) throws IOException {
+        this(file, DEFAULT_CHUNK_SIZE);
+    }
+
+    /**
+     * Map a file for reading.
+     *
+     * @param file the file to map
+     * @param chunkSize the maximum size of each mapped region
+     * @throws IOException an I/O operation failed or was interrupted
+     */
+    public MappedFileByteReader(final File file, final int chunkSize) throws IOException {
+        if (chunkSize <= 0) {
+            throw new IllegalArgumentException("chunk size must be positive: " + chunkSize);
+        }
+        this.file = new RandomAccessFile(file, "r");
+        this.chunkSize = chunkSize;
+        try {
+            final FileChannel channel = this.file.getChannel();
+            length = channel.size();
+
+            final int chunkCount = (int) ((length + chunkSize - 1) / chunkSize);
+            chunks = new MappedByteBuffer[chunkCount];
+            for (int i = 0; i < chunkCount; i++) {
+                final long chunkStart = (long) i * chunkSize;
+                final long chunkLength = Math.min(chunkSize, length - chunkStart);
+                chunks[i] = channel.map(FileChannel.MapMode.READ_ONLY, chunkStart, chunkLength);
+            }
+        } catch (final IOException e) {
+            this.file.close();
+            throw e;
+        }
+    }
+
+    @Override
+    public int read(final long position) throws IOException {
+        ensureOpen();
+        if (position < 0 || position >= length) {
+            return ByteReader.EOF;
+        }
+        final MappedByteBuffer chunk = chunks[(int) (position / chunkSize)];
+        return chunk.get((int) (position % chunkSize)) & 0xff;
+    }
+
+    @Override
+    public int read(final long position, final byte[] bytes, final int offset, final int count) throws IOException {
+        ensureOpen();
+        if (position < 0 || position >= length) {
+            return ByteReader.EOF;
+        }
+
+        // A read may span the boundary between two chunks, so copy from as many chunks as necessary.
+        final int total = (int) Math.min(count, length - position);
+        long current = position;
+        int copied = 0;
+        while (copied < total) {
+            final int chunkOffset = (int) (current % chunkSize);
+            final ByteBuffer chunk = chunks[(int) (current / chunkSize)].duplicate();
+            final int toCopy = Math.min(total - copied, chunk.limit() - chunkOffset);
+            chunk.position(chunkOffset);
+            chunk.get(bytes, offset + copied, toCopy);
+            copied += toCopy;
+            current += toCopy;
+        }
+        return total;
+    }
+
+    @Override
+    public long length() throws IOException {
+        ensureOpen();
+        return length;
+    }
+
+    @Override
+    public void close() throws IOException {
+        // Mapped buffers are released when they are garbage collected; drop our references so that can happen.
+        chunks = null;
+        file.close();
+    }
+
+    private void ensureOpen() throws IOException {
+        if (chunks == null) {
+            throw new IOException("MappedFileByteReader is closed");
+        }
+    }
+}
@@ -0,0 +1,293 @@
+/*
+ * Copyright 2015 Datalogics, Inc.
+ */
+
+package com.datalogics.pdf.samples.util;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Publishes finished output files by atomically renaming them into place.
+ *
+ * <p>
+ * Output is written to a temporary file next to its final location (see {@link AtomicFileByteWriter}). When it is
+ * complete, it is handed to a committer, which renames it over the final file. Readers of the final file therefore see
+ * either the old contents or the complete new contents, never a partially written file.
+ *
+ * <p>
+ * The {@link Durability} of the committer decides when the data is forced to the storage device.
+ */
+public class OutputCommitter implements Closeable {
+    private static final Logger LOGGER = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+
+    /**
+     * The default number of files committed together in {@link Durability#BATCHED} mode.
+     */
+    public static final int DEFAULT_BATCH_SIZE = 64;
+
+    /**
+     * How hard a committer works to make output survive a crash of the operating system or a power failure.
+     */
+    public enum Durability {
+        /**
+         * Rename each file into place as soon as it's committed, and leave it to the operating system to write the
+         * data to the device. Fastest, but after a system crash a published file may be empty or incomplete.
+         */
+        NONE,
+
+        /**
+         * Collect committed files, and when a batch is full (or on {@link OutputCommitter#flush()}), sync all of them,
+         * rename all of them into place, and sync their directories. The cost of syncing is shared by the whole batch,
+         * but files are only published when their batch is.
+         *
+         * <p>
+         * A file that can't be synced or renamed doesn't stop the rest of the batch from being published. Its
+         * temporary file is deleted, and once the batch is done, an {@link IOException} names every target that
+         * wasn't published.
+         */
+        BATCHED,
+
+        /**
+         * Sync each file, rename it into place, and sync its directory, before the commit returns.
+         */
+        SYNC
+    }
+
+    private final Durability durability;
+    private final int batchSize;
+    private List<PendingOutput> pending = new ArrayList<>();
+
+    /**
+     * Create a committer with the given durability and the default batch size.
+     *
+     * @param durability the durability level
+     */
+    public OutputCommitter(final Durability durability) {
+        this(durability, DEFAULT_BATCH_SIZE);
+    }
+
+    /**
+     * Create a committer with the given durability and batch size.
+     *
+     * @param durability the durability level
+     * @param batchSize the number of files to commit together in {@link Durability#BATCHED} mode
+     */
+    public OutputCommitter(final Durability durability, final int batchSize) {
+        if (durability == null) {
+            throw new IllegalArgumentException("durability can not be null.");
+        }
+        if (batchSize <= 0) {
+            throw new IllegalArgumentException("batch size must be positive: " + batchSize);
+        }
+        this.durability = durability;
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Get the durability level of this committer.
+     *
+     * @return the durability level
+     */
+    public Durability getDurability() {
+        return durability;
+    }
+
+    /**
+     * Commit a completed temporary file, publishing it under the target name.
+     *
+     * <p>
+     * Depending on the durability level, the file may be published before this method returns, or later, as part of a
+     * batch.
+     *
+     * @param tempFile the completed, closed temporary file
+     * @param target the final location of the file
+     * @throws IOException an I/O operation failed or was interrupted
+     */
+    public void commit(final File tempFile, final File target) throws IOException {
+        final PendingOutput output = new PendingOutput(tempFile.toPath(), target.toPath());
+        switch (durability) {
+            case NONE:
+                publish(output);
+                break;
+            case SYNC:
+                syncFile(output.tempPath);
+                publish(output);
+                syncDirectory(output.targetPath.toAbsolutePath().getParent());
+                break;
+            case BATCHED:
+            default:
+                List<PendingOutput> batch = null;
+                synchronized (this) {
+                    pending.add(output);
+                    if (pending.size() >= batchSize) {
+                        batch = takePending();
+                    }
+                }
+                if (batch != null) {
+                    commitBatch(batch);
+                }
+                break;
+        }
+    }
+
+    /**
+     * Publish all files that are waiting for their batch to complete.
+     *
+     * @throws IOException an I/O operation failed or was interrupted
+     */
+    public void flush() throws IOException {
+        final List<PendingOutput> batch;
+        synchronized (this) {
+            batch = takePending();
+        }
+        commitBatch(batch);
+    }
+
+    /**
+     * Publish all files that are waiting for their batch to complete.
+     *
+     * @throws IOException an I/O operation failed or was interrupted
+     */
+    @Override
+    public void close() throws IOException {
+        flush();
+    }
+
+    private List<PendingOutput> takePending() {
+        final List<PendingOutput> batch = pending;
+        pending = new ArrayList<>();
+        return batch;
+    }
+
+    private static void commitBatch(final List<PendingOutput> batch) throws IOException {
+        if (batch.isEmpty()) {
+            return;
+        }
+
+        // Each file is synced and published on its own, so that one failure doesn't leave the rest of the batch
+        // behind as temporary files. The failures are reported together at the end.
+        final List<PendingOutput> failed = new ArrayList<>();
+        final List<IOException> causes = new ArrayList<>();
+
+        // Sync all the data first, so that no file is published before its contents are durable.
+        final List<PendingOutput> synced = new ArrayList<>();
+        for (final PendingOutput output : batch) {
+            try {
+                syncFile(output.tempPath);
+                synced.add(output);
+            } catch (final IOException e) {
+                failed.add(output);
+                causes.add(e);
+            }
+        }
+
+        final Set<Path> directories = new LinkedHashSet<>();
+        for (final PendingOutput output : synced) {
+            try {
+                publish(output);
+                directories.add(output.targetPath.toAbsolutePath().getParent());
+            } catch (final IOException e) {
+                failed.add(output);
+                causes.add(e);
+            }
+        }
+
+        for (final Path directory : directories) {
+            syncDirectory(directory);
+        }
+
+        if (!failed.isEmpty()) {
+            throw unpublished(batch.size(), failed, causes);
+        }
+    }
+
+    /**
+     * Discard the temporary files of outputs that couldn't be published, and make an exception that names them all.
+     */
+    private static IOException unpublished(final int batchSize, final List<PendingOutput> failed,
+                                           final List<IOException> causes) {
+        final StringBuilder targets = new StringBuilder();
+        for (final PendingOutput output : failed) {
+            if (targets.length() > 0) {
+                targets.append(", ");
+            }
+            targets.append(output.targetPath);
+            try {
+                Files.deleteIfExists(output.tempPath);
+            } catch (final IOException e) {
+                if (LOGGER.isWarnEnabled()) {
+                    LOGGER.warn("Unable to delete temporary file " + output.tempPath, e);
+                }
+            }
+        }
+        final IOException exception = new IOException(failed.size() + " of " + batchSize
+                                                      + " outputs in the batch were not published: " + targets,
+                                                      causes.get(0));
+        for (final IOException cause : causes.subList(1, causes.size())) {
+            exception.addSuppressed(cause);
+        }
+        return exception;
+    }
+
+    private static void publish(final PendingOutput output) throws IOException {
+        try {
+            Files.move(output.tempPath, output.targetPath, StandardCopyOption.ATOMIC_MOVE,
+                       StandardCopyOption.REPLACE_EXISTING);
+        } catch (final AtomicMoveNotSupportedException e) {
+            if (LOGGER.isWarnEnabled()) {
+                LOGGER.warn("Atomic rename not supported, replacing " + output.targetPath + " non-atomically");
+            }
+            Files.move(output.tempPath, output.targetPath, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    private static void syncFile(final Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+            channel.force(true);
+        }
+    }
+
+    private static void syncDirectory(final Path directory) {
+        if (directory == null) {
+            return;
+        }
+        // Syncing the directory makes the rename itself durable. Not every platform can open a directory for this
+        // (Windows can't), and there it's skipped.
+        try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (final IOException e) {
+            if (LOGGER.isDebugEnabled()) {
+                LOGGER.debug("Unable to sync directory " + directory, e);
+            }
+        }
+    }
+
+    /**
+     * A temporary file waiting to be published.
+     */
+    private static class PendingOutput {
+        private final Path tempPath;
+        private final Path targetPath;
+
+        PendingOutput(final Path tempPath, final Path targetPath) {
+            this.tempPath = tempPath;
+            this.targetPath = targetPath;
+        }
+    }
+}
@@ -0,0 +1,141 @@
+/*
+ * Copyright 2015 Datalogics, Inc.
+ */
+
+package com.datalogics.pdf.samples.util;
+
+/**
+ * A range of pages in a document, from a first to a last page number, inclusive. Page numbers start at 1.
+ *
+ * <p>
+ * A range may be open-ended, in which case it runs to the last page of the document. Samples that accept a range only
+ * look up the pages in it, so working on a few pages of a large document costs about the same as working on a small
+ * one.
+ */
+public final class PageRange {
+
+    /**
+     * The range of all pages.
+     */
+    public static final PageRange ALL = new PageRange(1, Integer.MAX_VALUE);
+
+    private final int first;
+    private final int last;
+
+    private PageRange(final int first, final int last) {
+        this.first = first;
+        this.last = last;
+    }
+
+    /**
+     * Get a range of pages.
+     *
+     * @param first the first page number, starting at 1
+     * @param last the last page number, inclusive
+     * @return the page range
+     */
+    public static PageRange of(final int first, final int last) {
+        if (first < 1) {
+            throw new IllegalArgumentException("first page must be at least 1: " + first);
+        }
+        if (last < first) {
+            throw new IllegalArgumentException("last page " + last + " is before first page " + first);
+        }
+        return new PageRange(first, last);
+    }
+
+    /**
+     * Get a range of pages from a page to the end of the document.
+     *
+     * @param first the first page number, starting at 1
+     * @return the page range
+     */
+    public static PageRange from(final int first) {
+        return of(first, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Parse a page range from a string: a single page number like {@code 5}, a range like {@code 3-5}, or an
+     * open-ended range like {@code 3-}.
+     *
+     * @param range the string to parse
+     * @return the page range
+     */
+    public static PageRange parse(final String range) {
+        if (range == null) {
+            throw new IllegalArgumentException("page range can not be null.");
+        }
+        final String trimmed = range.trim();
+        try {
+            final int dash = trimmed.indexOf('-');
+            if (dash < 0) {
+                final int page = Integer.parseInt(trimmed);
+                return of(page, page);
+            }
+            final int first = Integer.parseInt(trimmed.substring(0, dash).trim());
+            final String rest = trimmed.substring(dash + 1).trim();
+            return rest.isEmpty() ? from(first) : of(first, Integer.parseInt(rest));
+        } catch (final NumberFormatException e) {
+            throw new IllegalArgumentException("not a page range: " + range, e);
+        }
+    }
+
+    /**
+     * Get the first page number.
+     *
+     * @return the first page number, starting at 1
+     */
+    public int getFirst() {
+        return first;
+    }
+
+    /**
+     * Get the index of the first page, for a document with the given number of pages.
+     *
+     * @param pageCount the number of pages in the document
+     * @return the zero-based index of the first page
+     */
+    public int getFirstIndex(final int pageCount) {
+        if (first > pageCount) {
+            throw new IllegalArgumentException("page " + first + " is beyond the end of a document of " + pageCount
+                                               + " pages");
+        }
+        return first - 1;
+    }
+
+    /**
+     * Get the index of the last page, for a document with the given number of pages. An open-ended range, or one that
+     * runs past the end of the document, ends at the last page.
+     *
+     * @param pageCount the number of pages in the document
+     * @return the zero-based index of the last page
+     */
+    public int getLastIndex(final int pageCount) {
+        return Math.min(last, pageCount) - 1;
+    }
+
+    @Override
+    public boolean equals(final Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (!(obj instanceof PageRange)) {
+            return false;
+        }
+        final PageRange other = (PageRange) obj;
+        return first == other.first && last == other.last;
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * first + last;
+    }
+
+    @Override
+    public String toString() {
+        if (last == Integer.MAX_VALUE) {
+            return first + "-";
+        }
+        return first == last ? Integer.toString(first) : first + "-" + last;
+    }
+}
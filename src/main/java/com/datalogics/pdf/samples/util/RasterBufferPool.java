@@ -0,0 +1,197 @@
+/*
+ * Copyright 2015 Datalogics, Inc.
+ */
+
+package com.datalogics.pdf.samples.util;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBuffer;
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+
+/**
+ * A pool of reusable images, keyed by their size and type.
+ *
+ * <p>
+ * Rendering allocates page-sized images, megabytes each, over and over. Allocating them fresh for every page fills
+ * the old generation of the heap and leads to long garbage collection pauses. Code that needs a scratch image can
+ * borrow one from a pool instead, and release it when it's done with it; the next borrower of the same size and type
+ * gets the same image back.
+ *
+ * <p>
+ * A borrowed image holds whatever the previous borrower left in it. The pool only keeps released images up to a
+ * total size; beyond that, released images are left to the garbage collector. Releasing an image the pool didn't
+ * lend out does nothing, so callers that may or may not have a pooled image can always release it.
+ *
+ * <p>
+ * The pool only holds weak references to the images it has lent out, so an image that is never released, because
+ * its borrower failed or forgot, is still garbage collected; it's simply not reused.
+ *
+ * <p>
+ * All methods are thread-safe.
+ */
+public class RasterBufferPool {
+
+    /**
+     * The default limit on the total size of the images kept in the shared pool: 128 MB.
+     */
+    public static final long DEFAULT_MAX_POOLED_BYTES = 128L * 1024 * 1024;
+
+    private static final RasterBufferPool SHARED_POOL = new RasterBufferPool(DEFAULT_MAX_POOLED_BYTES);
+
+    private final long maxPooledBytes;
+    private final Map<String, Deque<BufferedImage>> pooled = new HashMap<>();
+    // BufferedImage doesn't override equals, so this is an identity set, whose entries don't keep images alive.
+    private final Set<BufferedImage> borrowed = Collections.newSetFromMap(new WeakHashMap<BufferedImage, Boolean>());
+    private long pooledBytes;
+    private int pooledCount;
+    private long allocations;
+    private long reuses;
+    private long bytesReused;
+
+    /**
+     * Create a pool that keeps released images up to a total size.
+     *
+     * @param maxPooledBytes the most bytes of image data to keep in the pool
+     */
+    public RasterBufferPool(final long maxPooledBytes) {
+        if (maxPooledBytes < 0) {
+            throw new IllegalArgumentException("maximum pooled size can not be negative: " + maxPooledBytes);
+        }
+        this.maxPooledBytes = maxPooledBytes;
+    }
+
+    /**
+     * Get the pool shared by the rendering samples.
+     *
+     * @return the shared pool
+     */
+    public static RasterBufferPool getSharedPool() {
+        return SHARED_POOL;
+    }
+
+    /**
+     * Borrow an image, reusing a released one of the same size and type if there is one.
+     *
+     * @param width the width of the image
+     * @param height the height of the image
+     * @param imageType the type of the image, one of the {@link BufferedImage} TYPE_ constants
+     * @return the image, which must be released when the caller is done with it
+     */
+    public BufferedImage borrow(final int width, final int height, final int imageType) {
+        BufferedImage image = null;
+        synchronized (this) {
+            final Deque<BufferedImage> images = pooled.get(key(width, height, imageType));
+            if (images != null && !images.isEmpty()) {
+                image = images.pop();
+                final long size = sizeOf(image);
+                pooledBytes -= size;
+                pooledCount--;
+                reuses++;
+                bytesReused += size;
+            } else {
+                allocations++;
+            }
+        }
+        if (image == null) {
+            image = new BufferedImage(width, height, imageType);
+        }
+        synchronized (this) {
+            borrowed.add(image);
+        }
+        return image;
+    }
+
+    /**
+     * Return a borrowed image to the pool. Images that didn't come from this pool are ignored.
+     *
+     * @param image the image, which the caller must not use afterwards; may be null
+     */
+    public synchronized void release(final BufferedImage image) {
+        if (image == null || !borrowed.remove(image)) {
+            return;
+        }
+        final long size = sizeOf(image);
+        if (pooledBytes + size > maxPooledBytes) {
+            return;
+        }
+        final String key = key(image.getWidth(), image.getHeight(), image.getType());
+        Deque<BufferedImage> images = pooled.get(key);
+        if (images == null) {
+            images = new ArrayDeque<>();
+            pooled.put(key, images);
+        }
+        images.push(image);
+        pooledBytes += size;
+        pooledCount++;
+    }
+
+    /**
+     * Get the number of images waiting in the pool to be borrowed.
+     *
+     * @return the number of pooled images
+     */
+    public synchronized int getPooledCount() {
+        return pooledCount;
+    }
+
+    /**
+     * Get the total size of the images waiting in the pool to be borrowed.
+     *
+     * @return the size of the pooled images, in bytes
+     */
+    public synchronized long getPooledBytes() {
+        return pooledBytes;
+    }
+
+    /**
+     * Get the number of images currently borrowed. Images that were never released stop being counted once they're
+     * garbage collected.
+     *
+     * @return the number of borrowed images
+     */
+    public synchronized int getBorrowedCount() {
+        return borrowed.size();
+    }
+
+    /**
+     * Get the number of borrows that had to allocate a new image.
+     *
+     * @return the number of allocations
+     */
+    public synchronized long getAllocationCount() {
+        return allocations;
+    }
+
+    /**
+     * Get the number of borrows that reused a pooled image, each one an allocation avoided.
+     *
+     * @return the number of reuses
+     */
+    public synchronized long getReuseCount() {
+        return reuses;
+    }
+
+    /**
+     * Get the total size of the images that were reused rather than allocated.
+     *
+     * @return the size of the allocations avoided, in bytes
+     */
+    public synchronized long getBytesReused() {
+        return bytesReused;
+    }
+
+    private static String key(final int width, final int height, final int imageType) {
+        return width + "x" + height + ":" + imageType;
+    }
+
+    private static long sizeOf(final BufferedImage image) {
+        final DataBuffer buffer = image.getRaster().getDataBuffer();
+        return (long) buffer.getSize() * buffer.getNumBanks() * DataBuffer.getDataTypeSize(buffer.getDataType()) / 8;
+    }
+}
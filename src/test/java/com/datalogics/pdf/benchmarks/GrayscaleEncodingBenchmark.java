@@ -0,0 +1,199 @@
+/*
+ * Copyright 2015 Datalogics, Inc.
+ */
+
+package com.datalogics.pdf.benchmarks;
+
+import com.adobe.pdfjt.core.license.LicenseManager;
+import com.adobe.pdfjt.pdf.document.PDFDocument;
+import com.adobe.pdfjt.pdf.page.PDFPageTree;
+import com.adobe.pdfjt.services.rasterizer.PageRasterizer;
+
+import com.datalogics.pdf.samples.rendering.GrayscaleConverter;
+import com.datalogics.pdf.samples.rendering.PageRasterOptions;
+import com.datalogics.pdf.samples.rendering.PngEncoder;
+import com.datalogics.pdf.samples.rendering.RenderPdf;
+import com.datalogics.pdf.samples.rendering.TiffPageWriter;
+import com.datalogics.pdf.samples.util.DocumentUtils;
+import com.datalogics.pdf.samples.util.FontUtils;
+import com.datalogics.pdf.samples.util.IoUtils;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.net.URL;
+
+import javax.imageio.ImageIO;
+
+/**
+ * A benchmark comparing the time taken to convert rendered pages to gray and to black and white with the
+ * {@link GrayscaleConverter}, and the time taken and the size of the output when they are encoded as PNG and TIFF,
+ * against the color page.
+ *
+ * <p>
+ * The first page of the document is rendered at 300 DPI, then converted and encoded repeatedly, after a warm-up round.
+ * The average time and the size of the output are logged for each.
+ *
+ * <p>
+ * This isn't a sample, so it lives with the tests and isn't run by the build. Run it from the test classpath, for
+ * example:
+ *
+ * <pre>
+ * mvn test-compile exec:java -Dexec.classpathScope=test \
+ *     -Dexec.mainClass=com.datalogics.pdf.benchmarks.GrayscaleEncodingBenchmark [-Dexec.args=input.pdf]
+ * </pre>
+ */
+public final class GrayscaleEncodingBenchmark {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+    private static final int RESOLUTION = 300;
+    private static final int ROUNDS = 5;
+    private static final int THRESHOLD = 128;
+
+    /**
+     * A conversion or encoding to time, which reports the size of what it made.
+     */
+    private interface Task {
+        long run() throws IOException;
+    }
+
+    /**
+     * This is a utility class, and won't be instantiated.
+     */
+    private GrayscaleEncodingBenchmark() {}
+
+    /**
+     * Main program.
+     *
+     * @param args command line arguments
+     * @throws Exception a general exception was thrown
+     */
+    public static void main(final String... args) throws Exception {
+        LicenseManager.setLicensePath(".");
+        final URL inputUrl = args.length > 0 ? IoUtils.createUrlFromPath(args[0])
+                                             : RenderPdf.class.getResource(RenderPdf.DEFAULT_INPUT);
+        benchmark(inputUrl);
+    }
+
+    /**
+     * Render the first page of a PDF and log how long it takes to convert and encode in each way.
+     *
+     * @param inputUrl path to the PDF to render
+     * @throws Exception a general exception was thrown
+     */
+    public static void benchmark(final URL inputUrl) throws Exception {
+        final BufferedImage page;
+        final PDFDocument pdfDocument = DocumentUtils.openPdfDocument(inputUrl);
+        try {
+            final PDFPageTree pageTree = pdfDocument.requirePages();
+            final PageRasterOptions pageOptions = new PageRasterOptions(RESOLUTION);
+            page = new PageRasterizer(pageTree, 0, 0,
+                                      pageOptions.getOptions(pageTree.getPage(0),
+                                                             FontUtils.getDocFontSet(pdfDocument))).next();
+        } finally {
+            pdfDocument.close();
+        }
+
+        final BufferedImage gray = GrayscaleConverter.toGray(page);
+        final BufferedImage bilevel = GrayscaleConverter.toBilevel(page, THRESHOLD, false);
+        final BufferedImage dithered = GrayscaleConverter.toBilevel(page, THRESHOLD, true);
+        final PngEncoder pngEncoder = new PngEncoder();
+        final File tiffFile = File.createTempFile(GrayscaleEncodingBenchmark.class.getSimpleName(), ".tif");
+        try {
+            for (int round = 0; round < 2; round++) {
+                // The first round warms up the JIT compiler, and isn't logged.
+                final boolean log = round > 0;
+
+                time(log, "toGray", new Task() {
+                    @Override
+                    public long run() {
+                        return imageBytes(GrayscaleConverter.toGray(page));
+                    }
+                });
+                time(log, "toBilevel", new Task() {
+                    @Override
+                    public long run() {
+                        return imageBytes(GrayscaleConverter.toBilevel(page, THRESHOLD, false));
+                    }
+                });
+                time(log, "toBilevel, dithered", new Task() {
+                    @Override
+                    public long run() {
+                        return imageBytes(GrayscaleConverter.toBilevel(page, THRESHOLD, true));
+                    }
+                });
+
+                timePng(log, "PNG, color", page, pngEncoder);
+                timePng(log, "PNG, gray", gray, pngEncoder);
+                // ImageIO keeps 1-bit images 1-bit in the PNG; PngEncoder would write them as RGB.
+                timePng(log, "PNG, bilevel", bilevel, null);
+                timePng(log, "PNG, dithered", dithered, null);
+
+                timeTiff(log, "TIFF, color", page, tiffFile);
+                timeTiff(log, "TIFF, gray", gray, tiffFile);
+                timeTiff(log, "TIFF, bilevel", bilevel, tiffFile);
+                timeTiff(log, "TIFF, dithered", dithered, tiffFile);
+            }
+        } finally {
+            if (!tiffFile.delete() && LOGGER.isWarnEnabled()) {
+                LOGGER.warn("Couldn't delete " + tiffFile);
+            }
+        }
+    }
+
+    private static void timePng(final boolean log, final String name, final BufferedImage image,
+                                final PngEncoder encoder)
+                    throws IOException {
+        final ByteArrayOutputStream output = new ByteArrayOutputStream();
+        time(log, name, new Task() {
+            @Override
+            public long run() throws IOException {
+                output.reset();
+                if (encoder == null) {
+                    ImageIO.write(image, "png", output);
+                } else {
+                    encoder.encode(image, output);
+                }
+                return output.size();
+            }
+        });
+    }
+
+    private static void timeTiff(final boolean log, final String name, final BufferedImage image,
+                                 final File tiffFile)
+                    throws IOException {
+        time(log, name, new Task() {
+            @Override
+            public long run() throws IOException {
+                try (TiffPageWriter writer = new TiffPageWriter(tiffFile)) {
+                    writer.writePage(image, RESOLUTION);
+                }
+                return tiffFile.length();
+            }
+        });
+    }
+
+    private static void time(final boolean log, final String name, final Task task) throws IOException {
+        long size = 0;
+        final long start = System.nanoTime();
+        for (int i = 0; i < ROUNDS; i++) {
+            size = task.run();
+        }
+        final long millis = (System.nanoTime() - start) / ROUNDS / 1000000;
+        if (log && LOGGER.isInfoEnabled()) {
+            LOGGER.info(name + ": " + millis + " ms, " + size + " bytes");
+        }
+    }
+
+    /**
+     * Get the size of the pixels of an image in memory.
+     */
+    private static long imageBytes(final BufferedImage image) {
+        return (long) image.getWidth() * image.getHeight() * image.getColorModel().getPixelSize() / 8;
+    }
+}
@@ -0,0 +1,112 @@
+/*
+ * Copyright 2015 Datalogics, Inc.
+ */
+
+package com.datalogics.pdf.benchmarks;
+
+import com.adobe.pdfjt.core.license.LicenseManager;
+import com.adobe.pdfjt.pdf.document.PDFDocument;
+
+import com.datalogics.pdf.samples.rendering.ParallelPageRenderer;
+import com.datalogics.pdf.samples.rendering.RenderPdf;
+import com.datalogics.pdf.samples.util.DocumentUtils;
+import com.datalogics.pdf.samples.util.IoUtils;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.awt.image.BufferedImage;
+import java.lang.invoke.MethodHandles;
+import java.net.URL;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A benchmark sweeping the number of threads a {@link ParallelPageRenderer} renders with, to find where adding
+ * threads stops paying.
+ *
+ * <p>
+ * Every page of the document is rendered at 300 DPI with 1, 2, 4, and so on up to twice the number of processors,
+ * after a warm-up round. Rendered pages are dropped rather than encoded, so only rasterization is timed. The time, the
+ * pages per second, and the speed-up over one thread are logged for each thread count.
+ *
+ * <p>
+ * This isn't a sample, and takes minutes to run, so it lives with the tests and isn't run by the build. Run it from
+ * the test classpath, for example:
+ *
+ * <pre>
+ * mvn test-compile exec:java -Dexec.classpathScope=test \
+ *     -Dexec.mainClass=com.datalogics.pdf.benchmarks.ParallelRenderingBenchmark [-Dexec.args=input.pdf]
+ * </pre>
+ */
+public final class ParallelRenderingBenchmark {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+    private static final int RESOLUTION = 300;
+
+    /**
+     * This is a utility class, and won't be instantiated.
+     */
+    private ParallelRenderingBenchmark() {}
+
+    /**
+     * Main program.
+     *
+     * @param args command line arguments
+     * @throws Exception a general exception was thrown
+     */
+    public static void main(final String... args) throws Exception {
+        LicenseManager.setLicensePath(".");
+        final URL inputUrl = args.length > 0 ? IoUtils.createUrlFromPath(args[0])
+                                             : RenderPdf.class.getResource(RenderPdf.DEFAULT_INPUT);
+        benchmark(inputUrl);
+    }
+
+    /**
+     * Render every page of a PDF with each thread count, and log how long it takes.
+     *
+     * @param inputUrl path to the PDF to render
+     * @throws Exception a general exception was thrown
+     */
+    public static void benchmark(final URL inputUrl) throws Exception {
+        final int pageCount;
+        final PDFDocument pdfDocument = DocumentUtils.openPdfDocument(inputUrl);
+        try {
+            pageCount = pdfDocument.requirePages().getCount();
+        } finally {
+            pdfDocument.close();
+        }
+
+        // The first pass warms up the JIT compiler, and isn't logged.
+        time(false, inputUrl, pageCount, 1, 0);
+
+        final int maxThreads = 2 * Runtime.getRuntime().availableProcessors();
+        final long singleThreadNanos = time(true, inputUrl, pageCount, 1, 0);
+        for (int threads = 2; threads <= maxThreads; threads *= 2) {
+            time(true, inputUrl, pageCount, threads, singleThreadNanos);
+        }
+    }
+
+    private static long time(final boolean log, final URL inputUrl, final int pageCount, final int threads,
+                             final long singleThreadNanos)
+                    throws Exception {
+        final AtomicLong pixels = new AtomicLong();
+        final ParallelPageRenderer renderer = new ParallelPageRenderer(inputUrl, RESOLUTION, threads);
+        final long start = System.nanoTime();
+        renderer.render(0, pageCount - 1, false, new ParallelPageRenderer.PageHandler() {
+            @Override
+            public void handlePage(final int pageNumber, final BufferedImage image) {
+                pixels.addAndGet((long) image.getWidth() * image.getHeight());
+            }
+        });
+        final long nanos = System.nanoTime() - start;
+
+        if (log && LOGGER.isInfoEnabled()) {
+            final double seconds = nanos / 1e9;
+            final String speedup = singleThreadNanos > 0 ? String.format(", %.2fx", (double) singleThreadNanos / nanos)
+                                                         : "";
+            LOGGER.info(String.format("%d threads: %d ms, %.1f pages/s, %d Mpixels%s", threads, nanos / 1000000,
+                                      pageCount / seconds, pixels.get() / 1000000, speedup));
+        }
+        return nanos;
+    }
+}
@@ -0,0 +1,132 @@
+/*
+ * Copyright 2015 Datalogics, Inc.
+ */
+
+package com.datalogics.pdf.benchmarks;
+
+import com.adobe.pdfjt.core.license.LicenseManager;
+import com.adobe.pdfjt.pdf.document.PDFDocument;
+import com.adobe.pdfjt.pdf.page.PDFPageTree;
+import com.adobe.pdfjt.services.rasterizer.PageRasterizer;
+
+import com.datalogics.pdf.samples.rendering.PageRasterOptions;
+import com.datalogics.pdf.samples.rendering.PngEncoder;
+import com.datalogics.pdf.samples.rendering.RenderPdf;
+import com.datalogics.pdf.samples.util.DocumentUtils;
+import com.datalogics.pdf.samples.util.FontUtils;
+import com.datalogics.pdf.samples.util.IoUtils;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.net.URL;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import javax.imageio.ImageIO;
+
+/**
+ * A benchmark comparing the time taken to encode rendered pages as PNG by ImageIO and by the {@link PngEncoder}, at
+ * several compression levels and filters, on one thread and in parallel.
+ *
+ * <p>
+ * The first page of the document is rendered at 300 DPI, then encoded repeatedly in memory with each encoder, after a
+ * warm-up round. The average time and the size of the PNG are logged for each.
+ *
+ * <p>
+ * This isn't a sample, and takes minutes to run, so it lives with the tests, outside the samples package that
+ * {@code RunMainMethodsFromJarIntegrationTest} runs, and isn't run by the build. Run it from the test classpath, for
+ * example:
+ *
+ * <pre>
+ * mvn test-compile exec:java -Dexec.classpathScope=test \
+ *     -Dexec.mainClass=com.datalogics.pdf.benchmarks.PngEncodingBenchmark [-Dexec.args=input.pdf]
+ * </pre>
+ */
+public final class PngEncodingBenchmark {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+    private static final int RESOLUTION = 300;
+    private static final int ROUNDS = 5;
+
+    /**
+     * This is a utility class, and won't be instantiated.
+     */
+    private PngEncodingBenchmark() {}
+
+    /**
+     * Main program.
+     *
+     * @param args command line arguments
+     * @throws Exception a general exception was thrown
+     */
+    public static void main(final String... args) throws Exception {
+        LicenseManager.setLicensePath(".");
+        final URL inputUrl = args.length > 0 ? IoUtils.createUrlFromPath(args[0])
+                                             : RenderPdf.class.getResource(RenderPdf.DEFAULT_INPUT);
+        benchmark(inputUrl);
+    }
+
+    /**
+     * Render the first page of a PDF and log how long it takes to encode as PNG in each way.
+     *
+     * @param inputUrl path to the PDF to render
+     * @throws Exception a general exception was thrown
+     */
+    public static void benchmark(final URL inputUrl) throws Exception {
+        final BufferedImage page;
+        final PDFDocument pdfDocument = DocumentUtils.openPdfDocument(inputUrl);
+        try {
+            final PDFPageTree pageTree = pdfDocument.requirePages();
+            final PageRasterOptions pageOptions = new PageRasterOptions(RESOLUTION);
+            page = new PageRasterizer(pageTree, 0, 0,
+                                      pageOptions.getOptions(pageTree.getPage(0),
+                                                             FontUtils.getDocFontSet(pdfDocument))).next();
+        } finally {
+            pdfDocument.close();
+        }
+
+        final int threads = Runtime.getRuntime().availableProcessors();
+        final ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            for (int round = 0; round < 2; round++) {
+                // The first round warms up the JIT compiler, and isn't logged.
+                final boolean log = round > 0;
+                time(log, "ImageIO", page, null);
+                for (final int level : new int[] { 1, PngEncoder.DEFAULT_LEVEL, 6, 9 }) {
+                    for (final PngEncoder.Filter filter : PngEncoder.Filter.values()) {
+                        time(log, "level " + level + ", " + filter + ", 1 thread", page,
+                             new PngEncoder(level, filter, null));
+                        time(log, "level " + level + ", " + filter + ", " + threads + " threads", page,
+                             new PngEncoder(level, filter, executor));
+                    }
+                }
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private static void time(final boolean log, final String name, final BufferedImage page,
+                             final PngEncoder encoder)
+                    throws IOException {
+        final ByteArrayOutputStream output = new ByteArrayOutputStream();
+        final long start = System.nanoTime();
+        for (int i = 0; i < ROUNDS; i++) {
+            output.reset();
+            if (encoder == null) {
+                ImageIO.write(page, "png", output);
+            } else {
+                encoder.encode(page, output);
+            }
+        }
+        final long millis = (System.nanoTime() - start) / ROUNDS / 1000000;
+        if (log && LOGGER.isInfoEnabled()) {
+            LOGGER.info(name + ": " + millis + " ms, " + output.size() + " bytes");
+        }
+    }
+}
@@ -0,0 +1,179 @@
+/*
+ * Copyright 2015 Datalogics, Inc.
+ */
+
+package com.datalogics.pdf.benchmarks;
+
+import com.adobe.pdfjt.core.license.LicenseManager;
+import com.adobe.pdfjt.pdf.document.PDFDocument;
+import com.adobe.pdfjt.pdf.page.PDFPageTree;
+import com.adobe.pdfjt.services.rasterizer.PageRasterizer;
+
+import com.datalogics.pdf.samples.rendering.PageRasterOptions;
+import com.datalogics.pdf.samples.rendering.RenderPdf;
+import com.datalogics.pdf.samples.util.DocumentUtils;
+import com.datalogics.pdf.samples.util.FontUtils;
+import com.datalogics.pdf.samples.util.IoUtils;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.awt.Graphics;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.management.ManagementFactory;
+import java.net.URL;
+
+import javax.imageio.ImageIO;
+
+/**
+ * A benchmark comparing the memory allocated to convert a rendered page to RGB for JPEG encoding, by viewing its
+ * color bands with {@link RenderPdf#convertToRgb} and by drawing it onto a new RGB image.
+ *
+ * <p>
+ * The first page of the document is rendered at 300 DPI, as TYPE_INT_ARGB and as TYPE_4BYTE_ABGR, then converted
+ * repeatedly each way, after a warm-up round. The bytes allocated per page by the converting thread, as reported by
+ * {@link com.sun.management.ThreadMXBean#getThreadAllocatedBytes(long)}, and the time taken are logged, both for the
+ * conversion alone and for the conversion followed by JPEG encoding.
+ *
+ * <p>
+ * This isn't a sample, so it lives with the tests and isn't run by the build. It needs a JVM that measures thread
+ * allocation, like HotSpot. Run it from the test classpath, for example:
+ *
+ * <pre>
+ * mvn test-compile exec:java -Dexec.classpathScope=test \
+ *     -Dexec.mainClass=com.datalogics.pdf.benchmarks.RgbConversionBenchmark [-Dexec.args=input.pdf]
+ * </pre>
+ */
+public final class RgbConversionBenchmark {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+    private static final int RESOLUTION = 300;
+    private static final int ROUNDS = 10;
+
+    /**
+     * A way to convert a page to RGB.
+     */
+    private interface Conversion {
+        BufferedImage convert(BufferedImage page);
+    }
+
+    private static final Conversion VIEW = new Conversion() {
+        @Override
+        public BufferedImage convert(final BufferedImage page) {
+            return RenderPdf.convertToRgb(page);
+        }
+    };
+
+    private static final Conversion COPY = new Conversion() {
+        @Override
+        public BufferedImage convert(final BufferedImage page) {
+            final BufferedImage copy = new BufferedImage(page.getWidth(), page.getHeight(),
+                                                         BufferedImage.TYPE_INT_RGB);
+            final Graphics graphics = copy.getGraphics();
+            try {
+                graphics.drawImage(page, 0, 0, null);
+            } finally {
+                graphics.dispose();
+            }
+            return copy;
+        }
+    };
+
+    /**
+     * This is a utility class, and won't be instantiated.
+     */
+    private RgbConversionBenchmark() {}
+
+    /**
+     * Main program.
+     *
+     * @param args command line arguments
+     * @throws Exception a general exception was thrown
+     */
+    public static void main(final String... args) throws Exception {
+        LicenseManager.setLicensePath(".");
+        final URL inputUrl = args.length > 0 ? IoUtils.createUrlFromPath(args[0])
+                                             : RenderPdf.class.getResource(RenderPdf.DEFAULT_INPUT);
+        benchmark(inputUrl);
+    }
+
+    /**
+     * Render the first page of a PDF and log how much memory and time it takes to convert to RGB in each way.
+     *
+     * @param inputUrl path to the PDF to render
+     * @throws Exception a general exception was thrown
+     */
+    public static void benchmark(final URL inputUrl) throws Exception {
+        final java.lang.management.ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+        if (!(threadBean instanceof com.sun.management.ThreadMXBean)
+            || !((com.sun.management.ThreadMXBean) threadBean).isThreadAllocatedMemorySupported()) {
+            throw new UnsupportedOperationException("this JVM doesn't measure the memory allocated by a thread");
+        }
+        final com.sun.management.ThreadMXBean allocationBean = (com.sun.management.ThreadMXBean) threadBean;
+        allocationBean.setThreadAllocatedMemoryEnabled(true);
+
+        final BufferedImage intPage;
+        final PDFDocument pdfDocument = DocumentUtils.openPdfDocument(inputUrl);
+        try {
+            final PDFPageTree pageTree = pdfDocument.requirePages();
+            final PageRasterOptions pageOptions = new PageRasterOptions(RESOLUTION);
+            intPage = new PageRasterizer(pageTree, 0, 0,
+                                         pageOptions.getOptions(pageTree.getPage(0),
+                                                                FontUtils.getDocFontSet(pdfDocument))).next();
+        } finally {
+            pdfDocument.close();
+        }
+        final BufferedImage bytePage = new BufferedImage(intPage.getWidth(), intPage.getHeight(),
+                                                         BufferedImage.TYPE_4BYTE_ABGR);
+        final Graphics graphics = bytePage.getGraphics();
+        try {
+            graphics.drawImage(intPage, 0, 0, null);
+        } finally {
+            graphics.dispose();
+        }
+
+        for (int round = 0; round < 2; round++) {
+            // The first round warms up the JIT compiler, and isn't logged.
+            final boolean log = round > 0;
+            for (final BufferedImage page : new BufferedImage[] { intPage, bytePage }) {
+                final String type = page == intPage ? "TYPE_INT_ARGB" : "TYPE_4BYTE_ABGR";
+                measure(log, allocationBean, type + ", view", page, VIEW, false);
+                measure(log, allocationBean, type + ", copy", page, COPY, false);
+                measure(log, allocationBean, type + ", view + JPEG", page, VIEW, true);
+                measure(log, allocationBean, type + ", copy + JPEG", page, COPY, true);
+            }
+        }
+    }
+
+    private static void measure(final boolean log, final com.sun.management.ThreadMXBean allocationBean,
+                                final String name, final BufferedImage page, final Conversion conversion,
+                                final boolean encode)
+                    throws IOException {
+        final long threadId = Thread.currentThread().getId();
+        final ByteArrayOutputStream output = new ByteArrayOutputStream(1 << 20);
+        long checksum = 0;
+
+        final long startBytes = allocationBean.getThreadAllocatedBytes(threadId);
+        final long start = System.nanoTime();
+        for (int i = 0; i < ROUNDS; i++) {
+            final BufferedImage rgb = conversion.convert(page);
+            if (encode) {
+                output.reset();
+                ImageIO.write(rgb, "jpeg", output);
+                checksum += output.size();
+            } else {
+                // Read a pixel so the conversion can't be optimized away.
+                checksum += rgb.getRGB(rgb.getWidth() / 2, rgb.getHeight() / 2);
+            }
+        }
+        final long millis = (System.nanoTime() - start) / ROUNDS / 1000000;
+        final long bytes = (allocationBean.getThreadAllocatedBytes(threadId) - startBytes) / ROUNDS;
+
+        if (log && LOGGER.isInfoEnabled()) {
+            LOGGER.info(name + ": " + bytes / 1024 + " KB allocated per page, " + millis + " ms (" + checksum + ")");
+        }
+    }
+}
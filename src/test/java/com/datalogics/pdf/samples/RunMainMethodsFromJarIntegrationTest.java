@@ -33,6 +33,7 @@ import java.net.URL;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Set;
+import java.util.TreeSet;
 
 import javax.print.PrintService;
 import javax.print.PrintServiceLookup;
@@ -84,7 +85,11 @@ public class RunMainMethodsFromJarIntegrationTest {
     }
 
     /**
-     * Get the names of all classes in the package this class is in.
+     * Get the names of all classes in the package this class is in, and its subpackages.
+     *
+     * <p>
+     * The scan covers every class in the class path entries that contain the package, so classes in other packages,
+     * like the benchmarks among the tests, are left out here.
      *
      * @return a set of strings of the class names
      */
@@ -94,7 +99,13 @@ public class RunMainMethodsFromJarIntegrationTest {
         final SubTypesScanner scanners = new SubTypesScanner(false);
         final Reflections reflections = new Reflections(new ConfigurationBuilder().setUrls(urls)
                                                                                   .setScanners(scanners));
-        return reflections.getAllTypes();
+        final Set<String> classes = new TreeSet<>();
+        for (final String className : reflections.getAllTypes()) {
+            if (className.startsWith(packageName + ".")) {
+                classes.add(className);
+            }
+        }
+        return classes;
     }
 
     /**
@@ -5,6 +5,7 @@
 package com.datalogics.pdf.samples.extraction;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
 import com.adobe.pdfjt.core.exceptions.PDFIOException;
@@ -20,6 +21,7 @@ import com.adobe.pdfjt.pdf.page.PDFPageTree;
 import com.datalogics.pdf.document.DocumentHelper;
 import com.datalogics.pdf.samples.SampleTestBase;
 import com.datalogics.pdf.samples.util.LogEventListCollector;
+import com.datalogics.pdf.samples.util.PageRange;
 
 import ch.qos.logback.classic.Level;
 import ch.qos.logback.classic.spi.ILoggingEvent;
@@ -42,6 +44,7 @@ public class TextExtractTest extends SampleTestBase {
     private static final String OUTPUT_FILE_PATH = "TextExtractTest.txt";
     private static final String INPUT_PDF_PATH = "/com/datalogics/pdf/samples/pdfjavatoolkit-ds.pdf";
     private static final String EXTRACTED_DOCUMENT_NAME = "TextExtractTest-ReadingOrder.txt";
+    private static final String PAGE_RANGE_OUTPUT_FILE_PATH = "TextExtractTest-PageRange.txt";
     private static final String EMPTY_PDF_FILE_PATH = "Empty.pdf";
     private static final String EMPTY_TEXT_FILE_PATH = "Empty.txt";
 
@@ -62,6 +65,22 @@ public class TextExtractTest extends SampleTestBase {
         assertEquals(contentsOfResource(EXTRACTED_DOCUMENT_NAME), extractedText);
     }
 
+    @Test
+    public void testExtractTextPageRange() throws Exception {
+        final File file = newOutputFileWithDelete(PAGE_RANGE_OUTPUT_FILE_PATH);
+
+        final URL inputUrl = TextExtract.class.getResource(INPUT_PDF_PATH);
+        final URL outputUrl = file.toURI().toURL();
+
+        TextExtract.extractTextReadingOrder(inputUrl, outputUrl, PageRange.of(2, 2));
+        assertTrue(file.getPath() + " must exist after run", file.exists());
+
+        final String pageText = contentsOfTextFile(file);
+        assertFalse("Text of page 2 must not be empty", pageText.isEmpty());
+        assertTrue("Text of page 2 must be part of the text of the document",
+                   contentsOfResource(EXTRACTED_DOCUMENT_NAME).contains(pageText.trim()));
+    }
+
     @Test
     public void testDocumentWithNoText() throws Exception {
         // Create a new document with a single empty page
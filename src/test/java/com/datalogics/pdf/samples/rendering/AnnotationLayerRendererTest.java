@@ -0,0 +1,58 @@
+/*
+ * Copyright 2015 Datalogics, Inc.
+ */
+
+package com.datalogics.pdf.samples.rendering;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+import java.awt.Rectangle;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Test how the AnnotationLayerRenderer limits the number of regions it rasterizes.
+ */
+public class AnnotationLayerRendererTest {
+
+    /**
+     * Check that a few regions are rasterized separately.
+     *
+     * @throws Exception a general exception was thrown
+     */
+    @Test
+    public void fewRegionsStaySeparate() throws Exception {
+        final List<Rectangle> regions = newRegions(AnnotationLayerRenderer.MAX_REGIONS);
+
+        assertEquals("regions", regions,
+                     AnnotationLayerRenderer.limitRegions(regions, AnnotationLayerRenderer.MAX_REGIONS));
+    }
+
+    /**
+     * Check that many regions, like the notes of a heavily reviewed page, are merged into their bounding box, so the
+     * page's content is rasterized once rather than once per note.
+     *
+     * @throws Exception a general exception was thrown
+     */
+    @Test
+    public void manyRegionsMergeIntoBoundingBox() throws Exception {
+        final List<Rectangle> regions = newRegions(30);
+
+        assertEquals("regions", Collections.singletonList(new Rectangle(10, 10, 29 * 20 + 10, 29 * 15 + 8)),
+                     AnnotationLayerRenderer.limitRegions(regions, AnnotationLayerRenderer.MAX_REGIONS));
+    }
+
+    /**
+     * Make separate regions, running diagonally down the page.
+     */
+    private static List<Rectangle> newRegions(final int count) {
+        final List<Rectangle> regions = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            regions.add(new Rectangle(10 + i * 20, 10 + i * 15, 10, 8));
+        }
+        return regions;
+    }
+}
@@ -0,0 +1,153 @@
+/*
+ * Copyright 2015 Datalogics, Inc.
+ */
+
+package com.datalogics.pdf.samples.rendering;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.awt.Color;
+import java.awt.Graphics;
+import java.awt.image.BufferedImage;
+import java.awt.image.Raster;
+
+/**
+ * Test the pixel values that the GrayscaleConverter produces.
+ */
+public class GrayscaleConverterTest {
+
+    private static final int WIDTH = 64;
+    private static final int HEIGHT = 48;
+    private static final int WHITE = 255;
+
+    /**
+     * Check that a white page stays white in gray, and in black and white with and without dithering.
+     *
+     * @throws Exception a general exception was thrown
+     */
+    @Test
+    public void whitePageStaysWhite() throws Exception {
+        final BufferedImage page = newFilledImage(Color.WHITE);
+
+        assertAllSamples("gray", WHITE, GrayscaleConverter.toGray(page));
+        assertAllSamples("bilevel", 1, GrayscaleConverter.toBilevel(page, 128, false));
+        assertAllSamples("dithered", 1, GrayscaleConverter.toBilevel(page, 128, true));
+    }
+
+    /**
+     * Check that transparent parts of a page are treated as white paper.
+     *
+     * @throws Exception a general exception was thrown
+     */
+    @Test
+    public void transparentPageIsWhite() throws Exception {
+        final BufferedImage page = new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_INT_ARGB);
+
+        assertAllSamples("gray", WHITE, GrayscaleConverter.toGray(page));
+        assertAllSamples("bilevel", 1, GrayscaleConverter.toBilevel(page, 128, false));
+    }
+
+    /**
+     * Check that gray levels follow the luminance of the colors.
+     *
+     * @throws Exception a general exception was thrown
+     */
+    @Test
+    public void grayFollowsLuminance() throws Exception {
+        assertAllSamples("black", 0, GrayscaleConverter.toGray(newFilledImage(Color.BLACK)));
+        assertAllSamples("mid gray", 128, GrayscaleConverter.toGray(newFilledImage(new Color(128, 128, 128))));
+        // ITU-R BT.601: 0.299 * 255, rounded.
+        assertAllSamples("red", 76, GrayscaleConverter.toGray(newFilledImage(Color.RED)));
+    }
+
+    /**
+     * Check that, without dithering, a threshold of 0 makes every pixel white, even black ones, and that a threshold
+     * of 255 makes every pixel that isn't pure white black. Dithering carries each pixel's error to its neighbors, so
+     * the threshold isn't a hard cut there.
+     *
+     * @throws Exception a general exception was thrown
+     */
+    @Test
+    public void extremeThresholds() throws Exception {
+        final BufferedImage page = newGradientImage();
+
+        assertAllSamples("threshold 0", 1, GrayscaleConverter.toBilevel(page, 0, false));
+        assertAllSamples("threshold 255", 0, GrayscaleConverter.toBilevel(page, 255, false));
+        assertAllSamples("black page, threshold 0", 1,
+                         GrayscaleConverter.toBilevel(newFilledImage(Color.BLACK), 0, false));
+        assertAllSamples("white page, threshold 255", 1,
+                         GrayscaleConverter.toBilevel(newFilledImage(Color.WHITE), 255, false));
+    }
+
+    /**
+     * Check that dithering a mid gray gives about half white pixels, where the threshold alone gives all one or the
+     * other.
+     *
+     * @throws Exception a general exception was thrown
+     */
+    @Test
+    public void ditheringKeepsDensity() throws Exception {
+        final BufferedImage page = newFilledImage(new Color(128, 128, 128));
+
+        assertAllSamples("not dithered", 1, GrayscaleConverter.toBilevel(page, 128, false));
+        final int white = countWhite(GrayscaleConverter.toBilevel(page, 128, true).getRaster());
+        final int pixels = WIDTH * HEIGHT;
+        assertTrue("about half the dithered pixels are white: " + white + " of " + pixels,
+                   Math.abs(white - pixels / 2) < pixels / 20);
+    }
+
+    /**
+     * Check that a threshold outside 0 to 255 is rejected.
+     *
+     * @throws Exception a general exception was thrown
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void thresholdOutOfRangeIsRejected() throws Exception {
+        GrayscaleConverter.toBilevel(newFilledImage(Color.WHITE), 256, false);
+    }
+
+    private static BufferedImage newFilledImage(final Color color) {
+        final BufferedImage image = new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_INT_ARGB);
+        final Graphics graphics = image.getGraphics();
+        try {
+            graphics.setColor(color);
+            graphics.fillRect(0, 0, WIDTH, HEIGHT);
+        } finally {
+            graphics.dispose();
+        }
+        return image;
+    }
+
+    /**
+     * Make an opaque image with every gray level from black to just short of white.
+     */
+    private static BufferedImage newGradientImage() {
+        final BufferedImage image = new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_INT_ARGB);
+        for (int y = 0; y < HEIGHT; y++) {
+            for (int x = 0; x < WIDTH; x++) {
+                final int level = (y * WIDTH + x) % WHITE;
+                image.setRGB(x, y, new Color(level, level, level).getRGB());
+            }
+        }
+        return image;
+    }
+
+    private static void assertAllSamples(final String message, final int expected, final BufferedImage image) {
+        final Raster raster = image.getRaster();
+        final int[] samples = raster.getSamples(0, 0, raster.getWidth(), raster.getHeight(), 0, (int[]) null);
+        for (int i = 0; i < samples.length; i++) {
+            assertEquals(message + ", pixel " + i, expected, samples[i]);
+        }
+    }
+
+    private static int countWhite(final Raster raster) {
+        int white = 0;
+        for (final int sample : raster.getSamples(0, 0, raster.getWidth(), raster.getHeight(), 0, (int[]) null)) {
+            white += sample;
+        }
+        return white;
+    }
+}
@@ -0,0 +1,215 @@
+/*
+ * Copyright 2015 Datalogics, Inc.
+ */
+
+package com.datalogics.pdf.samples.rendering;
+
+import static org.hamcrest.Matchers.instanceOf;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import com.datalogics.pdf.samples.SampleTestBase;
+
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+import mockit.Mock;
+import mockit.MockUp;
+
+import org.junit.Test;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.lang.invoke.MethodHandles;
+import java.net.URL;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Test the background page output pipeline.
+ */
+@SuppressFBWarnings(value = { "SIC_INNER_SHOULD_BE_STATIC_ANON", "UMAC_UNCALLABLE_METHOD_OF_ANONYMOUS_CLASS" },
+                    justification = "JMockit coding pattern depends on anonymous classes "
+                                    + "and methods with no discernable call site")
+public class PageOutputPipelineTest extends SampleTestBase {
+
+    private static final String CLASS_NAME = MethodHandles.lookup().lookupClass().getSimpleName();
+    private static final int PAGE_SIZE = 32;
+
+    /**
+     * Check that a submitted page is saved as both a PNG and a JPEG file by the time the pipeline is closed.
+     *
+     * @throws Exception a general exception was thrown
+     */
+    @Test
+    public void pageIsSavedInBothFormats() throws Exception {
+        final URL outputUrl = newOutputFile(CLASS_NAME + "-saved").toURI().toURL();
+        final File pngFile = newOutputFileWithDelete(CLASS_NAME + "-saved.1.png");
+        final File jpgFile = newOutputFileWithDelete(CLASS_NAME + "-saved.1.jpg");
+
+        try (PageOutputPipeline pipeline = new PageOutputPipeline(outputUrl, 1, 1)) {
+            pipeline.submit(1, newPage());
+        }
+
+        assertTrue(pngFile.getPath() + " must exist after run", pngFile.exists());
+        assertTrue(jpgFile.getPath() + " must exist after run", jpgFile.exists());
+    }
+
+    /**
+     * Check that an error in a stage fails the pipeline, rather than making close() wait forever for the page.
+     *
+     * @throws Exception a general exception was thrown
+     */
+    @Test(timeout = 60000)
+    public void stageErrorFailsClose() throws Exception {
+        new MockUp<RenderPdf>() {
+            @Mock
+            void savePageAsPng(final URL imageBaseUrl, final int pageNo, final BufferedImage page) {
+                throw new LinkageError("simulated error");
+            }
+        };
+
+        checkCloseFails(CLASS_NAME + "-error");
+    }
+
+    /**
+     * Check that a page whose stages both fail still leaves the pipeline, so that closing it fails instead of hanging.
+     *
+     * @throws Exception a general exception was thrown
+     */
+    @Test(timeout = 60000)
+    public void failedStagesReleasePage() throws Exception {
+        new MockUp<RenderPdf>() {
+            @Mock
+            void savePageAsPng(final URL imageBaseUrl, final int pageNo, final BufferedImage page) {
+                throw new LinkageError("simulated PNG error");
+            }
+
+            @Mock
+            void savePageAsJpeg(final URL imageBaseUrl, final int pageNo, final BufferedImage rgbPage) {
+                throw new LinkageError("simulated JPEG error");
+            }
+        };
+
+        checkCloseFails(CLASS_NAME + "-both");
+    }
+
+    /**
+     * Check that a page stays in the pipeline after its PNG stage fails, while its JPEG stage is still to run on the
+     * same image, so that the failure can't let more pages in than the pipeline allows.
+     *
+     * @throws Exception a general exception was thrown
+     */
+    @Test(timeout = 60000)
+    public void failedStageKeepsPageUntilOthersFinish() throws Exception {
+        final PageOutputPipeline[] pipeline = new PageOutputPipeline[1];
+        final int[] pagesDuringJpeg = { -1 };
+        new MockUp<RenderPdf>() {
+            @Mock
+            void savePageAsPng(final URL imageBaseUrl, final int pageNo, final BufferedImage page) {
+                throw new LinkageError("simulated PNG error");
+            }
+
+            @Mock
+            void savePageAsJpeg(final URL imageBaseUrl, final int pageNo, final BufferedImage rgbPage) {
+                // With one encoding thread, the failed PNG stage has finished before the JPEG stage starts.
+                pagesDuringJpeg[0] = pipeline[0].getPagesInFlight();
+            }
+        };
+
+        final URL outputUrl = newOutputFile(CLASS_NAME + "-in-flight").toURI().toURL();
+        pipeline[0] = new PageOutputPipeline(outputUrl, 1, 1);
+        try {
+            pipeline[0].submit(1, newPage());
+        } finally {
+            try {
+                pipeline[0].close();
+                fail("closing the pipeline must fail");
+            } catch (final ExecutionException e) {
+                assertThat("cause", e.getCause(), instanceOf(LinkageError.class));
+            }
+        }
+        assertEquals("pages in flight while the JPEG stage runs", 1, pagesDuringJpeg[0]);
+        assertEquals("pages in flight after close", 0, pipeline[0].getPagesInFlight());
+    }
+
+    /**
+     * Check that pipelines sharing a limit on pages in flight wait for each other's pages, even when each has room of
+     * its own.
+     *
+     * @throws Exception a general exception was thrown
+     */
+    @Test(timeout = 60000)
+    public void sharedLimitSpansPipelines() throws Exception {
+        final CountDownLatch encodeMayFinish = new CountDownLatch(1);
+        new MockUp<RenderPdf>() {
+            @Mock
+            void savePageAsPng(final URL imageBaseUrl, final int pageNo, final BufferedImage page)
+                            throws InterruptedException {
+                encodeMayFinish.await();
+            }
+
+            @Mock
+            void savePageAsJpeg(final URL imageBaseUrl, final int pageNo, final BufferedImage rgbPage) {}
+        };
+
+        final Semaphore sharedPages = new Semaphore(1);
+        final URL firstUrl = newOutputFile(CLASS_NAME + "-shared-1").toURI().toURL();
+        final URL secondUrl = newOutputFile(CLASS_NAME + "-shared-2").toURI().toURL();
+        try (PageOutputPipeline first = new PageOutputPipeline(firstUrl, null, 1, 1, sharedPages);
+             PageOutputPipeline second = new PageOutputPipeline(secondUrl, null, 1, 1, sharedPages)) {
+            try {
+                first.submit(1, newPage());
+
+                final AtomicBoolean submitted = new AtomicBoolean();
+                final Thread submitter = new Thread(new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            second.submit(1, newPage());
+                            submitted.set(true);
+                        } catch (final Exception e) {
+                            throw new IllegalStateException(e);
+                        }
+                    }
+                });
+                submitter.start();
+                while (!sharedPages.hasQueuedThreads()) {
+                    Thread.sleep(10);
+                }
+                assertFalse("the second pipeline must wait for the first one's page", submitted.get());
+
+                encodeMayFinish.countDown();
+                submitter.join();
+                assertTrue("the second pipeline's page must be submitted once the first one's is saved",
+                           submitted.get());
+            } finally {
+                // Don't leave the pipelines unable to close if a check failed.
+                encodeMayFinish.countDown();
+            }
+        }
+        assertEquals("shared permits after close", 1, sharedPages.availablePermits());
+    }
+
+    private static void checkCloseFails(final String name) throws Exception {
+        final URL outputUrl = newOutputFile(name).toURI().toURL();
+        final PageOutputPipeline pipeline = new PageOutputPipeline(outputUrl, 1, 1);
+        try {
+            pipeline.submit(1, newPage());
+        } finally {
+            try {
+                pipeline.close();
+                fail("closing the pipeline must fail");
+            } catch (final ExecutionException e) {
+                assertThat("cause", e.getCause(), instanceOf(LinkageError.class));
+            }
+        }
+    }
+
+    private static BufferedImage newPage() {
+        return new BufferedImage(PAGE_SIZE, PAGE_SIZE, BufferedImage.TYPE_INT_ARGB);
+    }
+}
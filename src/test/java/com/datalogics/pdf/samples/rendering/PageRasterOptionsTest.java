@@ -0,0 +1,142 @@
+/*
+ * Copyright 2015 Datalogics, Inc.
+ */
+
+package com.datalogics.pdf.samples.rendering;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.adobe.pdfjt.core.types.ASRectangle;
+import com.adobe.pdfjt.pdf.document.PDFDocument;
+import com.adobe.pdfjt.pdf.page.PDFPage;
+
+import com.datalogics.pdf.samples.SampleTestBase;
+import com.datalogics.pdf.samples.rendering.PageRasterOptions.Sizing;
+import com.datalogics.pdf.samples.util.DocumentUtils;
+
+import org.junit.Test;
+
+import java.awt.Dimension;
+import java.net.URL;
+
+/**
+ * Test the per-page raster sizes worked out by PageRasterOptions.
+ */
+public class PageRasterOptionsTest extends SampleTestBase {
+
+    private static final int RESOLUTION = 300;
+    private static final URL INPUT_URL = RenderPdf.class.getResource(RenderPdf.DEFAULT_INPUT);
+
+    /**
+     * Check that a page is sized from its crop box without truncating to whole inches.
+     *
+     * @throws Exception a general exception was thrown
+     */
+    @Test
+    public void pageIsSizedFromCropBox() throws Exception {
+        final PDFDocument document = DocumentUtils.openPdfDocument(INPUT_URL);
+        try {
+            final PDFPage page = document.requirePages().getPage(0);
+            final ASRectangle cropBox = page.getCropBox();
+            final Dimension size = new PageRasterOptions(RESOLUTION, Sizing.EACH_PAGE).getSize(page);
+
+            assertEquals("width", Math.round(cropBox.width() / 72 * RESOLUTION), size.width);
+            assertEquals("height", Math.round(cropBox.height() / 72 * RESOLUTION), size.height);
+        } finally {
+            document.close();
+        }
+    }
+
+    /**
+     * Check that a page too large for the pixel budget is rendered at a lower resolution that fits it.
+     *
+     * @throws Exception a general exception was thrown
+     */
+    @Test
+    public void largePageFitsPixelBudget() throws Exception {
+        final long maxPixels = 100000;
+        final PDFDocument document = DocumentUtils.openPdfDocument(INPUT_URL);
+        try {
+            final PDFPage page = document.requirePages().getPage(0);
+            final PageRasterOptions options = new PageRasterOptions(RESOLUTION, maxPixels, Sizing.EACH_PAGE);
+            final Dimension size = options.getSize(page);
+
+            assertTrue("resolution must be lowered", options.getResolution(page) < RESOLUTION);
+            assertTrue("page must fit the budget", (long) size.width * size.height <= maxPixels);
+        } finally {
+            document.close();
+        }
+    }
+
+    /**
+     * Check that, by default, each page is sized from its own crop box.
+     *
+     * @throws Exception a general exception was thrown
+     */
+    @Test
+    public void defaultSizingUsesEachPage() throws Exception {
+        final PDFDocument document = DocumentUtils.openPdfDocument(INPUT_URL);
+        try {
+            final PDFPage second = document.requirePages().getPage(1);
+            final ASRectangle cropBox = second.getCropBox();
+            final PageRasterOptions options = new PageRasterOptions(RESOLUTION);
+
+            assertEquals("default sizing", Sizing.EACH_PAGE, options.getSizing());
+            assertEquals("second page size",
+                         new Dimension((int) Math.round(cropBox.width() / 72 * RESOLUTION),
+                                       (int) Math.round(cropBox.height() / 72 * RESOLUTION)),
+                         options.getSize(second));
+        } finally {
+            document.close();
+        }
+    }
+
+    /**
+     * Check that, when sizing from the first page, every page is rendered at the size of the first page, from its media
+     * box rounded to whole pixels, and that the resolution reported is the pixel density that gives the first page.
+     *
+     * @throws Exception a general exception was thrown
+     */
+    @Test
+    public void firstPageSizingUsesFirstPage() throws Exception {
+        final PDFDocument document = DocumentUtils.openPdfDocument(INPUT_URL);
+        try {
+            final PDFPage first = document.requirePages().getPage(0);
+            final ASRectangle mediaBox = first.getMediaBox();
+            final PageRasterOptions options = new PageRasterOptions(RESOLUTION, Sizing.FIRST_PAGE);
+            final Dimension expected = new Dimension((int) Math.round(mediaBox.width() / 72 * RESOLUTION),
+                                                     (int) Math.round(mediaBox.height() / 72 * RESOLUTION));
+
+            assertEquals("first page size", expected, options.getSize(first));
+            assertEquals("second page size", expected, options.getSize(document.requirePages().getPage(1)));
+            assertEquals("resolution",
+                         Math.min(expected.width * 72 / mediaBox.width(), expected.height * 72 / mediaBox.height()),
+                         options.getResolution(first), 1e-9);
+        } finally {
+            document.close();
+        }
+    }
+
+    /**
+     * Check that a first page too large for the pixel budget is scaled down to fit it, along with every other page.
+     *
+     * @throws Exception a general exception was thrown
+     */
+    @Test
+    public void firstPageFitsPixelBudget() throws Exception {
+        final long maxPixels = 100000;
+        final PDFDocument document = DocumentUtils.openPdfDocument(INPUT_URL);
+        try {
+            final PDFPage first = document.requirePages().getPage(0);
+            final PageRasterOptions options = new PageRasterOptions(RESOLUTION, maxPixels, Sizing.FIRST_PAGE);
+            final Dimension size = options.getSize(first);
+
+            assertTrue("page must fit the budget", (long) size.width * size.height <= maxPixels);
+            assertEquals("second page size", size, options.getSize(document.requirePages().getPage(1)));
+            assertTrue("resolution must be lowered", options.getResolution(first) < RESOLUTION);
+        } finally {
+            document.close();
+        }
+    }
+}
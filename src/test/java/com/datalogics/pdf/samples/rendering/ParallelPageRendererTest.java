@@ -0,0 +1,86 @@
+/*
+ * Copyright 2015 Datalogics, Inc.
+ */
+
+package com.datalogics.pdf.samples.rendering;
+
+import static org.hamcrest.Matchers.instanceOf;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+import com.adobe.pdfjt.services.rasterizer.PageRasterizer;
+
+import com.datalogics.pdf.samples.SampleTestBase;
+
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+import mockit.Mock;
+import mockit.MockUp;
+
+import org.junit.Test;
+
+import java.awt.image.BufferedImage;
+import java.net.URL;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Test the parallel page renderer.
+ */
+@SuppressFBWarnings(value = { "SIC_INNER_SHOULD_BE_STATIC_ANON", "UMAC_UNCALLABLE_METHOD_OF_ANONYMOUS_CLASS" },
+                    justification = "JMockit coding pattern depends on anonymous classes "
+                                    + "and methods with no discernable call site")
+public class ParallelPageRendererTest extends SampleTestBase {
+
+    private static final int RESOLUTION = 72;
+    private static final int THREADS = 2;
+
+    /**
+     * Check that pages handed over in order arrive in page order.
+     *
+     * @throws Exception a general exception was thrown
+     */
+    @Test
+    public void inOrderPagesArriveInOrder() throws Exception {
+        final URL inputUrl = RenderPdf.class.getResource(RenderPdf.DEFAULT_INPUT);
+        final AtomicInteger expected = new AtomicInteger(1);
+        new ParallelPageRenderer(inputUrl, RESOLUTION, THREADS).render(0, 1, true,
+                                                                       new ParallelPageRenderer.PageHandler() {
+            @Override
+            public void handlePage(final int pageNumber, final BufferedImage image) {
+                assertEquals("page number", expected.getAndIncrement(), pageNumber);
+            }
+        });
+        assertEquals("pages handed over", 3, expected.get());
+    }
+
+    /**
+     * Check that an error on a worker, after it claimed a page, fails the render instead of leaving the caller
+     * waiting for that page.
+     *
+     * @throws Exception a general exception was thrown
+     */
+    @Test(timeout = 60000)
+    public void workerErrorFailsInOrderRender() throws Exception {
+        new MockUp<PageRasterizer>() {
+            @Mock
+            BufferedImage next() {
+                throw new LinkageError("simulated error");
+            }
+        };
+
+        final URL inputUrl = RenderPdf.class.getResource(RenderPdf.DEFAULT_INPUT);
+        try {
+            new ParallelPageRenderer(inputUrl, RESOLUTION, THREADS).render(0, 1, true,
+                                                                           new ParallelPageRenderer.PageHandler() {
+                @Override
+                public void handlePage(final int pageNumber, final BufferedImage image) {
+                    fail("no page can be rendered");
+                }
+            });
+            fail("the render must fail");
+        } catch (final ExecutionException e) {
+            assertThat("cause", e.getCause(), instanceOf(LinkageError.class));
+        }
+    }
+}
@@ -0,0 +1,114 @@
+/*
+ * Copyright 2015 Datalogics, Inc.
+ */
+
+package com.datalogics.pdf.samples.rendering;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import javax.imageio.ImageIO;
+
+/**
+ * Test that the PngEncoder writes PNG files that decode to the original pixels.
+ */
+public class PngEncoderTest {
+
+    private static final int WIDTH = 300;
+    private static final int HEIGHT = 1000;
+    private static final int LARGE_WIDTH = 1200;
+
+    /**
+     * Check every filter, with and without parallel compression, on the image types the samples render.
+     *
+     * @throws Exception a general exception was thrown
+     */
+    @Test
+    public void encodedImageDecodesToSamePixels() throws Exception {
+        final ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            for (final int type : new int[] { BufferedImage.TYPE_INT_ARGB, BufferedImage.TYPE_INT_RGB,
+                BufferedImage.TYPE_4BYTE_ABGR, BufferedImage.TYPE_BYTE_GRAY }) {
+                final BufferedImage image = newTestImage(type);
+                for (final PngEncoder.Filter filter : PngEncoder.Filter.values()) {
+                    for (final ExecutorService pool : new ExecutorService[] { null, executor }) {
+                        final ByteArrayOutputStream output = new ByteArrayOutputStream();
+                        new PngEncoder(PngEncoder.DEFAULT_LEVEL, filter, pool).encode(image, output);
+
+                        final BufferedImage decoded = ImageIO.read(new ByteArrayInputStream(output.toByteArray()));
+                        assertPixelsEqual("type " + type + ", " + filter + (pool == null ? "" : ", parallel"), image,
+                                          decoded);
+                    }
+                }
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * Check that compressing on the calling thread makes one stream, which is smaller than the independently
+     * compressed blocks of a parallel encoding, since matches can reach back across the whole image.
+     *
+     * @throws Exception a general exception was thrown
+     */
+    @Test
+    public void serialEncodingIsOneStream() throws Exception {
+        final BufferedImage image = newTestImage(BufferedImage.TYPE_INT_ARGB, LARGE_WIDTH);
+        final ByteArrayOutputStream serial = new ByteArrayOutputStream();
+        new PngEncoder(PngEncoder.DEFAULT_LEVEL, PngEncoder.Filter.UP, null).encode(image, serial);
+
+        final ExecutorService executor = Executors.newFixedThreadPool(2);
+        final ByteArrayOutputStream parallel = new ByteArrayOutputStream();
+        try {
+            new PngEncoder(PngEncoder.DEFAULT_LEVEL, PngEncoder.Filter.UP, executor).encode(image, parallel);
+        } finally {
+            executor.shutdown();
+        }
+
+        assertTrue("serial encoding of " + serial.size() + " bytes must be smaller than the parallel encoding of "
+                   + parallel.size() + " bytes", serial.size() < parallel.size());
+        assertPixelsEqual("serial", image, ImageIO.read(new ByteArrayInputStream(serial.toByteArray())));
+    }
+
+    private static BufferedImage newTestImage(final int type) {
+        return newTestImage(type, WIDTH);
+    }
+
+    private static BufferedImage newTestImage(final int type, final int width) {
+        final BufferedImage image = new BufferedImage(width, HEIGHT, type);
+        final Graphics2D graphics = image.createGraphics();
+        try {
+            graphics.setColor(Color.WHITE);
+            graphics.fillRect(0, 0, width, HEIGHT);
+            for (int y = 0; y < HEIGHT; y += 20) {
+                graphics.setColor(new Color(y * 7 % 256, y * 13 % 256, y * 29 % 256));
+                graphics.drawString("Rendered page text " + y, 10 + y % 50, y + 15);
+            }
+        } finally {
+            graphics.dispose();
+        }
+        return image;
+    }
+
+    private static void assertPixelsEqual(final String message, final BufferedImage expected,
+                                          final BufferedImage actual) {
+        assertEquals(message + " width", expected.getWidth(), actual.getWidth());
+        assertEquals(message + " height", expected.getHeight(), actual.getHeight());
+        for (int y = 0; y < expected.getHeight(); y++) {
+            for (int x = 0; x < expected.getWidth(); x++) {
+                assertEquals(message + " pixel " + x + "," + y, expected.getRGB(x, y), actual.getRGB(x, y));
+            }
+        }
+    }
+}
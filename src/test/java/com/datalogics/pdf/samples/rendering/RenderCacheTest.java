@@ -0,0 +1,128 @@
+/*
+ * Copyright 2015 Datalogics, Inc.
+ */
+
+package com.datalogics.pdf.samples.rendering;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.datalogics.pdf.samples.SampleTestBase;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Test;
+
+import java.io.File;
+import java.lang.invoke.MethodHandles;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Test the cache of rendered pages: the order of eviction, the bound on its size, and fetching a page in several
+ * formats.
+ */
+public class RenderCacheTest extends SampleTestBase {
+
+    private static final String CLASS_NAME = MethodHandles.lookup().lookupClass().getSimpleName();
+    private static final int ENTRY_SIZE = 100;
+
+    /**
+     * Check that the least recently used entry is evicted, rather than the least recently stored one, and that the
+     * cache stays within its maximum size.
+     *
+     * @throws Exception a general exception was thrown
+     */
+    @Test
+    public void leastRecentlyUsedIsEvicted() throws Exception {
+        final RenderCache cache = newCache("lru", 3L * ENTRY_SIZE);
+        final File source = newSource("lru");
+        cache.store("aa01", "png", source);
+        cache.store("bb02", "png", source);
+        cache.store("cc03", "png", source);
+
+        // Use the oldest entry, so that the second oldest is the one evicted.
+        assertTrue("first entry must be cached", cache.fetch("aa01", "png", newTarget("lru")));
+        cache.store("dd04", "png", source);
+
+        assertEquals("evictions", 1, cache.getEvictions());
+        assertEquals("size", 3L * ENTRY_SIZE, cache.getSize());
+        assertFalse("second entry must be evicted", cache.fetch("bb02", "png", newTarget("lru")));
+        assertTrue("first entry must be kept", cache.fetch("aa01", "png", newTarget("lru")));
+        assertTrue("third entry must be kept", cache.fetch("cc03", "png", newTarget("lru")));
+        assertTrue("fourth entry must be kept", cache.fetch("dd04", "png", newTarget("lru")));
+    }
+
+    /**
+     * Check that storing more than fits evicts entries until the cache is within its maximum size, and that the
+     * evicted files are deleted.
+     *
+     * @throws Exception a general exception was thrown
+     */
+    @Test
+    public void sizeIsBounded() throws Exception {
+        final RenderCache cache = newCache("bound", 2L * ENTRY_SIZE + ENTRY_SIZE / 2);
+        final File source = newSource("bound");
+        for (int i = 0; i < 10; i++) {
+            cache.store(String.format("%02x%02x", i, i), "png", source);
+            assertTrue("size after " + (i + 1) + " stores", cache.getSize() <= 2L * ENTRY_SIZE + ENTRY_SIZE / 2);
+        }
+
+        assertEquals("evictions", 8, cache.getEvictions());
+        assertEquals("size", 2L * ENTRY_SIZE, cache.getSize());
+        assertEquals("files on disk", 2L * ENTRY_SIZE, FileUtils.sizeOfDirectory(cacheDirectory("bound")));
+    }
+
+    /**
+     * Check that fetching a page in several formats, when only some of them are cached, copies none of them and
+     * counts each of them as a miss.
+     *
+     * @throws Exception a general exception was thrown
+     */
+    @Test
+    public void partialFetchCopiesNothing() throws Exception {
+        final RenderCache cache = newCache("partial", 10L * ENTRY_SIZE);
+        cache.store("ee05", "png", newSource("partial"));
+
+        final File pngFile = newTarget("partial.png");
+        final File jpgFile = newTarget("partial.jpg");
+        final Map<String, File> targets = new LinkedHashMap<>();
+        targets.put("png", pngFile);
+        targets.put("jpg", jpgFile);
+        assertFalse("a page missing a format must not be fetched", cache.fetchAll("ee05", targets));
+        assertFalse("the cached format must not be copied", pngFile.exists());
+        assertEquals("hits", 0, cache.getHits());
+        assertEquals("misses", 2, cache.getMisses());
+
+        cache.store("ee05", "jpg", newSource("partial"));
+        assertTrue("a page with every format must be fetched", cache.fetchAll("ee05", targets));
+        assertTrue(pngFile.getPath() + " must exist after fetch", pngFile.exists());
+        assertTrue(jpgFile.getPath() + " must exist after fetch", jpgFile.exists());
+        assertEquals("hits", 2, cache.getHits());
+    }
+
+    private static RenderCache newCache(final String name, final long maxBytes) throws Exception {
+        final File directory = cacheDirectory(name);
+        FileUtils.deleteDirectory(directory);
+        return new RenderCache(directory, maxBytes);
+    }
+
+    private static File cacheDirectory(final String name) throws Exception {
+        return newOutputFile(CLASS_NAME + "-" + name + ".cache");
+    }
+
+    private static File newSource(final String name) throws Exception {
+        final File source = newOutputFile(CLASS_NAME + "-" + name + ".source");
+        final StringBuilder contents = new StringBuilder();
+        while (contents.length() < ENTRY_SIZE) {
+            contents.append('x');
+        }
+        FileUtils.writeStringToFile(source, contents.toString(), StandardCharsets.US_ASCII);
+        return source;
+    }
+
+    private static File newTarget(final String name) throws Exception {
+        return newOutputFileWithDelete(CLASS_NAME + "-" + name + ".target");
+    }
+}
@@ -0,0 +1,54 @@
+/*
+ * Copyright 2015 Datalogics, Inc.
+ */
+
+package com.datalogics.pdf.samples.rendering;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.datalogics.pdf.samples.SampleTestBase;
+import com.datalogics.pdf.samples.util.PageRange;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Test;
+
+import java.io.File;
+import java.lang.invoke.MethodHandles;
+import java.net.URL;
+
+/**
+ * Test rendering with a cache of rendered pages in the RenderPdf sample.
+ */
+public class RenderPdfCacheTest extends SampleTestBase {
+
+    private static final String CLASS_NAME = MethodHandles.lookup().lookupClass().getSimpleName();
+    private static final int RESOLUTION = 72;
+
+    /**
+     * Check that rendering the same pages again copies them from the cache, giving the same files.
+     *
+     * @throws Exception a general exception was thrown
+     */
+    @Test
+    public void secondRenderIsServedFromCache() throws Exception {
+        final URL inputUrl = RenderPdf.class.getResource(RenderPdf.DEFAULT_INPUT);
+        final File cacheDirectory = newOutputFile(CLASS_NAME + ".cache");
+        FileUtils.deleteDirectory(cacheDirectory);
+        final RenderCache cache = new RenderCache(cacheDirectory, 64L * 1024 * 1024);
+
+        final URL firstUrl = newOutputFile(CLASS_NAME + "-first").toURI().toURL();
+        final File firstFile = newOutputFileWithDelete(CLASS_NAME + "-first.1.png");
+        RenderPdf.renderPdf(inputUrl, RESOLUTION, firstUrl, PageRange.of(1, 1), cache);
+        assertTrue(firstFile.getPath() + " must exist after run", firstFile.exists());
+        assertEquals("hits on first run", 0, cache.getHits());
+
+        final URL secondUrl = newOutputFile(CLASS_NAME + "-second").toURI().toURL();
+        final File secondFile = newOutputFileWithDelete(CLASS_NAME + "-second.1.png");
+        final File secondJpeg = newOutputFileWithDelete(CLASS_NAME + "-second.1.jpg");
+        RenderPdf.renderPdf(inputUrl, RESOLUTION, secondUrl, PageRange.of(1, 1), cache);
+        assertEquals("hits on second run", 2, cache.getHits());
+        assertTrue(secondJpeg.getPath() + " must exist after run", secondJpeg.exists());
+        assertTrue("cached page must match the rendered page", FileUtils.contentEquals(firstFile, secondFile));
+    }
+}
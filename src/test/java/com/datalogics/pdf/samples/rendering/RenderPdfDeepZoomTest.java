@@ -0,0 +1,95 @@
+/*
+ * Copyright 2015 Datalogics, Inc.
+ */
+
+package com.datalogics.pdf.samples.rendering;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import com.datalogics.pdf.samples.SampleTestBase;
+import com.datalogics.pdf.samples.util.PageRange;
+import com.datalogics.pdf.samples.util.RasterBufferPool;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Test;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.lang.invoke.MethodHandles;
+import java.net.URL;
+
+import javax.imageio.ImageIO;
+
+/**
+ * Test Deep Zoom pyramid rendering in the RenderPdf sample.
+ */
+public class RenderPdfDeepZoomTest extends SampleTestBase {
+
+    private static final String CLASS_NAME = MethodHandles.lookup().lookupClass().getSimpleName();
+    private static final int RESOLUTION = 72;
+    private static final int TILE_SIZE = 128;
+
+    /**
+     * Check that a pyramid has a manifest, a full set of levels, and a single-pixel level 0.
+     *
+     * @throws Exception a general exception was thrown
+     */
+    @Test
+    public void pyramidHasAllLevels() throws Exception {
+        final URL inputUrl = RenderPdf.class.getResource(RenderPdf.DEFAULT_INPUT);
+        final URL outputUrl = newOutputFile(CLASS_NAME).toURI().toURL();
+        final File manifestFile = newOutputFileWithDelete(CLASS_NAME + ".1.dzi");
+        final File tilesDirectory = newOutputFile(CLASS_NAME + ".1_files");
+        FileUtils.deleteDirectory(tilesDirectory);
+
+        RenderPdf.renderPdfDeepZoom(inputUrl, RESOLUTION, outputUrl, PageRange.of(1, 1), TILE_SIZE);
+
+        assertTrue(manifestFile.getPath() + " must exist after run", manifestFile.exists());
+
+        final BufferedImage levelZero = ImageIO.read(new File(new File(tilesDirectory, "0"), "0_0.png"));
+        assertEquals("level 0 width", 1, levelZero.getWidth());
+        assertEquals("level 0 height", 1, levelZero.getHeight());
+
+        // Every level from 0 up to the full resolution level must be present.
+        final String[] levels = tilesDirectory.list();
+        int maxLevel = 0;
+        for (final String level : levels) {
+            maxLevel = Math.max(maxLevel, Integer.parseInt(level));
+        }
+        assertEquals("number of levels", maxLevel + 1, levels.length);
+
+        final BufferedImage topTile = ImageIO.read(new File(new File(tilesDirectory, Integer.toString(maxLevel)),
+                                                            "0_0.png"));
+        assertEquals("top level tile width", TILE_SIZE, topTile.getWidth());
+        assertEquals("top level tile height", TILE_SIZE, topTile.getHeight());
+    }
+
+    /**
+     * Check that when a tile can't be handled, the lower level tiles being filled are returned to the pool.
+     *
+     * @throws Exception a general exception was thrown
+     */
+    @Test
+    public void failedTileReleasesPendingTiles() throws Exception {
+        final int tileSize = 8;
+        final File manifestFile = newOutputFileWithDelete(CLASS_NAME + "-failed.dzi");
+        FileUtils.deleteDirectory(newOutputFile(CLASS_NAME + "-failed_files"));
+        final RasterBufferPool pool = RasterBufferPool.getSharedPool();
+        final int borrowed = pool.getBorrowedCount();
+
+        final DeepZoomPyramidWriter pyramid = new DeepZoomPyramidWriter(manifestFile, 2 * tileSize, 2 * tileSize,
+                                                                        tileSize);
+        pyramid.handleTile(1, 0, 0, new BufferedImage(tileSize, tileSize, BufferedImage.TYPE_INT_ARGB));
+        assertEquals("tiles being filled", borrowed + 1, pool.getBorrowedCount());
+
+        try {
+            pyramid.handleTile(1, 0, 1, null);
+            fail("a missing tile must fail");
+        } catch (final RuntimeException e) {
+            // Expected: the tile can't be written.
+        }
+        assertEquals("tiles being filled after the failure", borrowed, pool.getBorrowedCount());
+    }
+}
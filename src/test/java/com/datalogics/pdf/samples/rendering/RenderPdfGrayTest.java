@@ -0,0 +1,66 @@
+/*
+ * Copyright 2015 Datalogics, Inc.
+ */
+
+package com.datalogics.pdf.samples.rendering;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.datalogics.pdf.samples.SampleTestBase;
+import com.datalogics.pdf.samples.util.PageRange;
+
+import org.junit.Test;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.lang.invoke.MethodHandles;
+import java.net.URL;
+
+import javax.imageio.ImageIO;
+
+/**
+ * Test grayscale and bilevel rendering in the RenderPdf sample.
+ */
+public class RenderPdfGrayTest extends SampleTestBase {
+
+    private static final String CLASS_NAME = MethodHandles.lookup().lookupClass().getSimpleName();
+    private static final int RESOLUTION = 72;
+
+    /**
+     * Check that a grayscale page has a single 8-bit band.
+     *
+     * @throws Exception a general exception was thrown
+     */
+    @Test
+    public void grayPageHasOneBand() throws Exception {
+        final URL inputUrl = RenderPdf.class.getResource(RenderPdf.DEFAULT_INPUT);
+        final URL outputUrl = newOutputFile(CLASS_NAME + "-gray").toURI().toURL();
+        final File pageFile = newOutputFileWithDelete(CLASS_NAME + "-gray.1.gray.png");
+
+        RenderPdf.renderPdfGray(inputUrl, RESOLUTION, outputUrl, PageRange.of(1, 1));
+
+        assertTrue(pageFile.getPath() + " must exist after run", pageFile.exists());
+        final BufferedImage page = ImageIO.read(pageFile);
+        assertEquals("bands", 1, page.getRaster().getNumBands());
+        assertEquals("bits per pixel", 8, page.getColorModel().getPixelSize());
+    }
+
+    /**
+     * Check that a bilevel page has one bit per pixel.
+     *
+     * @throws Exception a general exception was thrown
+     */
+    @Test
+    public void bilevelPageHasOneBit() throws Exception {
+        final URL inputUrl = RenderPdf.class.getResource(RenderPdf.DEFAULT_INPUT);
+        final URL outputUrl = newOutputFile(CLASS_NAME + "-bilevel").toURI().toURL();
+        final File pageFile = newOutputFileWithDelete(CLASS_NAME + "-bilevel.1.bilevel.png");
+
+        RenderPdf.renderPdfBilevel(inputUrl, RESOLUTION, outputUrl, PageRange.of(1, 1), 128, true);
+
+        assertTrue(pageFile.getPath() + " must exist after run", pageFile.exists());
+        final BufferedImage page = ImageIO.read(pageFile);
+        assertEquals("bits per pixel", 1, page.getColorModel().getPixelSize());
+    }
+}
@@ -0,0 +1,75 @@
+/*
+ * Copyright 2015 Datalogics, Inc.
+ */
+
+package com.datalogics.pdf.samples.rendering;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.adobe.pdfjt.core.types.ASRectangle;
+import com.adobe.pdfjt.pdf.document.PDFDocument;
+import com.adobe.pdfjt.pdf.interactive.annotation.PDFAnnotation;
+import com.adobe.pdfjt.pdf.interactive.annotation.PDFAnnotationList;
+
+import com.datalogics.pdf.samples.SampleTestBase;
+import com.datalogics.pdf.samples.util.DocumentUtils;
+import com.datalogics.pdf.samples.util.PageRange;
+
+import org.junit.Test;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.lang.invoke.MethodHandles;
+import java.net.URL;
+
+import javax.imageio.ImageIO;
+
+/**
+ * Test rendering with a cached content layer in the RenderPdf sample.
+ */
+public class RenderPdfLayeredTest extends SampleTestBase {
+
+    private static final String CLASS_NAME = MethodHandles.lookup().lookupClass().getSimpleName();
+    private static final String INPUT_PDF_PATH = "/com/datalogics/pdf/samples/manipulation/annotations.pdf";
+    private static final int RESOLUTION = 72;
+
+    /**
+     * Check that moving an annotation and rendering again reuses the content layer, and that the rendered page keeps
+     * its size.
+     *
+     * @throws Exception a general exception was thrown
+     */
+    @Test
+    public void annotationEditReusesContentLayer() throws Exception {
+        final URL inputUrl = RenderPdf.class.getResource(INPUT_PDF_PATH);
+        final URL outputUrl = newOutputFile(CLASS_NAME).toURI().toURL();
+        final File pageFile = newOutputFileWithDelete(CLASS_NAME + ".1.png");
+
+        final PDFDocument document = DocumentUtils.openPdfDocument(inputUrl);
+        try {
+            final AnnotationLayerRenderer renderer = new AnnotationLayerRenderer(document, RESOLUTION, 4);
+            RenderPdf.renderPdfLayered(renderer, outputUrl, PageRange.of(1, 1));
+            assertTrue(pageFile.getPath() + " must exist after run", pageFile.exists());
+            final BufferedImage first = ImageIO.read(pageFile);
+            assertEquals("content layers rendered on first run", 1, renderer.getContentMisses());
+            assertEquals("content layers reused on first run", 0, renderer.getContentHits());
+
+            final PDFAnnotationList annotations = document.requirePages().getPage(0).getAnnotationList();
+            assertTrue("the page must have annotations", annotations != null && annotations.size() > 0);
+            final PDFAnnotation annotation = annotations.get(0);
+            final ASRectangle rect = annotation.getRect();
+            annotation.setRect(new ASRectangle(rect.left() + 10, rect.bottom() + 10, rect.right() + 10,
+                                               rect.top() + 10));
+
+            RenderPdf.renderPdfLayered(renderer, outputUrl, PageRange.of(1, 1));
+            final BufferedImage second = ImageIO.read(pageFile);
+            assertEquals("content layers rendered on second run", 1, renderer.getContentMisses());
+            assertEquals("content layers reused on second run", 1, renderer.getContentHits());
+            assertEquals("width", first.getWidth(), second.getWidth());
+            assertEquals("height", first.getHeight(), second.getHeight());
+        } finally {
+            document.close();
+        }
+    }
+}
@@ -0,0 +1,70 @@
+/*
+ * Copyright 2015 Datalogics, Inc.
+ */
+
+package com.datalogics.pdf.samples.rendering;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.adobe.pdfjt.pdf.document.PDFDocument;
+
+import com.datalogics.pdf.samples.SampleTestBase;
+import com.datalogics.pdf.samples.util.DocumentUtils;
+import com.datalogics.pdf.samples.util.PageRange;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Test;
+
+import java.io.File;
+import java.lang.invoke.MethodHandles;
+import java.net.URL;
+import java.nio.ByteBuffer;
+
+/**
+ * Test raw pixel output in the RenderPdf sample.
+ */
+public class RenderPdfRawTest extends SampleTestBase {
+
+    private static final String CLASS_NAME = MethodHandles.lookup().lookupClass().getSimpleName();
+    private static final int RESOLUTION = 72;
+
+    /**
+     * Check that a raw page file holds a header that describes exactly the pixels that follow it.
+     *
+     * @throws Exception a general exception was thrown
+     */
+    @Test
+    public void rawFrameMatchesHeader() throws Exception {
+        final URL inputUrl = RenderPdf.class.getResource(RenderPdf.DEFAULT_INPUT);
+        final URL outputUrl = newOutputFile(CLASS_NAME).toURI().toURL();
+        final File frameFile = newOutputFileWithDelete(CLASS_NAME + ".1.raw");
+
+        RenderPdf.renderPdfRaw(inputUrl, RESOLUTION, outputUrl, PageRange.of(1, 1));
+
+        assertTrue(frameFile.getPath() + " must exist after run", frameFile.exists());
+        final ByteBuffer frame = ByteBuffer.wrap(FileUtils.readFileToByteArray(frameFile));
+        assertEquals("magic", RawFrameWriter.MAGIC, frame.getInt());
+        assertEquals("version", RawFrameWriter.VERSION, frame.getInt());
+        assertEquals("page number", 1, frame.getInt());
+        final int width = frame.getInt();
+        final int height = frame.getInt();
+        assertEquals("format", RawFrameWriter.FORMAT_ARGB, frame.getInt());
+        final int rowBytes = frame.getInt();
+        assertEquals("row size", width * 4, rowBytes);
+        assertEquals("resolution", Math.round(firstPageResolution(inputUrl)), frame.getInt());
+        assertEquals("frame size", RawFrameWriter.HEADER_SIZE + (long) rowBytes * height, frameFile.length());
+    }
+
+    /**
+     * Get the pixel density the first page is rendered at, which can be lower than the desired resolution.
+     */
+    private static double firstPageResolution(final URL inputUrl) throws Exception {
+        final PDFDocument document = DocumentUtils.openPdfDocument(inputUrl);
+        try {
+            return new PageRasterOptions(RESOLUTION).getResolution(document.requirePages().getPage(0));
+        } finally {
+            document.close();
+        }
+    }
+}
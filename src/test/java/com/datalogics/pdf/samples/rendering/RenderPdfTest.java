@@ -4,14 +4,22 @@
 
 package com.datalogics.pdf.samples.rendering;
 
-import static com.datalogics.pdf.samples.util.EnvironmentUtils.IS_OPENJDK_8;
 import static com.datalogics.pdf.samples.util.Matchers.bufferedImageHasChecksum;
 import static org.junit.Assert.assertThat;
 import static org.junit.Assert.assertTrue;
 
+import com.adobe.pdfjt.pdf.document.PDFDocument;
+import com.adobe.pdfjt.pdf.page.PDFPageTree;
+import com.adobe.pdfjt.services.rasterizer.PageRasterizer;
+
 import com.datalogics.pdf.samples.SampleTestBase;
+import com.datalogics.pdf.samples.rendering.PageRasterOptions.Sizing;
+import com.datalogics.pdf.samples.util.Checksum;
+import com.datalogics.pdf.samples.util.DocumentUtils;
+import com.datalogics.pdf.samples.util.FontUtils;
+import com.datalogics.pdf.samples.util.PageRange;
+import com.datalogics.pdf.samples.util.RasterBufferPool;
 
-import org.apache.commons.lang3.SystemUtils;
 import org.junit.BeforeClass;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -20,6 +28,8 @@ import org.junit.runners.Parameterized.Parameter;
 import org.junit.runners.Parameterized.Parameters;
 
 import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.IOException;
 import java.lang.invoke.MethodHandles;
@@ -36,12 +46,16 @@ import javax.imageio.ImageIO;
 public class RenderPdfTest extends SampleTestBase {
 
     private static final String CLASS_NAME = MethodHandles.lookup().lookupClass().getSimpleName();
+    private static final String PARALLEL_NAME = CLASS_NAME + "-parallel";
+    private static final String REFERENCE_NAME = CLASS_NAME + "-reference";
+    private static final int PARALLEL_THREADS = 2;
     private static final int RESOLUTION = 72;
     private static Boolean renderDone;
 
 
     /**
-     * Generate a list of parameters for the test. These are a combination of file names and checksums.
+     * Generate a list of parameters for the test. These are a combination of file names and the reference files they
+     * must match. Each page is checked both when rendered sequentially and when rendered in parallel.
      *
      * @return the list of parameters for the parameterized tests.
      */
@@ -50,31 +64,23 @@ public class RenderPdfTest extends SampleTestBase {
         return new ArrayList<Object[]>() {
             private static final long serialVersionUID = 7576159003442840992L;
 
-            private void add(final String filename, final String checksum) throws IOException {
+            private void add(final String filename) throws IOException {
+                final String suffix = filename.substring(CLASS_NAME.length());
                 final File file = newOutputFileWithDelete(filename);
-                add(new Object[] { filename, file, checksum });
+                final File referenceFile = newOutputFileWithDelete(REFERENCE_NAME + suffix);
+                add(new Object[] { filename, file, referenceFile });
+
+                final String parallelFilename = PARALLEL_NAME + suffix;
+                final File parallelFile = newOutputFileWithDelete(parallelFilename);
+                add(new Object[] { parallelFilename, parallelFile, referenceFile });
             }
 
             {
-                if (IS_OPENJDK_8) {
-                    add(CLASS_NAME + ".1.png", "c66daa9a924059fb44f2318e164e57111978bdc0");
-                    add(CLASS_NAME + ".2.png", "1dc5105235eae1ded71fa4a72340b5650c85a0e1");
-
-                    add(CLASS_NAME + ".1.jpg", "89e443ff8ad35bc2143282deaeee7dde9e59307d");
-                    add(CLASS_NAME + ".2.jpg", "efd6e6e77e26533e754ab5d7e5069829f21bbbcf");
-                } else if (SystemUtils.IS_JAVA_1_8) {
-                    add(CLASS_NAME + ".1.png", "359806f590dee0e642a10b9b5043e46fd74fa3ce");
-                    add(CLASS_NAME + ".2.png", "3192548a1abf89fec8de8d8b38f906d8717613b8");
-
-                    add(CLASS_NAME + ".1.jpg", "bff446bb308a9bf45fa698c087515dc33454e5cd");
-                    add(CLASS_NAME + ".2.jpg", "284ddfc066d209f7b1705f63c8a08eb6289d205a");
-                } else {
-                    add(CLASS_NAME + ".1.png", "1992474437f5b1ee5a885322fb089915a57fe8c9");
-                    add(CLASS_NAME + ".2.png", "560bae832b056507eac24c81d6f6ef65d2685667");
-
-                    add(CLASS_NAME + ".1.jpg", "387a2721566553d92a936f75d3024faf83fc4430");
-                    add(CLASS_NAME + ".2.jpg", "453730cfbb8e556feb532e0110fc580c2dff6a77");
-                }
+                add(CLASS_NAME + ".1.png");
+                add(CLASS_NAME + ".2.png");
+
+                add(CLASS_NAME + ".1.jpg");
+                add(CLASS_NAME + ".2.jpg");
             }
         };
     }
@@ -86,7 +92,7 @@ public class RenderPdfTest extends SampleTestBase {
     public File outputFile;
 
     @Parameter(2)
-    public String checksum;
+    public File referenceFile;
 
 
     @BeforeClass
@@ -106,11 +112,43 @@ public class RenderPdfTest extends SampleTestBase {
 
         RenderPdf.renderPdf(inputUrl, RESOLUTION, outputUrl);
 
+        final URL parallelOutputUrl = newOutputFile(PARALLEL_NAME).toURI().toURL();
+        RenderPdf.renderPdf(inputUrl, RESOLUTION, parallelOutputUrl, PageRange.ALL, PARALLEL_THREADS);
+
+        renderReference(inputUrl, newOutputFile(REFERENCE_NAME).toURI().toURL());
+
         renderDone = true;
     }
 
     /**
-     * Check that the image checksum for a page matches.
+     * Rasterize each page directly, sized from its own crop box, and save it the way the sample does, as the
+     * reference for the sample's output.
+     */
+    private static void renderReference(final URL inputUrl, final URL referenceUrl) throws Exception {
+        final PDFDocument document = DocumentUtils.openPdfDocument(inputUrl);
+        try {
+            final PDFPageTree pageTree = document.requirePages();
+            final PageRasterOptions pageOptions = new PageRasterOptions(RESOLUTION, Sizing.EACH_PAGE);
+            for (int pageIndex = 0; pageIndex < pageTree.getCount(); pageIndex++) {
+                final BufferedImage page =
+                    new PageRasterizer(pageTree, pageIndex, pageIndex,
+                                       pageOptions.getOptions(pageTree.getPage(pageIndex),
+                                                              FontUtils.getDocFontSet(document))).next();
+                RenderPdf.savePageAsPng(referenceUrl, pageIndex + 1, page);
+                final BufferedImage rgbPage = RenderPdf.convertToRgb(page);
+                try {
+                    RenderPdf.savePageAsJpeg(referenceUrl, pageIndex + 1, rgbPage);
+                } finally {
+                    RasterBufferPool.getSharedPool().release(rgbPage);
+                }
+            }
+        } finally {
+            document.close();
+        }
+    }
+
+    /**
+     * Check that the image checksum for a page matches the page rasterized directly, at the size of its crop box.
      *
      * @throws Exception a general exception was thrown
      */
@@ -121,7 +159,10 @@ public class RenderPdfTest extends SampleTestBase {
         // Make sure the Output file exists.
         assertTrue(outputFile.getPath() + " must exist after run", outputFile.exists());
 
-        // and has the correct checksum
+        // and has the same checksum as the reference
+        final BufferedImage reference = ImageIO.read(referenceFile);
+        final String checksum = Checksum.getSha1Checksum(new ByteArrayInputStream(
+                        ((DataBufferByte) reference.getRaster().getDataBuffer()).getData(0)));
         final BufferedImage image = ImageIO.read(outputFile);
         assertThat("File " + fileName + " has correct checksum", image, bufferedImageHasChecksum(checksum));
     }
@@ -0,0 +1,77 @@
+/*
+ * Copyright 2015 Datalogics, Inc.
+ */
+
+package com.datalogics.pdf.samples.rendering;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.adobe.pdfjt.core.types.ASRectangle;
+import com.adobe.pdfjt.pdf.document.PDFDocument;
+import com.adobe.pdfjt.pdf.page.PDFPage;
+
+import com.datalogics.pdf.samples.SampleTestBase;
+import com.datalogics.pdf.samples.util.DocumentUtils;
+import com.datalogics.pdf.samples.util.PageRange;
+
+import org.junit.Test;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.lang.invoke.MethodHandles;
+import java.net.URL;
+
+import javax.imageio.ImageIO;
+
+/**
+ * Test thumbnail rendering in the RenderPdf sample.
+ */
+public class RenderPdfThumbnailTest extends SampleTestBase {
+
+    private static final String CLASS_NAME = MethodHandles.lookup().lookupClass().getSimpleName();
+    private static final int THUMBNAIL_SIZE = 150;
+
+    /**
+     * Check that a thumbnail fills the thumbnail size along its longer side.
+     *
+     * @throws Exception a general exception was thrown
+     */
+    @Test
+    public void thumbnailFitsSize() throws Exception {
+        final URL inputUrl = RenderPdf.class.getResource(RenderPdf.DEFAULT_INPUT);
+        final URL outputUrl = newOutputFile(CLASS_NAME).toURI().toURL();
+        final File thumbnailFile = newOutputFileWithDelete(CLASS_NAME + ".1.thumb.png");
+
+        RenderPdf.renderPdfThumbnails(inputUrl, outputUrl, PageRange.of(1, 1), THUMBNAIL_SIZE, false);
+
+        assertTrue(thumbnailFile.getPath() + " must exist after run", thumbnailFile.exists());
+        final BufferedImage thumbnail = ImageIO.read(thumbnailFile);
+        assertTrue("thumbnail width must fit", thumbnail.getWidth() <= THUMBNAIL_SIZE);
+        assertTrue("thumbnail height must fit", thumbnail.getHeight() <= THUMBNAIL_SIZE);
+        assertEquals("longer side", THUMBNAIL_SIZE, Math.max(thumbnail.getWidth(), thumbnail.getHeight()));
+    }
+
+    /**
+     * Check that a page rotated sideways makes a sideways thumbnail, rather than one squashed into the unrotated shape.
+     *
+     * @throws Exception a general exception was thrown
+     */
+    @Test
+    public void rotatedPageMakesSidewaysThumbnail() throws Exception {
+        final URL inputUrl = RenderPdf.class.getResource(RenderPdf.DEFAULT_INPUT);
+        final PDFDocument document = DocumentUtils.openPdfDocument(inputUrl);
+        try {
+            final PDFPage page = document.requirePages().getPage(0);
+            final ASRectangle cropBox = page.getCropBox();
+            page.setRotate(90);
+
+            final ThumbnailRenderer renderer = new ThumbnailRenderer(document, THUMBNAIL_SIZE, THUMBNAIL_SIZE, false);
+            final BufferedImage thumbnail = renderer.renderPage(0);
+            assertEquals("the rotated shape is kept", cropBox.height() / cropBox.width(),
+                         (double) thumbnail.getWidth() / thumbnail.getHeight(), 0.02);
+        } finally {
+            document.close();
+        }
+    }
+}
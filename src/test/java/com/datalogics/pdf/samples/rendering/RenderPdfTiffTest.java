@@ -0,0 +1,216 @@
+/*
+ * Copyright 2015 Datalogics, Inc.
+ */
+
+package com.datalogics.pdf.samples.rendering;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import com.adobe.pdfjt.pdf.document.PDFDocument;
+import com.adobe.pdfjt.pdf.page.PDFPageTree;
+
+import com.datalogics.pdf.samples.SampleTestBase;
+import com.datalogics.pdf.samples.util.DocumentUtils;
+import com.datalogics.pdf.samples.util.PageRange;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Test;
+
+import java.awt.Dimension;
+import java.io.File;
+import java.lang.invoke.MethodHandles;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Test multi-page TIFF rendering in the RenderPdf sample.
+ */
+public class RenderPdfTiffTest extends SampleTestBase {
+
+    private static final String CLASS_NAME = MethodHandles.lookup().lookupClass().getSimpleName();
+    private static final int RESOLUTION = 72;
+    private static final byte[] LITTLE_ENDIAN_TIFF_HEADER = { 'I', 'I', 42, 0 };
+
+    private static final int TAG_IMAGE_WIDTH = 256;
+    private static final int TAG_IMAGE_LENGTH = 257;
+    private static final int TAG_BITS_PER_SAMPLE = 258;
+    private static final int TAG_COMPRESSION = 259;
+    private static final int TAG_PHOTOMETRIC_INTERPRETATION = 262;
+    private static final int TAG_STRIP_OFFSETS = 273;
+    private static final int TAG_SAMPLES_PER_PIXEL = 277;
+    private static final int TAG_ROWS_PER_STRIP = 278;
+    private static final int TAG_STRIP_BYTE_COUNTS = 279;
+
+    private static final int TYPE_SHORT = 3;
+    private static final int TYPE_LONG = 4;
+    private static final int TYPE_RATIONAL = 5;
+
+    /**
+     * Check that rendering to TIFF writes a directory for every page of the document, in color, Deflate compressed.
+     *
+     * @throws Exception a general exception was thrown
+     */
+    @Test
+    public void colorTiffHasEveryPage() throws Exception {
+        final URL inputUrl = RenderPdf.class.getResource(RenderPdf.DEFAULT_INPUT);
+        final File tiffFile = newOutputFileWithDelete(CLASS_NAME + ".tif");
+
+        RenderPdf.renderPdfTiff(inputUrl, RESOLUTION, tiffFile.toURI().toURL(), PageRange.ALL, false);
+
+        checkPages(inputUrl, tiffFile, new long[] { 8, 8, 8 }, 8, 2);
+    }
+
+    /**
+     * Check that rendering to TIFF in black and white writes a directory for every page of the document, 1-bit and
+     * compressed with CCITT Group 4.
+     *
+     * @throws Exception a general exception was thrown
+     */
+    @Test
+    public void bilevelTiffHasEveryPage() throws Exception {
+        final URL inputUrl = RenderPdf.class.getResource(RenderPdf.DEFAULT_INPUT);
+        final File tiffFile = newOutputFileWithDelete(CLASS_NAME + "-bilevel.tif");
+
+        RenderPdf.renderPdfTiff(inputUrl, RESOLUTION, tiffFile.toURI().toURL(), PageRange.ALL, true);
+
+        checkPages(inputUrl, tiffFile, new long[] { 1 }, 4, 0);
+    }
+
+    /**
+     * Check that the threshold and dithering of black and white pages can be chosen: a threshold of 0 makes every
+     * page white, which Group 4 codes in a bit a row, so the file is smaller than with the default threshold.
+     *
+     * @throws Exception a general exception was thrown
+     */
+    @Test
+    public void bilevelTiffTakesThresholdAndDither() throws Exception {
+        final URL inputUrl = RenderPdf.class.getResource(RenderPdf.DEFAULT_INPUT);
+        final File defaultFile = newOutputFileWithDelete(CLASS_NAME + "-default.tif");
+        final File whiteFile = newOutputFileWithDelete(CLASS_NAME + "-white.tif");
+        final File ditheredFile = newOutputFileWithDelete(CLASS_NAME + "-dithered.tif");
+
+        RenderPdf.renderPdfTiff(inputUrl, RESOLUTION, defaultFile.toURI().toURL(), PageRange.ALL, true);
+        RenderPdf.renderPdfTiff(inputUrl, RESOLUTION, whiteFile.toURI().toURL(), PageRange.ALL, 0, false);
+        RenderPdf.renderPdfTiff(inputUrl, RESOLUTION, ditheredFile.toURI().toURL(), PageRange.ALL, 128, true);
+
+        checkPages(inputUrl, whiteFile, new long[] { 1 }, 4, 0);
+        checkPages(inputUrl, ditheredFile, new long[] { 1 }, 4, 0);
+        assertTrue("an all-white TIFF must be smaller than the default: " + whiteFile.length() + " bytes, "
+                   + defaultFile.length() + " bytes", whiteFile.length() < defaultFile.length());
+    }
+
+    /**
+     * Walk the chain of page directories of a TIFF file, and check that there's one for each page of the document,
+     * that each describes a page of the size it was rendered at, and that its strips lie within the file.
+     */
+    private static void checkPages(final URL inputUrl, final File tiffFile, final long[] bitsPerSample,
+                                   final long compression, final long photometric)
+                    throws Exception {
+        assertTrue(tiffFile.getPath() + " must exist after run", tiffFile.exists());
+        final List<Dimension> pageSizes = pageSizes(inputUrl);
+        final ByteBuffer tiff = ByteBuffer.wrap(FileUtils.readFileToByteArray(tiffFile))
+                                          .order(ByteOrder.LITTLE_ENDIAN);
+        assertArrayEquals("TIFF header", LITTLE_ENDIAN_TIFF_HEADER, Arrays.copyOf(tiff.array(), 4));
+
+        long directoryOffset = tiff.getInt(4) & 0xffffffffL;
+        int pageCount = 0;
+        while (directoryOffset != 0) {
+            // A chain longer than the document would be a loop.
+            assertTrue("more directories than pages", pageCount < pageSizes.size());
+            assertTrue("directory " + pageCount + " must be within the file",
+                       directoryOffset >= 8 && directoryOffset + 2 <= tiff.capacity());
+            assertEquals("directory " + pageCount + " must start on a word boundary", 0, directoryOffset & 1);
+            final Map<Integer, long[]> tags = readDirectory(tiff, (int) directoryOffset);
+            final String page = "page " + (pageCount + 1) + " ";
+
+            final Dimension size = pageSizes.get(pageCount);
+            assertEquals(page + "width", size.width, value(tags, TAG_IMAGE_WIDTH));
+            assertEquals(page + "length", size.height, value(tags, TAG_IMAGE_LENGTH));
+            assertArrayEquals(page + "bits per sample", bitsPerSample, tags.get(TAG_BITS_PER_SAMPLE));
+            assertEquals(page + "samples per pixel", bitsPerSample.length, value(tags, TAG_SAMPLES_PER_PIXEL));
+            assertEquals(page + "compression", compression, value(tags, TAG_COMPRESSION));
+            assertEquals(page + "photometric interpretation", photometric,
+                         value(tags, TAG_PHOTOMETRIC_INTERPRETATION));
+
+            final long rowsPerStrip = value(tags, TAG_ROWS_PER_STRIP);
+            final long[] offsets = tags.get(TAG_STRIP_OFFSETS);
+            final long[] byteCounts = tags.get(TAG_STRIP_BYTE_COUNTS);
+            assertNotNull(page + "strip offsets", offsets);
+            assertNotNull(page + "strip byte counts", byteCounts);
+            assertEquals(page + "strip count", (size.height + rowsPerStrip - 1) / rowsPerStrip, offsets.length);
+            assertEquals(page + "strip byte count count", offsets.length, byteCounts.length);
+            for (int i = 0; i < offsets.length; i++) {
+                assertTrue(page + "strip " + i + " must have data", byteCounts[i] > 0);
+                assertTrue(page + "strip " + i + " must be within the file",
+                           offsets[i] >= 8 && offsets[i] + byteCounts[i] <= tiff.capacity());
+            }
+
+            pageCount++;
+            final int entryCount = tiff.getShort((int) directoryOffset) & 0xffff;
+            directoryOffset = tiff.getInt((int) directoryOffset + 2 + entryCount * 12) & 0xffffffffL;
+        }
+        assertEquals("pages", pageSizes.size(), pageCount);
+    }
+
+    /**
+     * Get the size each page of the document is rendered at.
+     */
+    private static List<Dimension> pageSizes(final URL inputUrl) throws Exception {
+        final List<Dimension> sizes = new ArrayList<>();
+        final PDFDocument document = DocumentUtils.openPdfDocument(inputUrl);
+        try {
+            final PDFPageTree pageTree = document.requirePages();
+            final PageRasterOptions pageOptions = new PageRasterOptions(RESOLUTION);
+            for (int i = 0; i < pageTree.getCount(); i++) {
+                sizes.add(pageOptions.getSize(pageTree.getPage(i)));
+            }
+        } finally {
+            document.close();
+        }
+        return sizes;
+    }
+
+    /**
+     * Read the entries of a directory, with each tag's values, whether they're in the entry or after it.
+     */
+    private static Map<Integer, long[]> readDirectory(final ByteBuffer tiff, final int offset) {
+        final Map<Integer, long[]> tags = new HashMap<>();
+        final int entryCount = tiff.getShort(offset) & 0xffff;
+        for (int i = 0; i < entryCount; i++) {
+            final int entry = offset + 2 + i * 12;
+            final int tag = tiff.getShort(entry) & 0xffff;
+            final int type = tiff.getShort(entry + 2) & 0xffff;
+            final int count = tiff.getInt(entry + 4);
+            final int valueSize = type == TYPE_SHORT ? 2 : type == TYPE_RATIONAL ? 8 : 4;
+            assertTrue("tag " + tag + " has a known type", type == TYPE_SHORT || type == TYPE_LONG
+                                                           || type == TYPE_RATIONAL);
+            final int valueOffset = valueSize * count > 4 ? tiff.getInt(entry + 8) : entry + 8;
+            assertTrue("tag " + tag + " values must be within the file",
+                       valueOffset >= 0 && valueOffset + valueSize * count <= tiff.capacity());
+
+            final long[] values = new long[count];
+            for (int j = 0; j < count; j++) {
+                values[j] = type == TYPE_SHORT ? tiff.getShort(valueOffset + 2 * j) & 0xffff
+                                               : tiff.getInt(valueOffset + valueSize * j) & 0xffffffffL;
+            }
+            tags.put(tag, values);
+        }
+        return tags;
+    }
+
+    private static long value(final Map<Integer, long[]> tags, final int tag) {
+        final long[] values = tags.get(tag);
+        assertNotNull("tag " + tag, values);
+        assertEquals("tag " + tag + " value count", 1, values.length);
+        return values[0];
+    }
+}
@@ -0,0 +1,78 @@
+/*
+ * Copyright 2015 Datalogics, Inc.
+ */
+
+package com.datalogics.pdf.samples.rendering;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.adobe.pdfjt.pdf.document.PDFDocument;
+
+import com.datalogics.pdf.samples.SampleTestBase;
+import com.datalogics.pdf.samples.util.DocumentUtils;
+import com.datalogics.pdf.samples.util.PageRange;
+
+import org.junit.Test;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.lang.invoke.MethodHandles;
+import java.net.URL;
+
+import javax.imageio.ImageIO;
+
+/**
+ * Test tiled rendering in the RenderPdf sample.
+ */
+public class RenderPdfTiledTest extends SampleTestBase {
+
+    private static final String CLASS_NAME = MethodHandles.lookup().lookupClass().getSimpleName();
+    private static final int RESOLUTION = 72;
+    private static final int TILE_SIZE = 256;
+
+    /**
+     * Check that the tiles of a page cover the whole page, and that each has the right size.
+     *
+     * @throws Exception a general exception was thrown
+     */
+    @Test
+    public void tilesCoverPage() throws Exception {
+        final URL inputUrl = RenderPdf.class.getResource(RenderPdf.DEFAULT_INPUT);
+        final URL outputUrl = newOutputFile(CLASS_NAME).toURI().toURL();
+
+        final int pageWidth;
+        final int pageHeight;
+        final PDFDocument document = DocumentUtils.openPdfDocument(inputUrl);
+        try {
+            final TiledPageRenderer renderer = new TiledPageRenderer(document, RESOLUTION, TILE_SIZE);
+            pageWidth = renderer.getPageWidth(0);
+            pageHeight = renderer.getPageHeight(0);
+        } finally {
+            document.close();
+        }
+
+        final int rows = (pageHeight + TILE_SIZE - 1) / TILE_SIZE;
+        final int columns = (pageWidth + TILE_SIZE - 1) / TILE_SIZE;
+        for (int row = 0; row < rows; row++) {
+            for (int column = 0; column < columns; column++) {
+                newOutputFileWithDelete(CLASS_NAME + ".1." + row + "_" + column + ".png");
+            }
+        }
+
+        RenderPdf.renderPdfTiled(inputUrl, RESOLUTION, outputUrl, PageRange.of(1, 1), TILE_SIZE);
+
+        for (int row = 0; row < rows; row++) {
+            for (int column = 0; column < columns; column++) {
+                final File tileFile = newOutputFile(CLASS_NAME + ".1." + row + "_" + column + ".png");
+                assertTrue(tileFile.getPath() + " must exist after run", tileFile.exists());
+
+                final BufferedImage tile = ImageIO.read(tileFile);
+                assertEquals("width of " + tileFile.getName(), Math.min(TILE_SIZE, pageWidth - column * TILE_SIZE),
+                             tile.getWidth());
+                assertEquals("height of " + tileFile.getName(), Math.min(TILE_SIZE, pageHeight - row * TILE_SIZE),
+                             tile.getHeight());
+            }
+        }
+    }
+}
@@ -0,0 +1,201 @@
+/*
+ * Copyright 2015 Datalogics, Inc.
+ */
+
+package com.datalogics.pdf.samples.rendering;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.datalogics.pdf.samples.SampleTestBase;
+import com.datalogics.pdf.samples.util.PageRange;
+
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+import mockit.Invocation;
+import mockit.Mock;
+import mockit.MockUp;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.StringReader;
+import java.lang.invoke.MethodHandles;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * Test the resident rendering worker.
+ */
+@SuppressFBWarnings(value = { "SIC_INNER_SHOULD_BE_STATIC_ANON", "UMAC_UNCALLABLE_METHOD_OF_ANONYMOUS_CLASS" },
+                    justification = "JMockit coding pattern depends on anonymous classes "
+                                    + "and methods with no discernable call site")
+public class RenderWorkerTest extends SampleTestBase {
+
+    private static final String CLASS_NAME = MethodHandles.lookup().lookupClass().getSimpleName();
+    private static final int RESOLUTION = 72;
+
+    /**
+     * Check that the PDFs in a spool directory are rendered, moved to "done", and timed.
+     *
+     * @throws Exception a general exception was thrown
+     */
+    @Test
+    public void spooledJobsAreRendered() throws Exception {
+        final URL inputUrl = RenderPdf.class.getResource(RenderPdf.DEFAULT_INPUT);
+        final File spoolDirectory = newOutputFile(CLASS_NAME + ".spool");
+        final File outputDirectory = newOutputFile(CLASS_NAME + ".spool-output");
+        FileUtils.deleteDirectory(spoolDirectory);
+        FileUtils.deleteDirectory(outputDirectory);
+        FileUtils.copyURLToFile(inputUrl, new File(spoolDirectory, "first.pdf"));
+        FileUtils.copyURLToFile(inputUrl, new File(spoolDirectory, "second.pdf"));
+
+        try (RenderWorker worker = new RenderWorker(outputDirectory, RESOLUTION, 2)) {
+            assertEquals("failed jobs", 0, worker.processSpool(spoolDirectory));
+        }
+
+        final String[] names = { "first.pdf", "second.pdf" };
+        for (int i = 0; i < names.length; i++) {
+            final String name = names[i];
+            assertTrue(name + " must be rendered", new File(outputDirectory, (i + 1) + "-" + name + ".1.png").exists());
+            assertTrue(name + " must be moved to done", new File(spoolDirectory, "done/" + name).exists());
+            assertFalse(name + " must leave the spool", new File(spoolDirectory, name).exists());
+        }
+        final List<String> records = FileUtils.readLines(new File(outputDirectory, RenderWorker.TIMING_FILE),
+                                                         StandardCharsets.UTF_8);
+        assertEquals("header and one record per job", 3, records.size());
+    }
+
+    /**
+     * Check that job lines are rendered, and that a job that fails is recorded without stopping the others.
+     *
+     * @throws Exception a general exception was thrown
+     */
+    @Test
+    public void jobLinesAreRendered() throws Exception {
+        final File input = newOutputFile(CLASS_NAME + ".lines.pdf");
+        FileUtils.copyURLToFile(RenderPdf.class.getResource(RenderPdf.DEFAULT_INPUT), input);
+        final File outputDirectory = newOutputFile(CLASS_NAME + ".lines-output");
+        FileUtils.deleteDirectory(outputDirectory);
+        final File missing = new File(outputDirectory, "missing.pdf");
+        final String jobs = "# rendering jobs\n" + input.getPath() + "\t1\n\n" + missing.getPath() + "\n";
+
+        try (RenderWorker worker = new RenderWorker(outputDirectory, RESOLUTION, 2)) {
+            assertEquals("failed jobs", 1, worker.processLines(new BufferedReader(new StringReader(jobs))));
+        }
+
+        assertTrue("page 1 must be rendered", new File(outputDirectory, "1-" + input.getName() + ".1.png").exists());
+        assertFalse("page 2 must not be rendered",
+                    new File(outputDirectory, "1-" + input.getName() + ".2.png").exists());
+        final String records = FileUtils.readFileToString(new File(outputDirectory, RenderWorker.TIMING_FILE),
+                                                          StandardCharsets.UTF_8);
+        assertTrue("the failed job must be recorded",
+                   records.contains("2-missing.pdf\t" + missing.getAbsolutePath() + "\tfailed"));
+    }
+
+    /**
+     * Check that PDFs with the same name in different directories are rendered to different files.
+     *
+     * @throws Exception a general exception was thrown
+     */
+    @Test
+    public void sameNamesAreKeptApart() throws Exception {
+        final URL inputUrl = RenderPdf.class.getResource(RenderPdf.DEFAULT_INPUT);
+        final File inputDirectory = newOutputFile(CLASS_NAME + ".same-input");
+        final File outputDirectory = newOutputFile(CLASS_NAME + ".same-output");
+        FileUtils.deleteDirectory(inputDirectory);
+        FileUtils.deleteDirectory(outputDirectory);
+        final File first = new File(inputDirectory, "a/same.pdf");
+        final File second = new File(inputDirectory, "b/same.pdf");
+        FileUtils.copyURLToFile(inputUrl, first);
+        FileUtils.copyURLToFile(inputUrl, second);
+        final String jobs = first.getPath() + "\t1\n" + second.getPath() + "\t2\n";
+
+        try (RenderWorker worker = new RenderWorker(outputDirectory, RESOLUTION, 2)) {
+            assertEquals("failed jobs", 0, worker.processLines(new BufferedReader(new StringReader(jobs))));
+        }
+
+        assertTrue("the first job must be rendered", new File(outputDirectory, "1-same.pdf.1.png").exists());
+        assertTrue("the second job must be rendered", new File(outputDirectory, "2-same.pdf.2.png").exists());
+        final String records = FileUtils.readFileToString(new File(outputDirectory, RenderWorker.TIMING_FILE),
+                                                          StandardCharsets.UTF_8);
+        assertTrue("the first job must be recorded", records.contains("1-same.pdf\t" + first.getAbsolutePath()));
+        assertTrue("the second job must be recorded", records.contains("2-same.pdf\t" + second.getAbsolutePath()));
+    }
+
+    /**
+     * Check that a spooled job that fails with an Error is moved to "failed" and recorded, and that the worker still
+     * waits for the other jobs.
+     *
+     * @throws Exception a general exception was thrown
+     */
+    @Test
+    public void errorIsRecorded() throws Exception {
+        new MockUp<RenderPdf>() {
+            @Mock
+            void renderPdf(final Invocation invocation, final URL inputUrl, final int resolution,
+                           final PageRange pages, final PageRasterOptions.Sizing sizing,
+                           final PageOutputPipeline pipeline) {
+                if (inputUrl.getPath().endsWith("-error.pdf")) {
+                    throw new LinkageError("simulated error");
+                }
+                invocation.proceed();
+            }
+        };
+
+        final URL inputUrl = RenderPdf.class.getResource(RenderPdf.DEFAULT_INPUT);
+        final File spoolDirectory = newOutputFile(CLASS_NAME + ".error");
+        final File outputDirectory = newOutputFile(CLASS_NAME + ".error-output");
+        FileUtils.deleteDirectory(spoolDirectory);
+        FileUtils.deleteDirectory(outputDirectory);
+        FileUtils.copyURLToFile(inputUrl, new File(spoolDirectory, "error.pdf"));
+        FileUtils.copyURLToFile(inputUrl, new File(spoolDirectory, "good.pdf"));
+
+        try (RenderWorker worker = new RenderWorker(outputDirectory, RESOLUTION, 2)) {
+            assertEquals("failed jobs", 1, worker.processSpool(spoolDirectory));
+        }
+
+        assertTrue("the failed job must be moved to failed", new File(spoolDirectory, "failed/error.pdf").exists());
+        assertTrue("the other job must be moved to done", new File(spoolDirectory, "done/good.pdf").exists());
+        final String records = FileUtils.readFileToString(new File(outputDirectory, RenderWorker.TIMING_FILE),
+                                                          StandardCharsets.UTF_8);
+        assertTrue("the failed job must be recorded", records.contains("1-error.pdf\t"));
+        assertTrue("the failure must be recorded", records.contains("\tfailed\t"));
+        assertTrue("the other job must be recorded", records.contains("2-good.pdf\t"));
+    }
+
+    /**
+     * Check that a file abandoned in "processing" doesn't replace a file of the same name spooled since, and that both
+     * are rendered as separate jobs.
+     *
+     * @throws Exception a general exception was thrown
+     */
+    @Test
+    public void abandonedJobDoesNotReplaceSpooledFile() throws Exception {
+        final URL inputUrl = RenderPdf.class.getResource(RenderPdf.DEFAULT_INPUT);
+        final File spoolDirectory = newOutputFile(CLASS_NAME + ".abandoned");
+        final File outputDirectory = newOutputFile(CLASS_NAME + ".abandoned-output");
+        FileUtils.deleteDirectory(spoolDirectory);
+        FileUtils.deleteDirectory(outputDirectory);
+        FileUtils.copyURLToFile(inputUrl, new File(spoolDirectory, "processing/7-same.pdf"));
+        FileUtils.copyURLToFile(inputUrl, new File(spoolDirectory, "same.pdf"));
+
+        try (RenderWorker worker = new RenderWorker(outputDirectory, RESOLUTION, 2)) {
+            // Stopped before it starts, the worker recovers and claims what's in the spool once, and returns when
+            // those jobs are finished.
+            worker.stop();
+            worker.watchSpool(spoolDirectory);
+        }
+
+        final String[] processing = new File(spoolDirectory, "processing").list();
+        assertEquals("nothing may be left in processing", 0, processing == null ? 0 : processing.length);
+        final String records = FileUtils.readFileToString(new File(outputDirectory, RenderWorker.TIMING_FILE),
+                                                          StandardCharsets.UTF_8);
+        assertEquals("both files must be rendered", 2, records.split("\tok\t", -1).length - 1);
+        final String[] done = new File(spoolDirectory, "done").list();
+        assertEquals("both files must be moved to done", 2, done == null ? 0 : done.length);
+    }
+}
@@ -0,0 +1,118 @@
+/*
+ * Copyright 2015 Datalogics, Inc.
+ */
+
+package com.datalogics.pdf.samples.rendering;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import org.junit.Test;
+
+import java.awt.Color;
+import java.awt.Graphics;
+import java.awt.image.BufferedImage;
+import java.awt.image.Raster;
+
+/**
+ * Test that converting an opaque page to RGB without copying it gives the same pixels as drawing it onto an RGB
+ * image.
+ */
+public class RgbConversionTest {
+
+    private static final int WIDTH = 200;
+    private static final int HEIGHT = 150;
+
+    /**
+     * Check that the view of an opaque TYPE_INT_ARGB image matches the copy.
+     *
+     * @throws Exception a general exception was thrown
+     */
+    @Test
+    public void intArgbViewMatchesCopy() throws Exception {
+        checkViewMatchesCopy(BufferedImage.TYPE_INT_ARGB);
+    }
+
+    /**
+     * Check that the view of an opaque TYPE_4BYTE_ABGR image matches the copy.
+     *
+     * @throws Exception a general exception was thrown
+     */
+    @Test
+    public void fourByteAbgrViewMatchesCopy() throws Exception {
+        checkViewMatchesCopy(BufferedImage.TYPE_4BYTE_ABGR);
+    }
+
+    /**
+     * Check that an image with transparent pixels is copied rather than viewed.
+     *
+     * @throws Exception a general exception was thrown
+     */
+    @Test
+    public void transparentImageIsCopied() throws Exception {
+        final BufferedImage input = newTestImage(BufferedImage.TYPE_INT_ARGB);
+        input.setRGB(0, 0, 0x00ffffff);
+
+        final BufferedImage converted = RenderPdf.convertToRgb(input);
+        assertFalse("the copy has no alpha", converted.getColorModel().hasAlpha());
+        assertNotSame("the copy doesn't share the input's pixels", input.getRaster().getDataBuffer(),
+                      converted.getRaster().getDataBuffer());
+    }
+
+    private static void checkViewMatchesCopy(final int type) {
+        final BufferedImage input = newTestImage(type);
+        final BufferedImage view = RenderPdf.convertToRgb(input);
+        final BufferedImage copy = drawnCopy(input);
+
+        assertSame("the view shares the input's pixels", input.getRaster().getDataBuffer(),
+                   view.getRaster().getDataBuffer());
+        assertFalse("the view has no alpha", view.getColorModel().hasAlpha());
+        assertEquals("the view has the bands of the copy", copy.getRaster().getNumBands(),
+                     view.getRaster().getNumBands());
+        assertEquals("the view has the width of the copy", copy.getWidth(), view.getWidth());
+        assertEquals("the view has the height of the copy", copy.getHeight(), view.getHeight());
+
+        final Raster viewRaster = view.getRaster();
+        final Raster copyRaster = copy.getRaster();
+        for (int band = 0; band < copyRaster.getNumBands(); band++) {
+            assertEquals("band " + band + " has the sample size of the copy",
+                         copyRaster.getSampleModel().getSampleSize(band),
+                         viewRaster.getSampleModel().getSampleSize(band));
+            assertArrayEquals("band " + band + " has the samples of the copy",
+                              copyRaster.getSamples(0, 0, WIDTH, HEIGHT, band, (int[]) null),
+                              viewRaster.getSamples(0, 0, WIDTH, HEIGHT, band, (int[]) null));
+        }
+        assertArrayEquals("the view has the colors of the copy", copy.getRGB(0, 0, WIDTH, HEIGHT, null, 0, WIDTH),
+                          view.getRGB(0, 0, WIDTH, HEIGHT, null, 0, WIDTH));
+    }
+
+    /**
+     * Copy an image onto a new RGB image by drawing it, the way pages were converted before the view.
+     */
+    private static BufferedImage drawnCopy(final BufferedImage input) {
+        final BufferedImage copy = new BufferedImage(input.getWidth(), input.getHeight(), BufferedImage.TYPE_INT_RGB);
+        final Graphics graphics = copy.getGraphics();
+        try {
+            graphics.drawImage(input, 0, 0, null);
+        } finally {
+            graphics.dispose();
+        }
+        return copy;
+    }
+
+    /**
+     * Make an opaque image with a different color in each pixel, so that swapped bands would show.
+     */
+    private static BufferedImage newTestImage(final int type) {
+        final BufferedImage image = new BufferedImage(WIDTH, HEIGHT, type);
+        for (int y = 0; y < HEIGHT; y++) {
+            for (int x = 0; x < WIDTH; x++) {
+                image.setRGB(x, y, new Color(x % 256, y % 256, (x * 7 + y * 13) % 256).getRGB());
+            }
+        }
+        return image;
+    }
+}
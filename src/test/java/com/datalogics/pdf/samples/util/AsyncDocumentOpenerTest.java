@@ -0,0 +1,258 @@
+/*
+ * Copyright 2015 Datalogics, Inc.
+ */
+
+package com.datalogics.pdf.samples.util;
+
+import static org.hamcrest.Matchers.instanceOf;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import com.adobe.pdfjt.core.exceptions.PDFException;
+import com.adobe.pdfjt.pdf.document.PDFDocument;
+import com.adobe.pdfjt.pdf.document.PDFOpenOptions;
+
+import com.datalogics.pdf.samples.SampleTestBase;
+
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+import mockit.Invocation;
+import mockit.Mock;
+import mockit.MockUp;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.InputStream;
+import java.lang.invoke.MethodHandles;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Test the asynchronous document opener: failures, cancellation, the limit on concurrent opens, and the depth of
+ * prefetching.
+ */
+@SuppressFBWarnings(value = { "SIC_INNER_SHOULD_BE_STATIC_ANON", "UMAC_UNCALLABLE_METHOD_OF_ANONYMOUS_CLASS" },
+                    justification = "JMockit coding pattern depends on anonymous classes "
+                                    + "and methods with no discernable call site")
+public class AsyncDocumentOpenerTest extends SampleTestBase {
+
+    private static final String CLASS_NAME = MethodHandles.lookup().lookupClass().getSimpleName();
+    private static final String INPUT_PDF_PATH = "/com/datalogics/pdf/samples/manipulation/Merge1.pdf";
+    private static final long TIMEOUT_MILLIS = 10000;
+    private static final long SETTLE_MILLIS = 200;
+
+    private final AtomicInteger started = new AtomicInteger();
+    private final AtomicInteger running = new AtomicInteger();
+    private final AtomicInteger maxRunning = new AtomicInteger();
+    private final AtomicInteger closed = new AtomicInteger();
+    private final CountDownLatch release = new CountDownLatch(1);
+    private byte[] input;
+
+    /**
+     * Load the document that every mocked open returns a copy of.
+     *
+     * @throws Exception a general exception was thrown
+     */
+    @Before
+    public void loadInput() throws Exception {
+        try (InputStream stream = AsyncDocumentOpenerTest.class.getResourceAsStream(INPUT_PDF_PATH)) {
+            input = IOUtils.toByteArray(stream);
+        }
+    }
+
+    /**
+     * Check that an open that fails with an Error completes its future, rather than leaving it waiting forever.
+     *
+     * @throws Exception a general exception was thrown
+     */
+    @Test
+    public void errorCompletesFuture() throws Exception {
+        new MockUp<DocumentUtils>() {
+            @Mock
+            PDFDocument openPdfDocumentWithOptions(final URL inputUrl, final PDFOpenOptions pdfOpenOptions) {
+                throw new LinkageError("simulated error");
+            }
+        };
+
+        try (AsyncDocumentOpener opener = new AsyncDocumentOpener(1)) {
+            final CompletableFuture<PDFDocument> future = opener.open(inputUrl(0));
+            try {
+                future.get(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+                fail("the open must fail");
+            } catch (final ExecutionException e) {
+                assertThat("cause", e.getCause(), instanceOf(LinkageError.class));
+            }
+        }
+    }
+
+    /**
+     * Check that a document whose future is cancelled while it's opening is closed when the open finishes.
+     *
+     * @throws Exception a general exception was thrown
+     */
+    @Test
+    public void cancelClosesDocument() throws Exception {
+        mockBlockingOpens();
+
+        try (AsyncDocumentOpener opener = new AsyncDocumentOpener(1)) {
+            final CompletableFuture<PDFDocument> future = opener.open(inputUrl(0));
+            awaitCount("opens started", started, 1);
+            assertTrue("the future must be cancelled", future.cancel(false));
+            release.countDown();
+            awaitCount("documents closed", closed, 1);
+        }
+    }
+
+    /**
+     * Check that no more than the given number of opens run at once.
+     *
+     * @throws Exception a general exception was thrown
+     */
+    @Test
+    public void concurrentOpensAreLimited() throws Exception {
+        mockBlockingOpens();
+
+        try (AsyncDocumentOpener opener = new AsyncDocumentOpener(2)) {
+            final List<CompletableFuture<PDFDocument>> futures = new ArrayList<>();
+            for (int i = 0; i < 5; i++) {
+                futures.add(opener.open(inputUrl(i)));
+            }
+            awaitCount("opens started", started, 2);
+            Thread.sleep(SETTLE_MILLIS);
+            assertEquals("opens started while the first two are blocked", 2, started.get());
+
+            release.countDown();
+            for (final CompletableFuture<PDFDocument> future : futures) {
+                closeDocument(future.get(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS));
+            }
+            assertEquals("opens started", 5, started.get());
+            assertEquals("most opens running at once", 2, maxRunning.get());
+        }
+    }
+
+    /**
+     * Check that the prefetch iterator keeps the given number of opens ahead of the caller, and no more.
+     *
+     * @throws Exception a general exception was thrown
+     */
+    @Test
+    public void prefetchStaysAhead() throws Exception {
+        mockBlockingOpens();
+
+        try (AsyncDocumentOpener opener = new AsyncDocumentOpener(10)) {
+            final AsyncDocumentOpener.PrefetchIterator iterator = opener.openAhead(inputUrls(5), 2);
+            awaitCount("opens started ahead", started, 2);
+            Thread.sleep(SETTLE_MILLIS);
+            assertEquals("opens started before any was taken", 2, started.get());
+
+            final CompletableFuture<PDFDocument> first = iterator.next();
+            awaitCount("opens started after taking one", started, 3);
+            Thread.sleep(SETTLE_MILLIS);
+            assertEquals("opens started after taking one", 3, started.get());
+
+            release.countDown();
+            closeDocument(first.get(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS));
+            int taken = 1;
+            while (iterator.hasNext()) {
+                closeDocument(iterator.next().get(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS));
+                taken++;
+            }
+            assertEquals("futures taken", 5, taken);
+            assertEquals("opens started", 5, started.get());
+        }
+    }
+
+    /**
+     * Check that cancelling a prefetch iterator closes the documents opened for the futures that weren't taken.
+     *
+     * @throws Exception a general exception was thrown
+     */
+    @Test
+    public void prefetchCancelClosesDocuments() throws Exception {
+        mockBlockingOpens();
+
+        try (AsyncDocumentOpener opener = new AsyncDocumentOpener(10)) {
+            final AsyncDocumentOpener.PrefetchIterator iterator = opener.openAhead(inputUrls(5), 3);
+            final CompletableFuture<PDFDocument> first = iterator.next();
+            // Wait until every open is running, so that none of them is skipped by the cancel.
+            awaitCount("opens started", started, 4);
+            iterator.cancel();
+            assertFalse("a cancelled iterator must have no more futures", iterator.hasNext());
+
+            release.countDown();
+            final PDFDocument document = first.get(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+            assertNotNull("first document", document);
+            awaitCount("untaken documents closed", closed, 3);
+            closeDocument(document);
+            assertEquals("documents closed", 4, closed.get());
+        }
+    }
+
+    /**
+     * Replace opening a document with an open that waits for {@link #release}, counting the opens and the documents
+     * closed.
+     */
+    private void mockBlockingOpens() {
+        new MockUp<DocumentUtils>() {
+            @Mock
+            PDFDocument openPdfDocumentWithOptions(final URL inputUrl, final PDFOpenOptions pdfOpenOptions)
+                            throws Exception {
+                started.incrementAndGet();
+                final int now = running.incrementAndGet();
+                try {
+                    int max = maxRunning.get();
+                    while (now > max && !maxRunning.compareAndSet(max, now)) {
+                        max = maxRunning.get();
+                    }
+                    assertTrue("open was never released", release.await(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS));
+                    return DocumentUtils.openPdfDocument(input);
+                } finally {
+                    running.decrementAndGet();
+                }
+            }
+        };
+        new MockUp<PDFDocument>() {
+            @Mock
+            void close(final Invocation invocation) {
+                closed.incrementAndGet();
+                invocation.proceed();
+            }
+        };
+    }
+
+    private static void awaitCount(final String description, final AtomicInteger count, final int expected)
+                    throws InterruptedException {
+        final long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+        while (count.get() < expected && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(description, expected, count.get());
+    }
+
+    private static void closeDocument(final PDFDocument document) throws PDFException {
+        document.close();
+    }
+
+    private static URL inputUrl(final int index) throws Exception {
+        return newOutputFile(CLASS_NAME + "." + index + ".pdf").toURI().toURL();
+    }
+
+    private static List<URL> inputUrls(final int count) throws Exception {
+        final List<URL> urls = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            urls.add(inputUrl(i));
+        }
+        return urls;
+    }
+}
@@ -0,0 +1,262 @@
+/*
+ * Copyright 2015 Datalogics, Inc.
+ */
+
+package com.datalogics.pdf.samples.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import com.datalogics.pdf.samples.SampleTestBase;
+
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+import mockit.Mock;
+import mockit.MockUp;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+/**
+ * Test publishing output with the atomic writer and the output committer: committed output replaces the target,
+ * uncommitted output is discarded, and batched output is published with its batch.
+ */
+@SuppressFBWarnings(value = { "SIC_INNER_SHOULD_BE_STATIC_ANON", "UMAC_UNCALLABLE_METHOD_OF_ANONYMOUS_CLASS" },
+                    justification = "JMockit coding pattern depends on anonymous classes "
+                                    + "and methods with no discernable call site")
+public class AtomicFileByteWriterTest extends SampleTestBase {
+
+    private static final String CLASS_NAME = MethodHandles.lookup().lookupClass().getSimpleName();
+    private static final String OLD_CONTENTS = "old contents";
+    private static final String NEW_CONTENTS = "new contents";
+
+    /**
+     * Check that committed output replaces the target when the writer is closed, and not before.
+     *
+     * @throws Exception a general exception was thrown
+     */
+    @Test
+    public void commitPublishesOnClose() throws Exception {
+        final File directory = newDirectory("commit");
+        final File target = new File(directory, "out.bin");
+        FileUtils.writeStringToFile(target, OLD_CONTENTS, StandardCharsets.US_ASCII);
+
+        final AtomicFileByteWriter writer = writeContents(target,
+                                                          new OutputCommitter(OutputCommitter.Durability.SYNC));
+        writer.commit();
+        assertEquals("target before close", OLD_CONTENTS, readContents(target));
+        writer.close();
+
+        assertEquals("target after close", NEW_CONTENTS, readContents(target));
+        assertEquals("files left in the directory", 1, directory.list().length);
+    }
+
+    /**
+     * Check that closing a writer that wasn't committed deletes its temporary file and leaves the target alone.
+     *
+     * @throws Exception a general exception was thrown
+     */
+    @Test
+    public void uncommittedOutputIsDiscarded() throws Exception {
+        final File directory = newDirectory("discard");
+        final File target = new File(directory, "out.bin");
+        FileUtils.writeStringToFile(target, OLD_CONTENTS, StandardCharsets.US_ASCII);
+
+        final AtomicFileByteWriter writer = writeContents(target,
+                                                          new OutputCommitter(OutputCommitter.Durability.SYNC));
+        assertEquals("files while writing", 2, directory.list().length);
+        writer.close();
+
+        assertEquals("target after close", OLD_CONTENTS, readContents(target));
+        assertEquals("files left in the directory", 1, directory.list().length);
+    }
+
+    /**
+     * Check that with no durability, committed output is published as soon as the writer is closed.
+     *
+     * @throws Exception a general exception was thrown
+     */
+    @Test
+    public void unsyncedCommitPublishesOnClose() throws Exception {
+        final File directory = newDirectory("none");
+        final File target = new File(directory, "out.bin");
+
+        final AtomicFileByteWriter writer = writeContents(target,
+                                                          new OutputCommitter(OutputCommitter.Durability.NONE));
+        writer.commit();
+        writer.close();
+
+        assertEquals("target after close", NEW_CONTENTS, readContents(target));
+    }
+
+    /**
+     * Check that batched output is published only when its batch is full.
+     *
+     * @throws Exception a general exception was thrown
+     */
+    @Test
+    public void batchPublishesWhenFull() throws Exception {
+        final File directory = newDirectory("batch");
+        final OutputCommitter committer = new OutputCommitter(OutputCommitter.Durability.BATCHED, 2);
+        final File first = new File(directory, "first.bin");
+        final File second = new File(directory, "second.bin");
+
+        commitContents(first, committer);
+        assertFalse(first.getName() + " must not be published before the batch is full", first.exists());
+
+        commitContents(second, committer);
+        assertEquals(first.getName() + " after the batch is full", NEW_CONTENTS, readContents(first));
+        assertEquals(second.getName() + " after the batch is full", NEW_CONTENTS, readContents(second));
+        assertEquals("files left in the directory", 2, directory.list().length);
+    }
+
+    /**
+     * Check that flushing a committer publishes a batch that isn't full yet.
+     *
+     * @throws Exception a general exception was thrown
+     */
+    @Test
+    public void flushPublishesPartialBatch() throws Exception {
+        final File directory = newDirectory("flush");
+        final OutputCommitter committer = new OutputCommitter(OutputCommitter.Durability.BATCHED, 64);
+        final File target = new File(directory, "out.bin");
+
+        commitContents(target, committer);
+        assertFalse(target.getName() + " must not be published before the flush", target.exists());
+
+        committer.flush();
+        assertEquals("target after flush", NEW_CONTENTS, readContents(target));
+        assertEquals("files left in the directory", 1, directory.list().length);
+    }
+
+    /**
+     * Check that closing a committer publishes the last batch.
+     *
+     * @throws Exception a general exception was thrown
+     */
+    @Test
+    public void closePublishesLastBatch() throws Exception {
+        final File directory = newDirectory("close");
+        final File target = new File(directory, "out.bin");
+
+        try (OutputCommitter committer = new OutputCommitter(OutputCommitter.Durability.BATCHED, 64)) {
+            commitContents(target, committer);
+            assertFalse(target.getName() + " must not be published before the close", target.exists());
+        }
+        assertTrue(target.getName() + " must be published by the close", target.exists());
+    }
+
+    /**
+     * Check that an output in a batch that can't be published doesn't keep the rest of the batch from being published,
+     * and that it's reported and its temporary file is removed.
+     *
+     * @throws Exception a general exception was thrown
+     */
+    @Test
+    public void failedOutputDoesNotStopBatch() throws Exception {
+        final File directory = newDirectory("failed");
+        final OutputCommitter committer = new OutputCommitter(OutputCommitter.Durability.BATCHED, 3);
+        final File first = new File(directory, "first.bin");
+        final File missing = new File(directory, "missing.bin");
+        final File last = new File(directory, "last.bin");
+
+        commitContents(first, committer);
+        // A temporary file that doesn't exist can be neither synced nor renamed.
+        committer.commit(new File(directory, ".missing.bin.tmp"), missing);
+        try {
+            commitContents(last, committer);
+            fail("the batch must report the output that wasn't published");
+        } catch (final IOException e) {
+            assertTrue("the exception must name the unpublished output: " + e.getMessage(),
+                       e.getMessage().contains(missing.getPath()));
+            assertFalse("the exception must not name published outputs: " + e.getMessage(),
+                        e.getMessage().contains(first.getPath()));
+        }
+        assertEquals(first.getName() + " must be published", NEW_CONTENTS, readContents(first));
+        assertEquals(last.getName() + " must be published", NEW_CONTENTS, readContents(last));
+        assertFalse(missing.getName() + " must not be published", missing.exists());
+        assertEquals("files left in the directory", 2, directory.list().length);
+    }
+
+    /**
+     * Check that replacing the shared committer publishes the outputs still waiting in the one it replaces.
+     *
+     * @throws Exception a general exception was thrown
+     */
+    @Test
+    public void replacedCommitterIsFlushed() throws Exception {
+        final File directory = newDirectory("replaced");
+        final File target = new File(directory, "out.bin");
+        final OutputCommitter original = IoUtils.getOutputCommitter();
+        try {
+            IoUtils.setOutputCommitter(new OutputCommitter(OutputCommitter.Durability.BATCHED, 64));
+            commitContents(target, IoUtils.getOutputCommitter());
+            assertFalse(target.getName() + " must not be published before the committer is replaced",
+                        target.exists());
+        } finally {
+            IoUtils.setOutputCommitter(original);
+        }
+        assertEquals(target.getName() + " must be published when the committer is replaced", NEW_CONTENTS,
+                     readContents(target));
+    }
+
+    /**
+     * Check that a writer that can't be opened doesn't leave its temporary file behind.
+     *
+     * @throws Exception a general exception was thrown
+     */
+    @Test
+    public void failedOpenRemovesTempFile() throws Exception {
+        new MockUp<FileChannelByteWriter>() {
+            @Mock
+            void $init(final File file, final int bufferSize) throws IOException {
+                throw new IOException("simulated open failure");
+            }
+        };
+
+        final File directory = newDirectory("open");
+        try {
+            AtomicFileByteWriter.newInstance(new File(directory, "out.bin"),
+                                             new OutputCommitter(OutputCommitter.Durability.NONE));
+            fail("opening the writer must fail");
+        } catch (final IOException e) {
+            assertEquals("exception", "simulated open failure", e.getMessage());
+        }
+        assertEquals("files left in the directory", 0, directory.list().length);
+    }
+
+    private static File newDirectory(final String name) throws IOException {
+        final File directory = newOutputFile(CLASS_NAME + "." + name);
+        FileUtils.deleteDirectory(directory);
+        Files.createDirectories(directory.toPath());
+        return directory;
+    }
+
+    private static AtomicFileByteWriter writeContents(final File target, final OutputCommitter committer)
+                    throws IOException {
+        final AtomicFileByteWriter writer = AtomicFileByteWriter.newInstance(target, committer);
+        final byte[] bytes = NEW_CONTENTS.getBytes(StandardCharsets.US_ASCII);
+        writer.write(0, bytes, 0, bytes.length);
+        return writer;
+    }
+
+    private static void commitContents(final File target, final OutputCommitter committer) throws IOException {
+        final AtomicFileByteWriter writer = writeContents(target, committer);
+        try {
+            writer.commit();
+        } finally {
+            writer.close();
+        }
+    }
+
+    private static String readContents(final File file) throws IOException {
+        return FileUtils.readFileToString(file, StandardCharsets.US_ASCII);
+    }
+}
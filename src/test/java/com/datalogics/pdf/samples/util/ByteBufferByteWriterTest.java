@@ -0,0 +1,200 @@
+/*
+ * Copyright 2015 Datalogics, Inc.
+ */
+
+package com.datalogics.pdf.samples.util;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.adobe.internal.io.ByteReader;
+import com.adobe.pdfjt.pdf.document.PDFDocument;
+
+import com.datalogics.pdf.samples.SampleTestBase;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ReadOnlyBufferException;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Test the in-memory reader and writer: growing the buffer, reading back what was written, the read-only result of
+ * the writer, and saving a document to memory and opening it again.
+ */
+public class ByteBufferByteWriterTest extends SampleTestBase {
+
+    private static final String INPUT_PDF_PATH = "/com/datalogics/pdf/samples/manipulation/Merge1.pdf";
+    private static final int INITIAL_CAPACITY = 16;
+    private static final int OUTPUT_SIZE = 1000;
+
+    /**
+     * Check that writes past the initial capacity grow the buffer, and that the result holds every byte written.
+     *
+     * @throws Exception a general exception was thrown
+     */
+    @Test
+    public void heapBufferGrows() throws Exception {
+        checkGrowth(false);
+    }
+
+    /**
+     * Check that a direct buffer grows like a heap buffer.
+     *
+     * @throws Exception a general exception was thrown
+     */
+    @Test
+    public void directBufferGrows() throws Exception {
+        checkGrowth(true);
+    }
+
+    /**
+     * Check that writing before the end patches the buffer without changing its length, and that writing past the
+     * end leaves zeroes in the gap.
+     *
+     * @throws Exception a general exception was thrown
+     */
+    @Test
+    public void patchesAndGaps() throws Exception {
+        final ByteBufferByteWriter writer = new ByteBufferByteWriter(INITIAL_CAPACITY, false);
+        writer.write(0, bytes("0123456789"), 0, 10);
+        writer.write(2, 'X');
+        assertEquals("length after patch", 10, writer.length());
+        writer.write(40, 'Z');
+        assertEquals("length after gap", 41, writer.length());
+        writer.close();
+
+        final ByteBuffer result = writer.toByteBuffer();
+        assertEquals("result remaining", 41, result.remaining());
+        assertEquals("patched byte", 'X', result.get(2));
+        assertEquals("gap byte", 0, result.get(20));
+        assertEquals("last byte", 'Z', result.get(40));
+    }
+
+    /**
+     * Check that the result of the writer is a read-only buffer that holds just the written bytes, starting at 0.
+     *
+     * @throws Exception a general exception was thrown
+     */
+    @Test(expected = ReadOnlyBufferException.class)
+    public void resultIsReadOnlySlice() throws Exception {
+        final ByteBufferByteWriter writer = new ByteBufferByteWriter(INITIAL_CAPACITY * 4, false);
+        writer.write(0, bytes("abcdef"), 0, 6);
+        writer.close();
+
+        final ByteBuffer result = writer.toByteBuffer();
+        assertTrue("result must be read-only", result.isReadOnly());
+        assertEquals("position", 0, result.position());
+        assertEquals("limit", 6, result.limit());
+        assertEquals("capacity", 6, result.capacity());
+        result.put(0, (byte) 'x');
+    }
+
+    /**
+     * Check that the reader reads only the bytes between a buffer's position and limit, and leaves them unchanged.
+     *
+     * @throws Exception a general exception was thrown
+     */
+    @Test
+    public void readerReadsRemainingBytes() throws Exception {
+        final ByteBuffer buffer = ByteBuffer.wrap(bytes("--abcdef--"));
+        buffer.position(2);
+        buffer.limit(8);
+
+        final ByteBufferByteReader reader = new ByteBufferByteReader(buffer);
+        try {
+            assertEquals("length", 6, reader.length());
+            assertEquals("first byte", 'a', reader.read(0));
+            assertEquals("past the end", ByteReader.EOF, reader.read(6));
+            final byte[] read = new byte[10];
+            assertEquals("bytes read, up to the end", 3, reader.read(3, read, 0, read.length));
+            assertArrayEquals("bytes", bytes("def"), Arrays.copyOf(read, 3));
+        } finally {
+            reader.close();
+        }
+        assertEquals("buffer position", 2, buffer.position());
+        assertEquals("buffer limit", 8, buffer.limit());
+    }
+
+    /**
+     * Check that a closed reader can't be read.
+     *
+     * @throws Exception a general exception was thrown
+     */
+    @Test(expected = IOException.class)
+    public void closedReaderFails() throws Exception {
+        final ByteBufferByteReader reader = new ByteBufferByteReader(ByteBuffer.wrap(bytes("abc")));
+        reader.close();
+        reader.read(0);
+    }
+
+    /**
+     * Check that a document saved to memory can be opened again from the buffer, and that a small estimate still
+     * holds the whole document.
+     *
+     * @throws Exception a general exception was thrown
+     */
+    @Test
+    public void documentRoundTrip() throws Exception {
+        final byte[] input;
+        try (InputStream stream = ByteBufferByteWriterTest.class.getResourceAsStream(INPUT_PDF_PATH)) {
+            input = IOUtils.toByteArray(stream);
+        }
+
+        final PDFDocument original = DocumentUtils.openPdfDocument(input);
+        final int pageCount = original.requirePages().getCount();
+        final ByteBuffer saved = DocumentUtils.saveFullToBuffer(original, INITIAL_CAPACITY);
+        assertTrue("saved document must be read-only", saved.isReadOnly());
+
+        final PDFDocument reopened = DocumentUtils.openPdfDocument(saved);
+        try {
+            assertEquals("page count", pageCount, reopened.requirePages().getCount());
+        } finally {
+            reopened.close();
+        }
+    }
+
+    private static void checkGrowth(final boolean direct) throws IOException {
+        final byte[] expected = new byte[OUTPUT_SIZE];
+        new Random(42).nextBytes(expected);
+
+        final ByteBufferByteWriter writer = new ByteBufferByteWriter(INITIAL_CAPACITY, direct);
+        int position = 0;
+        int count = 1;
+        while (position < expected.length) {
+            final int length = Math.min(count, expected.length - position);
+            writer.write(position, expected, position, length);
+            position += length;
+            count = count * 2 + 1;
+        }
+        assertEquals("length", expected.length, writer.length());
+        final byte[] read = new byte[expected.length];
+        assertEquals("bytes read back from the writer", expected.length, writer.read(0, read, 0, read.length));
+        assertArrayEquals("contents read back from the writer", expected, read);
+        writer.close();
+
+        final ByteBufferByteReader reader = new ByteBufferByteReader(writer.toByteBuffer());
+        try {
+            assertEquals("length read back", expected.length, reader.length());
+            final byte[] reread = new byte[expected.length];
+            assertEquals("bytes read back from the result", expected.length,
+                         reader.read(0, reread, 0, reread.length));
+            assertArrayEquals("contents read back from the result", expected, reread);
+        } finally {
+            reader.close();
+        }
+    }
+
+    private static byte[] bytes(final String text) {
+        final byte[] bytes = new byte[text.length()];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = (byte) text.charAt(i);
+        }
+        return bytes;
+    }
+}
@@ -0,0 +1,189 @@
+/*
+ * Copyright 2015 Datalogics, Inc.
+ */
+
+package com.datalogics.pdf.samples.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import com.adobe.pdfjt.pdf.document.PDFDocument;
+
+import com.datalogics.pdf.samples.SampleTestBase;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Test the document cache: reuse of open documents, exclusive leases, eviction of the least recently used documents,
+ * and reopening changed files.
+ */
+public class DocumentCacheTest extends SampleTestBase {
+
+    private static final String CLASS_NAME = MethodHandles.lookup().lookupClass().getSimpleName();
+    private static final String RESOURCE_DIR = "/com/datalogics/pdf/samples/manipulation/";
+    private static final long LARGE_CACHE = 1L << 30;
+
+    /**
+     * Check that a document is opened once and then served from the cache.
+     *
+     * @throws Exception a general exception was thrown
+     */
+    @Test
+    public void secondLeaseIsHit() throws Exception {
+        final File file = copyResource("Merge1.pdf");
+        try (DocumentCache cache = new DocumentCache(LARGE_CACHE)) {
+            final PDFDocument first;
+            try (DocumentCache.Lease lease = cache.lease(file)) {
+                first = lease.getDocument();
+            }
+            try (DocumentCache.Lease lease = cache.lease(file)) {
+                assertSame("cached document", first, lease.getDocument());
+            }
+            assertEquals("misses", 1, cache.getMisses());
+            assertEquals("hits", 1, cache.getHits());
+            assertEquals("hit rate", 0.5, cache.getHitRate(), 0.0);
+            assertEquals("weight", file.length(), cache.getWeight());
+        }
+    }
+
+    /**
+     * Check that a thread can't lease a document it already holds.
+     *
+     * @throws Exception a general exception was thrown
+     */
+    @Test(expected = IllegalStateException.class)
+    public void reentrantLeaseIsRejected() throws Exception {
+        final File file = copyResource("Merge1.pdf");
+        try (DocumentCache cache = new DocumentCache(LARGE_CACHE);
+             DocumentCache.Lease lease = cache.lease(file)) {
+            cache.lease(file);
+        }
+    }
+
+    /**
+     * Check that a second thread asking for a leased document waits until the lease is returned.
+     *
+     * @throws Exception a general exception was thrown
+     */
+    @Test
+    public void leasesAreExclusive() throws Exception {
+        final File file = copyResource("Merge1.pdf");
+        final ExecutorService executor = Executors.newSingleThreadExecutor();
+        try (DocumentCache cache = new DocumentCache(LARGE_CACHE)) {
+            final DocumentCache.Lease lease = cache.lease(file);
+            final Future<PDFDocument> other;
+            try {
+                other = executor.submit(new Callable<PDFDocument>() {
+                    @Override
+                    public PDFDocument call() throws Exception {
+                        try (DocumentCache.Lease otherLease = cache.lease(file)) {
+                            return otherLease.getDocument();
+                        }
+                    }
+                });
+                try {
+                    other.get(500, TimeUnit.MILLISECONDS);
+                    throw new AssertionError("second lease must wait for the first to be returned");
+                } catch (final TimeoutException e) {
+                    // Expected: the other thread is waiting.
+                }
+                assertFalse("second lease must still be waiting", other.isDone());
+            } finally {
+                lease.close();
+            }
+            assertNotNull("document", other.get(10, TimeUnit.SECONDS));
+            assertEquals("hits", 1, cache.getHits());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Check that the least recently used document is evicted when the cache outgrows its size, and that the cache
+     * stays within it.
+     *
+     * @throws Exception a general exception was thrown
+     */
+    @Test
+    public void evictsLeastRecentlyUsed() throws Exception {
+        final File first = copyResource("Merge1.pdf");
+        final File second = copyResource("Merge2.pdf");
+        final File third = copyResource("annotations.pdf");
+        final long maxWeight = first.length() + Math.max(second.length(), third.length());
+        try (DocumentCache cache = new DocumentCache(maxWeight)) {
+            cache.lease(first).close();
+            cache.lease(second).close();
+            // Use the first document again, so that the second is the least recently used.
+            cache.lease(first).close();
+            cache.lease(third).close();
+
+            assertEquals("evictions", 1, cache.getEvictions());
+            assertTrue("weight must be within the maximum", cache.getWeight() <= maxWeight);
+            assertEquals("weight", first.length() + third.length(), cache.getWeight());
+
+            final long misses = cache.getMisses();
+            cache.lease(first).close();
+            assertEquals("the first document must still be cached", misses, cache.getMisses());
+            cache.lease(second).close();
+            assertEquals("the second document must have been evicted", misses + 1, cache.getMisses());
+        }
+    }
+
+    /**
+     * Check that a document whose file changed is opened again.
+     *
+     * @throws Exception a general exception was thrown
+     */
+    @Test
+    public void changedFileIsReopened() throws Exception {
+        final File file = copyResource("Merge1.pdf");
+        try (DocumentCache cache = new DocumentCache(LARGE_CACHE)) {
+            final PDFDocument first;
+            try (DocumentCache.Lease lease = cache.lease(file)) {
+                first = lease.getDocument();
+            }
+            assertTrue("set modification time", file.setLastModified(file.lastModified() - 60000));
+            try (DocumentCache.Lease lease = cache.lease(file)) {
+                assertNotSame("reopened document", first, lease.getDocument());
+            }
+            assertEquals("misses", 2, cache.getMisses());
+            assertEquals("weight", file.length(), cache.getWeight());
+        }
+    }
+
+    /**
+     * Check that a returned lease can't be used.
+     *
+     * @throws Exception a general exception was thrown
+     */
+    @Test(expected = IllegalStateException.class)
+    public void returnedLeaseFails() throws Exception {
+        final File file = copyResource("Merge1.pdf");
+        try (DocumentCache cache = new DocumentCache(LARGE_CACHE)) {
+            final DocumentCache.Lease lease = cache.lease(file);
+            lease.close();
+            lease.getDocument();
+        }
+    }
+
+    private static File copyResource(final String name) throws IOException {
+        final File file = newOutputFileWithDelete(CLASS_NAME + "." + name);
+        FileUtils.copyURLToFile(DocumentCacheTest.class.getResource(RESOURCE_DIR + name), file);
+        return file;
+    }
+}
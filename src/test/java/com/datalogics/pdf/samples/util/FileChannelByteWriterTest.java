@@ -0,0 +1,142 @@
+/*
+ * Copyright 2015 Datalogics, Inc.
+ */
+
+package com.datalogics.pdf.samples.util;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import com.adobe.internal.io.ByteReader;
+
+import com.datalogics.pdf.samples.SampleTestBase;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Test the buffered FileChannel writer: sequential writes, patches inside and before the buffered window, and reads
+ * of bytes that are still in the buffer.
+ */
+public class FileChannelByteWriterTest extends SampleTestBase {
+
+    private static final String CLASS_NAME = MethodHandles.lookup().lookupClass().getSimpleName();
+    private static final int BUFFER_SIZE = 16;
+    private static final int FILE_SIZE = 1000;
+
+    /**
+     * Check that patches at earlier positions, before and inside the buffered window, end up in the file.
+     *
+     * @throws Exception a general exception was thrown
+     */
+    @Test
+    public void backPatchesReachFile() throws Exception {
+        final File file = newOutputFileWithDelete(CLASS_NAME + ".patch.bin");
+        final FileChannelByteWriter writer = new FileChannelByteWriter(file, BUFFER_SIZE);
+        try {
+            writer.write(0, bytes("0123456789"), 0, 10);
+            writer.write(10, bytes("abcdefghijklmnopqrstuvwxyz"), 0, 26);
+            // Before the window: the first bytes are already on the channel.
+            writer.write(2, bytes("XY"), 0, 2);
+            // Inside the window.
+            writer.write(34, 'Z');
+            assertEquals("length", 36, writer.length());
+            assertEquals("patched byte read from the buffer", 'Z', writer.read(34));
+            assertEquals("patched byte read from the file", 'X', writer.read(2));
+        } finally {
+            writer.close();
+        }
+        assertEquals("file contents", "01XY456789abcdefghijklmnopqrstuvwxZz",
+                     FileUtils.readFileToString(file, "US-ASCII"));
+    }
+
+    /**
+     * Check that a read overlapping the buffered window sees the buffered bytes.
+     *
+     * @throws Exception a general exception was thrown
+     */
+    @Test
+    public void readAfterWriteSeesBufferedBytes() throws Exception {
+        final File file = newOutputFileWithDelete(CLASS_NAME + ".read.bin");
+        final FileChannelByteWriter writer = new FileChannelByteWriter(file, BUFFER_SIZE);
+        try {
+            writer.write(0, bytes("0123456789abcdefghij"), 0, 20);
+            final byte[] read = new byte[10];
+            assertEquals("bytes read, up to the end", 8, writer.read(12, read, 0, read.length));
+            assertArrayEquals("bytes across the window", bytes("cdefghij\0\0"), read);
+            assertEquals("past the end", ByteReader.EOF, writer.read(20));
+        } finally {
+            writer.close();
+        }
+    }
+
+    /**
+     * Check a long run of mixed writes, seeks back and reads against a copy kept in memory.
+     *
+     * @throws Exception a general exception was thrown
+     */
+    @Test
+    public void mixedWritesRoundTrip() throws Exception {
+        final File file = newOutputFileWithDelete(CLASS_NAME + ".mixed.bin");
+        final byte[] expected = new byte[FILE_SIZE];
+        final Random random = new Random(42);
+        int length = 0;
+
+        final FileChannelByteWriter writer = new FileChannelByteWriter(file, BUFFER_SIZE);
+        try {
+            while (length < FILE_SIZE) {
+                // Mostly appends, sometimes larger than the buffer; now and then a patch somewhere earlier.
+                final boolean patch = length > 0 && random.nextInt(4) == 0;
+                final int position = patch ? random.nextInt(length) : length;
+                final int count = Math.min(1 + random.nextInt(2 * BUFFER_SIZE), FILE_SIZE - position);
+                final byte[] data = new byte[count];
+                random.nextBytes(data);
+                if (count == 1) {
+                    writer.write(position, data[0]);
+                } else {
+                    writer.write(position, data, 0, count);
+                }
+                System.arraycopy(data, 0, expected, position, count);
+                length = Math.max(length, position + count);
+                assertEquals("length", length, writer.length());
+
+                final int readPosition = random.nextInt(length);
+                assertEquals("byte at " + readPosition, expected[readPosition] & 0xff, writer.read(readPosition));
+                final byte[] read = new byte[Math.min(BUFFER_SIZE, length - readPosition)];
+                writer.read(readPosition, read, 0, read.length);
+                assertArrayEquals("bytes at " + readPosition,
+                                  Arrays.copyOfRange(expected, readPosition, readPosition + read.length), read);
+            }
+        } finally {
+            writer.close();
+        }
+        assertArrayEquals("file contents", expected, FileUtils.readFileToByteArray(file));
+    }
+
+    /**
+     * Check that a closed writer can't be used.
+     *
+     * @throws Exception a general exception was thrown
+     */
+    @Test(expected = IOException.class)
+    public void closedWriterFails() throws Exception {
+        final FileChannelByteWriter writer = new FileChannelByteWriter(newOutputFileWithDelete(CLASS_NAME
+                                                                                               + ".closed.bin"));
+        writer.close();
+        writer.write(0, 1);
+    }
+
+    private static byte[] bytes(final String text) {
+        final byte[] result = new byte[text.length()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = (byte) text.charAt(i);
+        }
+        return result;
+    }
+}
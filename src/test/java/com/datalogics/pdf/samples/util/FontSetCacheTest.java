@@ -0,0 +1,119 @@
+/*
+ * Copyright 2015 Datalogics, Inc.
+ */
+
+package com.datalogics.pdf.samples.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.datalogics.pdf.samples.SampleTestBase;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Assume;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.invoke.MethodHandles;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.Properties;
+
+/**
+ * Test the fingerprinting of font directories by the font set cache.
+ */
+public class FontSetCacheTest extends SampleTestBase {
+
+    private static final String CLASS_NAME = MethodHandles.lookup().lookupClass().getSimpleName();
+
+    /**
+     * Check that the same directories give the same fingerprint, and that adding or changing a font file changes it.
+     *
+     * @throws Exception a general exception was thrown
+     */
+    @Test
+    public void fingerprintFollowsFontFiles() throws Exception {
+        final File fonts = newFontDirectory("fingerprint");
+        final FontSetCache cache = newCache(fonts, "fingerprint.ser");
+
+        final String original = cache.fingerprint();
+        assertEquals("the same directories give the same fingerprint", original,
+                     newCache(fonts, "other.ser").fingerprint());
+
+        final File added = new File(fonts, "sub/Added.otf");
+        FileUtils.writeStringToFile(added, "added font", StandardCharsets.UTF_8);
+        final String withAdded = cache.fingerprint();
+        assertNotEquals("adding a font changes the fingerprint", original, withAdded);
+
+        FileUtils.writeStringToFile(added, "a longer added font", StandardCharsets.UTF_8);
+        assertNotEquals("changing a font changes the fingerprint", withAdded, cache.fingerprint());
+    }
+
+    /**
+     * Check that a cache is valid while its fingerprint matches, and stale once a font file is added or changed.
+     *
+     * @throws Exception a general exception was thrown
+     */
+    @Test
+    public void changedFontsMakeCacheStale() throws Exception {
+        final File fonts = newFontDirectory("stale");
+        final File cacheFile = newOutputFileWithDelete(CLASS_NAME + ".stale.ser");
+        final FontSetCache cache = new FontSetCache(cacheFile, Collections.singletonList(fonts));
+        assertFalse("a missing cache is not valid", cache.isValid());
+
+        FileUtils.writeStringToFile(cacheFile, "cached font set", StandardCharsets.UTF_8);
+        recordFingerprint(cacheFile, cache.fingerprint());
+        assertTrue("a cache whose fingerprint matches is valid", cache.isValid());
+
+        final File font = new File(fonts, "Regular.ttf");
+        assertTrue("the font must be touched", font.setLastModified(font.lastModified() - 60000));
+        assertFalse("changing a font makes the cache stale", cache.isValid());
+
+        recordFingerprint(cacheFile, cache.fingerprint());
+        FileUtils.writeStringToFile(new File(fonts, "Installed.ttf"), "installed font", StandardCharsets.UTF_8);
+        assertFalse("adding a font makes the cache stale", cache.isValid());
+    }
+
+    /**
+     * Check that a symbolic link pointing back up the font directory doesn't make fingerprinting loop.
+     *
+     * @throws Exception a general exception was thrown
+     */
+    @Test
+    public void linkLoopIsNotFollowed() throws Exception {
+        final File fonts = newFontDirectory("loop");
+        try {
+            Files.createSymbolicLink(new File(fonts, "sub/loop").toPath(), fonts.toPath().toAbsolutePath());
+        } catch (final UnsupportedOperationException | IOException e) {
+            Assume.assumeTrue("symbolic links are not supported here", false);
+        }
+
+        final FontSetCache cache = newCache(fonts, "loop.ser");
+        assertEquals("the fingerprint is stable", cache.fingerprint(), cache.fingerprint());
+    }
+
+    private static File newFontDirectory(final String name) throws Exception {
+        final File fonts = newOutputFile(CLASS_NAME + "." + name + "-fonts");
+        FileUtils.deleteDirectory(fonts);
+        FileUtils.writeStringToFile(new File(fonts, "Regular.ttf"), "regular font", StandardCharsets.UTF_8);
+        FileUtils.writeStringToFile(new File(fonts, "sub/Bold.ttf"), "bold font", StandardCharsets.UTF_8);
+        return fonts;
+    }
+
+    private static FontSetCache newCache(final File fonts, final String name) {
+        return new FontSetCache(newOutputFile(CLASS_NAME + "." + name), Collections.singletonList(fonts));
+    }
+
+    private static void recordFingerprint(final File cacheFile, final String fingerprint) throws Exception {
+        final Properties properties = new Properties();
+        properties.setProperty("fingerprint", fingerprint);
+        try (OutputStream output = Files.newOutputStream(new File(cacheFile.getPath() + ".fingerprint").toPath())) {
+            properties.store(output, null);
+        }
+    }
+}
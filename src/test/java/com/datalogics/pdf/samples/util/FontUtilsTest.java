@@ -0,0 +1,95 @@
+/*
+ * Copyright 2015 Datalogics, Inc.
+ */
+
+package com.datalogics.pdf.samples.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import com.adobe.pdfjt.core.fontset.PDFFontSet;
+
+import com.datalogics.pdf.samples.SampleTestBase;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Test the shared system font set.
+ */
+public class FontUtilsTest extends SampleTestBase {
+
+    private static final int THREADS = 4;
+
+    /**
+     * Check that the system font set is loaded at most once, and that every later call counts as a hit.
+     *
+     * @throws Exception a general exception was thrown
+     */
+    @Test
+    public void systemFontSetIsLoadedOnce() throws Exception {
+        final PDFFontSet first = FontUtils.getSystemFontSet();
+        final long hits = FontUtils.getSystemFontSetHits();
+        final long misses = FontUtils.getSystemFontSetMisses();
+        assertEquals("the font set is loaded once per process", 1, misses);
+
+        assertSame("the same font set is shared", first, FontUtils.getSystemFontSet());
+        assertEquals("hits after one more call", hits + 1, FontUtils.getSystemFontSetHits());
+        assertEquals("misses after one more call", misses, FontUtils.getSystemFontSetMisses());
+        assertTrue("load time is recorded", FontUtils.getSystemFontSetLoadTimeNanos() > 0);
+    }
+
+    /**
+     * Check that threads asking for the system font set at once all get the same one, with every call counted.
+     *
+     * @throws Exception a general exception was thrown
+     */
+    @Test
+    public void concurrentCallersShareFontSet() throws Exception {
+        final long before = FontUtils.getSystemFontSetHits() + FontUtils.getSystemFontSetMisses();
+        final ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            final List<Future<PDFFontSet>> results = new ArrayList<>();
+            for (int i = 0; i < THREADS; i++) {
+                results.add(executor.submit(new Callable<PDFFontSet>() {
+                    @Override
+                    public PDFFontSet call() {
+                        return FontUtils.getSystemFontSet();
+                    }
+                }));
+            }
+            for (final Future<PDFFontSet> result : results) {
+                assertSame("every thread gets the shared font set", FontUtils.getSystemFontSet(), result.get());
+            }
+        } finally {
+            executor.shutdown();
+        }
+        assertEquals("the font set is loaded once per process", 1, FontUtils.getSystemFontSetMisses());
+        assertEquals("every call is counted", before + 2 * THREADS,
+                     FontUtils.getSystemFontSetHits() + FontUtils.getSystemFontSetMisses());
+    }
+
+    /**
+     * Check that a copy of the system font set is private to its caller, and is made without loading the font set
+     * again.
+     *
+     * @throws Exception a general exception was thrown
+     */
+    @Test
+    public void fontSetCopyIsPrivate() throws Exception {
+        final PDFFontSet shared = FontUtils.getSystemFontSet();
+        final PDFFontSet copy = FontUtils.newSystemFontSetCopy();
+
+        assertNotSame("a copy is not the shared font set", shared, copy);
+        assertNotSame("every copy is separate", copy, FontUtils.newSystemFontSetCopy());
+        assertEquals("the font set is loaded once per process", 1, FontUtils.getSystemFontSetMisses());
+    }
+}
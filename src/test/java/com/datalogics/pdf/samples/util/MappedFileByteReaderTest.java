@@ -0,0 +1,144 @@
+/*
+ * Copyright 2015 Datalogics, Inc.
+ */
+
+package com.datalogics.pdf.samples.util;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.adobe.internal.io.ByteReader;
+import com.adobe.pdfjt.pdf.document.PDFDocument;
+import com.adobe.pdfjt.pdf.document.PDFOpenOptions;
+
+import com.datalogics.pdf.samples.SampleTestBase;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.net.URL;
+import java.util.Arrays;
+
+/**
+ * Test reading files through a memory mapping, and that mapping is only used when asked for.
+ */
+public class MappedFileByteReaderTest extends SampleTestBase {
+
+    private static final String CLASS_NAME = MethodHandles.lookup().lookupClass().getSimpleName();
+    private static final String INPUT_PDF_PATH = "/com/datalogics/pdf/samples/printing/pdfjavatoolkit-ds.pdf";
+    private static final int FILE_SIZE = 1000;
+    private static final int CHUNK_SIZE = 64;
+
+    /**
+     * Check that single bytes and runs of bytes read back as written, including runs across chunk boundaries.
+     *
+     * @throws Exception a general exception was thrown
+     */
+    @Test
+    public void readsAcrossChunks() throws Exception {
+        final byte[] contents = newContents();
+        final File file = newOutputFileWithDelete(CLASS_NAME + ".bin");
+        FileUtils.writeByteArrayToFile(file, contents);
+
+        final MappedFileByteReader reader = new MappedFileByteReader(file, CHUNK_SIZE);
+        try {
+            assertEquals("length", FILE_SIZE, reader.length());
+            for (final int position : new int[] { 0, CHUNK_SIZE - 1, CHUNK_SIZE, FILE_SIZE - 1 }) {
+                assertEquals("byte at " + position, contents[position] & 0xff, reader.read(position));
+            }
+
+            final byte[] run = new byte[3 * CHUNK_SIZE];
+            final int start = CHUNK_SIZE / 2;
+            assertEquals("bytes read", run.length, reader.read(start, run, 0, run.length));
+            assertArrayEquals("run across chunks", Arrays.copyOfRange(contents, start, start + run.length), run);
+
+            final byte[] tail = new byte[100];
+            assertEquals("bytes read at the end", 10, reader.read(FILE_SIZE - 10, tail, 0, tail.length));
+            assertEquals("past the end", ByteReader.EOF, reader.read(FILE_SIZE));
+        } finally {
+            reader.close();
+        }
+    }
+
+    /**
+     * Check that a closed reader can't be read.
+     *
+     * @throws Exception a general exception was thrown
+     */
+    @Test(expected = IOException.class)
+    public void closedReaderFails() throws Exception {
+        final File file = newOutputFileWithDelete(CLASS_NAME + ".closed.bin");
+        FileUtils.writeByteArrayToFile(file, newContents());
+
+        final MappedFileByteReader reader = new MappedFileByteReader(file, CHUNK_SIZE);
+        reader.close();
+        reader.read(0);
+    }
+
+    /**
+     * Check that files are read as a stream unless mapping is asked for.
+     *
+     * @throws Exception a general exception was thrown
+     */
+    @Test
+    public void mappingIsOptIn() throws Exception {
+        final File file = newOutputFileWithDelete(CLASS_NAME + ".optin.bin");
+        FileUtils.writeByteArrayToFile(file, newContents());
+        final URL url = file.toURI().toURL();
+
+        final ByteReader streamReader = IoUtils.newByteReader(url);
+        try {
+            assertFalse("default reader must not map", streamReader instanceof MappedFileByteReader);
+        } finally {
+            streamReader.close();
+        }
+        final ByteReader mappedReader = IoUtils.newMappedByteReader(url);
+        try {
+            assertTrue("mapped reader must map", mappedReader instanceof MappedFileByteReader);
+        } finally {
+            mappedReader.close();
+        }
+    }
+
+    /**
+     * Check that only local files can be mapped.
+     *
+     * @throws Exception a general exception was thrown
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void onlyFilesCanBeMapped() throws Exception {
+        IoUtils.newMappedByteReader(new URL("http://example.com/document.pdf"));
+    }
+
+    /**
+     * Check that a document can be opened through a mapping.
+     *
+     * @throws Exception a general exception was thrown
+     */
+    @Test
+    public void openMappedDocument() throws Exception {
+        final File file = newOutputFileWithDelete(CLASS_NAME + ".pdf");
+        FileUtils.copyURLToFile(MappedFileByteReaderTest.class.getResource(INPUT_PDF_PATH), file);
+
+        final PDFDocument document = DocumentUtils.openMappedPdfDocument(file.toURI().toURL(),
+                                                                         PDFOpenOptions.newInstance());
+        try {
+            assertTrue("the document must have pages", document.requirePages().getCount() > 0);
+        } finally {
+            document.close();
+        }
+    }
+
+    private static byte[] newContents() {
+        final byte[] contents = new byte[FILE_SIZE];
+        for (int i = 0; i < FILE_SIZE; i++) {
+            contents[i] = (byte) (i * 31);
+        }
+        return contents;
+    }
+}
@@ -0,0 +1,123 @@
+/*
+ * Copyright 2015 Datalogics, Inc.
+ */
+
+package com.datalogics.pdf.samples.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import org.junit.Test;
+
+import java.awt.image.BufferedImage;
+import java.lang.ref.WeakReference;
+
+/**
+ * Test the image pool and its metrics.
+ */
+public class RasterBufferPoolTest {
+
+    private static final int SIZE = 10;
+    private static final long IMAGE_BYTES = SIZE * SIZE * 4;
+    private static final int GC_ATTEMPTS = 50;
+
+    /**
+     * Check that a released image is lent out again, and that the metrics count the allocation and the reuse.
+     *
+     * @throws Exception a general exception was thrown
+     */
+    @Test
+    public void releasedImageIsReused() throws Exception {
+        final RasterBufferPool pool = new RasterBufferPool(RasterBufferPool.DEFAULT_MAX_POOLED_BYTES);
+        final BufferedImage first = pool.borrow(SIZE, SIZE, BufferedImage.TYPE_INT_ARGB);
+        assertEquals("allocations", 1, pool.getAllocationCount());
+        assertEquals("borrowed", 1, pool.getBorrowedCount());
+
+        pool.release(first);
+        assertEquals("borrowed after release", 0, pool.getBorrowedCount());
+        assertEquals("pooled", 1, pool.getPooledCount());
+        assertEquals("pooled bytes", IMAGE_BYTES, pool.getPooledBytes());
+
+        final BufferedImage second = pool.borrow(SIZE, SIZE, BufferedImage.TYPE_INT_ARGB);
+        assertSame("reused image", first, second);
+        assertEquals("allocations after reuse", 1, pool.getAllocationCount());
+        assertEquals("reuses", 1, pool.getReuseCount());
+        assertEquals("bytes reused", IMAGE_BYTES, pool.getBytesReused());
+        assertEquals("pooled after reuse", 0, pool.getPooledCount());
+        assertEquals("pooled bytes after reuse", 0, pool.getPooledBytes());
+    }
+
+    /**
+     * Check that images are only reused for the same size and type.
+     *
+     * @throws Exception a general exception was thrown
+     */
+    @Test
+    public void otherSizesAndTypesAllocate() throws Exception {
+        final RasterBufferPool pool = new RasterBufferPool(RasterBufferPool.DEFAULT_MAX_POOLED_BYTES);
+        final BufferedImage image = pool.borrow(SIZE, SIZE, BufferedImage.TYPE_INT_ARGB);
+        pool.release(image);
+
+        assertNotSame("other size", image, pool.borrow(SIZE + 1, SIZE, BufferedImage.TYPE_INT_ARGB));
+        assertNotSame("other type", image, pool.borrow(SIZE, SIZE, BufferedImage.TYPE_INT_RGB));
+        assertEquals("allocations", 3, pool.getAllocationCount());
+        assertEquals("reuses", 0, pool.getReuseCount());
+        assertEquals("pooled", 1, pool.getPooledCount());
+    }
+
+    /**
+     * Check that the pool keeps no more than its maximum size of released images.
+     *
+     * @throws Exception a general exception was thrown
+     */
+    @Test
+    public void pooledBytesAreBounded() throws Exception {
+        final RasterBufferPool pool = new RasterBufferPool(IMAGE_BYTES);
+        final BufferedImage first = pool.borrow(SIZE, SIZE, BufferedImage.TYPE_INT_ARGB);
+        final BufferedImage second = pool.borrow(SIZE, SIZE, BufferedImage.TYPE_INT_ARGB);
+        pool.release(first);
+        pool.release(second);
+
+        assertEquals("pooled", 1, pool.getPooledCount());
+        assertEquals("pooled bytes", IMAGE_BYTES, pool.getPooledBytes());
+        assertEquals("borrowed", 0, pool.getBorrowedCount());
+    }
+
+    /**
+     * Check that releasing null, an image from elsewhere, or an image a second time does nothing.
+     *
+     * @throws Exception a general exception was thrown
+     */
+    @Test
+    public void foreignReleasesAreIgnored() throws Exception {
+        final RasterBufferPool pool = new RasterBufferPool(RasterBufferPool.DEFAULT_MAX_POOLED_BYTES);
+        pool.release(null);
+        pool.release(new BufferedImage(SIZE, SIZE, BufferedImage.TYPE_INT_ARGB));
+        assertEquals("pooled after foreign release", 0, pool.getPooledCount());
+
+        final BufferedImage image = pool.borrow(SIZE, SIZE, BufferedImage.TYPE_INT_ARGB);
+        pool.release(image);
+        pool.release(image);
+        assertEquals("pooled after double release", 1, pool.getPooledCount());
+    }
+
+    /**
+     * Check that the pool doesn't keep an image that was borrowed and never released from being garbage collected.
+     *
+     * @throws Exception a general exception was thrown
+     */
+    @Test
+    public void unreleasedImageIsCollected() throws Exception {
+        final RasterBufferPool pool = new RasterBufferPool(RasterBufferPool.DEFAULT_MAX_POOLED_BYTES);
+        final WeakReference<BufferedImage> reference = new WeakReference<>(pool.borrow(SIZE, SIZE,
+                                                                                       BufferedImage.TYPE_INT_ARGB));
+        for (int i = 0; i < GC_ATTEMPTS && reference.get() != null; i++) {
+            System.gc();
+            Thread.sleep(10);
+        }
+        assertNull("an unreleased image must be garbage collected", reference.get());
+        assertEquals("borrowed", 0, pool.getBorrowedCount());
+    }
+}